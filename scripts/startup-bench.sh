@@ -0,0 +1,60 @@
+#!/usr/bin/env bash
+# Measures time-to-first-202 and resident memory for each startup profile.
+#
+#   mvn -Pcds package                    # fat jar + target/app.jsa
+#   mvn -Pnative -DskipTests package     # target/pic-sure-logging (optional, needs GraalVM)
+#   scripts/startup-bench.sh [runs]
+#
+# Modes whose artifacts are missing are skipped.
+set -euo pipefail
+
+RUNS="${1:-5}"
+ROOT="$(cd "$(dirname "$0")/.." && pwd)"
+JAR="$(ls "$ROOT"/target/pic-sure-logging-*.jar 2>/dev/null | grep -v original | head -n 1 || true)"
+JSA="$ROOT/target/app.jsa"
+NATIVE="$ROOT/target/pic-sure-logging"
+PORT="${BENCH_PORT:-18080}"
+API_KEY="bench-api-key"
+SCRATCH="$(mktemp -d)"
+trap 'rm -rf "$SCRATCH"' EXIT
+
+now_ms() { date +%s%3N; }
+
+run_mode() {
+  local mode="$1"; shift
+  local total_ms=0 total_rss=0
+  for ((i = 1; i <= RUNS; i++)); do
+    local start
+    start="$(now_ms)"
+    LOGGING_API_KEY="$API_KEY" PORT="$PORT" LOG_DIR="$SCRATCH/$mode" "$@" > /dev/null 2>&1 &
+    local pid=$!
+    until curl -s -o /dev/null -w '%{http_code}' -X POST "http://localhost:$PORT/audit" \
+        -H "X-API-Key: $API_KEY" -H 'Content-Type: application/json' \
+        -d '{"event_type":"BENCH","action":"startup"}' 2>/dev/null | grep -q 202; do
+      if ! kill -0 "$pid" 2>/dev/null; then
+        echo "$mode: process exited before accepting events" >&2
+        return 1
+      fi
+      sleep 0.01
+    done
+    local elapsed=$(( $(now_ms) - start ))
+    local rss
+    rss="$(awk '/VmRSS/ {print $2}' "/proc/$pid/status")"
+    kill "$pid"
+    wait "$pid" 2>/dev/null || true
+    total_ms=$((total_ms + elapsed))
+    total_rss=$((total_rss + rss))
+  done
+  printf '%-8s %10d %10d\n' "$mode" $((total_ms / RUNS)) $((total_rss / RUNS / 1024))
+}
+
+printf '%-8s %10s %10s\n' "mode" "first202ms" "rss_mb"
+if [[ -n "$JAR" ]]; then
+  run_mode jar java -jar "$JAR"
+  if [[ -f "$JSA" ]]; then
+    run_mode cds java -XX:SharedArchiveFile="$JSA" -Xshare:auto -jar "$JAR"
+  fi
+fi
+if [[ -x "$NATIVE" ]]; then
+  run_mode native "$NATIVE"
+fi
@@ -0,0 +1,80 @@
+#!/usr/bin/env bash
+# Compares per-event latency and server CPU for POST /audit over TCP localhost vs a Unix socket.
+#
+#   mvn -DskipTests package
+#   scripts/uds-bench.sh [events]
+#
+# Each transport sends the same events over one keep-alive connection (a single curl process),
+# so the numbers reflect the transport and HTTP handling rather than connection setup.
+set -euo pipefail
+
+EVENTS="${1:-20000}"
+ROOT="$(cd "$(dirname "$0")/.." && pwd)"
+JAR="$(ls "$ROOT"/target/pic-sure-logging-*.jar 2>/dev/null | grep -v original | head -n 1 || true)"
+PORT="${BENCH_PORT:-18081}"
+API_KEY="bench-api-key"
+SCRATCH="$(mktemp -d)"
+SOCKET="$SCRATCH/audit.sock"
+CLK_TCK="$(getconf CLK_TCK)"
+
+if [[ -z "$JAR" ]]; then
+  echo "No fat jar in target/, run mvn package first" >&2
+  exit 1
+fi
+
+LOGGING_API_KEY="$API_KEY" PORT="$PORT" UNIX_SOCKET_PATH="$SOCKET" LOG_DIR="$SCRATCH/logs" \
+  java -jar "$JAR" > /dev/null 2>&1 &
+PID=$!
+trap 'kill "$PID" 2>/dev/null; wait "$PID" 2>/dev/null || true; rm -rf "$SCRATCH"' EXIT
+
+until curl -s -o /dev/null -w '%{http_code}' "http://localhost:$PORT/health" 2>/dev/null | grep -q 200; do
+  if ! kill -0 "$PID" 2>/dev/null; then
+    echo "service exited before becoming healthy" >&2
+    exit 1
+  fi
+  sleep 0.05
+done
+
+# One curl config with EVENTS transfers; curl reuses the connection between them.
+# 'next' resets per-transfer options, so every block repeats them.
+CONFIG="$SCRATCH/requests.curl"
+for ((i = 0; i < EVENTS; i++)); do
+  if ((i > 0)); then echo 'next'; fi
+  cat <<CURL
+silent
+output = "/dev/null"
+write-out = "%{time_total}\\n"
+header = "X-API-Key: $API_KEY"
+header = "Content-Type: application/json"
+url = "http://localhost:$PORT/audit"
+data = "{\"event_type\":\"BENCH\",\"action\":\"transport\",\"metadata\":{\"seq\":\"$i\"}}"
+CURL
+done > "$CONFIG"
+
+server_cpu_ticks() { awk '{print $14 + $15}' "/proc/$PID/stat"; }
+
+run_transport() {
+  local name="$1"; shift
+  local times="$SCRATCH/$name.times"
+  local cpu_before cpu_after start end
+  cpu_before="$(server_cpu_ticks)"
+  start="$(date +%s%N)"
+  curl "$@" -K "$CONFIG" > "$times"
+  end="$(date +%s%N)"
+  cpu_after="$(server_cpu_ticks)"
+  sort -n "$times" | awk -v name="$name" -v n="$EVENTS" -v wall_ns="$((end - start))" \
+      -v cpu_ticks="$((cpu_after - cpu_before))" -v hz="$CLK_TCK" '
+    { t[NR] = $1 * 1e6; sum += t[NR] }
+    END {
+      printf "%-6s %8.0f %8.0f %8.0f %10.0f %12.1f\n", name,
+        t[int(NR * 0.50)], t[int(NR * 0.99)], sum / NR,
+        n / (wall_ns / 1e9), (cpu_ticks / hz) * 1e6 / n
+    }'
+}
+
+printf '%-6s %8s %8s %8s %10s %12s\n' "mode" "p50_us" "p99_us" "avg_us" "events/s" "cpu_us/event"
+# Untimed pass first so neither transport pays for JIT compilation
+curl -s -o /dev/null "http://localhost:$PORT/health"
+run_transport warm > /dev/null
+run_transport tcp
+run_transport uds --unix-socket "$SOCKET"
@@ -1,16 +1,51 @@
 package edu.harvard.dbmi.avillach.logging;
 
 import edu.harvard.dbmi.avillach.logging.config.AppConfig;
+import edu.harvard.dbmi.avillach.logging.config.RedactionRule;
+import edu.harvard.dbmi.avillach.logging.enrich.GeoIpEnricher;
+import edu.harvard.dbmi.avillach.logging.enrich.UrlTemplater;
 import edu.harvard.dbmi.avillach.logging.handler.AuditHandler;
+import edu.harvard.dbmi.avillach.logging.handler.AuditStreamHandler;
+import edu.harvard.dbmi.avillach.logging.handler.DeferredAuditHandler;
 import edu.harvard.dbmi.avillach.logging.handler.HealthHandler;
 import edu.harvard.dbmi.avillach.logging.handler.InfoHandler;
+import edu.harvard.dbmi.avillach.logging.handler.LatencyHandler;
+import edu.harvard.dbmi.avillach.logging.handler.MetricsHandler;
+import edu.harvard.dbmi.avillach.logging.handler.ReadinessHandler;
+import edu.harvard.dbmi.avillach.logging.handler.SketchHandler;
+import edu.harvard.dbmi.avillach.logging.listener.UdpListener;
+import edu.harvard.dbmi.avillach.logging.listener.UnixSocketListener;
+import edu.harvard.dbmi.avillach.logging.metrics.AsyncQueueProbe;
+import edu.harvard.dbmi.avillach.logging.metrics.MetricsRegistry;
+import edu.harvard.dbmi.avillach.logging.metrics.RouteLatencyAggregator;
+import edu.harvard.dbmi.avillach.logging.metrics.TrafficSketches;
+import edu.harvard.dbmi.avillach.logging.pipeline.AnomalyDetector;
+import edu.harvard.dbmi.avillach.logging.pipeline.AuditObserver;
+import edu.harvard.dbmi.avillach.logging.pipeline.AuditSink;
+import edu.harvard.dbmi.avillach.logging.pipeline.LoggerAuditSink;
+import edu.harvard.dbmi.avillach.logging.pipeline.MemoryBudget;
+import edu.harvard.dbmi.avillach.logging.pipeline.ObservingAuditSink;
+import edu.harvard.dbmi.avillach.logging.pipeline.PriorityLaneDispatcher;
+import edu.harvard.dbmi.avillach.logging.pipeline.SessionStripes;
 import edu.harvard.dbmi.avillach.logging.middleware.ApiKeyAuthMiddleware;
+import edu.harvard.dbmi.avillach.logging.policy.PolicyStore;
+import edu.harvard.dbmi.avillach.logging.redact.Redactor;
+import edu.harvard.dbmi.avillach.logging.routing.RoutingAuditSink;
+import edu.harvard.dbmi.avillach.logging.schema.SchemaRegistry;
 import edu.harvard.dbmi.avillach.logging.service.AuditLogService;
 import edu.harvard.dbmi.avillach.logging.service.JwtDecodeService;
+import edu.harvard.dbmi.avillach.logging.service.ReadinessService;
+import edu.harvard.dbmi.avillach.logging.service.SessionIdentityCache;
+import edu.harvard.dbmi.avillach.logging.service.WarmupService;
 import io.javalin.Javalin;
+import io.javalin.http.Handler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicBoolean;
 
@@ -31,21 +66,216 @@ public class App {
             app.stop();
         }));
 
-        log.info("Audit logging service started: app={}, platform={}, environment={}, hostname={}, port={}, allowedOrigin={}",
-            config.app(), config.platform(), config.environment(), config.hostname(), config.port(), config.allowedOrigin());
+        log.info("Audit logging service started: app={}, platform={}, environment={}, hostname={}, port={}, unixSocket={}, udpPort={}, allowedOrigin={}, warmupEvents={}",
+            config.app(), config.platform(), config.environment(), config.hostname(), config.port(), config.unixSocketPath(),
+            config.udp().port(), config.allowedOrigin(), config.warmupEvents());
     }
 
     public static Javalin createApp(AppConfig config, AtomicBoolean readiness) {
-        JwtDecodeService jwtDecodeService = new JwtDecodeService(config.jwtClaimMapping());
-        AuditLogService auditLogService = new AuditLogService(config, jwtDecodeService);
-        AuditHandler auditHandler = new AuditHandler(auditLogService);
+        List<Runnable> startHooks = new ArrayList<>();
+        List<Runnable> stopHooks = new ArrayList<>();
+        MetricsRegistry metricsRegistry = new MetricsRegistry();
+
+        AsyncQueueProbe auditQueueProbe = AsyncQueueProbe.auditFile();
+        LoggerAuditSink loggerAuditSink = new LoggerAuditSink(LoggerFactory.getLogger("AUDIT"));
+        AuditSink auditSink = loggerAuditSink;
+        metricsRegistry.register("audit_file_queue", () -> Map.of(
+            "depth", auditQueueProbe.depth(), "capacity", auditQueueProbe.capacity()));
+
+        RoutingAuditSink routingAuditSink = null;
+        if (config.routingFile() != null) {
+            routingAuditSink = RoutingAuditSink.load(Path.of(config.routingFile()), config.app(),
+                Path.of(config.logDir()), auditSink);
+            stopHooks.add(routingAuditSink::stop);
+            metricsRegistry.register("routing", routingAuditSink::metrics);
+            auditSink = routingAuditSink;
+        }
+
+        if (!config.priorityLanes().isEmpty()) {
+            RoutingAuditSink routing = routingAuditSink;
+            PriorityLaneDispatcher laneDispatcher = new PriorityLaneDispatcher(config.priorityLanes(), auditSink,
+                routing == null ? fields -> auditQueueProbe : fields -> routing.queueFor(fields, auditQueueProbe));
+            startHooks.add(laneDispatcher::start);
+            stopHooks.add(laneDispatcher::stop);
+            metricsRegistry.register("priority_lanes", laneDispatcher::metrics);
+            auditSink = laneDispatcher;
+        }
+
+        List<AuditObserver> observers = new ArrayList<>();
+        RouteLatencyAggregator routeLatency = null;
+        if (config.routeLatency().series() > 0) {
+            routeLatency = new RouteLatencyAggregator(config.routeLatency().series(),
+                config.routeLatency().windowSeconds());
+            startHooks.add(routeLatency::start);
+            stopHooks.add(routeLatency::stop);
+            observers.add(routeLatency);
+        }
+        TrafficSketches trafficSketches = null;
+        if (!config.sketchFields().isEmpty()) {
+            trafficSketches = new TrafficSketches(config.sketchFields());
+            startHooks.add(trafficSketches::start);
+            stopHooks.add(trafficSketches::stop);
+            observers.add(trafficSketches);
+        }
+        if (!config.anomalies().thresholds().isEmpty()) {
+            // Writes ANOMALY events below the observing sink so they are not fed back into the observers
+            AnomalyDetector anomalyDetector = new AnomalyDetector(config, auditSink);
+            startHooks.add(anomalyDetector::start);
+            stopHooks.add(anomalyDetector::stop);
+            metricsRegistry.register("anomaly_detector", anomalyDetector::metrics);
+            observers.add(anomalyDetector);
+        }
+        if (!observers.isEmpty()) {
+            auditSink = new ObservingAuditSink(auditSink, observers);
+        }
+
+        SessionStripes sessionStripes = null;
+        if (config.sessionStripes().count() > 0) {
+            sessionStripes =
+                new SessionStripes(config.sessionStripes().count(), config.sessionStripes().queueCapacity());
+            startHooks.add(sessionStripes::start);
+            stopHooks.add(sessionStripes::stop);
+            metricsRegistry.register("session_stripes", sessionStripes::metrics);
+        }
+
+        SessionIdentityCache sessionIdentityCache = null;
+        if (config.sessionIdentity().cacheSize() > 0) {
+            sessionIdentityCache = new SessionIdentityCache(config.sessionIdentity().cacheSize(),
+                Duration.ofSeconds(config.sessionIdentity().ttlSeconds()));
+            metricsRegistry.register("session_identity_cache", sessionIdentityCache::metrics);
+        }
+
+        GeoIpEnricher geoIpEnricher = null;
+        if (!config.geoIp().databases().isEmpty()) {
+            geoIpEnricher = new GeoIpEnricher(config.geoIp().databases().stream().map(Path::of).toList(),
+                config.geoIp().cacheSize(), config.geoIp().reloadSeconds());
+            startHooks.add(geoIpEnricher::start);
+            stopHooks.add(geoIpEnricher::stop);
+            metricsRegistry.register("geoip", geoIpEnricher::metrics);
+        }
+
+        PolicyStore policyStore = new PolicyStore(config.jwtClaimMapping(), config.redactionRules(),
+            config.policyFile().path() == null ? null : Path.of(config.policyFile().path()),
+            config.policyFile().reloadSeconds());
+        if (config.policyFile().path() != null) {
+            startHooks.add(policyStore::start);
+            stopHooks.add(policyStore::stop);
+            metricsRegistry.register("policy", policyStore::metrics);
+        }
+        if (config.policyFile().path() != null || !config.redactionRules().isEmpty()) {
+            metricsRegistry.register("redaction", () -> {
+                Redactor redactor = policyStore.current().redactor();
+                return redactor == null ? Map.of() : redactor.metrics();
+            });
+        }
+        UrlTemplater urlTemplater = null;
+        if (config.urlTemplates().enabled()) {
+            urlTemplater = new UrlTemplater(config.urlTemplates().templates(), config.urlTemplates().cacheSize());
+            metricsRegistry.register("url_templates", urlTemplater::metrics);
+        }
+
+        JwtDecodeService jwtDecodeService = new JwtDecodeService(() -> policyStore.current().claimMapping());
+        AuditLogService.Stages stages = new AuditLogService.Stages(sessionStripes, sessionIdentityCache,
+            geoIpEnricher, urlTemplater, () -> policyStore.current().redactor());
+        AuditLogService auditLogService = new AuditLogService(config, jwtDecodeService, auditSink, stages);
+        SchemaRegistry schemaRegistry = null;
+        if (config.schemas().dir() != null) {
+            schemaRegistry = SchemaRegistry.load(Path.of(config.schemas().dir()), config.schemas().reject());
+            metricsRegistry.register("schemas", schemaRegistry::metrics);
+        }
+        MemoryBudget memoryBudget = null;
+        if (config.memoryBudgetMb() > 0) {
+            memoryBudget = new MemoryBudget((long) config.memoryBudgetMb() << 20);
+            metricsRegistry.register("memory_budget", memoryBudget::metrics);
+        }
+        AuditHandler auditHandler = new AuditHandler(auditLogService, schemaRegistry, memoryBudget);
+        WarmupService warmupService = null;
+        PriorityLaneDispatcher warmupLanes = null;
+        if (config.warmupEvents() > 0) {
+            // The live stages and handler settings, ending at the discarding AUDIT_WARMUP logger instead of the
+            // audit outputs. Observers are left out so synthetic events do not skew latency, sketches or anomalies.
+            AuditSink warmupSink = new LoggerAuditSink(LoggerFactory.getLogger(WarmupService.WARMUP_LOGGER));
+            if (routingAuditSink != null) {
+                warmupSink = routingAuditSink.redirectedTo(warmupSink);
+            }
+            if (!config.priorityLanes().isEmpty()) {
+                warmupLanes = new PriorityLaneDispatcher(config.priorityLanes(), warmupSink, auditQueueProbe);
+                warmupSink = warmupLanes;
+            }
+            // Caches and counters of its own, so synthetic URLs and IPs neither evict real entries nor show in /metrics
+            AuditLogService.Stages warmupStages = stages;
+            if (sessionIdentityCache != null) {
+                warmupStages = warmupStages.withSessionIdentityCache(new SessionIdentityCache(
+                    config.sessionIdentity().cacheSize(), Duration.ofSeconds(config.sessionIdentity().ttlSeconds())));
+            }
+            if (geoIpEnricher != null) {
+                warmupStages = warmupStages.withGeoIpEnricher(geoIpEnricher.detached());
+            }
+            if (urlTemplater != null) {
+                warmupStages = warmupStages.withUrlTemplater(
+                    new UrlTemplater(config.urlTemplates().templates(), config.urlTemplates().cacheSize()));
+            }
+            List<RedactionRule> warmupRules = policyStore.current().redactionRules();
+            Redactor warmupRedactor = warmupRules.isEmpty() ? null : new Redactor(warmupRules);
+            warmupStages = warmupStages.withRedactor(() -> warmupRedactor);
+            AuditLogService warmupLogService = new AuditLogService(config, jwtDecodeService, warmupSink, warmupStages);
+            SchemaRegistry warmupSchemas = schemaRegistry == null ? null
+                : SchemaRegistry.load(Path.of(config.schemas().dir()), config.schemas().reject());
+            MemoryBudget warmupBudget = memoryBudget == null ? null
+                : new MemoryBudget((long) config.memoryBudgetMb() << 20);
+            warmupService = new WarmupService(new AuditHandler(warmupLogService, warmupSchemas, warmupBudget),
+                config.warmupEvents());
+        }
+        Handler auditRoute = auditHandler::handle;
+        if (config.acceptQueue().capacity() > 0) {
+            DeferredAuditHandler deferredAuditHandler =
+                new DeferredAuditHandler(auditHandler, config.acceptQueue().capacity(), config.acceptQueue().workers());
+            stopHooks.add(deferredAuditHandler::stop);
+            metricsRegistry.register("accept_queue", deferredAuditHandler::metrics);
+            auditRoute = deferredAuditHandler::handle;
+        }
         HealthHandler healthHandler = new HealthHandler(readiness);
+        ReadinessService readinessService = new ReadinessService(config.readiness(), readiness, auditQueueProbe,
+            routingAuditSink == null ? Map.of() : routingAuditSink.fileSetQueues(), Path.of(config.logDir()),
+            loggerAuditSink.writeLatencyMicros());
+        startHooks.add(readinessService::start);
+        stopHooks.add(readinessService::stop);
+        ReadinessHandler readinessHandler = new ReadinessHandler(readinessService);
         InfoHandler infoHandler = new InfoHandler();
+        if (config.udp().port() > 0) {
+            UdpListener udpListener =
+                new UdpListener(config.udp().port(), config.udp().workers(), config.auditApiKey(), auditHandler);
+            startHooks.add(udpListener::start);
+            stopHooks.add(udpListener::stop);
+            metricsRegistry.register("udp", udpListener::metrics);
+        }
+        AuditStreamHandler auditStreamHandler = null;
+        if (config.stream().enabled()) {
+            MemoryBudget streamBudget = memoryBudget;
+            auditStreamHandler = new AuditStreamHandler(auditHandler, config.stream().ackEvery(),
+                () -> auditQueueProbe.fillRatio() >= config.readiness().maxQueueFillRatio()
+                    || (streamBudget != null && streamBudget.fillRatio() >= config.readiness().maxQueueFillRatio()));
+            startHooks.add(auditStreamHandler::start);
+            stopHooks.add(auditStreamHandler::stop);
+            metricsRegistry.register("audit_stream", auditStreamHandler::metrics);
+        }
+        MetricsHandler metricsHandler = new MetricsHandler(metricsRegistry);
         ApiKeyAuthMiddleware authMiddleware = new ApiKeyAuthMiddleware(config.auditApiKey());
 
+        WarmupService warmup = warmupService;
+        PriorityLaneDispatcher warmupDispatcher = warmupLanes;
         Javalin app = Javalin.create(javalinConfig -> {
             javalinConfig.showJavalinBanner = false;
             javalinConfig.http.maxRequestSize = 1_048_576L; // 1MB
+            javalinConfig.jetty.modifyWebSocketServletFactory(factory -> factory.setMaxTextMessageSize(1_048_576L));
+            javalinConfig.events(events -> {
+                events.serverStarting(() -> startHooks.forEach(Runnable::run));
+                if (warmup != null) {
+                    events.serverStarted(() -> warmUp(warmup, warmupDispatcher));
+                }
+                // Stop in reverse order so downstream stages drain after upstream ones stop feeding them
+                events.serverStopped(() -> stopHooks.reversed().forEach(Runnable::run));
+            });
             javalinConfig.bundledPlugins.enableCors(cors -> {
                 cors.addRule(rule -> {
                     if ("*".equals(config.allowedOrigin())) {
@@ -57,11 +287,31 @@ public class App {
             });
         });
 
+        if (config.unixSocketPath() != null) {
+            UnixSocketListener unixSocketListener = new UnixSocketListener(Path.of(config.unixSocketPath()));
+            startHooks.add(() -> unixSocketListener.attach(app.jettyServer().server()));
+        }
+
         app.before("/audit", authMiddleware::authenticate);
+        app.before("/metrics", authMiddleware::authenticate);
 
-        app.post("/audit", auditHandler::handle);
+        app.post("/audit", auditRoute);
+        if (auditStreamHandler != null) {
+            app.wsBeforeUpgrade("/audit/stream", authMiddleware::authenticate);
+            app.ws("/audit/stream", auditStreamHandler::configure);
+        }
         app.post("/info", infoHandler::handle);
+        if (routeLatency != null) {
+            app.before("/latency", authMiddleware::authenticate);
+            app.get("/latency", new LatencyHandler(routeLatency)::handle);
+        }
+        if (trafficSketches != null) {
+            app.before("/sketches", authMiddleware::authenticate);
+            app.get("/sketches", new SketchHandler(trafficSketches)::handle);
+        }
         app.get("/health", healthHandler::handle);
+        app.get("/ready", readinessHandler::handle);
+        app.get("/metrics", metricsHandler::handle);
 
         app.exception(Exception.class, (e, ctx) -> {
             log.error("Unhandled exception", e);
@@ -71,4 +321,18 @@ public class App {
 
         return app;
     }
+
+    /** Runs once Jetty is listening, so {@code /health} answers while it runs and readiness waits for it. */
+    private static void warmUp(WarmupService warmupService, PriorityLaneDispatcher warmupLanes) {
+        if (warmupLanes != null) {
+            warmupLanes.start();
+        }
+        try {
+            warmupService.run();
+        } finally {
+            if (warmupLanes != null) {
+                warmupLanes.stop();
+            }
+        }
+    }
 }
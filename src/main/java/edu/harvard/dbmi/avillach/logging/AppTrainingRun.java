@@ -0,0 +1,81 @@
+package edu.harvard.dbmi.avillach.logging;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.algorithms.Algorithm;
+import edu.harvard.dbmi.avillach.logging.config.AppConfig;
+import io.javalin.Javalin;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Short-lived training run used to record a class-data-sharing archive (or native-image
+ * agent metadata). Starts the app on an ephemeral port, exercises every route, then exits.
+ * Run with {@code LOG_DIR} pointing at a scratch directory so training events never reach
+ * a real audit log.
+ */
+public class AppTrainingRun {
+
+    private static final Logger log = LoggerFactory.getLogger(AppTrainingRun.class);
+    private static final String TRAINING_API_KEY = "training-api-key";
+    private static final int TRAINING_EVENTS = 500;
+
+    public static void main(String[] args) throws Exception {
+        AppConfig config = new AppConfig(
+            TRAINING_API_KEY, "training", "training", "training", "training",
+            0, "*",
+            Map.of("sub", "subject", "email", "user_email", "roles", "roles", "logged_in", "logged_in")
+        );
+        Javalin app = App.createApp(config, new AtomicBoolean(true));
+        app.start(0);
+
+        try {
+            String baseUrl = "http://localhost:" + app.port();
+            HttpClient client = HttpClient.newHttpClient();
+            String token = JWT.create()
+                .withClaim("sub", "training-user")
+                .withClaim("email", "training@example.com")
+                .withClaim("roles", List.of("ADMIN", "USER"))
+                .sign(Algorithm.none());
+
+            int accepted = 0;
+            for (int i = 0; i < TRAINING_EVENTS; i++) {
+                String body = "{\"event_type\":\"QUERY\",\"action\":\"execute\",\"client_type\":\"web\","
+                    + "\"session_id\":\"training-session-" + (i % 16) + "\","
+                    + "\"request\":{\"request_id\":\"training-" + i + "\",\"method\":\"POST\",\"url\":\"/picsure/query\","
+                    + "\"src_ip\":\"127.0.0.1\",\"status\":200,\"bytes\":1024,\"duration\":15},"
+                    + "\"metadata\":{\"queryId\":\"" + i + "\",\"dataset\":\"phs000001\"}}";
+                HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(baseUrl + "/audit"))
+                    .header("X-API-Key", TRAINING_API_KEY)
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(body));
+                if (i % 2 == 0) {
+                    request.header("Authorization", "Bearer " + token);
+                }
+                if (client.send(request.build(), HttpResponse.BodyHandlers.discarding()).statusCode() == 202) {
+                    accepted++;
+                }
+            }
+
+            client.send(HttpRequest.newBuilder(URI.create(baseUrl + "/audit"))
+                .header("X-API-Key", TRAINING_API_KEY)
+                .POST(HttpRequest.BodyPublishers.ofString("not-json")).build(), HttpResponse.BodyHandlers.discarding());
+            client.send(HttpRequest.newBuilder(URI.create(baseUrl + "/health")).GET().build(),
+                HttpResponse.BodyHandlers.discarding());
+            client.send(HttpRequest.newBuilder(URI.create(baseUrl + "/info"))
+                .POST(HttpRequest.BodyPublishers.ofString("{}")).build(), HttpResponse.BodyHandlers.discarding());
+
+            log.info("Training run complete: {}/{} events accepted", accepted, TRAINING_EVENTS);
+        } finally {
+            app.stop();
+        }
+        System.exit(0);
+    }
+}
@@ -0,0 +1,18 @@
+package edu.harvard.dbmi.avillach.logging.appender;
+
+import ch.qos.logback.core.OutputStreamAppender;
+
+import java.io.OutputStream;
+
+/**
+ * Runs its encoder like any other appender but discards the bytes. Used for warm-up traffic,
+ * which must exercise the real encoding path without reaching a real output.
+ */
+public class NullOutputAppender<E> extends OutputStreamAppender<E> {
+
+    @Override
+    public void start() {
+        setOutputStream(OutputStream.nullOutputStream());
+        super.start();
+    }
+}
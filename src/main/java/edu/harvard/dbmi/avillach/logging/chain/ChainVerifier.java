@@ -0,0 +1,344 @@
+package edu.harvard.dbmi.avillach.logging.chain;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import javax.crypto.Mac;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Offline verifier for audit files written by {@link HashChainEncoder}. Files are memory-mapped and
+ * scanned once for chain bookkeeping lines; the audit lines between consecutive {@code start} or
+ * {@code checkpoint} lines are then verified as independent fork-join tasks, each seeded with the
+ * hash recorded on the line before its range. A final sequential pass checks line counts, that every
+ * chain ends in a trailer, and that each chain continues from the last line of the one before it. Only
+ * the first chain may start from genesis: a later one means the history before it was cut off.
+ *
+ * <pre>AUDIT_CHAIN_KEY=... java -cp app.jar edu.harvard.dbmi.avillach.logging.chain.ChainVerifier
+ *     [--allow-open] [--threads N] FILE...</pre>
+ *
+ * Files must be given oldest first. {@code --allow-open} accepts a missing trailer on the last chain
+ * of the last file, which is normal for the file still being written.
+ */
+public class ChainVerifier {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final HexFormat HEX = HexFormat.of();
+    private static final String UNTERMINATED = "chain has no trailer (truncated, or the writer stopped abruptly)";
+
+    private final String key;
+    private final boolean allowOpen;
+    private final int threads;
+
+    public ChainVerifier(String key, boolean allowOpen, int threads) {
+        this.key = key;
+        this.allowOpen = allowOpen;
+        this.threads = threads;
+    }
+
+    public static void main(String[] args) throws Exception {
+        boolean allowOpen = false;
+        int threads = Runtime.getRuntime().availableProcessors();
+        List<Path> files = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--allow-open" -> allowOpen = true;
+                case "--threads" -> threads = Integer.parseInt(args[++i]);
+                default -> files.add(Path.of(args[i]));
+            }
+        }
+        String key = System.getenv("AUDIT_CHAIN_KEY");
+        if (files.isEmpty() || key == null || key.isEmpty()) {
+            System.err.println("Usage: AUDIT_CHAIN_KEY=... ChainVerifier [--allow-open] [--threads N] FILE...");
+            System.exit(2);
+        }
+
+        long started = System.nanoTime();
+        Result result = new ChainVerifier(key, allowOpen, threads).verify(files);
+        result.errors().forEach(System.out::println);
+        System.out.printf("%s: %d audit lines in %d chains across %d files (%d ms)%n",
+            result.ok() ? "OK" : "FAILED", result.lines(), result.chains(), files.size(),
+            (System.nanoTime() - started) / 1_000_000);
+        System.exit(result.ok() ? 0 : 1);
+    }
+
+    public Result verify(List<Path> files) throws IOException {
+        List<String> errors = new ArrayList<>();
+        List<Marker> markers = new ArrayList<>();
+        List<ByteBuffer> buffers = new ArrayList<>();
+        Mac mac = HashChain.newMac(key);
+        for (int f = 0; f < files.size(); f++) {
+            ByteBuffer buffer = map(files.get(f));
+            buffers.add(buffer);
+            scan(files.get(f), f, buffer, mac, markers, errors);
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        List<RangeTask> tasks = new ArrayList<>();
+        try {
+            for (int i = 0; i < markers.size(); i++) {
+                Marker marker = markers.get(i);
+                if (marker.type().equals(HashChain.TRAILER)) {
+                    continue;
+                }
+                Marker next = i + 1 < markers.size() && markers.get(i + 1).file() == marker.file()
+                    ? markers.get(i + 1) : null;
+                ByteBuffer buffer = buffers.get(marker.file());
+                int to = next == null ? buffer.limit()
+                    : next.type().equals(HashChain.START) ? next.offset() : next.end();
+                RangeTask task = new RangeTask(files.get(marker.file()), buffer, marker.end(), to,
+                    marker.lineNumber() + 1, marker.hash());
+                pool.execute(task);
+                tasks.add(task);
+            }
+
+            long lines = 0;
+            long chainLines = 0;
+            int chains = 0;
+            Marker chainStart = null;
+            byte[] lastHash = null;
+            int task = 0;
+            for (Marker marker : markers) {
+                switch (marker.type()) {
+                    case HashChain.START -> {
+                        if (chainStart != null) {
+                            errors.add(chainStart.where(files) + ": " + UNTERMINATED);
+                        }
+                        boolean fresh = MessageDigest.isEqual(marker.prev(), HashChain.GENESIS);
+                        if (fresh && chains > 0) {
+                            errors.add(marker.where(files) + ": chain restarts from genesis "
+                                + "(earlier lines removed, or the writer lost its previous file)");
+                        } else if (chains > 0 && lastHash != null && !MessageDigest.isEqual(marker.prev(), lastHash)) {
+                            errors.add(marker.where(files) + ": chain does not continue from the previous trailer "
+                                + "(file missing or out of order)");
+                        }
+                        chains++;
+                        chainStart = marker;
+                        chainLines = 0;
+                    }
+                    case HashChain.CHECKPOINT, HashChain.TRAILER -> {
+                        if (marker.lines() != chainLines) {
+                            errors.add(marker.where(files) + ": " + marker.type() + " records " + marker.lines()
+                                + " lines but " + chainLines + " were found");
+                        }
+                        if (marker.type().equals(HashChain.TRAILER)) {
+                            chainStart = null;
+                        }
+                    }
+                    default -> { }
+                }
+                if (!marker.type().equals(HashChain.TRAILER)) {
+                    RangeResult range = tasks.get(task++).join();
+                    if (range.error() != null) {
+                        errors.add(range.error());
+                    }
+                    chainLines += range.lines();
+                    lines += range.lines();
+                    lastHash = range.last();
+                } else {
+                    lastHash = marker.hash();
+                }
+            }
+            if (chainStart != null && !(allowOpen && chainStart.file() == files.size() - 1)) {
+                errors.add(chainStart.where(files) + ": " + UNTERMINATED);
+            }
+            return new Result(chains, lines, errors);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /** Sequential pass that records bookkeeping lines and verifies each {@code start} line's own hash. */
+    private static void scan(Path file, int fileIndex, ByteBuffer buffer, Mac mac, List<Marker> markers,
+                             List<String> errors) {
+        boolean inChain = false;
+        long unchained = 0;
+        long lineNumber = 0;
+        int limit = buffer.limit();
+        int position = 0;
+        while (position < limit) {
+            int newline = indexOf(buffer, (byte) '\n', position, limit);
+            int next = newline < 0 ? limit : newline + 1;
+            int end = lineEnd(buffer, position, newline < 0 ? limit : newline);
+            lineNumber++;
+            if (startsWith(buffer, position, end, HashChain.MARKER_PREFIX)) {
+                Marker marker = parseMarker(fileIndex, buffer, position, end, next, lineNumber);
+                if (marker == null) {
+                    errors.add(file + ":" + lineNumber + ": malformed chain line");
+                } else {
+                    if (marker.type().equals(HashChain.START)) {
+                        mac.update(marker.prev());
+                        mac.update(buffer.slice(position, end - HashChain.SUFFIX_LENGTH - position));
+                        mac.update((byte) '}');
+                        if (!MessageDigest.isEqual(mac.doFinal(), marker.hash())) {
+                            errors.add(file + ":" + lineNumber + ": hash mismatch");
+                        }
+                        inChain = true;
+                    } else if (!inChain) {
+                        errors.add(file + ":" + lineNumber + ": " + marker.type() + " outside a chain");
+                    } else if (marker.type().equals(HashChain.TRAILER)) {
+                        inChain = false;
+                    }
+                    markers.add(marker);
+                }
+            } else if (!inChain) {
+                unchained++;
+            }
+            position = next;
+        }
+        if (unchained > 0) {
+            errors.add(file + ": " + unchained + " lines are not covered by a hash chain");
+        }
+    }
+
+    private static Marker parseMarker(int fileIndex, ByteBuffer buffer, int start, int end, int next, long lineNumber) {
+        byte[] hash = readHash(buffer, start, end);
+        if (hash == null) {
+            return null;
+        }
+        byte[] json = new byte[end - HashChain.SUFFIX_LENGTH - start + 1];
+        buffer.get(start, json, 0, json.length - 1);
+        json[json.length - 1] = '}';
+        try {
+            JsonNode node = MAPPER.readTree(json);
+            String type = node.path("_chain_event").asText();
+            return switch (type) {
+                case HashChain.START -> new Marker(fileIndex, type, start, next, lineNumber, 0,
+                    HEX.parseHex(node.path("prev").asText()), hash);
+                case HashChain.CHECKPOINT, HashChain.TRAILER ->
+                    new Marker(fileIndex, type, start, next, lineNumber, node.path("lines").asLong(-1), null, hash);
+                default -> null;
+            };
+        } catch (IOException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /** The hash in the chain field at the end of {@code [start, end)}, or null if the line has none. */
+    private static byte[] readHash(ByteBuffer buffer, int start, int end) {
+        int suffix = end - HashChain.SUFFIX_LENGTH;
+        if (suffix <= start || !startsWith(buffer, suffix, end, HashChain.SUFFIX_PREFIX)
+            || buffer.get(end - 2) != '"' || buffer.get(end - 1) != '}') {
+            return null;
+        }
+        byte[] hex = new byte[2 * HashChain.HASH_LENGTH];
+        buffer.get(suffix + HashChain.SUFFIX_PREFIX.length, hex);
+        try {
+            return HEX.parseHex(new String(hex, StandardCharsets.US_ASCII));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static ByteBuffer map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException(file + " is larger than 2 GB");
+            }
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    private static int indexOf(ByteBuffer buffer, byte value, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (buffer.get(i) == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int lineEnd(ByteBuffer buffer, int start, int end) {
+        return end > start && buffer.get(end - 1) == '\r' ? end - 1 : end;
+    }
+
+    private static boolean startsWith(ByteBuffer buffer, int start, int end, byte[] prefix) {
+        if (end - start < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (buffer.get(start + i) != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public record Result(int chains, long lines, List<String> errors) {
+        public boolean ok() {
+            return errors.isEmpty();
+        }
+    }
+
+    private record Marker(int file, String type, int offset, int end, long lineNumber, long lines, byte[] prev,
+                          byte[] hash) {
+        String where(List<Path> files) {
+            return files.get(file) + ":" + lineNumber;
+        }
+    }
+
+    /** {@code last} is the hash of the range's last line, or its seed if it is empty. */
+    private record RangeResult(long lines, String error, byte[] last) {
+    }
+
+    /** Verifies the lines in {@code [from, to)} starting from the hash recorded just before them. */
+    private final class RangeTask extends RecursiveTask<RangeResult> {
+        private final Path file;
+        private final ByteBuffer buffer;
+        private final int from;
+        private final int to;
+        private final long firstLineNumber;
+        private final byte[] seed;
+
+        private RangeTask(Path file, ByteBuffer buffer, int from, int to, long firstLineNumber, byte[] seed) {
+            this.file = file;
+            this.buffer = buffer;
+            this.from = from;
+            this.to = to;
+            this.firstLineNumber = firstLineNumber;
+            this.seed = seed;
+        }
+
+        @Override
+        protected RangeResult compute() {
+            Mac mac = HashChain.newMac(key);
+            byte[] previous = seed;
+            long lines = 0;
+            long lineNumber = firstLineNumber;
+            int position = from;
+            while (position < to) {
+                int newline = indexOf(buffer, (byte) '\n', position, to);
+                int next = newline < 0 ? to : newline + 1;
+                int end = lineEnd(buffer, position, newline < 0 ? to : newline);
+                byte[] recorded = readHash(buffer, position, end);
+                if (recorded == null) {
+                    return new RangeResult(lines, file + ":" + lineNumber + ": line has no chain field", null);
+                }
+                mac.update(previous);
+                mac.update(buffer.slice(position, end - HashChain.SUFFIX_LENGTH - position));
+                mac.update((byte) '}');
+                if (!MessageDigest.isEqual(mac.doFinal(), recorded)) {
+                    return new RangeResult(lines, file + ":" + lineNumber + ": hash mismatch", null);
+                }
+                if (!startsWith(buffer, position, end, HashChain.MARKER_PREFIX)) {
+                    lines++;
+                }
+                previous = recorded;
+                lineNumber++;
+                position = next;
+            }
+            return new RangeResult(lines, null, previous);
+        }
+    }
+}
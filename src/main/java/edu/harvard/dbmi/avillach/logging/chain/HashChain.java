@@ -0,0 +1,132 @@
+package edu.harvard.dbmi.avillach.logging.chain;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
+import java.util.HexFormat;
+
+/**
+ * Line format shared by {@link HashChainEncoder} and {@link ChainVerifier}. Every chained line is a
+ * JSON object whose last field is {@code "_chain":"<hex>"}, the HMAC-SHA256 of the previous line's
+ * hash followed by the line as it was before that field was appended. Chain bookkeeping lines carry
+ * {@code _chain_event} as their first field: {@code start} (with the {@code prev} hash it continues
+ * from), {@code checkpoint} and {@code trailer} (with the number of audit lines chained so far).
+ */
+public final class HashChain {
+
+    public static final String ALGORITHM = "HmacSHA256";
+    public static final int HASH_LENGTH = 32;
+    public static final byte[] GENESIS = new byte[HASH_LENGTH];
+
+    static final String START = "start";
+    static final String CHECKPOINT = "checkpoint";
+    static final String TRAILER = "trailer";
+
+    static final byte[] MARKER_PREFIX = "{\"_chain_event\":\"".getBytes(StandardCharsets.US_ASCII);
+    static final byte[] SUFFIX_PREFIX = ",\"_chain\":\"".getBytes(StandardCharsets.US_ASCII);
+    /** Length of {@code ,"_chain":"<64 hex>"}} at the end of every chained line. */
+    static final int SUFFIX_LENGTH = SUFFIX_PREFIX.length + 2 * HASH_LENGTH + 2;
+
+    /** How far from the end of a file {@link #lastHash} looks for a complete chained line. */
+    static final int MAX_TAIL_BYTES = 16 * 1024 * 1024;
+
+    private static final HexFormat HEX = HexFormat.of();
+
+    private HashChain() {
+    }
+
+    /** Whether the line in {@code buffer[start, end)} is chain bookkeeping rather than an audit event. */
+    public static boolean isMarker(ByteBuffer buffer, int start, int end) {
+        if (end - start < MARKER_PREFIX.length) {
+            return false;
+        }
+        for (int i = 0; i < MARKER_PREFIX.length; i++) {
+            if (buffer.get(start + i) != MARKER_PREFIX[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The hash on the last complete chained line of {@code file}, or null if there is none within
+     * {@link #MAX_TAIL_BYTES} of its end. A partial last line, left by a crash, is skipped.
+     */
+    public static byte[] lastHash(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long floor = Math.max(0, size - MAX_TAIL_BYTES);
+            ByteBuffer window = ByteBuffer.allocate(64 * 1024);
+            ByteBuffer suffix = ByteBuffer.allocate(SUFFIX_LENGTH + 1);
+            long windowEnd = size;
+            while (windowEnd > floor) {
+                long windowStart = Math.max(floor, windowEnd - window.capacity());
+                window.clear().limit((int) (windowEnd - windowStart));
+                channel.read(window, windowStart);
+                for (int i = window.position() - 1; i >= 0; i--) {
+                    if (window.get(i) != '\n') {
+                        continue;
+                    }
+                    long newline = windowStart + i;
+                    byte[] hash = hashBefore(channel, suffix, newline);
+                    if (hash != null) {
+                        return hash;
+                    }
+                }
+                windowEnd = windowStart;
+            }
+            return null;
+        }
+    }
+
+    /** The hash in the chain field that ends just before {@code newline}, or null. */
+    private static byte[] hashBefore(FileChannel channel, ByteBuffer suffix, long newline) throws IOException {
+        long start = newline - SUFFIX_LENGTH - 1;
+        if (start < 0) {
+            return null;
+        }
+        suffix.clear();
+        channel.read(suffix, start);
+        int end = suffix.get(SUFFIX_LENGTH) == '\r' ? SUFFIX_LENGTH : SUFFIX_LENGTH + 1;
+        int offset = end - SUFFIX_LENGTH;
+        for (int i = 0; i < SUFFIX_PREFIX.length; i++) {
+            if (suffix.get(offset + i) != SUFFIX_PREFIX[i]) {
+                return null;
+            }
+        }
+        if (suffix.get(end - 2) != '"' || suffix.get(end - 1) != '}') {
+            return null;
+        }
+        byte[] hex = new byte[2 * HASH_LENGTH];
+        suffix.get(offset + SUFFIX_PREFIX.length, hex);
+        try {
+            return fromHex(new String(hex, StandardCharsets.US_ASCII));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    public static Mac newMac(String key) {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(new SecretKeySpec(key.getBytes(StandardCharsets.UTF_8), ALGORITHM));
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Cannot initialize " + ALGORITHM, e);
+        }
+    }
+
+    static String toHex(byte[] hash) {
+        return HEX.formatHex(hash);
+    }
+
+    static byte[] fromHex(String hex) {
+        return HEX.parseHex(hex);
+    }
+}
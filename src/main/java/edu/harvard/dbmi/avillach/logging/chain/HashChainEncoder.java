@@ -0,0 +1,221 @@
+package edu.harvard.dbmi.avillach.logging.chain;
+
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import edu.harvard.dbmi.avillach.logging.pipeline.MemoryBudget;
+import net.logstash.logback.encoder.LogstashEncoder;
+
+import javax.crypto.Mac;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/**
+ * {@link LogstashEncoder} that appends a keyed hash chain to every line (see {@link HashChain}).
+ * Each output stream opens with a {@code start} line, a {@code checkpoint} line follows every
+ * {@code checkpointEvery} audit lines, and closing the stream on rollover or shutdown writes a
+ * {@code trailer}. The next file's {@code start} line continues from the trailer's hash, so removing
+ * or reordering a file breaks the chain.
+ *
+ * <p>With {@code file} set to the appender's active file, the chain survives restarts: on start the
+ * encoder continues from the last chained line of that file, or of the newest file rolled from it, so
+ * the first {@code start} line of a run links to the last line of the previous run. Only the first
+ * chain ever written starts from {@link HashChain#GENESIS}.
+ *
+ * <p>With no {@code key} this is a plain {@link LogstashEncoder}. The chain state is only consistent
+ * with a single writer, so use it behind an {@code AsyncAppender}: its worker thread is the only
+ * caller, and request threads never wait on the HMAC.
+ *
+ * <p>Once an event is encoded, any {@link MemoryBudget.Charge} it carries is released: this is the
+ * last stage that holds the event.
+ */
+public class HashChainEncoder extends LogstashEncoder {
+
+    public static final int DEFAULT_CHECKPOINT_EVERY = 1000;
+
+    private String key;
+    private String file;
+    private int checkpointEvery = DEFAULT_CHECKPOINT_EVERY;
+    private Mac mac;
+    private byte[] previous = HashChain.GENESIS;
+    private long lines;
+
+    public String getKey() {
+        return key;
+    }
+
+    public void setKey(String key) {
+        this.key = key;
+    }
+
+    public String getFile() {
+        return file;
+    }
+
+    public void setFile(String file) {
+        this.file = file;
+    }
+
+    public int getCheckpointEvery() {
+        return checkpointEvery;
+    }
+
+    public void setCheckpointEvery(int checkpointEvery) {
+        this.checkpointEvery = checkpointEvery;
+    }
+
+    @Override
+    public void start() {
+        if (key != null && !key.isEmpty()) {
+            if (checkpointEvery < 1) {
+                addError("checkpointEvery must be at least 1, got " + checkpointEvery);
+                return;
+            }
+            mac = HashChain.newMac(key);
+            if (file != null) {
+                resume(Path.of(file));
+            }
+            addInfo("Audit hash chain enabled, checkpoint every " + checkpointEvery + " lines");
+        }
+        super.start();
+    }
+
+    @Override
+    public synchronized byte[] headerBytes() {
+        byte[] header = super.headerBytes();
+        if (mac == null) {
+            return header;
+        }
+        lines = 0;
+        return concat(header, chainJson("{\"_chain_event\":\"" + HashChain.START + "\",\"prev\":\""
+            + HashChain.toHex(previous) + "\",\"time\":\"" + Instant.now() + "\"}"));
+    }
+
+    @Override
+    public synchronized byte[] encode(ILoggingEvent event) {
+        byte[] encoded = super.encode(event);
+        MemoryBudget.release(event);
+        if (mac == null) {
+            return encoded;
+        }
+        byte[] chained = chain(encoded);
+        lines++;
+        if (lines % checkpointEvery == 0) {
+            chained = concat(chained, marker(HashChain.CHECKPOINT));
+        }
+        return chained;
+    }
+
+    @Override
+    public void encode(ILoggingEvent event, OutputStream outputStream) throws IOException {
+        outputStream.write(encode(event));
+    }
+
+    @Override
+    public synchronized byte[] footerBytes() {
+        byte[] footer = super.footerBytes();
+        if (mac == null) {
+            return footer;
+        }
+        return concat(marker(HashChain.TRAILER), footer);
+    }
+
+    /** Continues from the last chained line of {@code active}, or else of the newest file rolled from it. */
+    private void resume(Path active) {
+        try {
+            byte[] last = Files.isRegularFile(active) ? HashChain.lastHash(active) : null;
+            if (last == null) {
+                Optional<Path> rolled = newestRolled(active);
+                if (rolled.isPresent()) {
+                    last = HashChain.lastHash(rolled.get());
+                }
+            }
+            if (last != null) {
+                previous = last;
+                addInfo("Audit hash chain continues from " + HashChain.toHex(last));
+            }
+        } catch (IOException e) {
+            // Starting from genesis is detectable by the verifier; refusing to log would not be
+            addError("Cannot read the previous audit hash chain from " + active + ", starting a new chain", e);
+        }
+    }
+
+    /** Files beside {@code active} named like its rolled copies ({@code audit.*.log} for {@code audit.log}). */
+    private static Optional<Path> newestRolled(Path active) throws IOException {
+        Path dir = active.toAbsolutePath().getParent();
+        String name = active.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        String prefix = (dot < 0 ? name : name.substring(0, dot)) + ".";
+        String suffix = dot < 0 ? "" : name.substring(dot);
+        if (dir == null || !Files.isDirectory(dir)) {
+            return Optional.empty();
+        }
+        try (Stream<Path> files = Files.list(dir)) {
+            return files
+                .filter(f -> {
+                    String n = f.getFileName().toString();
+                    return !n.equals(name) && n.startsWith(prefix) && n.endsWith(suffix) && Files.isRegularFile(f);
+                })
+                .max(Comparator.comparingLong(HashChainEncoder::lastModified));
+        }
+    }
+
+    private static long lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file).toMillis();
+        } catch (IOException e) {
+            return Long.MIN_VALUE;
+        }
+    }
+
+    private byte[] marker(String event) {
+        return chainJson("{\"_chain_event\":\"" + event + "\",\"lines\":" + lines + ",\"time\":\""
+            + Instant.now() + "\"}");
+    }
+
+    private byte[] chainJson(String json) {
+        return chain((json + getLineSeparator()).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** Replaces the closing brace of the JSON object in {@code line} with the chain field. */
+    private byte[] chain(byte[] line) {
+        int end = line.length - 1;
+        while (end >= 0 && line[end] != '}') {
+            end--;
+        }
+        if (end < 0) {
+            return line;
+        }
+        mac.update(previous);
+        mac.update(line, 0, end + 1);
+        previous = mac.doFinal();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(line.length + HashChain.SUFFIX_LENGTH);
+        out.write(line, 0, end);
+        out.writeBytes(HashChain.SUFFIX_PREFIX);
+        out.writeBytes(HashChain.toHex(previous).getBytes(StandardCharsets.US_ASCII));
+        out.write('"');
+        out.write('}');
+        out.write(line, end + 1, line.length - end - 1);
+        return out.toByteArray();
+    }
+
+    private static byte[] concat(byte[] first, byte[] second) {
+        if (first == null || first.length == 0) {
+            return second;
+        }
+        if (second == null || second.length == 0) {
+            return first;
+        }
+        byte[] result = new byte[first.length + second.length];
+        System.arraycopy(first, 0, result, 0, first.length);
+        System.arraycopy(second, 0, result, first.length, second.length);
+        return result;
+    }
+}
@@ -4,7 +4,11 @@ import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import java.net.InetAddress;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.function.Function;
 
 public record AppConfig(
@@ -15,9 +19,32 @@ public record AppConfig(
     String hostname,
     int port,
     String allowedOrigin,
-    Map<String, String> jwtClaimMapping
+    Map<String, String> jwtClaimMapping,
+    int warmupEvents,
+    String logDir,
+    ReadinessConfig readiness,
+    List<LaneConfig> priorityLanes,
+    StripeConfig sessionStripes,
+    String unixSocketPath,
+    UdpConfig udp,
+    StreamConfig stream,
+    AcceptQueueConfig acceptQueue,
+    SessionIdentityConfig sessionIdentity,
+    GeoIpConfig geoIp,
+    UrlTemplateConfig urlTemplates,
+    RouteLatencyConfig routeLatency,
+    List<String> sketchFields,
+    AnomalyConfig anomalies,
+    List<RedactionRule> redactionRules,
+    SchemaConfig schemas,
+    PolicyFileConfig policyFile,
+    String routingFile,
+    int memoryBudgetMb
 ) {
 
+    public static final int DEFAULT_WARMUP_EVENTS = 2000;
+    public static final int MIN_MEMORY_BUDGET_MB = 8;
+
     private static final Map<String, String> DEFAULT_JWT_CLAIM_MAPPING = Map.ofEntries(
         Map.entry("sub", "subject"),
         Map.entry("email", "user_email"),
@@ -35,6 +62,81 @@ public record AppConfig(
         Map.entry("cadr_name", "cadr_name")
     );
 
+    public AppConfig(String auditApiKey, String app, String platform, String environment, String hostname,
+                     int port, String allowedOrigin, Map<String, String> jwtClaimMapping) {
+        this(auditApiKey, app, platform, environment, hostname, port, allowedOrigin, jwtClaimMapping, 0,
+            "logs", ReadinessConfig.defaults(), List.of(), StripeConfig.defaults(), null, UdpConfig.defaults(),
+            StreamConfig.defaults(), AcceptQueueConfig.defaults(), SessionIdentityConfig.defaults(),
+            GeoIpConfig.defaults(), UrlTemplateConfig.defaults(), RouteLatencyConfig.defaults(), List.of(),
+            AnomalyConfig.defaults(), List.of(), SchemaConfig.defaults(), PolicyFileConfig.defaults(), null, 0);
+    }
+
+    public record StripeConfig(int count, int queueCapacity) {
+        public static StripeConfig defaults() {
+            return new StripeConfig(0, 1024);
+        }
+    }
+
+    public record UdpConfig(int port, int workers) {
+        public static UdpConfig defaults() {
+            return new UdpConfig(0, 2);
+        }
+    }
+
+    public record StreamConfig(boolean enabled, int ackEvery) {
+        public static StreamConfig defaults() {
+            return new StreamConfig(false, 100);
+        }
+    }
+
+    public record AcceptQueueConfig(int capacity, int workers) {
+        public static AcceptQueueConfig defaults() {
+            return new AcceptQueueConfig(0, 4);
+        }
+    }
+
+    public record SessionIdentityConfig(int cacheSize, int ttlSeconds) {
+        public static SessionIdentityConfig defaults() {
+            return new SessionIdentityConfig(0, 1800);
+        }
+    }
+
+    public record GeoIpConfig(List<String> databases, int cacheSize, int reloadSeconds) {
+        public static GeoIpConfig defaults() {
+            return new GeoIpConfig(List.of(), 4096, 60);
+        }
+    }
+
+    public record UrlTemplateConfig(boolean enabled, List<String> templates, int cacheSize) {
+        public static UrlTemplateConfig defaults() {
+            return new UrlTemplateConfig(false, List.of(), 10_000);
+        }
+    }
+
+    public record RouteLatencyConfig(int series, int windowSeconds) {
+        public static RouteLatencyConfig defaults() {
+            return new RouteLatencyConfig(0, 300);
+        }
+    }
+
+    public record AnomalyConfig(Map<String, Integer> thresholds, List<String> keyFields, int windowSeconds) {
+        public static AnomalyConfig defaults() {
+            return new AnomalyConfig(Map.of(), List.of("subject"), 60);
+        }
+    }
+
+    public record SchemaConfig(String dir, boolean reject) {
+        public static SchemaConfig defaults() {
+            return new SchemaConfig(null, true);
+        }
+    }
+
+    public record PolicyFileConfig(String path, int reloadSeconds) {
+        public static PolicyFileConfig defaults() {
+            return new PolicyFileConfig(null, 10);
+        }
+    }
+
     public static AppConfig fromEnvironment() {
         return fromEnvironment(System::getenv);
     }
@@ -55,7 +157,110 @@ public record AppConfig(
 
         Map<String, String> jwtClaimMapping = parseJwtClaimMapping(env.apply("JWT_CLAIM_MAPPING"));
 
-        return new AppConfig(auditApiKey, app, platform, environment, hostname, port, allowedOrigin, jwtClaimMapping);
+        int warmupEvents = parseNonNegativeInt(env, "WARMUP_EVENTS", DEFAULT_WARMUP_EVENTS);
+        String logDir = getOrDefault(env, "LOG_DIR", "logs");
+
+        ReadinessConfig readinessDefaults = ReadinessConfig.defaults();
+        ReadinessConfig readiness = new ReadinessConfig(
+            parseRatio(env, "READY_MAX_QUEUE_FILL", readinessDefaults.maxQueueFillRatio()),
+            parseNonNegativeInt(env, "READY_MIN_FREE_DISK_MB", readinessDefaults.minFreeDiskMb()),
+            parseNonNegativeInt(env, "READY_MAX_WRITE_P99_MS", readinessDefaults.maxWriteP99Millis()),
+            parsePositiveInt(env, "READY_CHECK_INTERVAL_MS", readinessDefaults.checkIntervalMillis())
+        );
+
+        List<LaneConfig> priorityLanes = parsePriorityLanes(env.apply("PRIORITY_LANES"));
+
+        StripeConfig stripeDefaults = StripeConfig.defaults();
+        StripeConfig sessionStripes = new StripeConfig(
+            parseNonNegativeInt(env, "SESSION_STRIPES", stripeDefaults.count()),
+            parsePositiveInt(env, "SESSION_STRIPE_QUEUE", stripeDefaults.queueCapacity())
+        );
+
+        String unixSocketPath = getOrDefault(env, "UNIX_SOCKET_PATH", null);
+
+        UdpConfig udpDefaults = UdpConfig.defaults();
+        int udpPort = parseNonNegativeInt(env, "UDP_PORT", udpDefaults.port());
+        if (udpPort > 65535) {
+            throw new IllegalStateException("UDP_PORT must be between 1 and 65535, got: " + udpPort);
+        }
+        UdpConfig udp = new UdpConfig(udpPort, parsePositiveInt(env, "UDP_WORKERS", udpDefaults.workers()));
+
+        StreamConfig streamDefaults = StreamConfig.defaults();
+        StreamConfig stream = new StreamConfig(
+            parseBoolean(env, "STREAM_ENABLED", streamDefaults.enabled()),
+            parsePositiveInt(env, "STREAM_ACK_EVERY", streamDefaults.ackEvery())
+        );
+
+        AcceptQueueConfig acceptQueueDefaults = AcceptQueueConfig.defaults();
+        AcceptQueueConfig acceptQueue = new AcceptQueueConfig(
+            parseNonNegativeInt(env, "ACCEPT_QUEUE", acceptQueueDefaults.capacity()),
+            parsePositiveInt(env, "ACCEPT_WORKERS", acceptQueueDefaults.workers())
+        );
+
+        SessionIdentityConfig sessionIdentityDefaults = SessionIdentityConfig.defaults();
+        SessionIdentityConfig sessionIdentity = new SessionIdentityConfig(
+            parseNonNegativeInt(env, "SESSION_IDENTITY_CACHE_SIZE", sessionIdentityDefaults.cacheSize()),
+            parsePositiveInt(env, "SESSION_IDENTITY_TTL_SECONDS", sessionIdentityDefaults.ttlSeconds())
+        );
+
+        GeoIpConfig geoIpDefaults = GeoIpConfig.defaults();
+        GeoIpConfig geoIp = new GeoIpConfig(
+            parseList(env.apply("GEOIP_DATABASES")),
+            parsePositiveInt(env, "GEOIP_CACHE_SIZE", geoIpDefaults.cacheSize()),
+            parsePositiveInt(env, "GEOIP_RELOAD_SECONDS", geoIpDefaults.reloadSeconds())
+        );
+
+        UrlTemplateConfig urlTemplateDefaults = UrlTemplateConfig.defaults();
+        List<String> templates = parseList(env.apply("URL_TEMPLATES"));
+        UrlTemplateConfig urlTemplates = new UrlTemplateConfig(
+            // Listing templates implies templating; URL_TEMPLATING=true alone enables just the UUID/number fallback
+            parseBoolean(env, "URL_TEMPLATING", !templates.isEmpty()),
+            templates,
+            parsePositiveInt(env, "URL_TEMPLATE_CACHE_SIZE", urlTemplateDefaults.cacheSize())
+        );
+
+        RouteLatencyConfig routeLatencyDefaults = RouteLatencyConfig.defaults();
+        RouteLatencyConfig routeLatency = new RouteLatencyConfig(
+            parseNonNegativeInt(env, "ROUTE_LATENCY_SERIES", routeLatencyDefaults.series()),
+            parsePositiveInt(env, "ROUTE_LATENCY_WINDOW_SECONDS", routeLatencyDefaults.windowSeconds())
+        );
+
+        List<String> sketchFields = parseList(env.apply("SKETCH_FIELDS"));
+
+        AnomalyConfig anomalyDefaults = AnomalyConfig.defaults();
+        List<String> anomalyKeyFields = parseList(env.apply("ANOMALY_KEYS"));
+        AnomalyConfig anomalies = new AnomalyConfig(
+            parseAnomalyThresholds(env.apply("ANOMALY_THRESHOLDS")),
+            anomalyKeyFields.isEmpty() ? anomalyDefaults.keyFields() : anomalyKeyFields,
+            parsePositiveInt(env, "ANOMALY_WINDOW_SECONDS", anomalyDefaults.windowSeconds())
+        );
+
+        List<RedactionRule> redactionRules = parseRedactionRules(env.apply("REDACTION_RULES"));
+
+        String schemaMode = getOrDefault(env, "SCHEMA_MODE", "reject");
+        if (!schemaMode.equals("reject") && !schemaMode.equals("report")) {
+            throw new IllegalStateException("SCHEMA_MODE must be reject or report, got: " + schemaMode);
+        }
+        SchemaConfig schemas = new SchemaConfig(getOrDefault(env, "SCHEMA_DIR", null), schemaMode.equals("reject"));
+
+        PolicyFileConfig policyFile = new PolicyFileConfig(
+            getOrDefault(env, "POLICY_FILE", null),
+            parsePositiveInt(env, "POLICY_RELOAD_SECONDS", PolicyFileConfig.defaults().reloadSeconds())
+        );
+
+        String routingFile = getOrDefault(env, "ROUTING_FILE", null);
+
+        int memoryBudgetMb = parseNonNegativeInt(env, "MEMORY_BUDGET_MB", 0);
+        if (memoryBudgetMb > 0 && memoryBudgetMb < MIN_MEMORY_BUDGET_MB) {
+            // Smaller budgets cannot admit a single maximum-size body
+            throw new IllegalStateException("MEMORY_BUDGET_MB must be 0 or at least " + MIN_MEMORY_BUDGET_MB
+                + ", got: " + memoryBudgetMb);
+        }
+
+        return new AppConfig(auditApiKey, app, platform, environment, hostname, port, allowedOrigin, jwtClaimMapping,
+            warmupEvents, logDir, readiness, priorityLanes, sessionStripes, unixSocketPath, udp, stream, acceptQueue,
+            sessionIdentity, geoIp, urlTemplates, routeLatency, sketchFields, anomalies, redactionRules, schemas,
+            policyFile, routingFile, memoryBudgetMb);
     }
 
     private static String getOrDefault(Function<String, String> env, String key, String defaultValue) {
@@ -78,6 +283,65 @@ public record AppConfig(
         }
     }
 
+    private static int parseNonNegativeInt(Function<String, String> env, String key, int defaultValue) {
+        String value = env.apply(key);
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        try {
+            int parsed = Integer.parseInt(value.trim());
+            if (parsed < 0) {
+                throw new IllegalStateException(key + " must not be negative, got: " + parsed);
+            }
+            return parsed;
+        } catch (NumberFormatException e) {
+            throw new IllegalStateException(key + " must be a valid integer, got: " + value);
+        }
+    }
+
+    private static int parsePositiveInt(Function<String, String> env, String key, int defaultValue) {
+        int parsed = parseNonNegativeInt(env, key, defaultValue);
+        if (parsed == 0) {
+            throw new IllegalStateException(key + " must be greater than 0");
+        }
+        return parsed;
+    }
+
+    private static boolean parseBoolean(Function<String, String> env, String key, boolean defaultValue) {
+        String value = env.apply(key);
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        return switch (value.trim().toLowerCase()) {
+            case "true" -> true;
+            case "false" -> false;
+            default -> throw new IllegalStateException(key + " must be true or false, got: " + value);
+        };
+    }
+
+    private static double parseRatio(Function<String, String> env, String key, double defaultValue) {
+        String value = env.apply(key);
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        try {
+            double parsed = Double.parseDouble(value.trim());
+            if (parsed < 0.0 || parsed > 1.0) {
+                throw new IllegalStateException(key + " must be between 0 and 1, got: " + parsed);
+            }
+            return parsed;
+        } catch (NumberFormatException e) {
+            throw new IllegalStateException(key + " must be a valid number, got: " + value);
+        }
+    }
+
+    private static List<String> parseList(String value) {
+        if (value == null || value.isBlank()) {
+            return List.of();
+        }
+        return Arrays.stream(value.split(",")).map(String::trim).filter(item -> !item.isEmpty()).toList();
+    }
+
     private static Map<String, String> parseJwtClaimMapping(String json) {
         if (json == null || json.isBlank()) {
             return DEFAULT_JWT_CLAIM_MAPPING;
@@ -90,6 +354,82 @@ public record AppConfig(
         }
     }
 
+    private static Map<String, Integer> parseAnomalyThresholds(String json) {
+        if (json == null || json.isBlank()) {
+            return Map.of();
+        }
+        Map<String, Integer> thresholds;
+        try {
+            thresholds = new ObjectMapper().readValue(json, new TypeReference<Map<String, Integer>>() {});
+        } catch (Exception e) {
+            throw new IllegalStateException(
+                "ANOMALY_THRESHOLDS must be a JSON object of event_type to count, got: " + json, e);
+        }
+        thresholds.forEach((eventType, threshold) -> {
+            if (threshold == null || threshold < 1) {
+                throw new IllegalStateException("ANOMALY_THRESHOLDS threshold for " + eventType + " must be at least 1");
+            }
+        });
+        return Map.copyOf(thresholds);
+    }
+
+    private static List<RedactionRule> parseRedactionRules(String json) {
+        if (json == null || json.isBlank()) {
+            return List.of();
+        }
+        List<RedactionRule> rules;
+        try {
+            rules = new ObjectMapper().readValue(json, new TypeReference<List<RedactionRule>>() {});
+        } catch (Exception e) {
+            throw new IllegalStateException("REDACTION_RULES must be a valid JSON array, got: " + json, e);
+        }
+        return RedactionRule.validate(rules, "REDACTION_RULES");
+    }
+
+    private static List<LaneConfig> parsePriorityLanes(String json) {
+        if (json == null || json.isBlank()) {
+            return List.of();
+        }
+        List<LaneConfig> lanes;
+        try {
+            lanes = new ObjectMapper().readValue(json, new TypeReference<List<LaneConfig>>() {});
+        } catch (Exception e) {
+            throw new IllegalStateException("PRIORITY_LANES must be a valid JSON array, got: " + json, e);
+        }
+        Set<String> names = new HashSet<>();
+        Set<String> eventTypes = new HashSet<>();
+        Set<String> actions = new HashSet<>();
+        int defaultLanes = 0;
+        for (LaneConfig lane : lanes) {
+            if (lane.name() == null || lane.name().isBlank() || !names.add(lane.name())) {
+                throw new IllegalStateException("PRIORITY_LANES entries need a unique name, got: " + lane.name());
+            }
+            if (lane.capacity() < 1 || lane.weight() < 1) {
+                throw new IllegalStateException("PRIORITY_LANES lane " + lane.name() + " needs capacity and weight >= 1");
+            }
+            if (lane.overflow() == null) {
+                throw new IllegalStateException("PRIORITY_LANES lane " + lane.name() + " needs overflow of block or shed");
+            }
+            if (lane.isDefault()) {
+                defaultLanes++;
+            }
+            for (String eventType : lane.eventTypes() == null ? List.<String>of() : lane.eventTypes()) {
+                if (!eventTypes.add(eventType)) {
+                    throw new IllegalStateException("PRIORITY_LANES event_type " + eventType + " is in more than one lane");
+                }
+            }
+            for (String action : lane.actions() == null ? List.<String>of() : lane.actions()) {
+                if (!actions.add(action)) {
+                    throw new IllegalStateException("PRIORITY_LANES action " + action + " is in more than one lane");
+                }
+            }
+        }
+        if (!lanes.isEmpty() && defaultLanes != 1) {
+            throw new IllegalStateException("PRIORITY_LANES must have exactly one lane without event_types or actions");
+        }
+        return List.copyOf(lanes);
+    }
+
     private static String getSystemHostname() {
         try {
             return InetAddress.getLocalHost().getHostName();
@@ -0,0 +1,28 @@
+package edu.harvard.dbmi.avillach.logging.config;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record LaneConfig(
+    @JsonProperty("name") String name,
+    @JsonProperty("event_types") List<String> eventTypes,
+    @JsonProperty("actions") List<String> actions,
+    @JsonProperty("capacity") int capacity,
+    @JsonProperty("weight") int weight,
+    @JsonProperty("overflow") Overflow overflow
+) {
+
+    public enum Overflow {
+        /** Producers wait for space; events are never dropped. */
+        @JsonProperty("block") BLOCK,
+        /** Events are dropped and counted when the lane is full. */
+        @JsonProperty("shed") SHED
+    }
+
+    public boolean isDefault() {
+        return (eventTypes == null || eventTypes.isEmpty()) && (actions == null || actions.isEmpty());
+    }
+}
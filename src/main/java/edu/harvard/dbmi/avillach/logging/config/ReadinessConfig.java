@@ -0,0 +1,13 @@
+package edu.harvard.dbmi.avillach.logging.config;
+
+public record ReadinessConfig(
+    double maxQueueFillRatio,
+    int minFreeDiskMb,
+    int maxWriteP99Millis,
+    int checkIntervalMillis
+) {
+
+    public static ReadinessConfig defaults() {
+        return new ReadinessConfig(0.9, 256, 250, 1000);
+    }
+}
@@ -0,0 +1,74 @@
+package edu.harvard.dbmi.avillach.logging.config;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * One {@code REDACTION_RULES} entry. Exactly one of {@code keys} (map keys containing any of these,
+ * case-insensitively, have their whole value replaced), {@code literals} (exact substrings of string
+ * values) or {@code pattern} (a regular expression over string values) is set.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record RedactionRule(
+    @JsonProperty("name") String name,
+    @JsonProperty("keys") List<String> keys,
+    @JsonProperty("literals") List<String> literals,
+    @JsonProperty("pattern") String pattern
+) {
+
+    /** Checks names are unique, each rule has one matcher kind and patterns compile; {@code setting} names the source. */
+    public static List<RedactionRule> validate(List<RedactionRule> rules, String setting) {
+        Set<String> names = new HashSet<>();
+        for (RedactionRule rule : rules) {
+            if (rule == null || rule.name() == null || rule.name().isBlank() || !names.add(rule.name())) {
+                throw new IllegalStateException(setting + " entries need a unique name, got: "
+                    + (rule == null ? null : rule.name()));
+            }
+            int kinds = (rule.keys() != null ? 1 : 0) + (rule.literals() != null ? 1 : 0)
+                + (rule.pattern() != null ? 1 : 0);
+            if (kinds != 1) {
+                throw new IllegalStateException(setting + " rule " + rule.name()
+                    + " needs exactly one of keys, literals or pattern");
+            }
+            if (rule.pattern() != null) {
+                try {
+                    Pattern.compile(rule.pattern());
+                } catch (PatternSyntaxException e) {
+                    throw new IllegalStateException(setting + " rule " + rule.name() + " has an invalid pattern", e);
+                }
+                if (hasBackreference(rule.pattern())) {
+                    throw new IllegalStateException(setting + " rule " + rule.name()
+                        + " uses a backreference, which is not supported");
+                }
+            }
+        }
+        return List.copyOf(rules);
+    }
+
+    /** Whether {@code pattern} uses a numbered or named backreference outside a {@code \Q...\E} quote. */
+    private static boolean hasBackreference(String pattern) {
+        for (int i = 0; i < pattern.length() - 1; i++) {
+            if (pattern.charAt(i) != '\\') {
+                continue;
+            }
+            char next = pattern.charAt(++i);
+            if ((next >= '1' && next <= '9') || next == 'k') {
+                return true;
+            }
+            if (next == 'Q') {
+                int end = pattern.indexOf("\\E", i + 1);
+                if (end < 0) {
+                    return false;
+                }
+                i = end + 1;
+            }
+        }
+        return false;
+    }
+}
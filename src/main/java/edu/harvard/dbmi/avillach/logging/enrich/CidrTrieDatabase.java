@@ -0,0 +1,241 @@
+package edu.harvard.dbmi.avillach.logging.enrich;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * CIDR-CSV database ({@code network,country,asn,as_org}) compiled into two binary tries, one per
+ * address family, stored as flat int arrays. Identical rows share one {@link GeoIpRecord}, and a
+ * lookup is a walk of at most 32 or 128 array reads with no locking or allocation.
+ */
+final class CidrTrieDatabase implements GeoIpDatabase {
+
+    private static final ThreadLocal<int[]> IPV6_GROUPS = ThreadLocal.withInitial(() -> new int[8]);
+
+    private final Trie ipv4;
+    private final Trie ipv6;
+    private final GeoIpRecord[] records;
+
+    private CidrTrieDatabase(Trie ipv4, Trie ipv6, GeoIpRecord[] records) {
+        this.ipv4 = ipv4;
+        this.ipv6 = ipv6;
+        this.records = records;
+    }
+
+    static CidrTrieDatabase load(Path path) throws IOException {
+        Trie ipv4 = new Trie();
+        Trie ipv6 = new Trie();
+        Map<GeoIpRecord, Integer> recordIds = new HashMap<>();
+        List<GeoIpRecord> records = new ArrayList<>();
+        int[] groups = new int[8];
+
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                line = line.strip();
+                if (line.isEmpty() || line.startsWith("#") || (lineNumber == 1 && line.startsWith("network"))) {
+                    continue;
+                }
+                List<String> columns = splitCsv(line);
+                String network = columns.get(0);
+                int slash = network.indexOf('/');
+                int prefixLength = slash < 0 ? -1 : parsePrefixLength(network.substring(slash + 1));
+                if (prefixLength < 0) {
+                    throw invalid(path, lineNumber, "network must be in CIDR form, got: " + network);
+                }
+                GeoIpRecord record = new GeoIpRecord(column(columns, 1), null, parseAsn(column(columns, 2)),
+                    column(columns, 3));
+                int recordId = recordIds.computeIfAbsent(record, r -> {
+                    records.add(r);
+                    return records.size() - 1;
+                });
+
+                long address = IpLiterals.parseIpv4(network, 0, slash);
+                if (address >= 0 && prefixLength <= 32) {
+                    ipv4.insertIpv4(address, prefixLength, recordId);
+                } else if (IpLiterals.parseIpv6(network.substring(0, slash), groups) && prefixLength <= 128) {
+                    ipv6.insertIpv6(groups, prefixLength, recordId);
+                } else {
+                    throw invalid(path, lineNumber, "invalid network: " + network);
+                }
+            }
+        }
+        ipv4.trim();
+        ipv6.trim();
+        return new CidrTrieDatabase(ipv4, ipv6, records.toArray(new GeoIpRecord[0]));
+    }
+
+    @Override
+    public GeoIpRecord lookup(String ip) {
+        int recordId;
+        long address = IpLiterals.parseIpv4(ip, 0, ip.length());
+        if (address >= 0) {
+            recordId = ipv4.lookupIpv4(address);
+        } else {
+            int[] groups = IPV6_GROUPS.get();
+            if (!IpLiterals.parseIpv6(ip, groups)) {
+                return null;
+            }
+            long mapped = IpLiterals.mappedIpv4(groups);
+            recordId = mapped >= 0 ? ipv4.lookupIpv4(mapped) : ipv6.lookupIpv6(groups);
+        }
+        return recordId < 0 ? null : records[recordId];
+    }
+
+    int nodeCount() {
+        return ipv4.size + ipv6.size;
+    }
+
+    private static int parsePrefixLength(String value) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static Long parseAsn(String value) {
+        if (value == null) {
+            return null;
+        }
+        String digits = value.regionMatches(true, 0, "AS", 0, 2) ? value.substring(2) : value;
+        try {
+            return Long.parseLong(digits);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static String column(List<String> columns, int index) {
+        if (index >= columns.size()) {
+            return null;
+        }
+        String value = columns.get(index).strip();
+        return value.isEmpty() ? null : value;
+    }
+
+    /** Splits one CSV line, honouring double-quoted fields with {@code ""} escapes. */
+    static List<String> splitCsv(String line) {
+        List<String> columns = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    current.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    current.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                columns.add(current.toString());
+                current.setLength(0);
+            } else {
+                current.append(c);
+            }
+        }
+        columns.add(current.toString());
+        return columns;
+    }
+
+    private static IllegalStateException invalid(Path path, int lineNumber, String message) {
+        return new IllegalStateException(path + " line " + lineNumber + ": " + message);
+    }
+
+    /**
+     * Binary trie in flat arrays: node n's children are {@code children[2n]} and {@code children[2n+1]}
+     * (0 meaning none, since the root is never a child) and its record is {@code recordIds[n]} or -1.
+     */
+    private static final class Trie {
+        private int[] children = new int[64];
+        private int[] recordIds = new int[32];
+        private int size = 1;
+
+        private Trie() {
+            Arrays.fill(recordIds, -1);
+        }
+
+        void insertIpv4(long address, int prefixLength, int recordId) {
+            int node = 0;
+            for (int depth = 0; depth < prefixLength; depth++) {
+                node = child(node, (int) (address >>> (31 - depth)) & 1);
+            }
+            recordIds[node] = recordId;
+        }
+
+        void insertIpv6(int[] groups, int prefixLength, int recordId) {
+            int node = 0;
+            for (int depth = 0; depth < prefixLength; depth++) {
+                node = child(node, ipv6Bit(groups, depth));
+            }
+            recordIds[node] = recordId;
+        }
+
+        int lookupIpv4(long address) {
+            int node = 0;
+            int found = recordIds[0];
+            for (int depth = 0; depth < 32; depth++) {
+                node = children[2 * node + ((int) (address >>> (31 - depth)) & 1)];
+                if (node == 0) {
+                    break;
+                }
+                if (recordIds[node] >= 0) {
+                    found = recordIds[node];
+                }
+            }
+            return found;
+        }
+
+        int lookupIpv6(int[] groups) {
+            int node = 0;
+            int found = recordIds[0];
+            for (int depth = 0; depth < 128; depth++) {
+                node = children[2 * node + ipv6Bit(groups, depth)];
+                if (node == 0) {
+                    break;
+                }
+                if (recordIds[node] >= 0) {
+                    found = recordIds[node];
+                }
+            }
+            return found;
+        }
+
+        void trim() {
+            children = Arrays.copyOf(children, 2 * size);
+            recordIds = Arrays.copyOf(recordIds, size);
+        }
+
+        private int child(int node, int bit) {
+            int slot = 2 * node + bit;
+            if (children[slot] == 0) {
+                if (size == recordIds.length) {
+                    children = Arrays.copyOf(children, children.length * 2);
+                    recordIds = Arrays.copyOf(recordIds, recordIds.length * 2);
+                    Arrays.fill(recordIds, size, recordIds.length, -1);
+                }
+                children[slot] = size++;
+            }
+            return children[slot];
+        }
+
+        private static int ipv6Bit(int[] groups, int depth) {
+            return (groups[depth >>> 4] >>> (15 - (depth & 15))) & 1;
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package edu.harvard.dbmi.avillach.logging.enrich;
+
+import java.io.Closeable;
+
+/** A loaded, immutable IP range database. Lookups must be safe to call from any thread. */
+interface GeoIpDatabase extends Closeable {
+
+    /** Returns the record for the most specific range containing {@code ip}, or null if none or not an IP literal. */
+    GeoIpRecord lookup(String ip);
+
+    /** The same loaded data behind a lookup cache of its own, for databases that cache. */
+    default GeoIpDatabase withOwnCache(int cacheSize) {
+        return this;
+    }
+
+    /** Releases files or mappings held by the database. Lookups after this find nothing. */
+    @Override
+    default void close() {
+    }
+}
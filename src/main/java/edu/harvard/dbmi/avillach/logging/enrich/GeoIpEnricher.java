@@ -0,0 +1,201 @@
+package edu.harvard.dbmi.avillach.logging.enrich;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Adds {@code src_country}, {@code src_city}, {@code src_asn} and {@code src_as_org} for the event's
+ * {@code src_ip} from one or more local databases ({@code .mmdb} files, anything else is read as
+ * CIDR-CSV). Earlier databases win when several cover the same field. Each file is polled for changes
+ * and a replacement is loaded off the request path, then swapped in with a single volatile write;
+ * a file that fails to load leaves the previous version in service. The replaced version is closed
+ * {@link #CLOSE_GRACE_MILLIS} later, once lookups that read it before the swap have finished.
+ */
+public class GeoIpEnricher {
+
+    private static final Logger log = LoggerFactory.getLogger(GeoIpEnricher.class);
+    static final long CLOSE_GRACE_MILLIS = 10_000;
+
+    private final List<Source> sources;
+    private final int cacheSize;
+    private final int reloadSeconds;
+    private final long closeGraceMillis;
+
+    private final LongAdder lookups = new LongAdder();
+    private final LongAdder matched = new LongAdder();
+    private final LongAdder reloads = new LongAdder();
+    private final LongAdder reloadFailures = new LongAdder();
+    private final AtomicInteger pendingClose = new AtomicInteger();
+
+    private ScheduledExecutorService reloader;
+
+    public GeoIpEnricher(List<Path> databases, int cacheSize, int reloadSeconds) {
+        this(databases, cacheSize, reloadSeconds, CLOSE_GRACE_MILLIS);
+    }
+
+    GeoIpEnricher(List<Path> databases, int cacheSize, int reloadSeconds, long closeGraceMillis) {
+        this.cacheSize = cacheSize;
+        this.reloadSeconds = reloadSeconds;
+        this.closeGraceMillis = closeGraceMillis;
+        this.sources = databases.stream().map(Source::new).toList();
+        for (Source source : sources) {
+            try {
+                source.load(cacheSize);
+            } catch (Exception e) {
+                throw new IllegalStateException("Unable to load GeoIP database " + source.path + ": " + e.getMessage(), e);
+            }
+        }
+    }
+
+    private GeoIpEnricher(List<Source> sources, int cacheSize) {
+        this.cacheSize = cacheSize;
+        this.reloadSeconds = 0;
+        this.closeGraceMillis = 0;
+        this.sources = sources;
+    }
+
+    /**
+     * An enricher over the databases loaded right now, with its own lookup caches and counters, for
+     * synthetic traffic that must not touch this one's. It is never reloaded and must not be started;
+     * it is meant for short use, within the grace period of a reload that replaces what it reads.
+     */
+    public GeoIpEnricher detached() {
+        return new GeoIpEnricher(sources.stream().map(source -> source.detached(cacheSize)).toList(), cacheSize);
+    }
+
+    public void enrich(Map<String, Object> fields) {
+        if (!(fields.get("src_ip") instanceof String ip)) {
+            return;
+        }
+        lookups.increment();
+        boolean found = false;
+        for (Source source : sources) {
+            GeoIpRecord record = source.database.lookup(ip);
+            if (record != null) {
+                record.putInto(fields);
+                found = true;
+            }
+        }
+        if (found) {
+            matched.increment();
+        }
+    }
+
+    public synchronized void start() {
+        if (reloader != null) {
+            return;
+        }
+        reloader = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "geoip-reload");
+            t.setDaemon(true);
+            return t;
+        });
+        reloader.scheduleWithFixedDelay(this::reloadChanged, reloadSeconds, reloadSeconds, TimeUnit.SECONDS);
+    }
+
+    public synchronized void stop() {
+        if (reloader != null) {
+            // Pending closes run now rather than being dropped with the executor
+            reloader.shutdownNow().forEach(Runnable::run);
+            reloader = null;
+        }
+    }
+
+    /** Reloads every database whose modification time or size changed since it was last loaded. */
+    void reloadChanged() {
+        for (Source source : sources) {
+            try {
+                if (source.changed()) {
+                    retire(source.load(cacheSize));
+                    reloads.increment();
+                    log.info("Reloaded GeoIP database {}", source.path);
+                }
+            } catch (Exception e) {
+                reloadFailures.increment();
+                log.error("Failed to reload GeoIP database {}, keeping the previous version", source.path, e);
+            }
+        }
+    }
+
+    /** Closes a replaced database after the grace period, or at once when not running. */
+    private synchronized void retire(GeoIpDatabase previous) {
+        pendingClose.incrementAndGet();
+        if (reloader == null) {
+            close(previous);
+            return;
+        }
+        try {
+            reloader.schedule(() -> close(previous), closeGraceMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            close(previous);
+        }
+    }
+
+    private void close(GeoIpDatabase database) {
+        try {
+            database.close();
+        } finally {
+            pendingClose.decrementAndGet();
+        }
+    }
+
+    public Map<String, Object> metrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("databases", sources.size());
+        metrics.put("lookups", lookups.sum());
+        metrics.put("matched", matched.sum());
+        metrics.put("reloads", reloads.sum());
+        metrics.put("reload_failures", reloadFailures.sum());
+        metrics.put("pending_close", pendingClose.get());
+        return metrics;
+    }
+
+    private static final class Source {
+        private final Path path;
+        private volatile GeoIpDatabase database;
+        private FileTime loadedModified;
+        private long loadedSize;
+
+        private Source(Path path) {
+            this.path = path;
+        }
+
+        private Source detached(int cacheSize) {
+            Source copy = new Source(path);
+            copy.database = database.withOwnCache(cacheSize);
+            return copy;
+        }
+
+        private boolean changed() throws IOException {
+            return !Files.getLastModifiedTime(path).equals(loadedModified) || Files.size(path) != loadedSize;
+        }
+
+        /** Loads the file and returns the database it replaced, or null on the first load. */
+        private GeoIpDatabase load(int cacheSize) throws IOException {
+            // Read the fingerprint first so a write racing with the load is picked up next poll
+            FileTime modified = Files.getLastModifiedTime(path);
+            long size = Files.size(path);
+            GeoIpDatabase previous = database;
+            database = path.getFileName().toString().endsWith(".mmdb")
+                ? MmdbDatabase.load(path, cacheSize)
+                : CidrTrieDatabase.load(path);
+            loadedModified = modified;
+            loadedSize = size;
+            return previous;
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package edu.harvard.dbmi.avillach.logging.enrich;
+
+import java.util.Map;
+
+/** Location and network owner of an address range. Any component may be null. */
+public record GeoIpRecord(String country, String city, Long asn, String asOrg) {
+
+    /** Adds the non-null components as {@code src_*} fields, keeping values an earlier database set. */
+    void putInto(Map<String, Object> fields) {
+        putIfAbsent(fields, "src_country", country);
+        putIfAbsent(fields, "src_city", city);
+        putIfAbsent(fields, "src_asn", asn);
+        putIfAbsent(fields, "src_as_org", asOrg);
+    }
+
+    private static void putIfAbsent(Map<String, Object> fields, String key, Object value) {
+        if (value != null) {
+            fields.putIfAbsent(key, value);
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package edu.harvard.dbmi.avillach.logging.enrich;
+
+/**
+ * Parses IP address literals without allocating and without ever falling back to DNS, unlike
+ * {@link java.net.InetAddress#getByName(String)}.
+ */
+final class IpLiterals {
+
+    private IpLiterals() {
+    }
+
+    /** Returns the address as an unsigned 32-bit value, or -1 if the range is not a dotted-quad literal. */
+    static long parseIpv4(String s, int from, int to) {
+        long value = 0;
+        int octets = 0;
+        int octet = -1;
+        for (int i = from; i < to; i++) {
+            char c = s.charAt(i);
+            if (c == '.') {
+                if (octet < 0 || octets == 3) {
+                    return -1;
+                }
+                value = value << 8 | octet;
+                octets++;
+                octet = -1;
+            } else if (c >= '0' && c <= '9') {
+                octet = (octet < 0 ? 0 : octet * 10) + (c - '0');
+                if (octet > 255) {
+                    return -1;
+                }
+            } else {
+                return -1;
+            }
+        }
+        if (octet < 0 || octets != 3) {
+            return -1;
+        }
+        return value << 8 | octet;
+    }
+
+    /**
+     * Parses an IPv6 literal (with optional {@code ::} compression, embedded IPv4 tail and zone id)
+     * into eight 16-bit groups. Returns false if {@code s} is not a valid literal.
+     */
+    static boolean parseIpv6(String s, int[] groups) {
+        int end = s.indexOf('%');
+        if (end < 0) {
+            end = s.length();
+        }
+        int count = 0;
+        int gap = -1;
+        int i = 0;
+        if (end >= 2 && s.charAt(0) == ':' && s.charAt(1) == ':') {
+            gap = 0;
+            i = 2;
+        } else if (end > 0 && s.charAt(0) == ':') {
+            return false;
+        }
+        while (i < end) {
+            if (count == 8) {
+                return false;
+            }
+            int start = i;
+            int value = 0;
+            while (i < end && i - start < 5) {
+                int digit = Character.digit(s.charAt(i), 16);
+                if (digit < 0) {
+                    break;
+                }
+                value = value << 4 | digit;
+                i++;
+            }
+            if (i < end && s.charAt(i) == '.') {
+                long ipv4 = count <= 6 ? parseIpv4(s, start, end) : -1;
+                if (ipv4 < 0) {
+                    return false;
+                }
+                groups[count++] = (int) (ipv4 >>> 16);
+                groups[count++] = (int) (ipv4 & 0xFFFF);
+                break;
+            }
+            if (i == start || i - start > 4) {
+                return false;
+            }
+            groups[count++] = value;
+            if (i == end) {
+                break;
+            }
+            if (s.charAt(i) != ':' || ++i == end) {
+                return false;
+            }
+            if (s.charAt(i) == ':') {
+                if (gap >= 0) {
+                    return false;
+                }
+                gap = count;
+                i++;
+            }
+        }
+        if (gap < 0) {
+            return count == 8;
+        }
+        if (count == 8) {
+            return false;
+        }
+        int shift = 8 - count;
+        for (int g = count - 1; g >= gap; g--) {
+            groups[g + shift] = groups[g];
+        }
+        for (int g = gap; g < gap + shift; g++) {
+            groups[g] = 0;
+        }
+        return true;
+    }
+
+    /** Returns the IPv4 address embedded in an {@code ::ffff:a.b.c.d} mapped address, or -1. */
+    static long mappedIpv4(int[] groups) {
+        for (int g = 0; g < 5; g++) {
+            if (groups[g] != 0) {
+                return -1;
+            }
+        }
+        return groups[5] == 0xFFFF ? (long) groups[6] << 16 | groups[7] : -1;
+    }
+}
@@ -0,0 +1,128 @@
+package edu.harvard.dbmi.avillach.logging.enrich;
+
+import com.maxmind.db.NoCache;
+import com.maxmind.db.Reader;
+import edu.harvard.dbmi.avillach.logging.cache.BoundedLruCache;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.file.Path;
+import java.util.Map;
+
+/**
+ * MaxMind DB file (GeoLite2/GeoIP2 Country, City or ASN), memory-mapped and searched in place by
+ * the MaxMind reader. Decoding a matched record allocates, so results, including misses, are kept
+ * in a small per-file LRU keyed by the address literal.
+ */
+final class MmdbDatabase implements GeoIpDatabase {
+
+    private static final GeoIpRecord NOT_FOUND = new GeoIpRecord(null, null, null, null);
+
+    private final Reader reader;
+    private final BoundedLruCache<String, GeoIpRecord> cache;
+
+    private MmdbDatabase(Reader reader, BoundedLruCache<String, GeoIpRecord> cache) {
+        this.reader = reader;
+        this.cache = cache;
+    }
+
+    static MmdbDatabase load(Path path, int cacheSize) throws IOException {
+        return new MmdbDatabase(new Reader(path.toFile(), Reader.FileMode.MEMORY_MAPPED, NoCache.getInstance()),
+            new BoundedLruCache<>(cacheSize));
+    }
+
+    @Override
+    public GeoIpRecord lookup(String ip) {
+        GeoIpRecord cached = cache.get(ip);
+        if (cached == null) {
+            InetAddress address = toInetAddress(ip);
+            if (address == null) {
+                return null;
+            }
+            cached = decode(address);
+            cache.put(ip, cached);
+        }
+        return cached == NOT_FOUND ? null : cached;
+    }
+
+    @Override
+    public GeoIpDatabase withOwnCache(int cacheSize) {
+        return new MmdbDatabase(reader, new BoundedLruCache<>(cacheSize));
+    }
+
+    @Override
+    public void close() {
+        try {
+            reader.close();
+        } catch (IOException e) {
+            // Nothing is written through the reader, so there is nothing to lose
+        }
+    }
+
+    Map<String, Object> cacheMetrics() {
+        return cache.metrics();
+    }
+
+    @SuppressWarnings("unchecked")
+    private GeoIpRecord decode(InetAddress address) {
+        Map<String, Object> data;
+        try {
+            data = reader.get(address, Map.class);
+        } catch (IOException | RuntimeException e) {
+            // e.g. an IPv6 address against an IPv4-only database
+            return NOT_FOUND;
+        }
+        if (data == null) {
+            return NOT_FOUND;
+        }
+        String country = string(data, "country", "iso_code");
+        if (country == null) {
+            country = string(data, "registered_country", "iso_code");
+        }
+        Object asn = data.get("autonomous_system_number");
+        return new GeoIpRecord(country, string(data, "city", "names", "en"),
+            asn instanceof Number number ? number.longValue() : null,
+            string(data, "autonomous_system_organization"));
+    }
+
+    private static String string(Map<String, Object> data, String... path) {
+        Object value = data;
+        for (String key : path) {
+            if (!(value instanceof Map<?, ?> map)) {
+                return null;
+            }
+            value = map.get(key);
+        }
+        return value instanceof String s ? s : null;
+    }
+
+    /** Builds the address from a parsed literal so a malformed value can never trigger a DNS lookup. */
+    private static InetAddress toInetAddress(String ip) {
+        long ipv4 = IpLiterals.parseIpv4(ip, 0, ip.length());
+        int[] groups = new int[8];
+        if (ipv4 < 0 && IpLiterals.parseIpv6(ip, groups)) {
+            ipv4 = IpLiterals.mappedIpv4(groups);
+            if (ipv4 < 0) {
+                byte[] bytes = new byte[16];
+                for (int g = 0; g < 8; g++) {
+                    bytes[2 * g] = (byte) (groups[g] >>> 8);
+                    bytes[2 * g + 1] = (byte) groups[g];
+                }
+                return byAddress(bytes);
+            }
+        }
+        if (ipv4 < 0) {
+            return null;
+        }
+        return byAddress(new byte[] {(byte) (ipv4 >>> 24), (byte) (ipv4 >>> 16), (byte) (ipv4 >>> 8), (byte) ipv4});
+    }
+
+    private static InetAddress byAddress(byte[] bytes) {
+        try {
+            return InetAddress.getByAddress(bytes);
+        } catch (UnknownHostException e) {
+            return null;
+        }
+    }
+}
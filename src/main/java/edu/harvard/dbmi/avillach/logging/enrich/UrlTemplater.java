@@ -0,0 +1,209 @@
+package edu.harvard.dbmi.avillach.logging.enrich;
+
+import edu.harvard.dbmi.avillach.logging.cache.BoundedLruCache;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collapses request paths to low-cardinality route templates such as {@code /query/{queryId}/result}.
+ * Configured templates are compiled into a segment trie in which every {@code {param}} branch is also
+ * merged into its literal siblings, so a match is a single walk with no backtracking, linear in the
+ * number of segments. Paths no template covers fall back to replacing UUID segments with
+ * {@code {uuid}} and numeric segments with {@code {id}}. Results are cached per path.
+ */
+public class UrlTemplater {
+
+    static final String UUID_PLACEHOLDER = "{uuid}";
+    static final String NUMBER_PLACEHOLDER = "{id}";
+
+    private final Node root = new Node();
+    private final BoundedLruCache<String, Resolved> cache;
+
+    private final LongAdder matched = new LongAdder();
+    private final LongAdder fallback = new LongAdder();
+
+    public UrlTemplater(List<String> templates, int cacheSize) {
+        for (String template : templates) {
+            insert(template);
+        }
+        determinize(root);
+        this.cache = new BoundedLruCache<>(cacheSize);
+    }
+
+    /** Returns the route template for {@code url}, ignoring any scheme, host and query string. */
+    public String template(String url) {
+        String path = path(url);
+        Resolved resolved = cache.get(path);
+        if (resolved == null) {
+            resolved = resolve(path);
+            cache.put(path, resolved);
+        }
+        (resolved.matched() ? matched : fallback).increment();
+        return resolved.template();
+    }
+
+    public Map<String, Object> metrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>(cache.metrics());
+        metrics.put("matched", matched.sum());
+        metrics.put("fallback", fallback.sum());
+        return metrics;
+    }
+
+    private Resolved resolve(String path) {
+        List<String> segments = segments(path);
+        Node node = root;
+        for (String segment : segments) {
+            Node next = node.literals.get(segment);
+            node = next != null ? next : node.param;
+            if (node == null) {
+                break;
+            }
+        }
+        if (node != null && node.template != null) {
+            return new Resolved(node.template, true);
+        }
+        StringBuilder template = new StringBuilder(path.length());
+        for (String segment : segments) {
+            template.append('/');
+            if (isUuid(segment)) {
+                template.append(UUID_PLACEHOLDER);
+            } else if (isNumber(segment)) {
+                template.append(NUMBER_PLACEHOLDER);
+            } else {
+                template.append(segment);
+            }
+        }
+        return new Resolved(template.isEmpty() ? "/" : template.toString(), false);
+    }
+
+    private void insert(String template) {
+        if (!template.startsWith("/")) {
+            throw new IllegalStateException("URL_TEMPLATES entries must start with /, got: " + template);
+        }
+        Node node = root;
+        for (String segment : segments(template)) {
+            if (segment.startsWith("{") && segment.endsWith("}")) {
+                if (segment.length() == 2) {
+                    throw new IllegalStateException("URL_TEMPLATES parameter needs a name in: " + template);
+                }
+                if (node.param == null) {
+                    node.param = new Node();
+                }
+                node = node.param;
+            } else {
+                node = node.literals.computeIfAbsent(segment, s -> new Node());
+            }
+        }
+        // The first template listed for a route shape wins
+        if (node.template == null) {
+            node.template = template;
+        }
+    }
+
+    /**
+     * Copies each parameter branch into the literal branches beside it, with lower priority, so that
+     * following a literal never has to be undone: {@code /a/{x}/c} then still matches {@code /a/b/c}
+     * when {@code /a/b/d} is also configured.
+     */
+    private static void determinize(Node node) {
+        if (node.param != null) {
+            for (Node literal : node.literals.values()) {
+                mergeInto(literal, node.param);
+            }
+            determinize(node.param);
+        }
+        for (Node literal : node.literals.values()) {
+            determinize(literal);
+        }
+    }
+
+    private static void mergeInto(Node target, Node source) {
+        if (target.template == null) {
+            target.template = source.template;
+        }
+        source.literals.forEach((segment, child) ->
+            mergeInto(target.literals.computeIfAbsent(segment, s -> new Node()), child));
+        if (source.param != null) {
+            if (target.param == null) {
+                target.param = new Node();
+            }
+            mergeInto(target.param, source.param);
+        }
+    }
+
+    private static String path(String url) {
+        int start = 0;
+        int scheme = url.indexOf("://");
+        if (scheme >= 0) {
+            start = url.indexOf('/', scheme + 3);
+            if (start < 0) {
+                return "/";
+            }
+        }
+        int end = url.length();
+        for (int i = start; i < end; i++) {
+            char c = url.charAt(i);
+            if (c == '?' || c == '#') {
+                end = i;
+                break;
+            }
+        }
+        return url.substring(start, end);
+    }
+
+    /** Non-empty segments, so repeated and trailing slashes do not change the match. */
+    private static List<String> segments(String path) {
+        List<String> segments = new ArrayList<>();
+        int start = 0;
+        for (int i = 0; i <= path.length(); i++) {
+            if (i == path.length() || path.charAt(i) == '/') {
+                if (i > start) {
+                    segments.add(path.substring(start, i));
+                }
+                start = i + 1;
+            }
+        }
+        return segments;
+    }
+
+    static boolean isUuid(String s) {
+        if (s.length() != 36) {
+            return false;
+        }
+        for (int i = 0; i < 36; i++) {
+            char c = s.charAt(i);
+            boolean dash = i == 8 || i == 13 || i == 18 || i == 23;
+            if (dash ? c != '-' : Character.digit(c, 16) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static boolean isNumber(String s) {
+        if (s.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) < '0' || s.charAt(i) > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** A path's template and whether it came from a configured template rather than the fallback. */
+    private record Resolved(String template, boolean matched) {
+    }
+
+    private static final class Node {
+        private final Map<String, Node> literals = new HashMap<>();
+        private Node param;
+        private String template;
+    }
+}
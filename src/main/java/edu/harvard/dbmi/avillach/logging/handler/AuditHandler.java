@@ -2,40 +2,209 @@ package edu.harvard.dbmi.avillach.logging.handler;
 
 import com.fasterxml.jackson.core.StreamReadConstraints;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
 import edu.harvard.dbmi.avillach.logging.model.AuditEvent;
+import edu.harvard.dbmi.avillach.logging.pipeline.MemoryBudget;
+import edu.harvard.dbmi.avillach.logging.schema.SchemaRegistry;
+import edu.harvard.dbmi.avillach.logging.schema.SchemaViolationException;
 import edu.harvard.dbmi.avillach.logging.service.AuditLogService;
 import io.javalin.http.BadRequestResponse;
 import io.javalin.http.Context;
+import io.javalin.http.ServiceUnavailableResponse;
 
 import java.util.Map;
 
 public class AuditHandler {
 
+    public static final String CBOR_CONTENT_TYPE = "application/cbor";
+    public static final String SMILE_CONTENT_TYPE = "application/x-jackson-smile";
+
+    // Shared so that warm-up traffic primes the same deserializer caches as live traffic
+    private static final ObjectMapper objectMapper = withLimits(new ObjectMapper());
+    private static final ObjectMapper cborMapper = withLimits(new CBORMapper());
+    private static final ObjectMapper smileMapper = withLimits(new SmileMapper());
+
+    /** Charged for a body of unknown length: the server's maximum request size. */
+    static final long MAX_BODY_BYTES = 1_048_576L;
+
     private final AuditLogService auditLogService;
-    private final ObjectMapper objectMapper;
+    private final MemoryBudget memoryBudget;
+    private final ObjectReader jsonReader;
+    private final ObjectReader cborReader;
+    private final ObjectReader smileReader;
 
     private static final int MAX_METADATA_KEYS = 50;
     private static final int MAX_ERROR_KEYS = 20;
 
     public AuditHandler(AuditLogService auditLogService) {
+        this(auditLogService, null);
+    }
+
+    /** With a schema registry, metadata of event types that have a schema is validated while it is parsed. */
+    public AuditHandler(AuditLogService auditLogService, SchemaRegistry schemaRegistry) {
+        this(auditLogService, schemaRegistry, null);
+    }
+
+    /** With a memory budget, every event is admitted against it before its body is read. */
+    public AuditHandler(AuditLogService auditLogService, SchemaRegistry schemaRegistry, MemoryBudget memoryBudget) {
         this.auditLogService = auditLogService;
-        this.objectMapper = new ObjectMapper();
-        objectMapper.getFactory().setStreamReadConstraints(
+        this.memoryBudget = memoryBudget;
+        this.jsonReader = readerFor(objectMapper, schemaRegistry);
+        this.cborReader = readerFor(cborMapper, schemaRegistry);
+        this.smileReader = readerFor(smileMapper, schemaRegistry);
+    }
+
+    private static ObjectReader readerFor(ObjectMapper mapper, SchemaRegistry schemaRegistry) {
+        ObjectReader reader = mapper.readerFor(AuditEvent.class);
+        return schemaRegistry == null ? reader : reader.withAttribute(SchemaRegistry.class, schemaRegistry);
+    }
+
+    private static ObjectMapper withLimits(ObjectMapper mapper) {
+        mapper.getFactory().setStreamReadConstraints(
             StreamReadConstraints.builder()
                 .maxNestingDepth(10)
                 .maxStringLength(10_240) // 10KB
                 .build()
         );
+        return mapper;
     }
 
     public void handle(Context ctx) {
+        MemoryBudget.Charge charge = admit(ctx);
+        ObjectReader binaryReader = binaryReaderFor(ctx.contentType());
+        try {
+            if (binaryReader != null) {
+                process(binaryReader, ctx.bodyAsBytes(), ctx.header("Authorization"), ctx.header("X-Request-Id"),
+                    charge);
+            } else {
+                process(ctx.body(), ctx.header("Authorization"), ctx.header("X-Request-Id"), charge);
+            }
+        } catch (RuntimeException e) {
+            // Covers failures reading the body; releasing an already released charge is a no-op
+            release(charge);
+            throw e;
+        }
+
+        ctx.status(202);
+        ctx.json(Map.of("status", "accepted"));
+    }
+
+    public void process(String body, String authHeader, String requestIdHeader) {
+        process(body, authHeader, requestIdHeader, admit(utf8Length(body)));
+    }
+
+    private void process(String body, String authHeader, String requestIdHeader, MemoryBudget.Charge charge) {
         AuditEvent event;
         try {
-            event = objectMapper.readValue(ctx.body(), AuditEvent.class);
+            event = jsonReader.readValue(body);
+        } catch (SchemaViolationException e) {
+            release(charge);
+            throw new BadRequestResponse(e.getMessage());
         } catch (Exception e) {
+            release(charge);
             throw new BadRequestResponse("Invalid JSON: " + e.getMessage());
         }
+        validateAndLog(event, authHeader, requestIdHeader, charge);
+    }
+
+    /** Decodes a raw body according to its content type (JSON unless CBOR or Smile), then validates and logs it. */
+    public void process(byte[] body, String contentType, String authHeader, String requestIdHeader) {
+        process(body, contentType, authHeader, requestIdHeader, admit(body.length));
+    }
+
+    /** As above, for a body already admitted with {@code charge}, which this takes over. */
+    public void process(byte[] body, String contentType, String authHeader, String requestIdHeader,
+                        MemoryBudget.Charge charge) {
+        ObjectReader binaryReader = binaryReaderFor(contentType);
+        process(binaryReader != null ? binaryReader : jsonReader, body, authHeader, requestIdHeader, charge);
+    }
+
+    /**
+     * Reserves the budget for a request before its body is read, charging the maximum body size when
+     * the length is not declared. Null without a budget; 503 with {@code Retry-After} when it is spent.
+     */
+    public MemoryBudget.Charge admit(Context ctx) {
+        try {
+            return admit(ctx.contentLength() >= 0 ? ctx.contentLength() : MAX_BODY_BYTES);
+        } catch (ServiceUnavailableResponse e) {
+            ctx.header("Retry-After", "1");
+            throw e;
+        }
+    }
+
+    /** The UTF-8 encoded size of {@code text}, which the budget is sized in, without encoding it. */
+    static long utf8Length(String text) {
+        long bytes = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                bytes += 1;
+            } else if (c < 0x800) {
+                bytes += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < text.length()
+                && Character.isLowSurrogate(text.charAt(i + 1))) {
+                bytes += 4;
+                i++;
+            } else {
+                bytes += 3;
+            }
+        }
+        return bytes;
+    }
+
+    private MemoryBudget.Charge admit(long bodyBytes) {
+        if (memoryBudget == null) {
+            return null;
+        }
+        MemoryBudget.Charge charge = memoryBudget.tryAcquire(MemoryBudget.cost(bodyBytes));
+        if (charge == null) {
+            throw new ServiceUnavailableResponse("Audit memory budget is exhausted");
+        }
+        return charge;
+    }
+
+    private void process(ObjectReader reader, byte[] body, String authHeader, String requestIdHeader,
+                         MemoryBudget.Charge charge) {
+        AuditEvent event;
+        try {
+            event = reader.readValue(body);
+        } catch (SchemaViolationException e) {
+            release(charge);
+            throw new BadRequestResponse(e.getMessage());
+        } catch (Exception e) {
+            release(charge);
+            throw new BadRequestResponse("Invalid " + reader.getFactory().getFormatName() + ": " + e.getMessage());
+        }
+        validateAndLog(event, authHeader, requestIdHeader, charge);
+    }
+
+    private void validateAndLog(AuditEvent event, String authHeader, String requestIdHeader,
+                                MemoryBudget.Charge charge) {
+        try {
+            validate(event);
+        } catch (BadRequestResponse e) {
+            release(charge);
+            throw e;
+        }
+        if (charge == null) {
+            auditLogService.logEvent(event, authHeader, requestIdHeader);
+        } else {
+            auditLogService.logEvent(event, authHeader, requestIdHeader, charge);
+        }
+    }
+
+    private static void release(MemoryBudget.Charge charge) {
+        if (charge != null) {
+            charge.release();
+        }
+    }
 
+    private static void validate(AuditEvent event) {
+        if (event == null) {
+            throw new BadRequestResponse("event_type is required");
+        }
         if (event.metadata() != null && event.metadata().size() > MAX_METADATA_KEYS) {
             throw new BadRequestResponse("metadata must not exceed " + MAX_METADATA_KEYS + " keys");
         }
@@ -46,13 +215,21 @@ public class AuditHandler {
         if (event.eventType() == null || event.eventType().isBlank()) {
             throw new BadRequestResponse("event_type is required");
         }
+    }
 
-        String authHeader = ctx.header("Authorization");
-        String requestIdHeader = ctx.header("X-Request-Id");
-
-        auditLogService.logEvent(event, authHeader, requestIdHeader);
-
-        ctx.status(202);
-        ctx.json(Map.of("status", "accepted"));
+    /** The binary reader for a CBOR or Smile content type, or null to parse the body as JSON. */
+    private ObjectReader binaryReaderFor(String contentType) {
+        if (contentType == null) {
+            return null;
+        }
+        int parameters = contentType.indexOf(';');
+        String mediaType = (parameters >= 0 ? contentType.substring(0, parameters) : contentType).trim();
+        if (CBOR_CONTENT_TYPE.equalsIgnoreCase(mediaType)) {
+            return cborReader;
+        }
+        if (SMILE_CONTENT_TYPE.equalsIgnoreCase(mediaType)) {
+            return smileReader;
+        }
+        return null;
     }
 }
@@ -0,0 +1,233 @@
+package edu.harvard.dbmi.avillach.logging.handler;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.javalin.http.BadRequestResponse;
+import io.javalin.http.ServiceUnavailableResponse;
+import io.javalin.websocket.WsCloseContext;
+import io.javalin.websocket.WsConfig;
+import io.javalin.websocket.WsConnectContext;
+import io.javalin.websocket.WsContext;
+import io.javalin.websocket.WsMessageContext;
+import org.eclipse.jetty.websocket.api.StatusCode;
+import org.eclipse.jetty.websocket.api.WriteCallback;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BooleanSupplier;
+
+/**
+ * WebSocket ingestion: one {@code AuditEvent} JSON per text frame, numbered from 1 per connection.
+ * Every {@code ackEvery} frames, and for the unacknowledged tail once a stream goes idle, it is sent
+ * {@code {"ack": n, "rejected": [...]}} meaning frames up to n were handled; those listed under
+ * {@code rejected} were not logged, every other one was handed to the audit pipeline. Acks are withheld
+ * while {@code backpressured} reports the output pipeline as saturated, so producers that bound their
+ * unacknowledged window slow down.
+ *
+ * <p>Replies are sent without blocking, so a client that stops reading cannot stall the shared ack
+ * thread or its own frame thread; once {@link #MAX_PENDING_SENDS} replies are queued for it, the
+ * stream is closed. An ack lists at most {@link #MAX_LISTED_REJECTIONS} rejected frames and counts
+ * the rest under {@code rejected_unlisted}; each rejection was also reported when it happened.
+ */
+public class AuditStreamHandler {
+
+    private static final Logger log = LoggerFactory.getLogger(AuditStreamHandler.class);
+    static final long ACK_FLUSH_MILLIS = 50;
+    static final long IDLE_ACK_NANOS = TimeUnit.MILLISECONDS.toNanos(200);
+    static final int MAX_PENDING_SENDS = 256;
+    static final int MAX_LISTED_REJECTIONS = 1024;
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final AuditHandler auditHandler;
+    private final int ackEvery;
+    private final BooleanSupplier backpressured;
+    private final Map<String, Stream> streams = new ConcurrentHashMap<>();
+
+    private final LongAdder frames = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder acksSent = new LongAdder();
+    private final LongAdder acksWithheld = new LongAdder();
+
+    private ScheduledExecutorService ackFlusher;
+
+    public AuditStreamHandler(AuditHandler auditHandler, int ackEvery, BooleanSupplier backpressured) {
+        this.auditHandler = auditHandler;
+        this.ackEvery = ackEvery;
+        this.backpressured = backpressured;
+    }
+
+    public void configure(WsConfig ws) {
+        ws.onConnect(this::onConnect);
+        ws.onMessage(this::onMessage);
+        ws.onClose(this::onClose);
+        ws.onError(ctx -> streams.remove(ctx.sessionId()));
+    }
+
+    public synchronized void start() {
+        if (ackFlusher != null) {
+            return;
+        }
+        ackFlusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "audit-stream-ack");
+            t.setDaemon(true);
+            return t;
+        });
+        ackFlusher.scheduleWithFixedDelay(this::flushAcks, ACK_FLUSH_MILLIS, ACK_FLUSH_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stop() {
+        if (ackFlusher != null) {
+            ackFlusher.shutdownNow();
+            ackFlusher = null;
+        }
+    }
+
+    public Map<String, Object> metrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("open_streams", streams.size());
+        metrics.put("frames", frames.sum());
+        metrics.put("rejected", rejected.sum());
+        metrics.put("acks_sent", acksSent.sum());
+        metrics.put("acks_withheld", acksWithheld.sum());
+        return metrics;
+    }
+
+    private void onConnect(WsConnectContext ctx) {
+        // The upgrade request's Authorization header applies to every event on the stream
+        streams.put(ctx.sessionId(), new Stream(ctx, ctx.header("Authorization")));
+    }
+
+    private void onMessage(WsMessageContext ctx) {
+        Stream stream = streams.get(ctx.sessionId());
+        if (stream == null) {
+            return;
+        }
+        long sequence = ++stream.received;
+        frames.increment();
+        try {
+            auditHandler.process(ctx.message(), stream.authHeader, null);
+        } catch (BadRequestResponse | ServiceUnavailableResponse e) {
+            rejected.increment();
+            synchronized (stream) {
+                if (stream.rejected.size() < MAX_LISTED_REJECTIONS) {
+                    stream.rejected.add(sequence);
+                } else {
+                    stream.unlistedRejections++;
+                }
+            }
+            Map<String, Object> rejection = new LinkedHashMap<>();
+            rejection.put("rejected", sequence);
+            rejection.put("message", e.getMessage());
+            stream.send(rejection);
+        }
+        stream.lastFrameNanos = System.nanoTime();
+        stream.processed = sequence;
+        if (sequence - stream.acked >= ackEvery) {
+            ack(stream);
+        }
+    }
+
+    private void onClose(WsCloseContext ctx) {
+        Stream stream = streams.remove(ctx.sessionId());
+        if (stream != null && stream.processed > stream.acked) {
+            log.debug("Stream {} closed with frames {}..{} unacknowledged", ctx.sessionId(), stream.acked + 1, stream.processed);
+        }
+    }
+
+    void flushAcks() {
+        try {
+            long now = System.nanoTime();
+            for (Stream stream : streams.values()) {
+                long pending = stream.processed - stream.acked;
+                // Full windows whose ack was withheld, or a tail left over once the producer pauses
+                if (pending >= ackEvery || (pending > 0 && now - stream.lastFrameNanos >= IDLE_ACK_NANOS)) {
+                    ack(stream);
+                }
+            }
+        } catch (Exception e) {
+            log.warn("Audit stream ack flush failed", e);
+        }
+    }
+
+    private void ack(Stream stream) {
+        synchronized (stream) {
+            long processed = stream.processed;
+            if (processed <= stream.acked) {
+                return;
+            }
+            if (backpressured.getAsBoolean()) {
+                acksWithheld.increment();
+                return;
+            }
+            Map<String, Object> ack = new LinkedHashMap<>();
+            ack.put("ack", processed);
+            if (!stream.rejected.isEmpty()) {
+                // Recorded before processed advanced, so every entry is <= processed
+                ack.put("rejected", List.copyOf(stream.rejected));
+                stream.rejected.clear();
+            }
+            if (stream.unlistedRejections > 0) {
+                ack.put("rejected_unlisted", stream.unlistedRejections);
+                stream.unlistedRejections = 0;
+            }
+            stream.send(ack);
+            stream.acked = processed;
+            acksSent.increment();
+        }
+    }
+
+    private static final class Stream {
+        private final WsContext ctx;
+        private final String authHeader;
+        private long received;           // frame thread only
+        private volatile long processed;
+        private volatile long acked;
+        private volatile long lastFrameNanos;
+        private final List<Long> rejected = new ArrayList<>(); // guarded by this
+        private long unlistedRejections;                        // guarded by this
+        private final AtomicInteger pendingSends = new AtomicInteger();
+
+        private Stream(WsContext ctx, String authHeader) {
+            this.ctx = ctx;
+            this.authHeader = authHeader;
+        }
+
+        /** Queues {@code message} without waiting for the client; callers keep their own order. */
+        private synchronized void send(Object message) {
+            if (pendingSends.incrementAndGet() > MAX_PENDING_SENDS) {
+                pendingSends.decrementAndGet();
+                log.warn("Closing audit stream {}: client is not reading replies", ctx.sessionId());
+                ctx.closeSession(StatusCode.POLICY_VIOLATION, "Replies not read");
+                return;
+            }
+            String json;
+            try {
+                json = objectMapper.writeValueAsString(message);
+            } catch (JsonProcessingException e) {
+                pendingSends.decrementAndGet();
+                throw new IllegalStateException(e);
+            }
+            ctx.session.getRemote().sendString(json, new WriteCallback() {
+                @Override
+                public void writeSuccess() {
+                    pendingSends.decrementAndGet();
+                }
+
+                @Override
+                public void writeFailed(Throwable x) {
+                    pendingSends.decrementAndGet();
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package edu.harvard.dbmi.avillach.logging.handler;
+
+import edu.harvard.dbmi.avillach.logging.pipeline.MemoryBudget;
+import io.javalin.http.BadRequestResponse;
+import io.javalin.http.ContentType;
+import io.javalin.http.Context;
+import io.javalin.http.ServiceUnavailableResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Accept-then-process variant of {@code POST /audit}: copies the raw body and headers into a bounded
+ * queue and answers 202 immediately. Workers then parse, validate and log through
+ * {@link AuditHandler#process(byte[], String, String, String)}; events that fail validation are
+ * counted and logged instead of producing a 400. A full queue answers 503 so producers retry.
+ */
+public class DeferredAuditHandler {
+
+    private static final Logger log = LoggerFactory.getLogger(DeferredAuditHandler.class);
+    private static final String ACCEPTED_BODY = "{\"status\":\"accepted\"}";
+
+    private final AuditHandler auditHandler;
+    private final int queueCapacity;
+    private final ThreadPoolExecutor workers;
+
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder processed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder queueFull = new LongAdder();
+
+    public DeferredAuditHandler(AuditHandler auditHandler, int queueCapacity, int workerCount) {
+        this.auditHandler = auditHandler;
+        this.queueCapacity = queueCapacity;
+        AtomicInteger workerIds = new AtomicInteger();
+        this.workers = new ThreadPoolExecutor(workerCount, workerCount, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(queueCapacity), r -> {
+                Thread t = new Thread(r, "audit-accept-" + workerIds.getAndIncrement());
+                t.setDaemon(true);
+                return t;
+            });
+    }
+
+    public void handle(Context ctx) {
+        // The charge covers the body while it waits in the queue, and then the event it becomes
+        MemoryBudget.Charge charge = auditHandler.admit(ctx);
+        byte[] body;
+        try {
+            body = ctx.bodyAsBytes();
+        } catch (RuntimeException e) {
+            release(charge);
+            throw e;
+        }
+        if (body.length == 0) {
+            release(charge);
+            throw new BadRequestResponse("Request body is empty");
+        }
+        String contentType = ctx.contentType();
+        String authHeader = ctx.header("Authorization");
+        String requestIdHeader = ctx.header("X-Request-Id");
+        try {
+            workers.execute(() -> process(body, contentType, authHeader, requestIdHeader, charge));
+        } catch (RejectedExecutionException e) {
+            release(charge);
+            queueFull.increment();
+            ctx.header("Retry-After", "1");
+            throw new ServiceUnavailableResponse("Audit queue is full");
+        }
+        accepted.increment();
+
+        ctx.status(202);
+        ctx.contentType(ContentType.APPLICATION_JSON);
+        ctx.result(ACCEPTED_BODY);
+    }
+
+    /** Finishes queued events; called on shutdown after the server stops accepting requests. */
+    public void stop() {
+        workers.shutdown();
+        try {
+            if (!workers.awaitTermination(10, TimeUnit.SECONDS)) {
+                log.warn("Accepted audit events still queued after 10s: {}", workers.getQueue().size());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public Map<String, Object> metrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("depth", workers.getQueue().size());
+        metrics.put("capacity", queueCapacity);
+        metrics.put("accepted", accepted.sum());
+        metrics.put("processed", processed.sum());
+        metrics.put("rejected", rejected.sum());
+        metrics.put("queue_full", queueFull.sum());
+        return metrics;
+    }
+
+    private void process(byte[] body, String contentType, String authHeader, String requestIdHeader,
+                         MemoryBudget.Charge charge) {
+        try {
+            auditHandler.process(body, contentType, authHeader, requestIdHeader, charge);
+            processed.increment();
+        } catch (BadRequestResponse e) {
+            rejected.increment();
+            log.error("Rejected accepted audit event (request_id header {}): {}", requestIdHeader, e.getMessage());
+        } catch (Exception e) {
+            rejected.increment();
+            log.error("Failed to process accepted audit event", e);
+        }
+    }
+
+    private static void release(MemoryBudget.Charge charge) {
+        if (charge != null) {
+            charge.release();
+        }
+    }
+}
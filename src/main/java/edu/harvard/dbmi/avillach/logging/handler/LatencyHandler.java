@@ -0,0 +1,17 @@
+package edu.harvard.dbmi.avillach.logging.handler;
+
+import edu.harvard.dbmi.avillach.logging.metrics.RouteLatencyAggregator;
+import io.javalin.http.Context;
+
+public class LatencyHandler {
+
+    private final RouteLatencyAggregator aggregator;
+
+    public LatencyHandler(RouteLatencyAggregator aggregator) {
+        this.aggregator = aggregator;
+    }
+
+    public void handle(Context ctx) {
+        ctx.json(aggregator.snapshot());
+    }
+}
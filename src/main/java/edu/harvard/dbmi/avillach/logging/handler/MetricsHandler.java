@@ -0,0 +1,17 @@
+package edu.harvard.dbmi.avillach.logging.handler;
+
+import edu.harvard.dbmi.avillach.logging.metrics.MetricsRegistry;
+import io.javalin.http.Context;
+
+public class MetricsHandler {
+
+    private final MetricsRegistry metricsRegistry;
+
+    public MetricsHandler(MetricsRegistry metricsRegistry) {
+        this.metricsRegistry = metricsRegistry;
+    }
+
+    public void handle(Context ctx) {
+        ctx.json(metricsRegistry.snapshot());
+    }
+}
@@ -0,0 +1,20 @@
+package edu.harvard.dbmi.avillach.logging.handler;
+
+import edu.harvard.dbmi.avillach.logging.model.ReadinessStatus;
+import edu.harvard.dbmi.avillach.logging.service.ReadinessService;
+import io.javalin.http.Context;
+
+public class ReadinessHandler {
+
+    private final ReadinessService readinessService;
+
+    public ReadinessHandler(ReadinessService readinessService) {
+        this.readinessService = readinessService;
+    }
+
+    public void handle(Context ctx) {
+        ReadinessStatus status = readinessService.current();
+        ctx.status(status.isReady() ? 200 : 503);
+        ctx.json(status);
+    }
+}
@@ -0,0 +1,28 @@
+package edu.harvard.dbmi.avillach.logging.handler;
+
+import edu.harvard.dbmi.avillach.logging.metrics.TrafficSketches;
+import io.javalin.http.BadRequestResponse;
+import io.javalin.http.Context;
+
+public class SketchHandler {
+
+    private static final int DEFAULT_TOP = 10;
+
+    private final TrafficSketches sketches;
+
+    public SketchHandler(TrafficSketches sketches) {
+        this.sketches = sketches;
+    }
+
+    public void handle(Context ctx) {
+        String window = ctx.queryParamAsClass("window", String.class).getOrDefault("5m");
+        if (!sketches.hasWindow(window)) {
+            throw new BadRequestResponse("window must be one of 5m, 24h");
+        }
+        int top = ctx.queryParamAsClass("top", Integer.class)
+            .check(n -> n >= 1 && n <= TrafficSketches.TOP_K_CAPACITY,
+                "top must be between 1 and " + TrafficSketches.TOP_K_CAPACITY)
+            .getOrDefault(DEFAULT_TOP);
+        ctx.json(sketches.snapshot(window, top));
+    }
+}
@@ -0,0 +1,255 @@
+package edu.harvard.dbmi.avillach.logging.listener;
+
+import edu.harvard.dbmi.avillach.logging.handler.AuditHandler;
+import io.javalin.http.BadRequestResponse;
+import io.javalin.http.ServiceUnavailableResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Best-effort UDP ingestion. Each datagram is {@code <tag>\n<AuditEvent JSON>}, where the tag is
+ * the unpadded base64url HMAC-SHA256 of the JSON bytes keyed with the API key. One thread
+ * receives; a small fixed pool verifies, parses and logs. Datagrams are dropped, and counted,
+ * when the pool's queue is full or the kernel socket buffer overflows.
+ */
+public class UdpListener {
+
+    private static final Logger log = LoggerFactory.getLogger(UdpListener.class);
+
+    static final int MAX_DATAGRAM_BYTES = 65_507;
+    static final int QUEUE_CAPACITY = 4096;
+    private static final int RECEIVE_BUFFER_BYTES = 4 * 1024 * 1024;
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+    private static final int TAG_LENGTH = 43; // base64url of 32 bytes, no padding
+    private static final List<Path> PROC_NET_UDP = List.of(Path.of("/proc/net/udp"), Path.of("/proc/net/udp6"));
+
+    private final int port;
+    private final int workers;
+    private final SecretKeySpec key;
+    private final AuditHandler auditHandler;
+    private final ThreadLocal<Mac> macs;
+
+    private final LongAdder received = new LongAdder();
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder authFailures = new LongAdder();
+    private final LongAdder parseFailures = new LongAdder();
+    private final LongAdder overBudget = new LongAdder();
+    private final LongAdder queueDropped = new LongAdder();
+
+    private volatile boolean running;
+    private DatagramChannel channel;
+    private Thread receiver;
+    private ThreadPoolExecutor pool;
+
+    public UdpListener(int port, int workers, String apiKey, AuditHandler auditHandler) {
+        if (workers < 1) {
+            throw new IllegalArgumentException("workers must be at least 1");
+        }
+        this.port = port;
+        this.workers = workers;
+        this.key = new SecretKeySpec(apiKey.getBytes(StandardCharsets.UTF_8), HMAC_ALGORITHM);
+        this.auditHandler = auditHandler;
+        this.macs = ThreadLocal.withInitial(this::newMac);
+    }
+
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        try {
+            channel = DatagramChannel.open();
+            channel.setOption(StandardSocketOptions.SO_RCVBUF, RECEIVE_BUFFER_BYTES);
+            channel.bind(new InetSocketAddress(port));
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot bind UDP_PORT " + port, e);
+        }
+        AtomicInteger workerIds = new AtomicInteger();
+        pool = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(QUEUE_CAPACITY), runnable -> {
+                Thread thread = new Thread(runnable, "audit-udp-" + workerIds.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            });
+        running = true;
+        receiver = new Thread(this::receiveLoop, "audit-udp-receive");
+        receiver.setDaemon(true);
+        receiver.start();
+        log.info("Listening for UDP audit events on port {}", localPort());
+    }
+
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        try {
+            channel.close();
+            receiver.join();
+            pool.shutdown();
+            if (!pool.awaitTermination(5, TimeUnit.SECONDS)) {
+                log.warn("UDP workers did not finish within 5s; {} datagrams abandoned", pool.getQueue().size());
+            }
+        } catch (IOException e) {
+            log.warn("Error closing UDP channel", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public int localPort() {
+        try {
+            return ((InetSocketAddress) channel.getLocalAddress()).getPort();
+        } catch (IOException e) {
+            return port;
+        }
+    }
+
+    public Map<String, Object> metrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("received", received.sum());
+        metrics.put("accepted", accepted.sum());
+        metrics.put("auth_failures", authFailures.sum());
+        metrics.put("parse_failures", parseFailures.sum());
+        metrics.put("over_budget", overBudget.sum());
+        metrics.put("queue_dropped", queueDropped.sum());
+        metrics.put("kernel_dropped", running ? kernelDrops(localPort()) : -1L);
+        return metrics;
+    }
+
+    private void receiveLoop() {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(MAX_DATAGRAM_BYTES);
+        while (running) {
+            try {
+                buffer.clear();
+                channel.receive(buffer);
+                buffer.flip();
+                byte[] datagram = new byte[buffer.remaining()];
+                buffer.get(datagram);
+                received.increment();
+                pool.execute(() -> handle(datagram));
+            } catch (RejectedExecutionException e) {
+                queueDropped.increment();
+            } catch (ClosedChannelException e) {
+                return;
+            } catch (IOException e) {
+                log.warn("UDP receive failed", e);
+            }
+        }
+    }
+
+    void handle(byte[] datagram) {
+        int separator = indexOf(datagram, (byte) '\n');
+        if (separator != TAG_LENGTH || !verify(datagram, separator)) {
+            authFailures.increment();
+            return;
+        }
+        String body = new String(datagram, separator + 1, datagram.length - separator - 1, StandardCharsets.UTF_8);
+        try {
+            auditHandler.process(body, null, null);
+            accepted.increment();
+        } catch (BadRequestResponse e) {
+            parseFailures.increment();
+        } catch (ServiceUnavailableResponse e) {
+            overBudget.increment();
+        }
+    }
+
+    private boolean verify(byte[] datagram, int separator) {
+        byte[] provided;
+        try {
+            provided = Base64.getUrlDecoder().decode(Arrays.copyOfRange(datagram, 0, separator));
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+        Mac mac = macs.get();
+        mac.update(datagram, separator + 1, datagram.length - separator - 1);
+        return MessageDigest.isEqual(mac.doFinal(), provided);
+    }
+
+    /** Tag a datagram body the way producers must: base64url(HMAC-SHA256(apiKey, json)) + '\n' + json. */
+    public static byte[] sign(String apiKey, String json) {
+        try {
+            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(new SecretKeySpec(apiKey.getBytes(StandardCharsets.UTF_8), HMAC_ALGORITHM));
+            byte[] body = json.getBytes(StandardCharsets.UTF_8);
+            String tag = Base64.getUrlEncoder().withoutPadding().encodeToString(mac.doFinal(body));
+            return (tag + "\n" + json).getBytes(StandardCharsets.UTF_8);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(HMAC_ALGORITHM + " unavailable", e);
+        }
+    }
+
+    private Mac newMac() {
+        try {
+            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(key);
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(HMAC_ALGORITHM + " unavailable", e);
+        }
+    }
+
+    private static int indexOf(byte[] bytes, byte value) {
+        for (int i = 0; i < bytes.length; i++) {
+            if (bytes[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /** Socket-buffer overflow drops for sockets bound to the port, or -1 where /proc is unavailable. */
+    private static long kernelDrops(int port) {
+        long drops = -1;
+        for (Path table : PROC_NET_UDP) {
+            try {
+                long tableDrops = kernelDrops(Files.readAllLines(table), port);
+                drops = Math.max(drops, 0) + tableDrops;
+            } catch (IOException e) {
+                // not Linux, or no IPv6
+            }
+        }
+        return drops;
+    }
+
+    static long kernelDrops(List<String> procNetUdp, int port) {
+        long drops = 0;
+        for (String line : procNetUdp.subList(Math.min(1, procNetUdp.size()), procNetUdp.size())) {
+            String[] fields = line.trim().split("\\s+");
+            if (fields.length < 13) {
+                continue;
+            }
+            String localAddress = fields[1];
+            int localPort = Integer.parseInt(localAddress.substring(localAddress.indexOf(':') + 1), 16);
+            if (localPort == port) {
+                drops += Long.parseLong(fields[fields.length - 1]);
+            }
+        }
+        return drops;
+    }
+}
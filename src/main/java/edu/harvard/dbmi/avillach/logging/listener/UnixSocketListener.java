@@ -0,0 +1,90 @@
+package edu.harvard.dbmi.avillach.logging.listener;
+
+import org.eclipse.jetty.server.Connector;
+import org.eclipse.jetty.server.HttpConfiguration;
+import org.eclipse.jetty.server.HttpConnectionFactory;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.unixdomain.server.UnixDomainServerConnector;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+
+/**
+ * Adds a Unix domain socket connector next to Javalin's TCP connector, so co-located producers
+ * reach the same routes and middleware without going through the loopback TCP stack.
+ */
+public class UnixSocketListener {
+
+    private static final Logger log = LoggerFactory.getLogger(UnixSocketListener.class);
+
+    private final Path socketPath;
+
+    public UnixSocketListener(Path socketPath) {
+        this.socketPath = socketPath;
+    }
+
+    /**
+     * Must run before the server starts (e.g. from {@code serverStarting}), after Javalin has
+     * created its default connector, whose HTTP configuration is reused.
+     */
+    public void attach(Server server) {
+        prepareSocketPath();
+        UnixDomainServerConnector connector =
+            new UnixDomainServerConnector(server, new HttpConnectionFactory(httpConfiguration(server)));
+        connector.setUnixDomainPath(socketPath);
+        server.addConnector(connector);
+        log.info("Listening on unix socket {}", socketPath);
+    }
+
+    public Path socketPath() {
+        return socketPath;
+    }
+
+    private void prepareSocketPath() {
+        try {
+            if (Files.isRegularFile(socketPath, LinkOption.NOFOLLOW_LINKS) || Files.isDirectory(socketPath)) {
+                throw new IllegalStateException("UNIX_SOCKET_PATH " + socketPath + " exists and is not a socket");
+            }
+            if (Files.exists(socketPath, LinkOption.NOFOLLOW_LINKS)) {
+                if (isLive(socketPath)) {
+                    throw new IllegalStateException("UNIX_SOCKET_PATH " + socketPath
+                        + " is in use by another running process");
+                }
+                // A socket file left behind by an unclean shutdown would make the bind fail
+                Files.delete(socketPath);
+            }
+            Path parent = socketPath.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot prepare UNIX_SOCKET_PATH " + socketPath, e);
+        }
+    }
+
+    /** Whether something accepts connections on {@code path}; a stale socket file refuses them. */
+    private static boolean isLive(Path path) {
+        try (SocketChannel channel = SocketChannel.open(StandardProtocolFamily.UNIX)) {
+            return channel.connect(UnixDomainSocketAddress.of(path));
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static HttpConfiguration httpConfiguration(Server server) {
+        for (Connector connector : server.getConnectors()) {
+            HttpConnectionFactory factory = connector.getConnectionFactory(HttpConnectionFactory.class);
+            if (factory != null) {
+                return factory.getHttpConfiguration();
+            }
+        }
+        return new HttpConfiguration();
+    }
+}
@@ -0,0 +1,69 @@
+package edu.harvard.dbmi.avillach.logging.metrics;
+
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.Appender;
+import ch.qos.logback.core.AsyncAppenderBase;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reads the fill level of a logback async appender attached to a logger, e.g.
+ * {@code ASYNC_AUDIT_FILE} on {@code AUDIT}. Reports an empty queue when the appender is absent
+ * (tests, custom logback configurations).
+ */
+public class AsyncQueueProbe {
+
+    private final String loggerName;
+    private final String appenderName;
+    private volatile AsyncAppenderBase<ILoggingEvent> cached;
+
+    public AsyncQueueProbe(String loggerName, String appenderName) {
+        this.loggerName = loggerName;
+        this.appenderName = appenderName;
+    }
+
+    public static AsyncQueueProbe auditFile() {
+        return new AsyncQueueProbe("AUDIT", "ASYNC_AUDIT_FILE");
+    }
+
+    public int depth() {
+        AsyncAppenderBase<ILoggingEvent> appender = find();
+        return appender == null ? 0 : appender.getNumberOfElementsInQueue();
+    }
+
+    public int capacity() {
+        AsyncAppenderBase<ILoggingEvent> appender = find();
+        return appender == null ? 0 : appender.getQueueSize();
+    }
+
+    public int remainingCapacity() {
+        AsyncAppenderBase<ILoggingEvent> appender = find();
+        return appender == null ? Integer.MAX_VALUE : appender.getRemainingCapacity();
+    }
+
+    public double fillRatio() {
+        AsyncAppenderBase<ILoggingEvent> appender = find();
+        if (appender == null || appender.getQueueSize() == 0) {
+            return 0.0;
+        }
+        return (double) appender.getNumberOfElementsInQueue() / appender.getQueueSize();
+    }
+
+    /** Looks the appender up again only once the cached one has been stopped, e.g. by a reconfiguration. */
+    private AsyncAppenderBase<ILoggingEvent> find() {
+        AsyncAppenderBase<ILoggingEvent> appender = cached;
+        if (appender != null && appender.isStarted()) {
+            return appender;
+        }
+        appender = lookup();
+        cached = appender;
+        return appender;
+    }
+
+    private AsyncAppenderBase<ILoggingEvent> lookup() {
+        if (!(LoggerFactory.getLogger(loggerName) instanceof ch.qos.logback.classic.Logger logger)) {
+            return null;
+        }
+        Appender<ILoggingEvent> appender = logger.getAppender(appenderName);
+        return appender instanceof AsyncAppenderBase<ILoggingEvent> async ? async : null;
+    }
+}
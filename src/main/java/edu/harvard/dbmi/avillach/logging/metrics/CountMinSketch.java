@@ -0,0 +1,53 @@
+package edu.harvard.dbmi.avillach.logging.metrics;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Lock-free count-min sketch: {@code depth} rows of {@code width} atomic counters. A key's estimate
+ * never undercounts and overcounts by at most about e/width of the total, with probability
+ * 1 - e^-depth. Updates and estimates touch exactly one counter per row.
+ */
+public class CountMinSketch {
+
+    private final int depth;
+    private final int width;
+    private final AtomicIntegerArray counters;
+
+    public CountMinSketch(int depth, int width) {
+        this.depth = depth;
+        this.width = width;
+        this.counters = new AtomicIntegerArray(depth * width);
+    }
+
+    /** Counts one occurrence and returns the key's new estimate. */
+    public int add(String key) {
+        long hash = HyperLogLog.hash(key);
+        int estimate = Integer.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, counters.incrementAndGet(index(hash, row)));
+        }
+        return estimate;
+    }
+
+    public int estimate(String key) {
+        long hash = HyperLogLog.hash(key);
+        int estimate = Integer.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, counters.get(index(hash, row)));
+        }
+        return estimate;
+    }
+
+    public void reset() {
+        for (int i = 0; i < counters.length(); i++) {
+            counters.set(i, 0);
+        }
+    }
+
+    /** Row-specific index from two halves of one 64-bit hash (Kirsch-Mitzenmacher double hashing). */
+    private int index(long hash, int row) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        return row * width + Math.floorMod(h1 + row * h2, width);
+    }
+}
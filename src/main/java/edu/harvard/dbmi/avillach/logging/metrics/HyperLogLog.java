@@ -0,0 +1,92 @@
+package edu.harvard.dbmi.avillach.logging.metrics;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Lock-free HyperLogLog distinct counter with 2^precision registers (precision 10: 1024 registers,
+ * about 3% standard error). Registers only ever grow via compare-and-set, and sketches of the same
+ * precision merge by taking the per-register maximum.
+ */
+public class HyperLogLog {
+
+    private final int precision;
+    private final AtomicIntegerArray registers;
+
+    public HyperLogLog(int precision) {
+        if (precision < 4 || precision > 16) {
+            throw new IllegalArgumentException("precision must be between 4 and 16");
+        }
+        this.precision = precision;
+        this.registers = new AtomicIntegerArray(1 << precision);
+    }
+
+    public void add(String value) {
+        long hash = hash(value);
+        int index = (int) (hash >>> (64 - precision));
+        // The guard bit caps the rank at 64 - precision + 1
+        int rank = Long.numberOfLeadingZeros((hash << precision) | (1L << (precision - 1))) + 1;
+        int current;
+        while (rank > (current = registers.get(index))) {
+            if (registers.compareAndSet(index, current, rank)) {
+                return;
+            }
+        }
+    }
+
+    public void reset() {
+        for (int i = 0; i < registers.length(); i++) {
+            registers.set(i, 0);
+        }
+    }
+
+    public int[] newRegisters() {
+        return new int[registers.length()];
+    }
+
+    /** Merges this sketch into {@code target}, which must come from {@link #newRegisters()}. */
+    public void mergeInto(int[] target) {
+        for (int i = 0; i < target.length; i++) {
+            target[i] = Math.max(target[i], registers.get(i));
+        }
+    }
+
+    public long estimate() {
+        int[] snapshot = newRegisters();
+        mergeInto(snapshot);
+        return estimate(snapshot);
+    }
+
+    public static long estimate(int[] registers) {
+        int m = registers.length;
+        double sum = 0;
+        int zeros = 0;
+        for (int register : registers) {
+            sum += 1.0 / (1L << register);
+            if (register == 0) {
+                zeros++;
+            }
+        }
+        double alpha = 0.7213 / (1 + 1.079 / m);
+        double estimate = alpha * m * m / sum;
+        if (estimate <= 2.5 * m && zeros > 0) {
+            // Linear counting is more accurate while many registers are still empty
+            estimate = m * Math.log((double) m / zeros);
+        }
+        return Math.round(estimate);
+    }
+
+    /** FNV-1a over the UTF-16 chars, finished with the MurmurHash3 64-bit mixer. */
+    static long hash(String value) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            h ^= value.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
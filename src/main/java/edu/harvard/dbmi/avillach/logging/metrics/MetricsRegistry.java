@@ -0,0 +1,25 @@
+package edu.harvard.dbmi.avillach.logging.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Named metric sections served by {@code GET /metrics}. Each section is computed on demand from
+ * counters owned by the component that registered it.
+ */
+public class MetricsRegistry {
+
+    private final Map<String, Supplier<?>> sections = new ConcurrentHashMap<>();
+
+    public void register(String name, Supplier<?> section) {
+        sections.put(name, section);
+    }
+
+    public Map<String, Object> snapshot() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        sections.keySet().stream().sorted().forEach(name -> result.put(name, sections.get(name).get()));
+        return result;
+    }
+}
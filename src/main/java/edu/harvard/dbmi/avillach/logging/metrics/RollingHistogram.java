@@ -0,0 +1,44 @@
+package edu.harvard.dbmi.avillach.logging.metrics;
+
+/**
+ * A ring of {@link LatencyHistogram} slots covering a rolling window. Writers record into the
+ * current slot without locking; a single background thread calls {@link #rotate()} once per slot
+ * interval, clearing the oldest slot and making it current.
+ */
+public class RollingHistogram {
+
+    private final LatencyHistogram[] slots;
+    private volatile int current;
+
+    public RollingHistogram(int slotCount) {
+        if (slotCount < 1) {
+            throw new IllegalArgumentException("slotCount must be at least 1");
+        }
+        this.slots = new LatencyHistogram[slotCount];
+        for (int i = 0; i < slotCount; i++) {
+            slots[i] = new LatencyHistogram();
+        }
+    }
+
+    public void record(long value) {
+        slots[current].record(value);
+    }
+
+    public void rotate() {
+        int next = (current + 1) % slots.length;
+        slots[next].reset();
+        current = next;
+    }
+
+    public long[] snapshot() {
+        long[] counts = LatencyHistogram.newCounts();
+        for (LatencyHistogram slot : slots) {
+            slot.addTo(counts);
+        }
+        return counts;
+    }
+
+    public long valueAtPercentile(double percentile) {
+        return LatencyHistogram.valueAtPercentile(snapshot(), percentile);
+    }
+}
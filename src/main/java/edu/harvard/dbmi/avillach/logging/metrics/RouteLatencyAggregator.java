@@ -0,0 +1,152 @@
+package edu.harvard.dbmi.avillach.logging.metrics;
+
+import edu.harvard.dbmi.avillach.logging.pipeline.AuditObserver;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Rolling-window {@code duration} percentiles per (app, method, route, status class), where route is
+ * {@code url_template} when present and {@code url} otherwise. Each series is a {@link RollingHistogram},
+ * so recording is a map read plus one atomic increment. Once {@code maxSeries} series exist, events
+ * for new series go to a single overflow series; series with no samples left in the window are
+ * dropped at rotation, freeing their slot.
+ */
+public class RouteLatencyAggregator implements AuditObserver {
+
+    private static final Logger log = LoggerFactory.getLogger(RouteLatencyAggregator.class);
+    public static final String OVERFLOW_ROUTE = "_overflow";
+    static final int SLOTS = 5;
+
+    private final int maxSeries;
+    private final int windowSeconds;
+    private final Map<Series, RollingHistogram> series = new ConcurrentHashMap<>();
+    private final RollingHistogram overflow = new RollingHistogram(SLOTS);
+    private final LongAdder overflowedEvents = new LongAdder();
+
+    private ScheduledExecutorService rotator;
+
+    public RouteLatencyAggregator(int maxSeries, int windowSeconds) {
+        this.maxSeries = maxSeries;
+        this.windowSeconds = windowSeconds;
+    }
+
+    @Override
+    public void observe(Map<String, Object> fields) {
+        if (!(fields.get("duration") instanceof Number duration)) {
+            return;
+        }
+        Object route = fields.getOrDefault("url_template", fields.get("url"));
+        Series key = new Series(string(fields.get("app")), string(fields.get("method")), string(route),
+            statusClass(fields.get("status")));
+        RollingHistogram histogram = series.get(key);
+        if (histogram == null) {
+            if (series.size() >= maxSeries) {
+                overflowedEvents.increment();
+                histogram = overflow;
+            } else {
+                histogram = series.computeIfAbsent(key, k -> new RollingHistogram(SLOTS));
+            }
+        }
+        histogram.record(duration.longValue());
+    }
+
+    public synchronized void start() {
+        if (rotator != null) {
+            return;
+        }
+        rotator = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "route-latency-rotate");
+            t.setDaemon(true);
+            return t;
+        });
+        long slotMillis = TimeUnit.SECONDS.toMillis(windowSeconds) / SLOTS;
+        rotator.scheduleAtFixedRate(this::rotate, slotMillis, slotMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stop() {
+        if (rotator != null) {
+            rotator.shutdownNow();
+            rotator = null;
+        }
+    }
+
+    void rotate() {
+        try {
+            overflow.rotate();
+            // A sample racing with removal of an idle series can be lost; that series was idle a whole window
+            series.values().removeIf(histogram -> {
+                histogram.rotate();
+                return count(histogram.snapshot()) == 0;
+            });
+        } catch (Exception e) {
+            log.warn("Route latency rotation failed", e);
+        }
+    }
+
+    /** Series ordered by event count, busiest first, each with count and duration percentiles. */
+    public Map<String, Object> snapshot() {
+        List<Map<String, Object>> rows = new ArrayList<>();
+        series.forEach((key, histogram) -> addRow(rows, key, histogram));
+        addRow(rows, new Series(null, null, OVERFLOW_ROUTE, null), overflow);
+        rows.sort(Comparator.comparingLong((Map<String, Object> row) -> (long) row.get("count")).reversed());
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("window_seconds", windowSeconds);
+        result.put("max_series", maxSeries);
+        result.put("overflowed_events", overflowedEvents.sum());
+        result.put("series", rows);
+        return result;
+    }
+
+    private static void addRow(List<Map<String, Object>> rows, Series key, RollingHistogram histogram) {
+        long[] counts = histogram.snapshot();
+        long count = count(counts);
+        if (count == 0) {
+            return;
+        }
+        Map<String, Object> row = new LinkedHashMap<>();
+        row.put("app", key.app());
+        row.put("method", key.method());
+        row.put("route", key.route());
+        row.put("status_class", key.statusClass());
+        row.put("count", count);
+        row.put("p50", LatencyHistogram.valueAtPercentile(counts, 50.0));
+        row.put("p90", LatencyHistogram.valueAtPercentile(counts, 90.0));
+        row.put("p99", LatencyHistogram.valueAtPercentile(counts, 99.0));
+        row.put("max", LatencyHistogram.valueAtPercentile(counts, 100.0));
+        rows.add(row);
+    }
+
+    private static long count(long[] counts) {
+        long total = 0;
+        for (long c : counts) {
+            total += c;
+        }
+        return total;
+    }
+
+    private static String string(Object value) {
+        return value == null ? null : value.toString();
+    }
+
+    static String statusClass(Object status) {
+        if (status instanceof Number number && number.intValue() >= 100 && number.intValue() < 600) {
+            return number.intValue() / 100 + "xx";
+        }
+        return null;
+    }
+
+    private record Series(String app, String method, String route, String statusClass) {
+    }
+}
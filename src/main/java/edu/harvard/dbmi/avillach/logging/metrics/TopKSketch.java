@@ -0,0 +1,86 @@
+package edu.harvard.dbmi.avillach.logging.metrics;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Space-saving heavy-hitter sketch with a fixed number of counters. Keys are partitioned by hash over
+ * independently locked stripes, so concurrent writers rarely contend and stripes never hold the same
+ * key. Stripes are small (16 counters for 128 over 8 stripes), so a linear scan finds a key. When a stripe is full, its smallest counter is reassigned to the new key and that count is kept
+ * as the new key's possible overestimate ({@code error}).
+ */
+public class TopKSketch {
+
+    private final Stripe[] stripes;
+
+    public TopKSketch(int capacity, int stripeCount) {
+        this.stripes = new Stripe[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new Stripe(Math.max(1, capacity / stripeCount));
+        }
+    }
+
+    public void add(String key) {
+        int h = key.hashCode();
+        stripes[Math.floorMod(h ^ (h >>> 16), stripes.length)].add(key);
+    }
+
+    public void reset() {
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                Arrays.fill(stripe.keys, 0, stripe.size, null);
+                stripe.size = 0;
+            }
+        }
+    }
+
+    /** Adds each tracked key's {count, error} to {@code totals}. */
+    public void addTo(Map<String, long[]> totals) {
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                for (int i = 0; i < stripe.size; i++) {
+                    long[] total = totals.computeIfAbsent(stripe.keys[i], k -> new long[2]);
+                    total[0] += stripe.counts[i];
+                    total[1] += stripe.errors[i];
+                }
+            }
+        }
+    }
+
+    /** Parallel arrays rather than a map, so an entry costs its key plus three array slots. */
+    private static final class Stripe {
+        private final String[] keys;
+        private final long[] counts;
+        private final long[] errors;
+        private int size;
+
+        private Stripe(int capacity) {
+            this.keys = new String[capacity];
+            this.counts = new long[capacity];
+            this.errors = new long[capacity];
+        }
+
+        private synchronized void add(String key) {
+            int min = 0;
+            for (int i = 0; i < size; i++) {
+                if (keys[i].equals(key)) {
+                    counts[i]++;
+                    return;
+                }
+                if (counts[i] < counts[min]) {
+                    min = i;
+                }
+            }
+            if (size < keys.length) {
+                keys[size] = key;
+                counts[size] = 1;
+                errors[size] = 0;
+                size++;
+                return;
+            }
+            keys[min] = key;
+            errors[min] = counts[min];
+            counts[min]++;
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package edu.harvard.dbmi.avillach.logging.metrics;
+
+import edu.harvard.dbmi.avillach.logging.pipeline.AuditObserver;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Heavy hitters ({@link TopKSketch}) and distinct counts ({@link HyperLogLog}) for selected audit
+ * fields, such as {@code subject} or {@code src_ip}, over a short and a long rolling window. Each
+ * window is a ring of fixed-size slots, so memory does not grow with traffic; a query merges the
+ * slots of one window.
+ *
+ * <p>Keys longer than {@link #MAX_KEY_LENGTH} characters are shortened to a prefix plus a hash, so
+ * they stay distinct. A slot then holds at most 128 keys of about 110 bytes each (key and counters),
+ * about 14KB, plus 4KB of registers. With 29 slots (5 + 24), each tracked field costs at most about
+ * 530KB, and much less with short keys such as IP addresses.
+ */
+public class TrafficSketches implements AuditObserver {
+
+    private static final Logger log = LoggerFactory.getLogger(TrafficSketches.class);
+    public static final List<Window> WINDOWS = List.of(new Window("5m", 5, 60), new Window("24h", 24, 3600));
+    public static final int TOP_K_CAPACITY = 128;
+    static final int TOP_K_STRIPES = 8;
+    static final int HLL_PRECISION = 10;
+    static final int MAX_KEY_LENGTH = 48;
+    private static final int LABEL_HASH_LENGTH = 8;
+
+    private final List<String> fieldNames;
+    // window name -> field name -> ring
+    private final Map<String, Map<String, Ring>> rings = new LinkedHashMap<>();
+
+    private ScheduledExecutorService rotator;
+
+    public TrafficSketches(List<String> fieldNames) {
+        this.fieldNames = List.copyOf(fieldNames);
+        for (Window window : WINDOWS) {
+            Map<String, Ring> byField = new LinkedHashMap<>();
+            fieldNames.forEach(field -> byField.put(field, new Ring(window.slots())));
+            rings.put(window.name(), byField);
+        }
+    }
+
+    @Override
+    public void observe(Map<String, Object> fields) {
+        for (String fieldName : fieldNames) {
+            Object value = fields.get(fieldName);
+            if (value == null) {
+                continue;
+            }
+            String key = value.toString();
+            if (key.length() > MAX_KEY_LENGTH) {
+                key = label(key);
+            }
+            for (Map<String, Ring> byField : rings.values()) {
+                byField.get(fieldName).add(key);
+            }
+        }
+    }
+
+    /** The first characters of {@code key} and {@code ~} plus seven hex digits of its hash. */
+    static String label(String key) {
+        String hash = Integer.toHexString(key.hashCode() & 0x0fffffff);
+        return key.substring(0, MAX_KEY_LENGTH - LABEL_HASH_LENGTH) + "~" + "0".repeat(7 - hash.length()) + hash;
+    }
+
+    public synchronized void start() {
+        if (rotator != null) {
+            return;
+        }
+        rotator = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "traffic-sketch-rotate");
+            t.setDaemon(true);
+            return t;
+        });
+        for (Window window : WINDOWS) {
+            rotator.scheduleAtFixedRate(() -> rotate(window.name()),
+                window.slotSeconds(), window.slotSeconds(), TimeUnit.SECONDS);
+        }
+    }
+
+    public synchronized void stop() {
+        if (rotator != null) {
+            rotator.shutdownNow();
+            rotator = null;
+        }
+    }
+
+    void rotate(String windowName) {
+        try {
+            rings.get(windowName).values().forEach(Ring::rotate);
+        } catch (Exception e) {
+            log.warn("Traffic sketch rotation failed for window {}", windowName, e);
+        }
+    }
+
+    public boolean hasWindow(String windowName) {
+        return rings.containsKey(windowName);
+    }
+
+    /** Distinct count and the {@code top} heaviest keys per field for one window. */
+    public Map<String, Object> snapshot(String windowName, int top) {
+        Map<String, Object> perField = new LinkedHashMap<>();
+        rings.get(windowName).forEach((fieldName, ring) -> perField.put(fieldName, ring.snapshot(top)));
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("window", windowName);
+        result.put("fields", perField);
+        return result;
+    }
+
+    public record Window(String name, int slots, long slotSeconds) {
+    }
+
+    private static final class Ring {
+        private final TopKSketch[] topK;
+        private final HyperLogLog[] distinct;
+        private volatile int current;
+
+        private Ring(int slots) {
+            topK = new TopKSketch[slots];
+            distinct = new HyperLogLog[slots];
+            for (int i = 0; i < slots; i++) {
+                topK[i] = new TopKSketch(TOP_K_CAPACITY, TOP_K_STRIPES);
+                distinct[i] = new HyperLogLog(HLL_PRECISION);
+            }
+        }
+
+        private void add(String key) {
+            int slot = current;
+            topK[slot].add(key);
+            distinct[slot].add(key);
+        }
+
+        private void rotate() {
+            int next = (current + 1) % topK.length;
+            topK[next].reset();
+            distinct[next].reset();
+            current = next;
+        }
+
+        private Map<String, Object> snapshot(int top) {
+            Map<String, long[]> totals = new HashMap<>();
+            int[] registers = distinct[0].newRegisters();
+            for (int i = 0; i < topK.length; i++) {
+                topK[i].addTo(totals);
+                distinct[i].mergeInto(registers);
+            }
+            List<Map.Entry<String, long[]>> entries = new ArrayList<>(totals.entrySet());
+            entries.sort(Comparator.comparingLong((Map.Entry<String, long[]> e) -> e.getValue()[0]).reversed());
+
+            List<Map<String, Object>> heaviest = new ArrayList<>();
+            for (Map.Entry<String, long[]> entry : entries.subList(0, Math.min(top, entries.size()))) {
+                Map<String, Object> row = new LinkedHashMap<>();
+                row.put("key", entry.getKey());
+                row.put("count", entry.getValue()[0]);
+                row.put("error", entry.getValue()[1]);
+                heaviest.add(row);
+            }
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("distinct", HyperLogLog.estimate(registers));
+            result.put("top", heaviest);
+            return result;
+        }
+    }
+}
@@ -2,10 +2,13 @@ package edu.harvard.dbmi.avillach.logging.model;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import edu.harvard.dbmi.avillach.logging.schema.AuditEventDeserializer;
 
 import java.util.Map;
 
 @JsonIgnoreProperties(ignoreUnknown = true)
+@JsonDeserialize(using = AuditEventDeserializer.class)
 public record AuditEvent(
     @JsonProperty("event_type") String eventType,
     @JsonProperty("action") String action,
@@ -0,0 +1,18 @@
+package edu.harvard.dbmi.avillach.logging.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import java.util.List;
+import java.util.Map;
+
+public record ReadinessStatus(String status, List<String> reasons, Map<String, Object> checks) {
+
+    public static final String READY = "ready";
+    public static final String NOT_READY = "not_ready";
+    public static final String STARTING = "starting";
+
+    @JsonIgnore
+    public boolean isReady() {
+        return READY.equals(status);
+    }
+}
@@ -0,0 +1,166 @@
+package edu.harvard.dbmi.avillach.logging.pipeline;
+
+import edu.harvard.dbmi.avillach.logging.cache.BoundedLruCache;
+import edu.harvard.dbmi.avillach.logging.config.AppConfig;
+import edu.harvard.dbmi.avillach.logging.metrics.CountMinSketch;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Flags bursts such as one {@code subject} issuing hundreds of {@code DATA_EXPORT} events a minute.
+ * Events whose {@code event_type} has a threshold are counted per (key field value, event type) in a
+ * ring of count-min sketches covering a sliding window. When an estimate reaches the threshold, a
+ * synthetic {@code ANOMALY} event is written to the audit sink, at most once per key and event type
+ * per window. Estimates can only overcount, so a burst is never missed, but colliding keys can
+ * occasionally trip a threshold early.
+ */
+public class AnomalyDetector implements AuditObserver {
+
+    private static final Logger log = LoggerFactory.getLogger(AnomalyDetector.class);
+    public static final String ANOMALY_EVENT_TYPE = "ANOMALY";
+    static final int SLOTS = 4;
+    static final int SKETCH_DEPTH = 4;
+    static final int SKETCH_WIDTH = 4096;
+    static final int MAX_TRACKED_ALERTS = 10_000;
+
+    private final AppConfig config;
+    private final Map<String, Integer> thresholds;
+    private final List<String> keyFields;
+    private final int windowSeconds;
+    private final AuditSink sink;
+    private final CountMinSketch[] slots = new CountMinSketch[SLOTS];
+    private final BoundedLruCache<String, Boolean> alerted;
+    private volatile int current;
+
+    private final LongAdder counted = new LongAdder();
+    private final LongAdder alerts = new LongAdder();
+    private final LongAdder suppressed = new LongAdder();
+
+    private ScheduledExecutorService rotator;
+
+    public AnomalyDetector(AppConfig config, AuditSink sink) {
+        this.config = config;
+        this.thresholds = config.anomalies().thresholds();
+        this.keyFields = config.anomalies().keyFields();
+        this.windowSeconds = config.anomalies().windowSeconds();
+        this.sink = sink;
+        for (int i = 0; i < SLOTS; i++) {
+            slots[i] = new CountMinSketch(SKETCH_DEPTH, SKETCH_WIDTH);
+        }
+        this.alerted = new BoundedLruCache<>(MAX_TRACKED_ALERTS, Duration.ofSeconds(windowSeconds));
+    }
+
+    @Override
+    public void observe(Map<String, Object> fields) {
+        if (!(fields.get("event_type") instanceof String eventType)) {
+            return;
+        }
+        Integer threshold = thresholds.get(eventType);
+        if (threshold == null) {
+            return;
+        }
+        counted.increment();
+        int slot = current;
+        for (String keyField : keyFields) {
+            Object value = fields.get(keyField);
+            if (value == null) {
+                continue;
+            }
+            String key = keyField + '\u0000' + value + '\u0000' + eventType;
+            int estimate = slots[slot].add(key);
+            if (estimate < threshold) {
+                // Older slots only matter once the current one alone is below threshold
+                for (int i = 1; i < SLOTS && estimate < threshold; i++) {
+                    estimate += slots[(slot + i) % SLOTS].estimate(key);
+                }
+            }
+            if (estimate >= threshold) {
+                alert(key, keyField, value, eventType, estimate, threshold);
+            }
+        }
+    }
+
+    private void alert(String key, String keyField, Object value, String eventType, int estimate, int threshold) {
+        synchronized (alerted) {
+            if (alerted.get(key) != null) {
+                suppressed.increment();
+                return;
+            }
+            alerted.put(key, Boolean.TRUE);
+        }
+        alerts.increment();
+
+        Map<String, Object> anomaly = new LinkedHashMap<>();
+        anomaly.put("_time", Instant.now().toString());
+        anomaly.put("event_type", ANOMALY_EVENT_TYPE);
+        anomaly.put("action", "rate_threshold");
+        putIfNotNull(anomaly, "app", config.app());
+        putIfNotNull(anomaly, "platform", config.platform());
+        putIfNotNull(anomaly, "environment", config.environment());
+        putIfNotNull(anomaly, "hostname", config.hostname());
+        Map<String, Object> metadata = new LinkedHashMap<>();
+        metadata.put("key_field", keyField);
+        metadata.put("key", value);
+        metadata.put("observed_event_type", eventType);
+        metadata.put("estimated_count", estimate);
+        metadata.put("threshold", threshold);
+        metadata.put("window_seconds", windowSeconds);
+        anomaly.put("metadata", metadata);
+        sink.write(anomaly);
+    }
+
+    public synchronized void start() {
+        if (rotator != null) {
+            return;
+        }
+        rotator = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "anomaly-rotate");
+            t.setDaemon(true);
+            return t;
+        });
+        long slotMillis = TimeUnit.SECONDS.toMillis(windowSeconds) / SLOTS;
+        rotator.scheduleAtFixedRate(this::rotate, slotMillis, slotMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stop() {
+        if (rotator != null) {
+            rotator.shutdownNow();
+            rotator = null;
+        }
+    }
+
+    /** Clears the oldest slot and makes it current; slots are indexed newest-first from {@code current}. */
+    void rotate() {
+        try {
+            int next = Math.floorMod(current - 1, SLOTS);
+            slots[next].reset();
+            current = next;
+        } catch (Exception e) {
+            log.warn("Anomaly detector rotation failed", e);
+        }
+    }
+
+    public Map<String, Object> metrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("counted", counted.sum());
+        metrics.put("alerts", alerts.sum());
+        metrics.put("suppressed", suppressed.sum());
+        return metrics;
+    }
+
+    private static void putIfNotNull(Map<String, Object> map, String key, Object value) {
+        if (value != null) {
+            map.put(key, value);
+        }
+    }
+}
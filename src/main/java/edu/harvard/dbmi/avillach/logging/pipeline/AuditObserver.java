@@ -0,0 +1,12 @@
+package edu.harvard.dbmi.avillach.logging.pipeline;
+
+import java.util.Map;
+
+/**
+ * Read-only tap on assembled audit fields, e.g. for aggregation. Called on the writing thread after
+ * the event has been handed downstream, so implementations must be fast and must not modify the map.
+ */
+public interface AuditObserver {
+
+    void observe(Map<String, Object> fields);
+}
@@ -0,0 +1,12 @@
+package edu.harvard.dbmi.avillach.logging.pipeline;
+
+import java.util.Map;
+
+/**
+ * Receives fully assembled audit fields. Implementations either write them out or hand them to
+ * the next stage; they must not modify the map.
+ */
+public interface AuditSink {
+
+    void write(Map<String, Object> fields);
+}
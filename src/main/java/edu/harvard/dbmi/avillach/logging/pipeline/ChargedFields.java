@@ -0,0 +1,17 @@
+package edu.harvard.dbmi.avillach.logging.pipeline;
+
+import java.util.LinkedHashMap;
+
+/** Assembled audit fields that carry their event's {@link MemoryBudget.Charge} down the sinks. */
+public class ChargedFields extends LinkedHashMap<String, Object> {
+
+    private final transient MemoryBudget.Charge charge;
+
+    public ChargedFields(MemoryBudget.Charge charge) {
+        this.charge = charge;
+    }
+
+    public MemoryBudget.Charge charge() {
+        return charge;
+    }
+}
@@ -0,0 +1,36 @@
+package edu.harvard.dbmi.avillach.logging.pipeline;
+
+import edu.harvard.dbmi.avillach.logging.metrics.RollingHistogram;
+import org.slf4j.Logger;
+
+import java.util.Map;
+
+import static net.logstash.logback.argument.StructuredArguments.entries;
+
+public class LoggerAuditSink implements AuditSink {
+
+    private static final int WRITE_LATENCY_SLOTS = 6;
+
+    private final Logger auditLog;
+    private final RollingHistogram writeLatencyMicros = new RollingHistogram(WRITE_LATENCY_SLOTS);
+
+    public LoggerAuditSink(Logger auditLog) {
+        this.auditLog = auditLog;
+    }
+
+    @Override
+    public void write(Map<String, Object> fields) {
+        long writeStart = System.nanoTime();
+        if (fields instanceof ChargedFields charged && charged.charge() != null) {
+            // Not a structured argument, so it is not rendered; the audit file encoder releases it
+            auditLog.info("{}", entries(fields), charged.charge());
+        } else {
+            auditLog.info("{}", entries(fields));
+        }
+        writeLatencyMicros.record((System.nanoTime() - writeStart) / 1000);
+    }
+
+    public RollingHistogram writeLatencyMicros() {
+        return writeLatencyMicros;
+    }
+}
@@ -0,0 +1,136 @@
+package edu.harvard.dbmi.avillach.logging.pipeline;
+
+import ch.qos.logback.classic.spi.ILoggingEvent;
+
+import java.lang.ref.Cleaner;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Global byte budget for audit data in memory. Each event is admitted with a {@link Charge} sized to
+ * an estimate of its footprint, taken before its body is read, and the charge travels with the event
+ * through the accept queue, session stripes, priority lanes and the async file appender's queue. It
+ * is released once the audit file encoder has written the event. An event that is dropped on the way
+ * returns its charge when it is garbage collected, so a lost release cannot shrink the budget for good.
+ */
+public class MemoryBudget {
+
+    /** Body bytes, their parsed copy (Java strings), the assembled fields and the encoded line. */
+    static final int FOOTPRINT_FACTOR = 4;
+    static final int EVENT_OVERHEAD_BYTES = 1024;
+    private static final Cleaner CLEANER = Cleaner.create();
+
+    private final long capacity;
+    private final AtomicLong used = new AtomicLong();
+    private final AtomicLong highWater = new AtomicLong();
+    private final AtomicLong largestCharge = new AtomicLong();
+    private final LongAdder admitted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder rejectedBytes = new LongAdder();
+    private final LongAdder reclaimed = new LongAdder();
+
+    public MemoryBudget(long capacityBytes) {
+        this.capacity = capacityBytes;
+    }
+
+    /** The charge for an event whose body is {@code bodyBytes} long. */
+    public static long cost(long bodyBytes) {
+        return bodyBytes * FOOTPRINT_FACTOR + EVENT_OVERHEAD_BYTES;
+    }
+
+    /** A charge of {@code bytes}, or null if that would exceed the budget. */
+    public Charge tryAcquire(long bytes) {
+        while (true) {
+            long current = used.get();
+            long next = current + bytes;
+            if (next > capacity) {
+                rejected.increment();
+                rejectedBytes.add(bytes);
+                return null;
+            }
+            if (used.compareAndSet(current, next)) {
+                highWater.accumulateAndGet(next, Math::max);
+                largestCharge.accumulateAndGet(bytes, Math::max);
+                admitted.increment();
+                return new Charge(this, bytes);
+            }
+        }
+    }
+
+    public double fillRatio() {
+        return (double) used.get() / capacity;
+    }
+
+    /** Releases any charge carried by a logging event's arguments. */
+    public static void release(ILoggingEvent event) {
+        Object[] arguments = event.getArgumentArray();
+        if (arguments == null) {
+            return;
+        }
+        for (Object argument : arguments) {
+            if (argument instanceof Charge charge) {
+                charge.release();
+            }
+        }
+    }
+
+    public Map<String, Object> metrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("capacity_bytes", capacity);
+        metrics.put("used_bytes", used.get());
+        metrics.put("high_water_bytes", highWater.get());
+        metrics.put("largest_charge_bytes", largestCharge.get());
+        metrics.put("admitted", admitted.sum());
+        metrics.put("rejected", rejected.sum());
+        metrics.put("rejected_bytes", rejectedBytes.sum());
+        metrics.put("reclaimed", reclaimed.sum());
+        return metrics;
+    }
+
+    /** One event's share of the budget. Releasing is idempotent. */
+    public static final class Charge {
+        private final Release release;
+        private final Cleaner.Cleanable cleanable;
+
+        private Charge(MemoryBudget budget, long bytes) {
+            this.release = new Release(budget, bytes);
+            this.cleanable = CLEANER.register(this, release);
+        }
+
+        public long bytes() {
+            return release.bytes;
+        }
+
+        public void release() {
+            release.explicit = true;
+            cleanable.clean();
+        }
+
+        @Override
+        public String toString() {
+            return "charge(" + release.bytes + ")";
+        }
+    }
+
+    /** Must not reference its {@link Charge}, or the cleaner could never run. */
+    private static final class Release implements Runnable {
+        private final MemoryBudget budget;
+        private final long bytes;
+        private volatile boolean explicit;
+
+        private Release(MemoryBudget budget, long bytes) {
+            this.budget = budget;
+            this.bytes = bytes;
+        }
+
+        @Override
+        public void run() {
+            budget.used.addAndGet(-bytes);
+            if (!explicit) {
+                budget.reclaimed.increment();
+            }
+        }
+    }
+}
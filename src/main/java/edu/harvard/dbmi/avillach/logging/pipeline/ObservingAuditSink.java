@@ -0,0 +1,34 @@
+package edu.harvard.dbmi.avillach.logging.pipeline;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.Map;
+
+/** Writes each event downstream, then shows it to every {@link AuditObserver}. */
+public class ObservingAuditSink implements AuditSink {
+
+    private static final Logger log = LoggerFactory.getLogger(ObservingAuditSink.class);
+
+    private final AuditSink downstream;
+    private final List<AuditObserver> observers;
+
+    public ObservingAuditSink(AuditSink downstream, List<AuditObserver> observers) {
+        this.downstream = downstream;
+        this.observers = List.copyOf(observers);
+    }
+
+    @Override
+    public void write(Map<String, Object> fields) {
+        downstream.write(fields);
+        for (AuditObserver observer : observers) {
+            try {
+                observer.observe(fields);
+            } catch (Exception e) {
+                // An aggregation bug must never cost an audit event
+                log.warn("Audit observer {} failed", observer.getClass().getSimpleName(), e);
+            }
+        }
+    }
+}
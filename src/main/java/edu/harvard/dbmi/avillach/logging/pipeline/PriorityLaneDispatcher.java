@@ -0,0 +1,255 @@
+package edu.harvard.dbmi.avillach.logging.pipeline;
+
+import edu.harvard.dbmi.avillach.logging.config.LaneConfig;
+import edu.harvard.dbmi.avillach.logging.metrics.AsyncQueueProbe;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+
+/**
+ * Splits audit events into priority lanes keyed on {@code event_type} / {@code action}, each with
+ * its own bounded queue. A single drain thread empties the lanes in weighted round-robin order and
+ * only writes an event downstream while the async file appender it will reach has room (the main
+ * audit file or its routed file set), so under overload the lanes fill up here: {@code shed} lanes
+ * drop (and count) first, {@code block} lanes make producers wait.
+ */
+public class PriorityLaneDispatcher implements AuditSink {
+
+    private static final Logger log = LoggerFactory.getLogger(PriorityLaneDispatcher.class);
+    private static final long OFFER_WAIT_MILLIS = 100;
+    private static final long DOWNSTREAM_PARK_NANOS = 1_000_000;
+    static final long STOP_WAIT_MILLIS = 2_000;
+
+    private final List<Lane> lanes = new ArrayList<>();
+    private final Map<String, Lane> byEventType = new HashMap<>();
+    private final Map<String, Lane> byAction = new HashMap<>();
+    private final Lane defaultLane;
+    private final int[] schedule;
+    private final AuditSink downstream;
+    private final Function<Map<String, Object>, AsyncQueueProbe> downstreamQueues;
+    private final Semaphore pending = new Semaphore(0);
+
+    private volatile boolean running;
+    private volatile long stopDeadlineNanos;
+    private Thread drainThread;
+    private int cursor;
+
+    public PriorityLaneDispatcher(List<LaneConfig> laneConfigs, AuditSink downstream, AsyncQueueProbe downstreamQueue) {
+        this(laneConfigs, downstream, fields -> downstreamQueue);
+    }
+
+    /** {@code downstreamQueues} names the async queue each event is written through; the drain waits for room in it. */
+    public PriorityLaneDispatcher(List<LaneConfig> laneConfigs, AuditSink downstream,
+                                  Function<Map<String, Object>, AsyncQueueProbe> downstreamQueues) {
+        this.downstream = downstream;
+        this.downstreamQueues = downstreamQueues;
+        Lane fallback = null;
+        List<Integer> slots = new ArrayList<>();
+        for (LaneConfig config : laneConfigs) {
+            Lane lane = new Lane(config);
+            int index = lanes.size();
+            lanes.add(lane);
+            for (int i = 0; i < config.weight(); i++) {
+                slots.add(index);
+            }
+            if (config.isDefault()) {
+                fallback = lane;
+            }
+            if (config.eventTypes() != null) {
+                config.eventTypes().forEach(eventType -> byEventType.put(eventType, lane));
+            }
+            if (config.actions() != null) {
+                config.actions().forEach(action -> byAction.put(action, lane));
+            }
+        }
+        if (fallback == null) {
+            throw new IllegalArgumentException("Priority lanes need a default lane");
+        }
+        this.defaultLane = fallback;
+        this.schedule = slots.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        drainThread = new Thread(this::drainLoop, "audit-lane-drain");
+        drainThread.setDaemon(true);
+        drainThread.start();
+    }
+
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        // A stalled downstream (e.g. a full disk) gets STOP_WAIT_MILLIS to free room, then the rest is dropped
+        stopDeadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(STOP_WAIT_MILLIS);
+        running = false;
+        try {
+            drainThread.join(STOP_WAIT_MILLIS + 1_000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (drainThread.isAlive()) {
+            log.warn("Lane drain thread did not stop in time");
+            drainThread.interrupt();
+            return;
+        }
+        // Anything enqueued while the drain thread was exiting is written synchronously if there is room for it
+        long abandoned = 0;
+        for (Lane lane : lanes) {
+            Map<String, Object> fields;
+            while ((fields = lane.queue.poll()) != null) {
+                if (downstreamQueues.apply(fields).remainingCapacity() == 0) {
+                    drop(lane, fields);
+                    abandoned++;
+                } else {
+                    writeDownstream(lane, fields);
+                }
+            }
+        }
+        if (abandoned > 0) {
+            log.warn("Dropped {} queued audit events at shutdown because the audit file queue stayed full", abandoned);
+        }
+    }
+
+    @Override
+    public void write(Map<String, Object> fields) {
+        if (!running) {
+            downstream.write(fields);
+            return;
+        }
+        Lane lane = classify(fields);
+        if (!lane.queue.offer(fields)) {
+            if (lane.config.overflow() == LaneConfig.Overflow.SHED) {
+                drop(lane, fields);
+                return;
+            }
+            lane.blocked.increment();
+            try {
+                while (!lane.queue.offer(fields, OFFER_WAIT_MILLIS, TimeUnit.MILLISECONDS)) {
+                    if (!running) {
+                        downstream.write(fields);
+                        return;
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                downstream.write(fields);
+                return;
+            }
+        }
+        lane.enqueued.increment();
+        pending.release();
+    }
+
+    public Map<String, Object> metrics() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        for (Lane lane : lanes) {
+            Map<String, Object> laneMetrics = new LinkedHashMap<>();
+            laneMetrics.put("overflow", lane.config.overflow().name().toLowerCase());
+            laneMetrics.put("weight", lane.config.weight());
+            laneMetrics.put("capacity", lane.config.capacity());
+            laneMetrics.put("backlog", lane.queue.size());
+            laneMetrics.put("enqueued", lane.enqueued.sum());
+            laneMetrics.put("written", lane.written.sum());
+            laneMetrics.put("dropped", lane.dropped.sum());
+            laneMetrics.put("blocked", lane.blocked.sum());
+            result.put(lane.config.name(), laneMetrics);
+        }
+        return result;
+    }
+
+    Lane classify(Map<String, Object> fields) {
+        Object eventType = fields.get("event_type");
+        Lane lane = eventType == null ? null : byEventType.get(eventType.toString());
+        if (lane == null) {
+            Object action = fields.get("action");
+            lane = action == null ? null : byAction.get(action.toString());
+        }
+        return lane == null ? defaultLane : lane;
+    }
+
+    private void drainLoop() {
+        while (running || pending.availablePermits() > 0) {
+            try {
+                if (!pending.tryAcquire(OFFER_WAIT_MILLIS, TimeUnit.MILLISECONDS)) {
+                    continue;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            for (int attempts = 0; attempts < schedule.length * 2; attempts++) {
+                Lane lane = lanes.get(schedule[cursor]);
+                cursor = (cursor + 1) % schedule.length;
+                Map<String, Object> fields = lane.queue.peek();
+                if (fields != null) {
+                    if (!awaitRoom(downstreamQueues.apply(fields))) {
+                        return; // stopping with downstream stalled; stop() accounts for what is left
+                    }
+                    lane.queue.poll();
+                    writeDownstream(lane, fields);
+                    break;
+                }
+            }
+        }
+    }
+
+    /** Waits for room in {@code queue}; false once stopping and the stop deadline has passed. */
+    private boolean awaitRoom(AsyncQueueProbe queue) {
+        while (queue.remainingCapacity() == 0) {
+            if (!running && System.nanoTime() - stopDeadlineNanos >= 0) {
+                return false;
+            }
+            LockSupport.parkNanos(DOWNSTREAM_PARK_NANOS);
+        }
+        return true;
+    }
+
+    private static void drop(Lane lane, Map<String, Object> fields) {
+        lane.dropped.increment();
+        if (fields instanceof ChargedFields charged && charged.charge() != null) {
+            charged.charge().release();
+        }
+    }
+
+    private void writeDownstream(Lane lane, Map<String, Object> fields) {
+        try {
+            downstream.write(fields);
+            lane.written.increment();
+        } catch (Exception e) {
+            log.error("Failed to write audit event from lane {}", lane.config.name(), e);
+        }
+    }
+
+    static final class Lane {
+        final LaneConfig config;
+        final ArrayBlockingQueue<Map<String, Object>> queue;
+        final LongAdder enqueued = new LongAdder();
+        final LongAdder written = new LongAdder();
+        final LongAdder dropped = new LongAdder();
+        final LongAdder blocked = new LongAdder();
+
+        Lane(LaneConfig config) {
+            this.config = config;
+            this.queue = new ArrayBlockingQueue<>(config.capacity());
+        }
+
+        String name() {
+            return config.name();
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package edu.harvard.dbmi.avillach.logging.pipeline;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * N single-threaded workers. Tasks for the same session always run on the same stripe, so they
+ * run in submission order; tasks without a session are spread round-robin. Submitting blocks
+ * while the chosen stripe's queue is full.
+ */
+public class SessionStripes {
+
+    private static final Logger log = LoggerFactory.getLogger(SessionStripes.class);
+    private static final long POLL_MILLIS = 100;
+
+    private final Stripe[] stripes;
+    private final AtomicInteger roundRobin = new AtomicInteger();
+    private volatile boolean running;
+
+    public SessionStripes(int stripeCount, int queueCapacity) {
+        if (stripeCount < 1 || queueCapacity < 1) {
+            throw new IllegalArgumentException("stripeCount and queueCapacity must be at least 1");
+        }
+        this.stripes = new Stripe[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new Stripe(i, queueCapacity);
+        }
+    }
+
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        for (Stripe stripe : stripes) {
+            stripe.start();
+        }
+    }
+
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        for (Stripe stripe : stripes) {
+            stripe.join();
+        }
+        for (Stripe stripe : stripes) {
+            Runnable task;
+            while ((task = stripe.queue.poll()) != null) {
+                stripe.run(task);
+            }
+        }
+    }
+
+    public void execute(String sessionId, Runnable task) {
+        if (!running) {
+            task.run();
+            return;
+        }
+        Stripe stripe = stripes[stripeIndex(sessionId)];
+        try {
+            while (!stripe.queue.offer(task, POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                if (!running) {
+                    task.run();
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            task.run();
+        }
+    }
+
+    int stripeIndex(String sessionId) {
+        if (sessionId == null || sessionId.isEmpty()) {
+            return Math.floorMod(roundRobin.getAndIncrement(), stripes.length);
+        }
+        int h = sessionId.hashCode();
+        return Math.floorMod(h ^ (h >>> 16), stripes.length);
+    }
+
+    public Map<String, Object> metrics() {
+        List<Map<String, Object>> perStripe = new ArrayList<>();
+        long total = 0;
+        long max = 0;
+        int maxDepth = 0;
+        for (Stripe stripe : stripes) {
+            long processed = stripe.processed.sum();
+            int depth = stripe.queue.size();
+            total += processed;
+            max = Math.max(max, processed);
+            maxDepth = Math.max(maxDepth, depth);
+            perStripe.add(Map.of("depth", depth, "processed", processed));
+        }
+        double mean = (double) total / stripes.length;
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("stripes", stripes.length);
+        result.put("max_depth", maxDepth);
+        // Busiest stripe relative to the mean; 1.0 is perfectly balanced
+        result.put("imbalance", mean == 0 ? 1.0 : max / mean);
+        result.put("per_stripe", perStripe);
+        return result;
+    }
+
+    private final class Stripe {
+        final int index;
+        final ArrayBlockingQueue<Runnable> queue;
+        final LongAdder processed = new LongAdder();
+        Thread thread;
+
+        Stripe(int index, int queueCapacity) {
+            this.index = index;
+            this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        }
+
+        void start() {
+            thread = new Thread(this::loop, "audit-stripe-" + index);
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        void join() {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        void loop() {
+            while (running || !queue.isEmpty()) {
+                Runnable task;
+                try {
+                    task = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                if (task != null) {
+                    run(task);
+                }
+            }
+        }
+
+        void run(Runnable task) {
+            try {
+                task.run();
+            } catch (Exception e) {
+                log.error("Audit stripe task failed", e);
+            }
+            processed.increment();
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package edu.harvard.dbmi.avillach.logging.policy;
+
+import edu.harvard.dbmi.avillach.logging.config.RedactionRule;
+import edu.harvard.dbmi.avillach.logging.redact.Redactor;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One immutable, fully compiled version of the reloadable policy. {@code redactor} is null when there
+ * are no redaction rules.
+ */
+public record Policy(
+    long version,
+    Map<String, String> claimMapping,
+    List<RedactionRule> redactionRules,
+    Redactor redactor
+) {
+
+    /** Validates and compiles a policy; throws {@link IllegalStateException} if it is invalid. */
+    static Policy compile(long version, Map<String, String> claimMapping, List<RedactionRule> redactionRules,
+                          String source) {
+        claimMapping.forEach((claim, field) -> {
+            if (claim == null || claim.isBlank() || field == null || field.isBlank()) {
+                throw new IllegalStateException(source + " jwt_claim_mapping needs non-blank claims and fields, got: "
+                    + claim + "=" + field);
+            }
+        });
+        List<RedactionRule> rules = RedactionRule.validate(redactionRules, source + " redaction_rules");
+        // Keeps the configured order, which is the order claims are added to events
+        return new Policy(version, Collections.unmodifiableMap(new LinkedHashMap<>(claimMapping)), rules,
+            rules.isEmpty() ? null : new Redactor(rules));
+    }
+}
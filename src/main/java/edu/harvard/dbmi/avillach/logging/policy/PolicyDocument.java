@@ -0,0 +1,14 @@
+package edu.harvard.dbmi.avillach.logging.policy;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import edu.harvard.dbmi.avillach.logging.config.RedactionRule;
+
+import java.util.List;
+import java.util.Map;
+
+/** Contents of {@code POLICY_FILE}. A missing section keeps the value from the environment. */
+public record PolicyDocument(
+    @JsonProperty("jwt_claim_mapping") Map<String, String> jwtClaimMapping,
+    @JsonProperty("redaction_rules") List<RedactionRule> redactionRules
+) {
+}
@@ -0,0 +1,139 @@
+package edu.harvard.dbmi.avillach.logging.policy;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import edu.harvard.dbmi.avillach.logging.config.RedactionRule;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Holds the current {@link Policy} behind a single volatile reference. Readers call {@link #current()}
+ * once per event and use that snapshot throughout, so the hot path takes no locks and never sees a
+ * half-applied change. With a policy file, the file is polled for changes; a new version is parsed,
+ * validated and compiled off the request path and then swapped in. A file that fails to load is logged
+ * and counted, and the previous policy stays in service until the file changes again.
+ */
+public class PolicyStore {
+
+    private static final Logger log = LoggerFactory.getLogger(PolicyStore.class);
+
+    private final Map<String, String> defaultClaimMapping;
+    private final List<RedactionRule> defaultRedactionRules;
+    private final Path file;
+    private final int reloadSeconds;
+    private final ObjectMapper mapper = new ObjectMapper().enable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+
+    private volatile Policy current;
+    private volatile Instant loadedAt;
+    private FileTime seenModified;
+    private long seenSize = -1;
+
+    private final LongAdder reloads = new LongAdder();
+    private final LongAdder reloadFailures = new LongAdder();
+
+    private ScheduledExecutorService reloader;
+
+    /** A fixed policy from the environment; never reloads. */
+    public PolicyStore(Map<String, String> claimMapping, List<RedactionRule> redactionRules) {
+        this(claimMapping, redactionRules, null, 1);
+    }
+
+    /** Environment values, overridden section by section by {@code file} if set. */
+    public PolicyStore(Map<String, String> claimMapping, List<RedactionRule> redactionRules, Path file,
+                       int reloadSeconds) {
+        this.defaultClaimMapping = claimMapping;
+        this.defaultRedactionRules = redactionRules;
+        this.file = file;
+        this.reloadSeconds = reloadSeconds;
+        if (file == null) {
+            this.current = Policy.compile(1, claimMapping, redactionRules, "environment");
+        } else {
+            try {
+                this.current = load(1);
+            } catch (Exception e) {
+                throw new IllegalStateException("Unable to load POLICY_FILE " + file + ": " + e.getMessage(), e);
+            }
+        }
+        this.loadedAt = Instant.now();
+    }
+
+    public Policy current() {
+        return current;
+    }
+
+    public synchronized void start() {
+        if (file == null || reloader != null) {
+            return;
+        }
+        reloader = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "policy-reload");
+            t.setDaemon(true);
+            return t;
+        });
+        reloader.scheduleWithFixedDelay(this::reloadChanged, reloadSeconds, reloadSeconds, TimeUnit.SECONDS);
+    }
+
+    public synchronized void stop() {
+        if (reloader != null) {
+            reloader.shutdownNow();
+            reloader = null;
+        }
+    }
+
+    /** Loads the file if its modification time or size changed since the last attempt. */
+    void reloadChanged() {
+        try {
+            if (Files.getLastModifiedTime(file).equals(seenModified) && Files.size(file) == seenSize) {
+                return;
+            }
+            Policy next = load(current.version() + 1);
+            current = next;
+            loadedAt = Instant.now();
+            reloads.increment();
+            log.info("Reloaded policy {} as version {}: {} claim mappings, {} redaction rules",
+                file, next.version(), next.claimMapping().size(), next.redactionRules().size());
+        } catch (Exception e) {
+            reloadFailures.increment();
+            log.error("Rejected policy {}, keeping version {}: {}", file, current.version(), e.getMessage());
+        }
+    }
+
+    private Policy load(long version) throws IOException {
+        // Fingerprint first, and also on failure, so a broken file is retried only once it changes again
+        seenModified = Files.getLastModifiedTime(file);
+        seenSize = Files.size(file);
+        PolicyDocument document = mapper.readValue(file.toFile(), PolicyDocument.class);
+        if (document == null) {
+            throw new IllegalStateException("policy file is empty");
+        }
+        return Policy.compile(version,
+            document.jwtClaimMapping() != null ? document.jwtClaimMapping() : defaultClaimMapping,
+            document.redactionRules() != null ? document.redactionRules() : defaultRedactionRules,
+            file.getFileName().toString());
+    }
+
+    public Map<String, Object> metrics() {
+        Policy policy = current;
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("version", policy.version());
+        metrics.put("loaded_at", loadedAt.toString());
+        metrics.put("claim_mappings", policy.claimMapping().size());
+        metrics.put("redaction_rules", policy.redactionRules().size());
+        metrics.put("reloads", reloads.sum());
+        metrics.put("reload_failures", reloadFailures.sum());
+        return metrics;
+    }
+}
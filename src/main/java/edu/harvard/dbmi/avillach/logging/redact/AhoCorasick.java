@@ -0,0 +1,154 @@
+package edu.harvard.dbmi.avillach.logging.redact;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Aho-Corasick automaton over a fixed set of literals, each tagged with a rule index. One left-to-right
+ * pass finds every literal ending at every position, however many literals there are. Transitions
+ * are stored as sorted per-state arrays, and each state records the longest literal that ends there
+ * (itself or via its failure chain), so reporting a match needs no chain walk.
+ */
+final class AhoCorasick {
+
+    interface MatchConsumer {
+        void match(int start, int end, int rule);
+    }
+
+    private final boolean ignoreCase;
+    private final char[][] labels;
+    private final int[][] targets;
+    private final int[] fail;
+    private final int[] matchRule;
+    private final int[] matchLength;
+
+    /** {@code literals} and {@code rules} are parallel lists; empty literals are ignored. */
+    AhoCorasick(List<String> literals, List<Integer> rules, boolean ignoreCase) {
+        this.ignoreCase = ignoreCase;
+        List<TreeMap<Character, Integer>> trie = new ArrayList<>();
+        List<int[]> terminal = new ArrayList<>();
+        trie.add(new TreeMap<>());
+        terminal.add(null);
+        for (int i = 0; i < literals.size(); i++) {
+            String literal = literals.get(i);
+            if (literal.isEmpty()) {
+                continue;
+            }
+            int state = 0;
+            for (int j = 0; j < literal.length(); j++) {
+                char c = fold(literal.charAt(j));
+                Integer next = trie.get(state).get(c);
+                if (next == null) {
+                    next = trie.size();
+                    trie.add(new TreeMap<>());
+                    terminal.add(null);
+                    trie.get(state).put(c, next);
+                }
+                state = next;
+            }
+            if (terminal.get(state) == null) {
+                terminal.set(state, new int[] {rules.get(i), literal.length()});
+            }
+        }
+
+        int states = trie.size();
+        labels = new char[states][];
+        targets = new int[states][];
+        for (int s = 0; s < states; s++) {
+            TreeMap<Character, Integer> edges = trie.get(s);
+            labels[s] = new char[edges.size()];
+            targets[s] = new int[edges.size()];
+            int k = 0;
+            for (Map.Entry<Character, Integer> edge : edges.entrySet()) {
+                labels[s][k] = edge.getKey();
+                targets[s][k++] = edge.getValue();
+            }
+        }
+
+        fail = new int[states];
+        matchRule = new int[states];
+        matchLength = new int[states];
+        matchRule[0] = -1;
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        for (int child : targets[0]) {
+            queue.add(child);
+        }
+        // Breadth-first, so a state's failure target is always resolved before the state itself
+        while (!queue.isEmpty()) {
+            int s = queue.poll();
+            int[] own = terminal.get(s);
+            if (own != null) {
+                matchRule[s] = own[0];
+                matchLength[s] = own[1];
+            } else {
+                matchRule[s] = matchRule[fail[s]];
+                matchLength[s] = matchLength[fail[s]];
+            }
+            for (int k = 0; k < labels[s].length; k++) {
+                int child = targets[s][k];
+                int f = fail[s];
+                int next;
+                while ((next = step(f, labels[s][k])) < 0 && f != 0) {
+                    f = fail[f];
+                }
+                fail[child] = next >= 0 ? next : 0;
+                queue.add(child);
+            }
+        }
+    }
+
+    /** Reports the longest literal ending at each position where one ends. */
+    void forEachMatch(CharSequence text, MatchConsumer consumer) {
+        int state = 0;
+        for (int i = 0; i < text.length(); i++) {
+            state = advance(state, fold(text.charAt(i)));
+            if (matchRule[state] >= 0) {
+                consumer.match(i + 1 - matchLength[state], i + 1, matchRule[state]);
+            }
+        }
+    }
+
+    /** Rule of the first literal found in {@code text}, or -1. */
+    int firstMatch(CharSequence text) {
+        int state = 0;
+        for (int i = 0; i < text.length(); i++) {
+            state = advance(state, fold(text.charAt(i)));
+            if (matchRule[state] >= 0) {
+                return matchRule[state];
+            }
+        }
+        return -1;
+    }
+
+    private int advance(int state, char c) {
+        int next;
+        while ((next = step(state, c)) < 0 && state != 0) {
+            state = fail[state];
+        }
+        return Math.max(next, 0);
+    }
+
+    private int step(int state, char c) {
+        char[] edges = labels[state];
+        int low = 0;
+        int high = edges.length - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (edges[mid] < c) {
+                low = mid + 1;
+            } else if (edges[mid] > c) {
+                high = mid - 1;
+            } else {
+                return targets[state][mid];
+            }
+        }
+        return -1;
+    }
+
+    private char fold(char c) {
+        return ignoreCase ? Character.toLowerCase(c) : c;
+    }
+}
@@ -0,0 +1,334 @@
+package edu.harvard.dbmi.avillach.logging.redact;
+
+import edu.harvard.dbmi.avillach.logging.config.RedactionRule;
+import edu.harvard.dbmi.avillach.logging.metrics.LatencyHistogram;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Redacts the {@code metadata} and {@code error} maps of an assembled event with compiled
+ * {@link RedactionRule}s. All key rules share one case-insensitive {@link AhoCorasick} automaton and
+ * all literal rules another, and all pattern rules are joined into one alternation with a group per
+ * rule, so each kind costs one pass however many rules there are. Matches are replaced with
+ * {@code [REDACTED:<rule>]}.
+ *
+ * <p>Cost per event is bounded: at most {@link #MAX_SCANNED_CHARS} characters are scanned and maps
+ * are followed at most {@link #MAX_DEPTH} levels deep. A backtracking pattern may read a character
+ * many times, so the pattern pass over a value may read at most {@link #STEPS_PER_CHAR} characters per
+ * character of the value plus {@link #BASE_STEPS}, for each pattern rule. Anything beyond these budgets is replaced unscanned
+ * rather than passed through, and counted as {@code over_budget}.
+ */
+public class Redactor {
+
+    public static final int MAX_SCANNED_CHARS = 65_536;
+    public static final int MAX_DEPTH = 16;
+    public static final int STEPS_PER_CHAR = 64;
+    public static final int BASE_STEPS = 16_384;
+    static final String OVER_BUDGET = "[REDACTED:over_budget]";
+    private static final List<String> REDACTED_FIELDS = List.of("metadata", "error");
+
+    private final String[] names;
+    private final String[] replacements;
+    private final LongAdder[] hits;
+    private final AhoCorasick keyMatcher;
+    private final AhoCorasick literalMatcher;
+    private final Pattern patterns;
+    private final int[] patternGroups;
+    private final int[] patternRules;
+
+    private final LongAdder events = new LongAdder();
+    private final LongAdder redactedEvents = new LongAdder();
+    private final LongAdder overBudget = new LongAdder();
+    private final LatencyHistogram nanos = new LatencyHistogram();
+
+    public Redactor(List<RedactionRule> rules) {
+        int count = rules.size();
+        names = new String[count];
+        replacements = new String[count];
+        hits = new LongAdder[count];
+        List<String> keys = new ArrayList<>();
+        List<Integer> keyRules = new ArrayList<>();
+        List<String> literals = new ArrayList<>();
+        List<Integer> literalRules = new ArrayList<>();
+        StringBuilder alternation = new StringBuilder();
+        List<Integer> groups = new ArrayList<>();
+        List<Integer> compiledRules = new ArrayList<>();
+        int nextGroup = 1;
+        for (int i = 0; i < count; i++) {
+            RedactionRule rule = rules.get(i);
+            names[i] = rule.name();
+            replacements[i] = "[REDACTED:" + rule.name() + "]";
+            hits[i] = new LongAdder();
+            if (rule.keys() != null) {
+                for (String key : rule.keys()) {
+                    keys.add(key);
+                    keyRules.add(i);
+                }
+            }
+            if (rule.literals() != null) {
+                for (String literal : rule.literals()) {
+                    literals.add(literal);
+                    literalRules.add(i);
+                }
+            }
+            if (rule.pattern() != null) {
+                // Named groups become plain ones so names may repeat across rules; backreferences are rejected
+                String pattern = unnamed(rule.pattern());
+                if (!groups.isEmpty()) {
+                    alternation.append('|');
+                }
+                alternation.append('(').append(pattern).append(')');
+                groups.add(nextGroup);
+                compiledRules.add(i);
+                nextGroup += 1 + Pattern.compile(pattern).matcher("").groupCount();
+            }
+        }
+        keyMatcher = keys.isEmpty() ? null : new AhoCorasick(keys, keyRules, true);
+        literalMatcher = literals.isEmpty() ? null : new AhoCorasick(literals, literalRules, false);
+        patterns = groups.isEmpty() ? null : Pattern.compile(alternation.toString());
+        patternGroups = groups.stream().mapToInt(Integer::intValue).toArray();
+        patternRules = compiledRules.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /** Replaces the {@code metadata} and {@code error} maps in {@code fields} with redacted copies. */
+    public void redact(Map<String, Object> fields) {
+        long started = System.nanoTime();
+        Walk walk = new Walk();
+        for (String field : REDACTED_FIELDS) {
+            if (fields.get(field) instanceof Map<?, ?> map) {
+                fields.put(field, walk.map(map, 1));
+            }
+        }
+        nanos.record(System.nanoTime() - started);
+        events.increment();
+        if (walk.redacted) {
+            redactedEvents.increment();
+        }
+    }
+
+    public Map<String, Object> metrics() {
+        Map<String, Object> perRule = new LinkedHashMap<>();
+        for (int i = 0; i < names.length; i++) {
+            perRule.put(names[i], hits[i].sum());
+        }
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("events", events.sum());
+        metrics.put("redacted_events", redactedEvents.sum());
+        metrics.put("over_budget", overBudget.sum());
+        metrics.put("p50_nanos", nanos.valueAtPercentile(50.0));
+        metrics.put("p99_nanos", nanos.valueAtPercentile(99.0));
+        metrics.put("rules", perRule);
+        return metrics;
+    }
+
+    /** State of one event's redaction: remaining scan budget and whether anything was replaced. */
+    private final class Walk {
+        private int remaining = MAX_SCANNED_CHARS;
+        private boolean redacted;
+
+        private Map<String, Object> map(Map<?, ?> source, int depth) {
+            Map<String, Object> result = new LinkedHashMap<>();
+            for (Map.Entry<?, ?> entry : source.entrySet()) {
+                String key = String.valueOf(entry.getKey());
+                int rule = keyMatcher == null ? -1 : keyMatcher.firstMatch(key);
+                if (rule >= 0) {
+                    hits[rule].increment();
+                    redacted = true;
+                    result.put(key, replacements[rule]);
+                } else {
+                    result.put(key, value(entry.getValue(), depth));
+                }
+            }
+            return result;
+        }
+
+        private Object value(Object value, int depth) {
+            if (value instanceof String s) {
+                return string(s);
+            }
+            if (value instanceof Map<?, ?> || value instanceof Collection<?>) {
+                if (depth >= MAX_DEPTH) {
+                    return overBudget();
+                }
+                if (value instanceof Map<?, ?> nested) {
+                    return map(nested, depth + 1);
+                }
+                List<Object> list = new ArrayList<>();
+                for (Object element : (Collection<?>) value) {
+                    list.add(value(element, depth + 1));
+                }
+                return list;
+            }
+            return value;
+        }
+
+        private String string(String value) {
+            if (value.length() > remaining) {
+                return overBudget();
+            }
+            remaining -= value.length();
+
+            Spans spans = new Spans();
+            if (literalMatcher != null) {
+                literalMatcher.forEachMatch(value, spans::add);
+            }
+            if (patterns != null) {
+                CountedChars chars = new CountedChars(value,
+                    ((long) STEPS_PER_CHAR * value.length() + BASE_STEPS) * patternRules.length);
+                try {
+                    Matcher matcher = patterns.matcher(chars);
+                    while (matcher.find()) {
+                        if (matcher.end() > matcher.start()) {
+                            spans.add(matcher.start(), matcher.end(), matchedRule(matcher));
+                        }
+                    }
+                } catch (StepsExhausted e) {
+                    return overBudget();
+                }
+            }
+            if (spans.size == 0) {
+                return value;
+            }
+            redacted = true;
+            return spans.apply(value);
+        }
+
+        private int matchedRule(Matcher matcher) {
+            for (int p = 0; p < patternGroups.length - 1; p++) {
+                if (matcher.start(patternGroups[p]) >= 0) {
+                    return patternRules[p];
+                }
+            }
+            return patternRules[patternGroups.length - 1];
+        }
+
+        private String overBudget() {
+            overBudget.increment();
+            redacted = true;
+            return OVER_BUDGET;
+        }
+    }
+
+    /** {@code pattern} with each {@code (?<name>} turned into {@code (}, leaving quotes and classes alone. */
+    static String unnamed(String pattern) {
+        StringBuilder out = new StringBuilder(pattern.length());
+        int classDepth = 0;
+        for (int i = 0; i < pattern.length(); i++) {
+            char c = pattern.charAt(i);
+            if (c == '\\' && i + 1 < pattern.length()) {
+                if (pattern.charAt(i + 1) == 'Q') {
+                    int end = pattern.indexOf("\\E", i + 2);
+                    end = end < 0 ? pattern.length() : end + 2;
+                    out.append(pattern, i, end);
+                    i = end - 1;
+                } else {
+                    out.append(c).append(pattern.charAt(++i));
+                }
+            } else if (c == '[') {
+                classDepth++;
+                out.append(c);
+            } else if (c == ']' && classDepth > 0) {
+                classDepth--;
+                out.append(c);
+            } else if (classDepth == 0 && pattern.startsWith("(?<", i) && i + 3 < pattern.length()
+                && Character.isLetter(pattern.charAt(i + 3))) {
+                out.append('(');
+                i = pattern.indexOf('>', i + 3);
+            } else {
+                out.append(c);
+            }
+        }
+        return out.toString();
+    }
+
+    /** A string that aborts the match reading it once {@code steps} characters have been read. */
+    private static final class CountedChars implements CharSequence {
+        private final String value;
+        private long steps;
+
+        private CountedChars(String value, long steps) {
+            this.value = value;
+            this.steps = steps;
+        }
+
+        @Override
+        public char charAt(int index) {
+            if (--steps < 0) {
+                throw StepsExhausted.INSTANCE;
+            }
+            return value.charAt(index);
+        }
+
+        @Override
+        public int length() {
+            return value.length();
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return value.subSequence(start, end);
+        }
+
+        @Override
+        public String toString() {
+            return value;
+        }
+    }
+
+    /** Thrown without a stack trace, since it only unwinds the matcher. */
+    private static final class StepsExhausted extends RuntimeException {
+        private static final StepsExhausted INSTANCE = new StepsExhausted();
+
+        private StepsExhausted() {
+            super(null, null, false, false);
+        }
+    }
+
+    /** Matched ranges of one value; overlapping ranges are merged and take the earliest rule's label. */
+    private final class Spans {
+        private int[] data = new int[12];
+        private int size;
+
+        private void add(int start, int end, int rule) {
+            hits[rule].increment();
+            if (size * 3 == data.length) {
+                data = Arrays.copyOf(data, data.length * 2);
+            }
+            data[size * 3] = start;
+            data[size * 3 + 1] = end;
+            data[size * 3 + 2] = rule;
+            size++;
+        }
+
+        private String apply(String value) {
+            Integer[] order = new Integer[size];
+            for (int i = 0; i < size; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, (a, b) -> Integer.compare(data[a * 3], data[b * 3]));
+
+            StringBuilder out = new StringBuilder(value.length());
+            int copied = 0;
+            int i = 0;
+            while (i < size) {
+                int start = data[order[i] * 3];
+                int end = data[order[i] * 3 + 1];
+                int rule = data[order[i] * 3 + 2];
+                for (i++; i < size && data[order[i] * 3] < end; i++) {
+                    end = Math.max(end, data[order[i] * 3 + 1]);
+                }
+                out.append(value, copied, start).append(replacements[rule]);
+                copied = end;
+            }
+            return out.append(value, copied, value.length()).toString();
+        }
+    }
+}
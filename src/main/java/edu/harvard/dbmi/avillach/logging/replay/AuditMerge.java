@@ -0,0 +1,447 @@
+package edu.harvard.dbmi.avillach.logging.replay;
+
+import edu.harvard.dbmi.avillach.logging.chain.HashChain;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.DateTimeException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Merges the audit files of several logger replicas into one time-ordered series of segments. Each
+ * replica's files are streamed oldest first, one line at a time, and a min-heap on {@code _time} picks
+ * the next line, so memory holds one line per replica plus the dedup window regardless of input size.
+ * The time is read from the leading {@code _time} field without parsing the rest of the line.
+ *
+ * <pre>java -cp app.jar edu.harvard.dbmi.avillach.logging.replay.AuditMerge --output DIR [--gzip]
+ *     [--segment-mb N] [--dedup-window SECONDS] REPLICA...</pre>
+ *
+ * A replica is a log directory (its {@code audit.log} and rolled {@code audit.*.log[.gz]} files) or a
+ * single file. With a dedup window, a line whose {@code request_id} and {@code event_type} were already
+ * written within that many seconds before it is dropped, as when a retried request reached two replicas.
+ */
+public class AuditMerge {
+
+    static final long DEFAULT_SEGMENT_BYTES = 50L << 20;
+    /** Bounds the dedup window's memory when traffic within it is unusually heavy. */
+    static final int DEDUP_CAPACITY = 1_000_000;
+    private static final Pattern ROLLED = Pattern.compile("audit\\.(\\d{4}-\\d{2}-\\d{2})\\.(\\d+)\\.log(\\.gz)?");
+    private static final byte[] TIME_KEY = "\"_time\":\"".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] REQUEST_ID_KEY = "\"request_id\":\"".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] EVENT_TYPE_KEY = "\"event_type\":\"".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] METADATA_KEY = "\"metadata\":".getBytes(StandardCharsets.US_ASCII);
+    private static final int READ_BUFFER = 64 * 1024;
+
+    private final Path outputDir;
+    private final long segmentBytes;
+    private final boolean gzip;
+    private final long dedupWindowNanos;
+    private final int dedupCapacity;
+
+    /** A zero or null {@code dedupWindow} disables deduplication. */
+    public AuditMerge(Path outputDir, long segmentBytes, boolean gzip, Duration dedupWindow) {
+        this(outputDir, segmentBytes, gzip, dedupWindow, DEDUP_CAPACITY);
+    }
+
+    AuditMerge(Path outputDir, long segmentBytes, boolean gzip, Duration dedupWindow, int dedupCapacity) {
+        this.outputDir = outputDir;
+        this.segmentBytes = segmentBytes;
+        this.gzip = gzip;
+        this.dedupWindowNanos = dedupWindow == null ? 0 : dedupWindow.toNanos();
+        this.dedupCapacity = dedupCapacity;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Path output = null;
+        boolean gzip = false;
+        long segmentBytes = DEFAULT_SEGMENT_BYTES;
+        Duration window = Duration.ZERO;
+        List<Path> replicas = new ArrayList<>();
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--output" -> output = Path.of(args[++i]);
+                    case "--gzip" -> gzip = true;
+                    case "--segment-mb" -> segmentBytes = Long.parseLong(args[++i]) << 20;
+                    case "--dedup-window" -> window = Duration.ofSeconds(Long.parseLong(args[++i]));
+                    default -> replicas.add(Path.of(args[i]));
+                }
+            }
+        } catch (RuntimeException e) {
+            replicas.clear();
+        }
+        if (replicas.isEmpty() || output == null || segmentBytes <= 0 || window.isNegative()) {
+            System.err.println("Usage: AuditMerge --output DIR [--gzip] [--segment-mb N] [--dedup-window SECONDS] "
+                + "REPLICA...");
+            System.exit(2);
+        }
+
+        long started = System.nanoTime();
+        try {
+            List<List<Path>> inputs = new ArrayList<>();
+            for (Path replica : replicas) {
+                inputs.add(segments(replica));
+            }
+            Result result = new AuditMerge(output, segmentBytes, gzip, window).merge(inputs);
+            System.out.printf("OK: %d lines from %d replicas into %d segments, %d duplicates dropped, "
+                    + "%d lines without _time, %d out of order (%d ms)%n",
+                result.lines(), replicas.size(), result.segments(), result.duplicates(), result.untimed(),
+                result.outOfOrder(), (System.nanoTime() - started) / 1_000_000);
+        } catch (IllegalStateException | IOException e) {
+            System.err.println("FAILED: " + e.getMessage());
+            System.exit(1);
+        }
+        System.exit(0);
+    }
+
+    /** A replica's audit files, oldest first: rolled files by date and index, then {@code audit.log}. */
+    static List<Path> segments(Path replica) throws IOException {
+        if (!Files.isDirectory(replica)) {
+            return List.of(replica);
+        }
+        try (Stream<Path> files = Files.list(replica)) {
+            return files
+                .filter(f -> f.getFileName().toString().equals("audit.log")
+                    || ROLLED.matcher(f.getFileName().toString()).matches())
+                .sorted(Comparator.comparing(AuditMerge::segmentOrder))
+                .toList();
+        }
+    }
+
+    private static String segmentOrder(Path file) {
+        Matcher matcher = ROLLED.matcher(file.getFileName().toString());
+        return matcher.matches() ? matcher.group(1) + String.format("%010d", Long.parseLong(matcher.group(2))) : "~";
+    }
+
+    /** Merges replicas, each given as its files oldest first, into numbered segments in the output directory. */
+    public Result merge(List<List<Path>> replicas) throws IOException {
+        Files.createDirectories(outputDir);
+        try (Stream<Path> existing = Files.list(outputDir)) {
+            if (existing.anyMatch(f -> f.getFileName().toString().startsWith("merged-"))) {
+                throw new IllegalStateException(outputDir + " already contains merged segments");
+            }
+        }
+
+        PriorityQueue<Cursor> heap = new PriorityQueue<>(
+            Comparator.comparingLong((Cursor c) -> c.time).thenComparingInt(c -> c.replica));
+        Dedup dedup = dedupWindowNanos > 0 ? new Dedup() : null;
+        long lines = 0;
+        long duplicates = 0;
+        long untimed = 0;
+        long outOfOrder = 0;
+        long last = Long.MIN_VALUE;
+        List<Cursor> cursors = new ArrayList<>();
+        try (SegmentWriter writer = new SegmentWriter()) {
+            for (int r = 0; r < replicas.size(); r++) {
+                Cursor cursor = new Cursor(r, replicas.get(r));
+                cursors.add(cursor);
+                if (cursor.advance()) {
+                    heap.add(cursor);
+                }
+            }
+            while (!heap.isEmpty()) {
+                Cursor cursor = heap.poll();
+                if (!cursor.timed) {
+                    untimed++;
+                }
+                if (cursor.time < last) {
+                    outOfOrder++;
+                }
+                last = Math.max(last, cursor.time);
+                if (dedup != null && dedup.seen(cursor.time, cursor.dedupKey())) {
+                    duplicates++;
+                } else {
+                    writer.write(cursor.line, cursor.length);
+                    lines++;
+                }
+                if (cursor.advance()) {
+                    heap.add(cursor);
+                }
+            }
+            return new Result(lines, duplicates, untimed, outOfOrder, writer.segments);
+        } finally {
+            for (Cursor cursor : cursors) {
+                cursor.close();
+            }
+        }
+    }
+
+    /**
+     * Epoch nanoseconds of an {@code Instant.toString()} value in {@code buffer[start, end)}, read digit by
+     * digit; other ISO-8601 forms fall back to {@link Instant#parse}. Returns {@link Long#MIN_VALUE} if
+     * the value is not a time.
+     */
+    static long epochNanos(ByteBuffer buffer, int start, int end) {
+        int length = end - start;
+        if (length >= 20 && buffer.get(start + 4) == '-' && buffer.get(start + 7) == '-'
+            && buffer.get(start + 10) == 'T' && buffer.get(start + 13) == ':' && buffer.get(start + 16) == ':'
+            && buffer.get(end - 1) == 'Z') {
+            int year = digits(buffer, start, 4);
+            int month = digits(buffer, start + 5, 2);
+            int day = digits(buffer, start + 8, 2);
+            int hour = digits(buffer, start + 11, 2);
+            int minute = digits(buffer, start + 14, 2);
+            int second = digits(buffer, start + 17, 2);
+            int fraction = length - 20;
+            boolean valid = year >= 0 && month >= 0 && day >= 0 && hour >= 0 && hour < 24 && minute >= 0
+                && minute < 60 && second >= 0 && second < 60
+                && (fraction == 0 || buffer.get(start + 19) == '.' && fraction > 1 && fraction <= 10);
+            int nanos = 0;
+            for (int i = 1; valid && i < 10; i++) {
+                int digit = i < fraction ? buffer.get(start + 19 + i) - '0' : 0;
+                valid = digit >= 0 && digit <= 9;
+                nanos = nanos * 10 + digit;
+            }
+            if (valid) {
+                try {
+                    long days = LocalDate.of(year, month, day).toEpochDay();
+                    return (days * 86_400 + hour * 3_600L + minute * 60L + second) * 1_000_000_000L + nanos;
+                } catch (DateTimeException e) {
+                    return Long.MIN_VALUE;
+                }
+            }
+        }
+        byte[] text = new byte[length];
+        buffer.get(start, text);
+        try {
+            Instant instant = Instant.parse(new String(text, StandardCharsets.US_ASCII));
+            return instant.getEpochSecond() * 1_000_000_000L + instant.getNano();
+        } catch (DateTimeException | ArithmeticException e) {
+            return Long.MIN_VALUE;
+        }
+    }
+
+    private static int digits(ByteBuffer buffer, int at, int count) {
+        int value = 0;
+        for (int i = 0; i < count; i++) {
+            int digit = buffer.get(at + i) - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    /** Index just past {@code key} in {@code buffer[from, to)}, or -1. */
+    private static int valueStart(ByteBuffer buffer, byte[] key, int from, int to) {
+        int last = to - key.length;
+        outer:
+        for (int i = from; i <= last; i++) {
+            for (int k = 0; k < key.length; k++) {
+                if (buffer.get(i + k) != key[k]) {
+                    continue outer;
+                }
+            }
+            return i + key.length;
+        }
+        return -1;
+    }
+
+    /** The string value after {@code key}, or null; values containing escapes end at the first quote. */
+    private static String stringValue(ByteBuffer buffer, byte[] key, int from, int to) {
+        int value = valueStart(buffer, key, from, to);
+        int close = value < 0 ? -1 : LineFilter.indexOf(buffer, (byte) '"', value, to);
+        if (close < 0) {
+            return null;
+        }
+        byte[] text = new byte[close - value];
+        buffer.get(value, text);
+        return new String(text, StandardCharsets.UTF_8);
+    }
+
+    public record Result(long lines, long duplicates, long untimed, long outOfOrder, int segments) {
+    }
+
+    /** One replica's position: the line at the head of its files and that line's time. */
+    private final class Cursor {
+        private final int replica;
+        private final List<Path> files;
+        private int nextFile;
+        private InputStream input;
+        private final byte[] readBuffer = new byte[READ_BUFFER];
+        private int readPosition;
+        private int readLimit;
+
+        private byte[] line = new byte[1024];
+        private int length;
+        private long time = Long.MIN_VALUE;
+        private boolean timed;
+
+        private Cursor(int replica, List<Path> files) {
+            this.replica = replica;
+            this.files = files;
+        }
+
+        /**
+         * Moves to the next audit line, skipping blank and chain lines. A line without a readable
+         * {@code _time} keeps the previous line's time, so it stays where its replica wrote it.
+         */
+        private boolean advance() throws IOException {
+            while (readLine()) {
+                ByteBuffer view = ByteBuffer.wrap(line, 0, length);
+                int end = length - 1;
+                if (end == 0 || HashChain.isMarker(view, 0, end)) {
+                    continue;
+                }
+                int value = valueStart(view, TIME_KEY, 0, Math.min(end, TIME_KEY.length + 1));
+                if (value < 0) {
+                    value = valueStart(view, TIME_KEY, 0, end);
+                }
+                int close = value < 0 ? -1 : LineFilter.indexOf(view, (byte) '"', value, end);
+                long parsed = close < 0 ? Long.MIN_VALUE : epochNanos(view, value, close);
+                timed = parsed != Long.MIN_VALUE;
+                if (timed) {
+                    time = parsed;
+                }
+                return true;
+            }
+            return false;
+        }
+
+        private String dedupKey() {
+            ByteBuffer view = ByteBuffer.wrap(line, 0, length);
+            // Top-level fields precede metadata, which may carry keys of the same name
+            int metadata = valueStart(view, METADATA_KEY, 0, length);
+            int to = metadata < 0 ? length : metadata;
+            String requestId = stringValue(view, REQUEST_ID_KEY, 0, to);
+            return requestId == null ? null : requestId + '\u0000' + stringValue(view, EVENT_TYPE_KEY, 0, to);
+        }
+
+        /** Reads the next line, newline included (one is added at end of file), across this replica's files. */
+        private boolean readLine() throws IOException {
+            length = 0;
+            while (true) {
+                if (readPosition == readLimit) {
+                    if (input == null && !openNext()) {
+                        return false;
+                    }
+                    readLimit = input.read(readBuffer);
+                    readPosition = 0;
+                    if (readLimit <= 0) {
+                        readLimit = 0;
+                        input.close();
+                        input = null;
+                        if (length > 0) {
+                            append(new byte[] {'\n'}, 0, 1);
+                            return true;
+                        }
+                        continue;
+                    }
+                }
+                int newline = indexOf(readBuffer, readPosition, readLimit);
+                int end = newline < 0 ? readLimit : newline + 1;
+                append(readBuffer, readPosition, end - readPosition);
+                readPosition = end;
+                if (newline >= 0) {
+                    return true;
+                }
+            }
+        }
+
+        private boolean openNext() throws IOException {
+            if (nextFile == files.size()) {
+                return false;
+            }
+            Path file = files.get(nextFile++);
+            InputStream raw = Files.newInputStream(file);
+            input = file.getFileName().toString().endsWith(".gz") ? new GZIPInputStream(raw, READ_BUFFER) : raw;
+            return true;
+        }
+
+        private void append(byte[] source, int from, int count) {
+            if (length + count > line.length) {
+                line = Arrays.copyOf(line, Math.max(line.length * 2, length + count));
+            }
+            System.arraycopy(source, from, line, length, count);
+            length += count;
+        }
+
+        private void close() throws IOException {
+            if (input != null) {
+                input.close();
+            }
+        }
+
+        private static int indexOf(byte[] bytes, int from, int to) {
+            for (int i = from; i < to; i++) {
+                if (bytes[i] == '\n') {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+
+    /** Keys written within the window before the current line's time, oldest first. */
+    private final class Dedup {
+        private record Seen(long time, String key) {}
+
+        private final ArrayDeque<Seen> order = new ArrayDeque<>();
+        private final Set<String> keys = new HashSet<>();
+
+        private boolean seen(long time, String key) {
+            while (!order.isEmpty()
+                && (order.peekFirst().time() < time - dedupWindowNanos || order.size() >= dedupCapacity)) {
+                keys.remove(order.pollFirst().key());
+            }
+            if (key == null) {
+                return false;
+            }
+            if (!keys.add(key)) {
+                return true;
+            }
+            order.addLast(new Seen(time, key));
+            return false;
+        }
+    }
+
+    /** Writes {@code merged-NNNNN.log[.gz]} files, starting a new one once a segment holds {@code segmentBytes}. */
+    private final class SegmentWriter implements AutoCloseable {
+        private OutputStream output;
+        private long written;
+        private int segments;
+
+        private void write(byte[] line, int length) throws IOException {
+            if (output == null || written >= segmentBytes) {
+                close();
+                segments++;
+                Path file = outputDir.resolve(String.format("merged-%05d.log%s", segments, gzip ? ".gz" : ""));
+                OutputStream raw = Files.newOutputStream(file);
+                output = new BufferedOutputStream(gzip ? new GZIPOutputStream(raw, READ_BUFFER) : raw, READ_BUFFER);
+                written = 0;
+            }
+            output.write(line, 0, length);
+            written += length;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (output != null) {
+                output.close();
+                output = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,331 @@
+package edu.harvard.dbmi.avillach.logging.replay;
+
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Re-ships rolled audit files to an output, for when a downstream system lost data. Files are
+ * memory-mapped and cut into ranges at newline boundaries; ranges are scanned by a thread pool, each
+ * line selected by {@link LineFilter} without parsing it, and matching lines are written in batches
+ * to the shared output, paced by an optional rate limit.
+ *
+ * <pre>java -cp app.jar edu.harvard.dbmi.avillach.logging.replay.AuditReplay [--from ISO] [--to ISO]
+ *     [--event-type A,B] [--output stdout|file:PATH|tcp:HOST:PORT] [--rate LINES_PER_SEC]
+ *     [--threads N] [--checkpoint PATH] FILE...</pre>
+ *
+ * With {@code --checkpoint}, the offset reached in every range is saved every few seconds and on exit,
+ * and a rerun with the same filter resumes from it. Delivery is at least once: lines written after the
+ * last save are written again on resume. Lines from different ranges are interleaved in the output.
+ */
+public class AuditReplay {
+
+    static final int DEFAULT_CHUNK_BYTES = 4 << 20;
+    private static final int BATCH_BYTES = 64 * 1024;
+    private static final int MAX_BATCH_LINES = 1024;
+    private static final int MARK_EVERY_LINES = 4096;
+    private static final long REPORT_SECONDS = 5;
+
+    private final LineFilter filter;
+    private final OutputStream output;
+    private final RateLimiter limiter;
+    private final int batchLines;
+    private final int threads;
+    private final Path checkpoint;
+    private final int chunkBytes;
+
+    private final LongAdder scanned = new LongAdder();
+    private final LongAdder sent = new LongAdder();
+    private volatile boolean failed;
+
+    /** A {@code rate} of zero replays as fast as the output accepts; {@code checkpoint} may be null. */
+    public AuditReplay(Instant from, Instant to, Collection<String> eventTypes, OutputStream output, long rate,
+                       int threads, Path checkpoint) {
+        this(from, to, eventTypes, output, rate, threads, checkpoint, DEFAULT_CHUNK_BYTES);
+    }
+
+    AuditReplay(Instant from, Instant to, Collection<String> eventTypes, OutputStream output, long rate,
+                int threads, Path checkpoint, int chunkBytes) {
+        this.filter = new LineFilter(from, to, eventTypes);
+        this.output = output;
+        this.limiter = rate > 0 ? new RateLimiter(rate) : null;
+        // About 20 batches a second when paced, so the output sees a steady stream
+        this.batchLines = rate > 0 ? (int) Math.max(1, Math.min(MAX_BATCH_LINES, rate / 20)) : MAX_BATCH_LINES;
+        this.threads = threads;
+        this.checkpoint = checkpoint;
+        this.chunkBytes = chunkBytes;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Instant from = null;
+        Instant to = null;
+        List<String> eventTypes = new ArrayList<>();
+        String target = "stdout";
+        long rate = 0;
+        int threads = Runtime.getRuntime().availableProcessors();
+        Path checkpoint = null;
+        List<Path> files = new ArrayList<>();
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--from" -> from = Instant.parse(args[++i]);
+                    case "--to" -> to = Instant.parse(args[++i]);
+                    case "--event-type" -> eventTypes.addAll(Arrays.asList(args[++i].split(",")));
+                    case "--output" -> target = args[++i];
+                    case "--rate" -> rate = Long.parseLong(args[++i]);
+                    case "--threads" -> threads = Integer.parseInt(args[++i]);
+                    case "--checkpoint" -> checkpoint = Path.of(args[++i]);
+                    default -> files.add(Path.of(args[i]));
+                }
+            }
+        } catch (RuntimeException e) {
+            files.clear();
+        }
+        if (files.isEmpty() || rate < 0 || threads < 1) {
+            System.err.println("Usage: AuditReplay [--from ISO] [--to ISO] [--event-type A,B] "
+                + "[--output stdout|file:PATH|tcp:HOST:PORT] [--rate N] [--threads N] [--checkpoint PATH] FILE...");
+            System.exit(2);
+        }
+
+        long started = System.nanoTime();
+        try (OutputStream output = open(target)) {
+            Result result = new AuditReplay(from, to, eventTypes, output, rate, threads, checkpoint).replay(files);
+            System.err.printf("OK: sent %d of %d scanned lines from %d files (%d ms)%n",
+                result.sent(), result.scanned(), files.size(), (System.nanoTime() - started) / 1_000_000);
+        } catch (IllegalStateException e) {
+            System.err.println(e.getMessage());
+            System.exit(2);
+        } catch (IOException e) {
+            System.err.println("FAILED: " + e.getMessage());
+            System.exit(1);
+        }
+        System.exit(0);
+    }
+
+    public Result replay(List<Path> files) throws IOException, InterruptedException {
+        ReplayCheckpoint previous = checkpoint != null && Files.exists(checkpoint)
+            ? ReplayCheckpoint.read(checkpoint) : null;
+        if (previous != null && !previous.filter().equals(filter.description())) {
+            throw new IllegalStateException("Checkpoint " + checkpoint + " was written for a different filter ("
+                + previous.filter() + "); remove it to start over");
+        }
+
+        List<Input> inputs = new ArrayList<>();
+        for (Path file : files) {
+            inputs.add(split(file, previous == null ? null : previous.files().get(key(file))));
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<?>> futures = new ArrayList<>();
+        try {
+            for (Input input : inputs) {
+                for (Range range : input.ranges()) {
+                    futures.add(pool.submit(() -> run(input.buffer(), range)));
+                }
+            }
+            pool.shutdown();
+            while (!pool.awaitTermination(REPORT_SECONDS, TimeUnit.SECONDS)) {
+                save(inputs);
+                System.err.printf("replay: scanned %d, sent %d lines (%d%%)%n",
+                    scanned.sum(), sent.sum(), percentDone(inputs));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            return new Result(scanned.sum(), sent.sum());
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof UncheckedIOException io) {
+                throw io.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            pool.shutdownNow();
+            save(inputs);
+        }
+    }
+
+    private void run(ByteBuffer buffer, Range range) {
+        byte[] batch = new byte[BATCH_BYTES];
+        int length = 0;
+        int lines = 0;
+        int position = (int) range.next.get();
+        long sinceMark = 0;
+        try {
+            while (position < range.end && !failed) {
+                int newline = LineFilter.indexOf(buffer, (byte) '\n', position, range.end);
+                int next = newline < 0 ? range.end : newline + 1;
+                int end = newline < 0 ? range.end : newline;
+                if (end > position && buffer.get(end - 1) == '\r') {
+                    end--;
+                }
+                scanned.increment();
+                if (filter.accepts(buffer, position, end)) {
+                    int size = next - position + (newline < 0 ? 1 : 0);
+                    if (length + size > batch.length) {
+                        batch = Arrays.copyOf(batch, Math.max(batch.length * 2, length + size));
+                    }
+                    buffer.get(position, batch, length, next - position);
+                    length += size;
+                    batch[length - 1] = '\n';
+                    lines++;
+                }
+                position = next;
+                if (lines >= batchLines || length >= BATCH_BYTES) {
+                    write(batch, length, lines);
+                    range.next.set(position);
+                    length = 0;
+                    lines = 0;
+                } else if (lines == 0 && ++sinceMark % MARK_EVERY_LINES == 0) {
+                    range.next.set(position);
+                }
+            }
+            if (lines > 0) {
+                write(batch, length, lines);
+            }
+            range.next.set(position);
+        } catch (IOException e) {
+            failed = true;
+            throw new UncheckedIOException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void write(byte[] batch, int length, int lines) throws IOException, InterruptedException {
+        if (limiter != null) {
+            limiter.acquire(lines);
+        }
+        synchronized (output) {
+            output.write(batch, 0, length);
+            output.flush();
+        }
+        sent.add(lines);
+    }
+
+    /** Reuses the saved ranges of an unchanged file, or cuts it into chunks that start at line starts. */
+    private Input split(Path file, ReplayCheckpoint.FileProgress saved) throws IOException {
+        long modified = Files.getLastModifiedTime(file).toMillis();
+        ByteBuffer buffer = map(file);
+        List<Range> ranges = new ArrayList<>();
+        if (saved != null && saved.size() == buffer.limit() && saved.modifiedMillis() == modified) {
+            for (ReplayCheckpoint.RangeProgress range : saved.ranges()) {
+                ranges.add(new Range((int) range.start(), (int) range.end(), range.next()));
+            }
+        } else {
+            int start = 0;
+            while (start < buffer.limit()) {
+                int end = snap(buffer, (int) Math.min((long) start + chunkBytes, buffer.limit()));
+                ranges.add(new Range(start, end, start));
+                start = end;
+            }
+        }
+        return new Input(file, buffer.limit(), modified, buffer, ranges);
+    }
+
+    /** The start of the first line at or after {@code offset}. */
+    private static int snap(ByteBuffer buffer, int offset) {
+        if (offset == 0 || offset >= buffer.limit()) {
+            return Math.min(offset, buffer.limit());
+        }
+        int newline = LineFilter.indexOf(buffer, (byte) '\n', offset - 1, buffer.limit());
+        return newline < 0 ? buffer.limit() : newline + 1;
+    }
+
+    private void save(List<Input> inputs) throws IOException {
+        if (checkpoint == null) {
+            return;
+        }
+        Map<String, ReplayCheckpoint.FileProgress> files = new LinkedHashMap<>();
+        for (Input input : inputs) {
+            files.put(key(input.file()), new ReplayCheckpoint.FileProgress(input.size(), input.modified(),
+                input.ranges().stream()
+                    .map(r -> new ReplayCheckpoint.RangeProgress(r.start, r.end, r.next.get()))
+                    .toList()));
+        }
+        new ReplayCheckpoint(filter.description(), files).write(checkpoint);
+    }
+
+    private static long percentDone(List<Input> inputs) {
+        long total = 0;
+        long done = 0;
+        for (Input input : inputs) {
+            total += input.size();
+            for (Range range : input.ranges()) {
+                done += range.next.get() - range.start;
+            }
+        }
+        return total == 0 ? 100 : done * 100 / total;
+    }
+
+    private static String key(Path file) {
+        return file.toAbsolutePath().normalize().toString();
+    }
+
+    private static ByteBuffer map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException(file + " is larger than 2 GB");
+            }
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    private static OutputStream open(String target) throws IOException {
+        if (target.equals("stdout")) {
+            return new FileOutputStream(FileDescriptor.out);
+        }
+        if (target.startsWith("file:")) {
+            return Files.newOutputStream(Path.of(target.substring("file:".length())),
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        }
+        if (target.startsWith("tcp:")) {
+            String address = target.substring("tcp:".length());
+            int colon = address.lastIndexOf(':');
+            if (colon > 0) {
+                Socket socket = new Socket(address.substring(0, colon), Integer.parseInt(address.substring(colon + 1)));
+                return socket.getOutputStream();
+            }
+        }
+        throw new IllegalStateException("Unsupported --output: " + target);
+    }
+
+    public record Result(long scanned, long sent) {
+    }
+
+    private record Input(Path file, long size, long modified, ByteBuffer buffer, List<Range> ranges) {
+    }
+
+    private static final class Range {
+        private final int start;
+        private final int end;
+        private final AtomicLong next;
+
+        private Range(int start, int end, long next) {
+            this.start = start;
+            this.end = end;
+            this.next = new AtomicLong(next);
+        }
+    }
+}
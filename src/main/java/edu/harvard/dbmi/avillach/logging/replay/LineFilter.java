@@ -0,0 +1,135 @@
+package edu.harvard.dbmi.avillach.logging.replay;
+
+import edu.harvard.dbmi.avillach.logging.chain.HashChain;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.TreeSet;
+
+/**
+ * Selects audit lines by {@code _time} range and {@code event_type} straight from the mapped bytes.
+ * Audit lines start with {@code {"_time":"...","event_type":"...",}, so both values are found by
+ * scanning for their key prefix rather than parsing the JSON. Times are compared on their first 19
+ * characters ({@code yyyy-MM-ddTHH:mm:ss}) and only parsed when those equal a bound's, since the
+ * fraction has a variable number of digits. Chain bookkeeping lines never match.
+ */
+final class LineFilter {
+
+    private static final byte[] TIME_KEY = "\"_time\":\"".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] EVENT_TYPE_KEY = "\"event_type\":\"".getBytes(StandardCharsets.US_ASCII);
+    private static final int SECONDS_PREFIX = 19;
+
+    private final Instant from;
+    private final Instant to;
+    private final byte[] fromPrefix;
+    private final byte[] toPrefix;
+    private final byte[][] eventTypes;
+    private final String description;
+
+    /** {@code from} is inclusive and {@code to} exclusive; null bounds and an empty type set match all. */
+    LineFilter(Instant from, Instant to, Collection<String> eventTypes) {
+        this.from = from;
+        this.to = to;
+        this.fromPrefix = from == null ? null : prefix(from);
+        this.toPrefix = to == null ? null : prefix(to);
+        TreeSet<String> sorted = new TreeSet<>(eventTypes);
+        this.eventTypes = sorted.stream().map(t -> t.getBytes(StandardCharsets.UTF_8)).toArray(byte[][]::new);
+        this.description = "from=" + from + ";to=" + to + ";event_types=" + sorted;
+    }
+
+    /** Identifies the selection, so a checkpoint is only resumed with the same filter. */
+    String description() {
+        return description;
+    }
+
+    /** Whether the line in {@code buffer[start, end)}, without its newline, is replayed. */
+    boolean accepts(ByteBuffer buffer, int start, int end) {
+        if (HashChain.isMarker(buffer, start, end)) {
+            return false;
+        }
+        int cursor = start;
+        if (from != null || to != null) {
+            int value = valueStart(buffer, TIME_KEY, start, end);
+            if (value < 0) {
+                return false;
+            }
+            int close = indexOf(buffer, (byte) '"', value, end);
+            if (close < 0) {
+                return false;
+            }
+            if (from != null && compare(buffer, value, close, from, fromPrefix) < 0) {
+                return false;
+            }
+            if (to != null && compare(buffer, value, close, to, toPrefix) >= 0) {
+                return false;
+            }
+            cursor = close;
+        }
+        if (eventTypes.length == 0) {
+            return true;
+        }
+        int value = valueStart(buffer, EVENT_TYPE_KEY, cursor, end);
+        if (value < 0) {
+            return false;
+        }
+        for (byte[] eventType : eventTypes) {
+            if (value + eventType.length < end && buffer.get(value + eventType.length) == '"'
+                && regionEquals(buffer, value, eventType)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int compare(ByteBuffer buffer, int value, int close, Instant bound, byte[] boundPrefix) {
+        int length = Math.min(SECONDS_PREFIX, close - value);
+        for (int i = 0; i < length; i++) {
+            int difference = buffer.get(value + i) - boundPrefix[i];
+            if (difference != 0) {
+                return difference;
+            }
+        }
+        byte[] text = new byte[close - value];
+        buffer.get(value, text);
+        try {
+            return Instant.parse(new String(text, StandardCharsets.US_ASCII)).compareTo(bound);
+        } catch (RuntimeException e) {
+            return -1;
+        }
+    }
+
+    /** Index just past {@code key} (which ends in the value's opening quote), or -1. */
+    private static int valueStart(ByteBuffer buffer, byte[] key, int from, int to) {
+        int last = to - key.length;
+        for (int i = from; i <= last; i++) {
+            if (buffer.get(i) == key[0] && regionEquals(buffer, i, key)) {
+                return i + key.length;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean regionEquals(ByteBuffer buffer, int at, byte[] expected) {
+        for (int i = 0; i < expected.length; i++) {
+            if (buffer.get(at + i) != expected[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static int indexOf(ByteBuffer buffer, byte value, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (buffer.get(i) == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static byte[] prefix(Instant instant) {
+        return instant.toString().substring(0, SECONDS_PREFIX).getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,32 @@
+package edu.harvard.dbmi.avillach.logging.replay;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Paces replay writers to a shared lines-per-second budget. Each caller reserves the next free slot
+ * for its batch under the lock and sleeps outside it, so idle time is never saved up into a burst.
+ */
+final class RateLimiter {
+
+    private final double nanosPerLine;
+    private long nextFree = System.nanoTime();
+
+    RateLimiter(long linesPerSecond) {
+        this.nanosPerLine = 1_000_000_000.0 / linesPerSecond;
+    }
+
+    void acquire(int lines) throws InterruptedException {
+        long wait;
+        synchronized (this) {
+            long now = System.nanoTime();
+            if (nextFree < now) {
+                nextFree = now;
+            }
+            wait = nextFree - now;
+            nextFree += (long) (lines * nanosPerLine);
+        }
+        if (wait > 0) {
+            TimeUnit.NANOSECONDS.sleep(wait);
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package edu.harvard.dbmi.avillach.logging.replay;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Progress of a replay, saved as JSON: per input file, its size and modification time when it was
+ * split, and for each of its ranges the offset of the first line not yet written. A file whose size or
+ * modification time has changed since is replayed from the start.
+ */
+public record ReplayCheckpoint(String filter, Map<String, FileProgress> files) {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    public record FileProgress(long size, long modifiedMillis, List<RangeProgress> ranges) {}
+
+    public record RangeProgress(long start, long end, long next) {}
+
+    static ReplayCheckpoint read(Path file) throws IOException {
+        return MAPPER.readValue(file.toFile(), ReplayCheckpoint.class);
+    }
+
+    /** Writes to a sibling temporary file and renames it, so a crash never leaves a partial checkpoint. */
+    void write(Path file) throws IOException {
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        MAPPER.writeValue(temporary.toFile(), this);
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
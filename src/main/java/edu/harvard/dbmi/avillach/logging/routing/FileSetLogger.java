@@ -0,0 +1,113 @@
+package edu.harvard.dbmi.avillach.logging.routing;
+
+import ch.qos.logback.classic.AsyncAppender;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.Appender;
+import ch.qos.logback.core.rolling.RollingFileAppender;
+import ch.qos.logback.core.rolling.SizeAndTimeBasedRollingPolicy;
+import ch.qos.logback.core.util.FileSize;
+import edu.harvard.dbmi.avillach.logging.chain.HashChainEncoder;
+import edu.harvard.dbmi.avillach.logging.metrics.AsyncQueueProbe;
+import net.logstash.logback.fieldnames.LogstashFieldNames;
+import net.logstash.logback.stacktrace.ShortenedThrowableConverter;
+import org.slf4j.LoggerFactory;
+
+import java.nio.file.Path;
+
+/**
+ * Builds the logback pipeline of one file set to mirror {@code AUDIT}'s: the shared stdout appender,
+ * plus {@code <name>.log} rolled to {@code <name>.%d{yyyy-MM-dd}.%i.log} behind a never-blocking async
+ * appender. The file is hash-chained with the same key and checkpoint interval as {@code audit.log}.
+ */
+public class FileSetLogger {
+
+    private static final String IGNORE = "[ignore]";
+
+    private final Logger logger;
+    private final AsyncAppender async;
+    private final AsyncQueueProbe queueProbe;
+
+    public FileSetLogger(String name, FileSetSpec spec, Path logDir) {
+        LoggerContext context = (LoggerContext) LoggerFactory.getILoggerFactory();
+        Logger audit = context.getLogger("AUDIT");
+
+        HashChainEncoder encoder = new HashChainEncoder();
+        encoder.setContext(context);
+        if (appender(audit, "ASYNC_AUDIT_FILE", "AUDIT_FILE") instanceof RollingFileAppender<ILoggingEvent> file
+            && file.getEncoder() instanceof HashChainEncoder main) {
+            encoder.setKey(main.getKey());
+            encoder.setCheckpointEvery(main.getCheckpointEvery());
+        }
+        encoder.setFile(logDir.resolve(name + ".log").toString());
+        LogstashFieldNames fieldNames = encoder.getFieldNames();
+        fieldNames.setVersion(IGNORE);
+        fieldNames.setLevelValue(IGNORE);
+        fieldNames.setThread(IGNORE);
+        fieldNames.setLevel(IGNORE);
+        fieldNames.setLogger(IGNORE);
+        fieldNames.setMessage(IGNORE);
+        fieldNames.setTimestamp(IGNORE);
+        encoder.setThrowableConverter(new ShortenedThrowableConverter());
+
+        RollingFileAppender<ILoggingEvent> file = new RollingFileAppender<>();
+        file.setContext(context);
+        file.setName("ROUTE_FILE_" + name);
+        file.setFile(logDir.resolve(name + ".log").toString());
+        file.setEncoder(encoder);
+        SizeAndTimeBasedRollingPolicy<ILoggingEvent> policy = new SizeAndTimeBasedRollingPolicy<>();
+        policy.setContext(context);
+        policy.setParent(file);
+        policy.setFileNamePattern(logDir.resolve(name + ".%d{yyyy-MM-dd}.%i.log").toString());
+        policy.setMaxFileSize(FileSize.valueOf(spec.maxFileSizeOrDefault()));
+        policy.setMaxHistory(spec.maxHistoryOrDefault());
+        policy.setTotalSizeCap(FileSize.valueOf(spec.totalSizeCapOrDefault()));
+        file.setRollingPolicy(policy);
+        encoder.start();
+        policy.start();
+        file.start();
+
+        this.async = new AsyncAppender();
+        async.setContext(context);
+        async.setName("ASYNC_ROUTE_FILE_" + name);
+        async.setQueueSize(1024);
+        async.setDiscardingThreshold(0);
+        async.setNeverBlock(true);
+        async.addAppender(file);
+        async.start();
+
+        this.logger = context.getLogger("AUDIT_ROUTE." + name);
+        logger.setAdditive(false);
+        logger.detachAndStopAllAppenders();
+        Appender<ILoggingEvent> stdout = audit.getAppender("AUDIT_JSON");
+        if (stdout != null) {
+            logger.addAppender(stdout);
+        }
+        logger.addAppender(async);
+        this.queueProbe = new AsyncQueueProbe(logger.getName(), async.getName());
+    }
+
+    public org.slf4j.Logger logger() {
+        return logger;
+    }
+
+    /** The file's async queue, which drops events when full just like {@code ASYNC_AUDIT_FILE}. */
+    public AsyncQueueProbe queueProbe() {
+        return queueProbe;
+    }
+
+    /** Drains the queue and closes the file, writing its chain trailer. */
+    public void stop() {
+        logger.detachAppender(async);
+        async.stop();
+    }
+
+    private static Appender<ILoggingEvent> appender(Logger logger, String asyncName, String fileName) {
+        Appender<ILoggingEvent> wrapper = logger.getAppender(asyncName);
+        if (wrapper instanceof AsyncAppender async) {
+            return async.getAppender(fileName);
+        }
+        return logger.getAppender(fileName);
+    }
+}
@@ -0,0 +1,27 @@
+package edu.harvard.dbmi.avillach.logging.routing;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/** Rolling and retention of one file set; absent values default to those of {@code audit.log}. */
+public record FileSetSpec(
+    @JsonProperty("max_file_size") String maxFileSize,
+    @JsonProperty("max_history") Integer maxHistory,
+    @JsonProperty("total_size_cap") String totalSizeCap
+) {
+
+    public static final String DEFAULT_MAX_FILE_SIZE = "50MB";
+    public static final int DEFAULT_MAX_HISTORY = 30;
+    public static final String DEFAULT_TOTAL_SIZE_CAP = "1GB";
+
+    public String maxFileSizeOrDefault() {
+        return maxFileSize == null ? DEFAULT_MAX_FILE_SIZE : maxFileSize;
+    }
+
+    public int maxHistoryOrDefault() {
+        return maxHistory == null ? DEFAULT_MAX_HISTORY : maxHistory;
+    }
+
+    public String totalSizeCapOrDefault() {
+        return totalSizeCap == null ? DEFAULT_TOTAL_SIZE_CAP : totalSizeCap;
+    }
+}
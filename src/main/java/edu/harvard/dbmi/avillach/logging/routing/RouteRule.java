@@ -0,0 +1,19 @@
+package edu.harvard.dbmi.avillach.logging.routing;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+
+/**
+ * One routing rule: events whose fields match every listed predicate go to {@code file_set}. A
+ * predicate lists the accepted values of one field; an absent predicate accepts any value.
+ */
+public record RouteRule(
+    @JsonProperty("name") String name,
+    @JsonProperty("app") List<String> app,
+    @JsonProperty("client_type") List<String> clientType,
+    @JsonProperty("event_type") List<String> eventType,
+    @JsonProperty("action") List<String> action,
+    @JsonProperty("file_set") String fileSet
+) {
+}
@@ -0,0 +1,79 @@
+package edu.harvard.dbmi.avillach.logging.routing;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Routing rules compiled into one bitmask index per field. Bit {@code i} stands for rule {@code i};
+ * each field maps a value to the rules that accept it, plus a mask of the rules that do not constrain
+ * that field. An event's candidates are the AND of three lookups, and the lowest set bit is the first
+ * matching rule, so evaluation costs the same however many rules there are. The {@code app}
+ * predicate is constant for a logger and is resolved at compile time.
+ */
+public class RouteTable {
+
+    /** One bit per rule in a {@code long}. */
+    public static final int MAX_ROUTES = 64;
+
+    private final Dimension clientType;
+    private final Dimension eventType;
+    private final Dimension action;
+
+    public RouteTable(List<RouteRule> rules, String app) {
+        if (rules.size() > MAX_ROUTES) {
+            throw new IllegalStateException("At most " + MAX_ROUTES + " routes are supported, got " + rules.size());
+        }
+        long enabled = 0;
+        for (int i = 0; i < rules.size(); i++) {
+            List<String> apps = rules.get(i).app();
+            if (apps == null || apps.contains(app)) {
+                enabled |= 1L << i;
+            }
+        }
+        this.clientType = new Dimension(rules, enabled, RouteRule::clientType);
+        this.eventType = new Dimension(rules, enabled, RouteRule::eventType);
+        this.action = new Dimension(rules, enabled, RouteRule::action);
+    }
+
+    /** Index of the first rule matching the event, or -1. */
+    public int route(Object clientTypeValue, Object eventTypeValue, Object actionValue) {
+        long candidates = eventType.match(eventTypeValue) & action.match(actionValue)
+            & clientType.match(clientTypeValue);
+        return candidates == 0 ? -1 : Long.numberOfTrailingZeros(candidates);
+    }
+
+    private static final class Dimension {
+        private final Map<String, Long> byValue = new HashMap<>();
+        private final long unconstrained;
+
+        private Dimension(List<RouteRule> rules, long enabled,
+                          Function<RouteRule, List<String>> predicate) {
+            long any = 0;
+            for (int i = 0; i < rules.size(); i++) {
+                long bit = 1L << i;
+                if ((enabled & bit) == 0) {
+                    continue;
+                }
+                List<String> values = predicate.apply(rules.get(i));
+                if (values == null) {
+                    any |= bit;
+                } else {
+                    values.forEach(value -> byValue.merge(value, bit, (a, b) -> a | b));
+                }
+            }
+            this.unconstrained = any;
+            // Rules that constrain nothing else must still see every value of this field
+            byValue.replaceAll((value, mask) -> mask | unconstrained);
+        }
+
+        private long match(Object value) {
+            if (!(value instanceof String text)) {
+                return unconstrained;
+            }
+            Long mask = byValue.get(text);
+            return mask == null ? unconstrained : mask;
+        }
+    }
+}
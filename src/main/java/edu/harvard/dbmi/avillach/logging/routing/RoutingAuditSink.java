@@ -0,0 +1,186 @@
+package edu.harvard.dbmi.avillach.logging.routing;
+
+import ch.qos.logback.core.util.FileSize;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import edu.harvard.dbmi.avillach.logging.metrics.AsyncQueueProbe;
+import edu.harvard.dbmi.avillach.logging.pipeline.AuditSink;
+import edu.harvard.dbmi.avillach.logging.pipeline.LoggerAuditSink;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+/**
+ * Sends each event to the file set of the first routing rule it matches, or to the main audit sink
+ * when none does. Rules are compiled into a {@link RouteTable} at load time, so choosing a route is
+ * three hash lookups. Events are counted per route and per file set.
+ */
+public class RoutingAuditSink implements AuditSink {
+
+    private static final Pattern NAME = Pattern.compile("[A-Za-z0-9_-]+");
+    private static final Set<String> RESERVED = Set.of("audit", "app");
+
+    private final RoutingDocument document;
+    private final String app;
+    private final RouteTable table;
+    private final AuditSink main;
+    private final String[] routeNames;
+    private final String[] routeFileSets;
+    private final AuditSink[] routeSinks;
+    private final LongAdder[] routeEvents;
+    private final Map<String, LongAdder> fileSetEvents = new LinkedHashMap<>();
+    private final LongAdder[] routeFileSetEvents;
+    private final LongAdder unrouted = new LongAdder();
+    private final List<FileSetLogger> loggers = new ArrayList<>();
+    private final Map<String, AsyncQueueProbe> fileSetQueues = new LinkedHashMap<>();
+
+    /** {@code fileSets} creates the sink of each named file set once. */
+    public RoutingAuditSink(RoutingDocument document, String app, AuditSink main,
+                            Function<String, AuditSink> fileSets) {
+        validate(document);
+        this.document = document;
+        this.app = app;
+        this.table = new RouteTable(document.routes(), app);
+        this.main = main;
+        Map<String, AuditSink> sinks = new LinkedHashMap<>();
+        document.fileSets().keySet().forEach(name -> {
+            sinks.put(name, fileSets.apply(name));
+            fileSetEvents.put(name, new LongAdder());
+        });
+        int count = document.routes().size();
+        this.routeNames = new String[count];
+        this.routeFileSets = new String[count];
+        this.routeSinks = new AuditSink[count];
+        this.routeEvents = new LongAdder[count];
+        this.routeFileSetEvents = new LongAdder[count];
+        for (int i = 0; i < count; i++) {
+            RouteRule rule = document.routes().get(i);
+            routeNames[i] = rule.name();
+            routeFileSets[i] = rule.fileSet();
+            routeSinks[i] = sinks.get(rule.fileSet());
+            routeEvents[i] = new LongAdder();
+            routeFileSetEvents[i] = fileSetEvents.get(rule.fileSet());
+        }
+    }
+
+    /** Loads {@code file} and opens a rolling file set under {@code logDir} for each of its file sets. */
+    public static RoutingAuditSink load(Path file, String app, Path logDir, AuditSink main) {
+        RoutingDocument document;
+        try {
+            document = new ObjectMapper().enable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+                .readValue(file.toFile(), RoutingDocument.class);
+        } catch (IOException e) {
+            throw new IllegalStateException("Invalid ROUTING_FILE " + file + ": " + e.getMessage(), e);
+        }
+        Map<String, FileSetLogger> opened = new LinkedHashMap<>();
+        RoutingAuditSink sink = new RoutingAuditSink(document, app, main, name -> {
+            FileSetLogger logger = new FileSetLogger(name, document.fileSets().get(name), logDir);
+            opened.put(name, logger);
+            return new LoggerAuditSink(logger.logger());
+        });
+        opened.forEach((name, logger) -> {
+            sink.loggers.add(logger);
+            sink.fileSetQueues.put(name, logger.queueProbe());
+        });
+        return sink;
+    }
+
+    /** The same routes with every file set, and unrouted events, sent to {@code sink} instead. */
+    public RoutingAuditSink redirectedTo(AuditSink sink) {
+        return new RoutingAuditSink(document, app, sink, name -> sink);
+    }
+
+    /** The async queue of the file set {@code fields} is routed to, or {@code unrouted} when it goes to the main sink. */
+    public AsyncQueueProbe queueFor(Map<String, Object> fields, AsyncQueueProbe unrouted) {
+        int route = table.route(fields.get("client_type"), fields.get("event_type"), fields.get("action"));
+        AsyncQueueProbe queue = route < 0 ? null : fileSetQueues.get(routeFileSets[route]);
+        return queue == null ? unrouted : queue;
+    }
+
+    /** Async queue of each file set opened by {@link #load}, by file set name. */
+    public Map<String, AsyncQueueProbe> fileSetQueues() {
+        return Collections.unmodifiableMap(fileSetQueues);
+    }
+
+    @Override
+    public void write(Map<String, Object> fields) {
+        int route = table.route(fields.get("client_type"), fields.get("event_type"), fields.get("action"));
+        if (route < 0) {
+            unrouted.increment();
+            main.write(fields);
+            return;
+        }
+        routeEvents[route].increment();
+        routeFileSetEvents[route].increment();
+        routeSinks[route].write(fields);
+    }
+
+    /** Flushes and closes the file sets' files. */
+    public void stop() {
+        loggers.forEach(FileSetLogger::stop);
+    }
+
+    public Map<String, Object> metrics() {
+        Map<String, Object> routes = new LinkedHashMap<>();
+        for (int i = 0; i < routeNames.length; i++) {
+            routes.put(routeNames[i], routeEvents[i].sum());
+        }
+        Map<String, Object> fileSets = new LinkedHashMap<>();
+        fileSetEvents.forEach((name, count) -> fileSets.put(name, count.sum()));
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("routes", routes);
+        metrics.put("file_sets", fileSets);
+        metrics.put("unrouted", unrouted.sum());
+        return metrics;
+    }
+
+    private static void validate(RoutingDocument document) {
+        if (document.fileSets() == null || document.fileSets().isEmpty()) {
+            throw new IllegalStateException("ROUTING_FILE defines no file_sets");
+        }
+        if (document.routes() == null) {
+            throw new IllegalStateException("ROUTING_FILE defines no routes");
+        }
+        document.fileSets().forEach((name, spec) -> {
+            if (!NAME.matcher(name).matches() || RESERVED.contains(name)) {
+                throw new IllegalStateException("Invalid file set name: " + name);
+            }
+            if (spec == null) {
+                throw new IllegalStateException("File set " + name + " has no settings");
+            }
+            if (spec.maxHistory() != null && spec.maxHistory() < 1) {
+                throw new IllegalStateException("File set " + name + " max_history must be at least 1");
+            }
+            for (String size : new String[] {spec.maxFileSizeOrDefault(), spec.totalSizeCapOrDefault()}) {
+                try {
+                    FileSize.valueOf(size);
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalStateException("File set " + name + " has an invalid size: " + size);
+                }
+            }
+        });
+        Set<String> names = new HashSet<>();
+        for (RouteRule rule : document.routes()) {
+            if (rule == null || rule.name() == null || rule.name().isBlank()) {
+                throw new IllegalStateException("Every route needs a name");
+            }
+            if (!names.add(rule.name())) {
+                throw new IllegalStateException("Duplicate route name: " + rule.name());
+            }
+            if (rule.fileSet() == null || !document.fileSets().containsKey(rule.fileSet())) {
+                throw new IllegalStateException("Route " + rule.name() + " refers to unknown file set: "
+                    + rule.fileSet());
+            }
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package edu.harvard.dbmi.avillach.logging.routing;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+import java.util.Map;
+
+/** Contents of {@code ROUTING_FILE}: named file sets, and rules in priority order. */
+public record RoutingDocument(
+    @JsonProperty("file_sets") Map<String, FileSetSpec> fileSets,
+    @JsonProperty("routes") List<RouteRule> routes
+) {
+}
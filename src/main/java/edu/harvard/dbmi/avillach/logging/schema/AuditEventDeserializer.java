@@ -0,0 +1,73 @@
+package edu.harvard.dbmi.avillach.logging.schema;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+import edu.harvard.dbmi.avillach.logging.model.AuditEvent;
+import edu.harvard.dbmi.avillach.logging.model.RequestInfo;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Binds {@link AuditEvent} field by field so that metadata can be checked against its event type's
+ * schema as it streams in. The {@link SchemaRegistry} comes from the reader attribute keyed by its
+ * class; without one, or for an event type without a schema, this binds exactly like the record's
+ * default deserializer. Metadata that arrives before {@code event_type} is validated once both are read.
+ */
+public class AuditEventDeserializer extends StdDeserializer<AuditEvent> {
+
+    public AuditEventDeserializer() {
+        super(AuditEvent.class);
+    }
+
+    @Override
+    public AuditEvent deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+        if (p.currentToken() != JsonToken.START_OBJECT) {
+            return (AuditEvent) ctxt.handleUnexpectedToken(AuditEvent.class, p);
+        }
+        SchemaRegistry registry = (SchemaRegistry) ctxt.getAttribute(SchemaRegistry.class);
+        JavaType mapType = ctxt.getTypeFactory().constructMapType(Map.class, String.class, Object.class);
+
+        String eventType = null;
+        String action = null;
+        String clientType = null;
+        String sessionId = null;
+        RequestInfo request = null;
+        Map<String, Object> metadata = null;
+        Map<String, Object> error = null;
+        EventSchema schema = null;
+        EventSchema checkedWith = null;
+        for (String name = p.nextFieldName(); name != null; name = p.nextFieldName()) {
+            JsonToken token = p.nextToken();
+            boolean isNull = token == JsonToken.VALUE_NULL;
+            switch (name) {
+                case "event_type" -> {
+                    eventType = isNull ? null : ctxt.readValue(p, String.class);
+                    schema = registry == null ? null : registry.schemaFor(eventType);
+                }
+                case "action" -> action = isNull ? null : ctxt.readValue(p, String.class);
+                case "client_type" -> clientType = isNull ? null : ctxt.readValue(p, String.class);
+                case "session_id" -> sessionId = isNull ? null : ctxt.readValue(p, String.class);
+                case "request" -> request = isNull ? null : ctxt.readValue(p, RequestInfo.class);
+                case "metadata" -> {
+                    if (schema != null && token == JsonToken.START_OBJECT) {
+                        metadata = schema.read(p, ctxt);
+                        checkedWith = schema;
+                    } else {
+                        metadata = isNull ? null : ctxt.readValue(p, mapType);
+                        checkedWith = null;
+                    }
+                }
+                case "error" -> error = isNull ? null : ctxt.readValue(p, mapType);
+                default -> p.skipChildren();
+            }
+        }
+        if (schema != null && schema != checkedWith) {
+            schema.validate(metadata);
+        }
+        return new AuditEvent(eventType, action, clientType, sessionId, request, metadata, error);
+    }
+}
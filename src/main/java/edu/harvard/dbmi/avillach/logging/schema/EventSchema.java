@@ -0,0 +1,201 @@
+package edu.harvard.dbmi.avillach.logging.schema;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A {@link SchemaDefinition} compiled for one event type: a field table with per-field checks and
+ * violation counters. {@link #read} validates metadata while it is parsed, checking string lengths
+ * and unexpected fields before their values are built, so with {@code reject} a bad event stops
+ * parsing at its first violation.
+ */
+public class EventSchema {
+
+    /** Always allowed: old clients send the session ID in metadata, and it is moved to the top level. */
+    private static final String SESSION_ID = "session_id";
+    static final String ADDITIONAL = "_additional";
+
+    private final String eventType;
+    private final Map<String, Field> fields = new HashMap<>();
+    private final Field[] required;
+    private final boolean additionalFields;
+    private final boolean reject;
+
+    private final LongAdder validated = new LongAdder();
+    private final LongAdder violatingEvents = new LongAdder();
+    private final Map<String, LongAdder> fieldViolations = new LinkedHashMap<>();
+
+    EventSchema(SchemaDefinition definition, boolean reject) {
+        this.eventType = definition.eventType();
+        this.additionalFields = definition.additionalFields() == null || definition.additionalFields();
+        this.reject = reject;
+        Map<String, FieldSpec> specs = definition.fields() == null ? Map.of() : definition.fields();
+        int requiredCount = 0;
+        for (Map.Entry<String, FieldSpec> entry : specs.entrySet()) {
+            FieldSpec spec = entry.getValue();
+            Field field = new Field(entry.getKey(), spec, spec.required() ? requiredCount++ : -1);
+            fields.put(field.name, field);
+            fieldViolations.put(field.name, new LongAdder());
+        }
+        fieldViolations.put(ADDITIONAL, new LongAdder());
+        this.required = new Field[requiredCount];
+        fields.values().stream().filter(f -> f.requiredIndex >= 0).forEach(f -> required[f.requiredIndex] = f);
+    }
+
+    public String eventType() {
+        return eventType;
+    }
+
+    /** Reads and validates a metadata object; the parser is on its {@code START_OBJECT}. */
+    Map<String, Object> read(JsonParser p, DeserializationContext ctxt) throws IOException {
+        Check check = new Check();
+        Map<String, Object> metadata = new LinkedHashMap<>();
+        boolean[] seen = new boolean[required.length];
+        for (String name = p.nextFieldName(); name != null; name = p.nextFieldName()) {
+            JsonToken token = p.nextToken();
+            Field field = fields.get(name);
+            if (field == null) {
+                if (!additionalFields && !name.equals(SESSION_ID)) {
+                    check.fail(ADDITIONAL, name + " is not allowed");
+                }
+            } else {
+                if (field.requiredIndex >= 0 && token != JsonToken.VALUE_NULL) {
+                    seen[field.requiredIndex] = true;
+                }
+                // Reject oversized strings before materializing them
+                if (token == JsonToken.VALUE_STRING && field.spec.type() == FieldSpec.Type.STRING
+                    && field.spec.maxLength() != null && p.getTextLength() > field.spec.maxLength()) {
+                    check.fail(field.name, "exceeds " + field.spec.maxLength() + " characters");
+                    metadata.put(name, p.getText());
+                    continue;
+                }
+            }
+            Object value = token == JsonToken.VALUE_NULL ? null : ctxt.readValue(p, Object.class);
+            if (field != null && value != null) {
+                field.check(value, check);
+            }
+            metadata.put(name, value);
+        }
+        for (int i = 0; i < required.length; i++) {
+            if (!seen[i]) {
+                check.fail(required[i].name, "is required");
+            }
+        }
+        check.finish();
+        return metadata;
+    }
+
+    /** Validates metadata that was parsed before its event type was known. */
+    void validate(Map<String, Object> metadata) {
+        Check check = new Check();
+        Map<String, Object> values = metadata == null ? Map.of() : metadata;
+        for (Map.Entry<String, Object> entry : values.entrySet()) {
+            Field field = fields.get(entry.getKey());
+            if (field == null) {
+                if (!additionalFields && !entry.getKey().equals(SESSION_ID)) {
+                    check.fail(ADDITIONAL, entry.getKey() + " is not allowed");
+                }
+            } else if (entry.getValue() != null) {
+                field.check(entry.getValue(), check);
+            }
+        }
+        for (Field field : required) {
+            if (values.get(field.name) == null) {
+                check.fail(field.name, "is required");
+            }
+        }
+        check.finish();
+    }
+
+    Map<String, Object> metrics() {
+        Map<String, Object> perField = new LinkedHashMap<>();
+        fieldViolations.forEach((name, count) -> perField.put(name, count.sum()));
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("validated", validated.sum());
+        metrics.put("violating_events", violatingEvents.sum());
+        metrics.put("field_violations", perField);
+        return metrics;
+    }
+
+    /** Violations of one event: counted as they are found, and thrown at once when rejecting. */
+    final class Check {
+        private boolean failed;
+
+        void fail(String field, String problem) {
+            fieldViolations.get(field).increment();
+            if (!failed) {
+                failed = true;
+                violatingEvents.increment();
+            }
+            if (reject) {
+                validated.increment();
+                String subject = field.equals(ADDITIONAL) ? "metadata." : "metadata." + field + " ";
+                throw new SchemaViolationException(eventType + " " + subject + problem);
+            }
+        }
+
+        void finish() {
+            validated.increment();
+        }
+    }
+
+    private static final class Field {
+        private final String name;
+        private final FieldSpec spec;
+        private final int requiredIndex;
+
+        private Field(String name, FieldSpec spec, int requiredIndex) {
+            this.name = name;
+            this.spec = spec;
+            this.requiredIndex = requiredIndex;
+        }
+
+        private void check(Object value, Check check) {
+            boolean typed = switch (spec.type()) {
+                case STRING -> value instanceof String;
+                case INTEGER -> value instanceof Integer || value instanceof Long || value instanceof BigInteger;
+                case NUMBER -> value instanceof Number;
+                case BOOLEAN -> value instanceof Boolean;
+                case OBJECT -> value instanceof Map<?, ?>;
+                case ARRAY -> value instanceof Collection<?>;
+            };
+            if (!typed) {
+                check.fail(name, "must be " + (spec.type() == FieldSpec.Type.INTEGER ? "an " : "a ")
+                    + spec.type().name().toLowerCase());
+                return;
+            }
+            if (spec.maxLength() != null) {
+                int length = value instanceof String s ? s.length()
+                    : value instanceof Map<?, ?> m ? m.size()
+                    : value instanceof Collection<?> c ? c.size() : 0;
+                if (length > spec.maxLength()) {
+                    String unit = value instanceof String ? " characters" : " entries";
+                    check.fail(name, "exceeds " + spec.maxLength() + unit);
+                    return;
+                }
+            }
+            if (value instanceof Number number && (spec.min() != null || spec.max() != null)) {
+                BigDecimal decimal = new BigDecimal(number.toString());
+                if (spec.min() != null && decimal.compareTo(BigDecimal.valueOf(spec.min())) < 0) {
+                    check.fail(name, "is below " + plain(spec.min()));
+                } else if (spec.max() != null && decimal.compareTo(BigDecimal.valueOf(spec.max())) > 0) {
+                    check.fail(name, "is above " + plain(spec.max()));
+                }
+            }
+        }
+
+        private static String plain(double bound) {
+            return BigDecimal.valueOf(bound).stripTrailingZeros().toPlainString();
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package edu.harvard.dbmi.avillach.logging.schema;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * One metadata field of a {@link SchemaDefinition}. {@code maxLength} limits characters for strings
+ * and entries for arrays and objects; {@code min} and {@code max} bound numbers.
+ */
+public record FieldSpec(
+    @JsonProperty("type") Type type,
+    @JsonProperty("required") boolean required,
+    @JsonProperty("max_length") Integer maxLength,
+    @JsonProperty("min") Double min,
+    @JsonProperty("max") Double max
+) {
+
+    public enum Type {
+        @JsonProperty("string") STRING,
+        @JsonProperty("integer") INTEGER,
+        @JsonProperty("number") NUMBER,
+        @JsonProperty("boolean") BOOLEAN,
+        @JsonProperty("object") OBJECT,
+        @JsonProperty("array") ARRAY
+    }
+}
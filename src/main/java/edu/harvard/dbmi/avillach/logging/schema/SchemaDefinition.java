@@ -0,0 +1,13 @@
+package edu.harvard.dbmi.avillach.logging.schema;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.Map;
+
+/** Contents of one schema file: the metadata fields allowed for one {@code event_type}. */
+public record SchemaDefinition(
+    @JsonProperty("event_type") String eventType,
+    @JsonProperty("fields") Map<String, FieldSpec> fields,
+    @JsonProperty("additional_fields") Boolean additionalFields
+) {
+}
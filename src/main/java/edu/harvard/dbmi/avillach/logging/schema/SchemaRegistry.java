@@ -0,0 +1,88 @@
+package edu.harvard.dbmi.avillach.logging.schema;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Per-{@code event_type} metadata schemas, loaded once from the {@code *.json} files of a directory
+ * and compiled into {@link EventSchema}s. Event types without a schema keep the permissive behavior.
+ * With {@code reject}, a violation fails the request with 400; otherwise it is only counted.
+ */
+public class SchemaRegistry {
+
+    private final Map<String, EventSchema> schemas;
+    private final boolean reject;
+
+    public SchemaRegistry(List<SchemaDefinition> definitions, boolean reject) {
+        this.reject = reject;
+        Map<String, EventSchema> compiled = new LinkedHashMap<>();
+        for (SchemaDefinition definition : definitions) {
+            validate(definition);
+            if (compiled.put(definition.eventType(), new EventSchema(definition, reject)) != null) {
+                throw new IllegalStateException("More than one schema for event_type " + definition.eventType());
+            }
+        }
+        this.schemas = Map.copyOf(compiled);
+    }
+
+    public static SchemaRegistry load(Path directory, boolean reject) {
+        ObjectMapper mapper = new ObjectMapper().enable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(directory)) {
+            files = listing.filter(f -> f.getFileName().toString().endsWith(".json")).sorted().toList();
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot read SCHEMA_DIR " + directory, e);
+        }
+        List<SchemaDefinition> definitions = files.stream().map(file -> {
+            try {
+                return mapper.readValue(file.toFile(), SchemaDefinition.class);
+            } catch (IOException e) {
+                throw new IllegalStateException("Invalid schema file " + file + ": " + e.getMessage(), e);
+            }
+        }).toList();
+        return new SchemaRegistry(definitions, reject);
+    }
+
+    private static void validate(SchemaDefinition definition) {
+        if (definition.eventType() == null || definition.eventType().isBlank()) {
+            throw new IllegalStateException("Schema is missing event_type");
+        }
+        if (definition.fields() == null) {
+            return;
+        }
+        definition.fields().forEach((name, spec) -> {
+            String where = "Schema " + definition.eventType() + " field " + name;
+            if (spec == null || spec.type() == null) {
+                throw new IllegalStateException(where + " needs a type");
+            }
+            if (spec.maxLength() != null && spec.maxLength() < 0) {
+                throw new IllegalStateException(where + " has a negative max_length");
+            }
+            if (spec.min() != null && spec.max() != null && spec.min() > spec.max()) {
+                throw new IllegalStateException(where + " has min above max");
+            }
+        });
+    }
+
+    /** The schema for {@code eventType}, or null if that type is unchecked. */
+    public EventSchema schemaFor(String eventType) {
+        return eventType == null ? null : schemas.get(eventType);
+    }
+
+    public Map<String, Object> metrics() {
+        Map<String, Object> perSchema = new LinkedHashMap<>();
+        schemas.forEach((eventType, schema) -> perSchema.put(eventType, schema.metrics()));
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("mode", reject ? "reject" : "report");
+        metrics.put("schemas", perSchema);
+        return metrics;
+    }
+}
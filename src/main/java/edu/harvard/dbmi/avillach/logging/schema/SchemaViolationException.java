@@ -0,0 +1,9 @@
+package edu.harvard.dbmi.avillach.logging.schema;
+
+/** Thrown while deserializing an event whose metadata breaks its event type's schema. */
+public class SchemaViolationException extends RuntimeException {
+
+    public SchemaViolationException(String message) {
+        super(message);
+    }
+}
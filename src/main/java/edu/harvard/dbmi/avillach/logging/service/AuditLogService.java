@@ -1,38 +1,118 @@
 package edu.harvard.dbmi.avillach.logging.service;
 
 import edu.harvard.dbmi.avillach.logging.config.AppConfig;
+import edu.harvard.dbmi.avillach.logging.enrich.GeoIpEnricher;
+import edu.harvard.dbmi.avillach.logging.enrich.UrlTemplater;
 import edu.harvard.dbmi.avillach.logging.model.AuditEvent;
 import edu.harvard.dbmi.avillach.logging.model.RequestInfo;
+import edu.harvard.dbmi.avillach.logging.pipeline.AuditSink;
+import edu.harvard.dbmi.avillach.logging.pipeline.ChargedFields;
+import edu.harvard.dbmi.avillach.logging.pipeline.LoggerAuditSink;
+import edu.harvard.dbmi.avillach.logging.pipeline.MemoryBudget;
+import edu.harvard.dbmi.avillach.logging.pipeline.SessionStripes;
+import edu.harvard.dbmi.avillach.logging.redact.Redactor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.time.Instant;
 import java.util.LinkedHashMap;
 import java.util.Map;
-
-import static net.logstash.logback.argument.StructuredArguments.entries;
+import java.util.function.Supplier;
 
 public class AuditLogService {
 
-    private static final Logger auditLog = LoggerFactory.getLogger("AUDIT");
     private static final Logger appLog = LoggerFactory.getLogger(AuditLogService.class);
     private static final int MAX_STRING_LENGTH = 2000;
 
     private final AppConfig config;
     private final JwtDecodeService jwtDecodeService;
+    private final AuditSink auditSink;
+    private final SessionStripes sessionStripes;
+    private final SessionIdentityCache sessionIdentityCache;
+    private final GeoIpEnricher geoIpEnricher;
+    private final UrlTemplater urlTemplater;
+    private final Supplier<Redactor> redactor;
+
+    /**
+     * Optional stages around event assembly; a null component skips its stage. Start from {@link #NONE}
+     * and add what is configured.
+     */
+    public record Stages(
+        SessionStripes sessionStripes,
+        SessionIdentityCache sessionIdentityCache,
+        GeoIpEnricher geoIpEnricher,
+        UrlTemplater urlTemplater,
+        Supplier<Redactor> redactor
+    ) {
+        public static final Stages NONE = new Stages(null, null, null, null, null);
+
+        public Stages withSessionStripes(SessionStripes sessionStripes) {
+            return new Stages(sessionStripes, sessionIdentityCache, geoIpEnricher, urlTemplater, redactor);
+        }
+
+        public Stages withSessionIdentityCache(SessionIdentityCache sessionIdentityCache) {
+            return new Stages(sessionStripes, sessionIdentityCache, geoIpEnricher, urlTemplater, redactor);
+        }
+
+        public Stages withGeoIpEnricher(GeoIpEnricher geoIpEnricher) {
+            return new Stages(sessionStripes, sessionIdentityCache, geoIpEnricher, urlTemplater, redactor);
+        }
+
+        public Stages withUrlTemplater(UrlTemplater urlTemplater) {
+            return new Stages(sessionStripes, sessionIdentityCache, geoIpEnricher, urlTemplater, redactor);
+        }
+
+        public Stages withRedactor(Supplier<Redactor> redactor) {
+            return new Stages(sessionStripes, sessionIdentityCache, geoIpEnricher, urlTemplater, redactor);
+        }
+    }
 
     public AuditLogService(AppConfig config, JwtDecodeService jwtDecodeService) {
+        this(config, jwtDecodeService, new LoggerAuditSink(LoggerFactory.getLogger("AUDIT")));
+    }
+
+    public AuditLogService(AppConfig config, JwtDecodeService jwtDecodeService, AuditSink auditSink) {
+        this(config, jwtDecodeService, auditSink, Stages.NONE);
+    }
+
+    public AuditLogService(AppConfig config, JwtDecodeService jwtDecodeService, AuditSink auditSink, Stages stages) {
         this.config = config;
         this.jwtDecodeService = jwtDecodeService;
+        this.auditSink = auditSink;
+        this.sessionStripes = stages.sessionStripes();
+        this.sessionIdentityCache = stages.sessionIdentityCache();
+        this.geoIpEnricher = stages.geoIpEnricher();
+        this.urlTemplater = stages.urlTemplater();
+        this.redactor = stages.redactor();
     }
 
     public void logEvent(AuditEvent event, String authorizationHeader, String requestIdHeader) {
+        logEvent(event, authorizationHeader, requestIdHeader, null);
+    }
+
+    /** Takes over {@code charge}: it travels with the assembled fields, or is released if the event is not written. */
+    public void logEvent(AuditEvent event, String authorizationHeader, String requestIdHeader,
+                         MemoryBudget.Charge charge) {
         if (event == null) {
             appLog.warn("logEvent called with null event, ignoring");
+            if (charge != null) {
+                charge.release();
+            }
+            return;
+        }
+        if (sessionStripes == null) {
+            assembleAndWrite(event, authorizationHeader, requestIdHeader, charge);
             return;
         }
+        // Same session -> same single-threaded stripe, so per-session write order is preserved
+        sessionStripes.execute(resolveSessionId(event),
+            () -> assembleAndWrite(event, authorizationHeader, requestIdHeader, charge));
+    }
+
+    private void assembleAndWrite(AuditEvent event, String authorizationHeader, String requestIdHeader,
+                                  MemoryBudget.Charge charge) {
         try {
-            LinkedHashMap<String, Object> fields = new LinkedHashMap<>();
+            LinkedHashMap<String, Object> fields = charge == null ? new LinkedHashMap<>() : new ChargedFields(charge);
 
             // 1. Timestamp
             fields.put("_time", Instant.now().toString());
@@ -43,19 +123,16 @@ public class AuditLogService {
             putIfNotNull(fields, "client_type", event.clientType());
 
             // 2b. Session ID: prefer top-level field, fall back to metadata for old clients
-            String sessionId = event.sessionId();
-            if ((sessionId == null || sessionId.isBlank()) && event.metadata() != null) {
-                Object metaSessionId = event.metadata().get("session_id");
-                if (metaSessionId != null) {
-                    sessionId = metaSessionId.toString();
-                }
-            }
-            if (sessionId != null && !sessionId.isBlank()) {
+            String sessionId = resolveSessionId(event);
+            if (sessionId != null) {
                 fields.put("session_id", truncate(sessionId));
             }
 
-            // 3. User fields from JWT
+            // 3. User fields from JWT, or from an earlier token seen on the same session
             Map<String, Object> userClaims = jwtDecodeService.extractClaims(authorizationHeader);
+            if (sessionIdentityCache != null && sessionId != null) {
+                userClaims = applySessionIdentity(sessionId, authorizationHeader, userClaims);
+            }
             fields.putAll(userClaims);
 
             // 4. Platform fields
@@ -67,6 +144,11 @@ public class AuditLogService {
             // 5. Request fields
             flattenRequest(fields, event.request(), requestIdHeader);
 
+            // 5b. Location and network owner of src_ip
+            if (geoIpEnricher != null) {
+                geoIpEnricher.enrich(fields);
+            }
+
             // 6. Metadata and error (nested, only if non-empty)
             if (event.metadata() != null && !event.metadata().isEmpty()) {
                 // Strip session_id from metadata since it is now a top-level field
@@ -80,12 +162,48 @@ public class AuditLogService {
                 fields.put("error", event.error());
             }
 
-            auditLog.info("{}", entries(fields));
+            // 6b. Redaction of leaked secrets and identifiers in metadata and error, with the current rules
+            Redactor currentRedactor = redactor == null ? null : redactor.get();
+            if (currentRedactor != null) {
+                currentRedactor.redact(fields);
+            }
+
+            auditSink.write(fields);
         } catch (Exception e) {
             appLog.error("Failed to assemble audit log event", e);
+            if (charge != null) {
+                charge.release();
+            }
         }
     }
 
+    private Map<String, Object> applySessionIdentity(String sessionId, String authorizationHeader,
+                                                     Map<String, Object> userClaims) {
+        if (!JwtDecodeService.ANONYMOUS.equals(userClaims)) {
+            sessionIdentityCache.remember(sessionId, userClaims);
+            return userClaims;
+        }
+        // Only token-less events inherit; an explicitly invalid token stays anonymous
+        if (authorizationHeader == null || authorizationHeader.isBlank()) {
+            Map<String, Object> cached = sessionIdentityCache.recall(sessionId);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        return userClaims;
+    }
+
+    private static String resolveSessionId(AuditEvent event) {
+        String sessionId = event.sessionId();
+        if ((sessionId == null || sessionId.isBlank()) && event.metadata() != null) {
+            Object metaSessionId = event.metadata().get("session_id");
+            if (metaSessionId != null) {
+                sessionId = metaSessionId.toString();
+            }
+        }
+        return (sessionId != null && !sessionId.isBlank()) ? sessionId : null;
+    }
+
     private void flattenRequest(LinkedHashMap<String, Object> fields, RequestInfo request, String requestIdHeader) {
         if (request != null) {
             // request_id from body takes priority
@@ -97,6 +215,9 @@ public class AuditLogService {
 
             putIfNotNull(fields, "method", request.method());
             putIfNotNull(fields, "url", request.url());
+            if (urlTemplater != null && request.url() != null) {
+                fields.put("url_template", truncate(urlTemplater.template(request.url())));
+            }
             putIfNotNull(fields, "query_string", request.queryString());
             putIfNotNull(fields, "src_ip", request.srcIp());
             putIfNotNull(fields, "dest_ip", request.destIp());
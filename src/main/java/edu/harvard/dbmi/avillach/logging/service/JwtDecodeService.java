@@ -7,21 +7,30 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.*;
+import java.util.function.Supplier;
 
 public class JwtDecodeService {
 
     private static final Logger log = LoggerFactory.getLogger(JwtDecodeService.class);
     private static final int MAX_TOKEN_BYTES = 16_384; // 16KB
 
-    private final Map<String, String> claimMapping;
+    /** Claims returned when there is no token or it cannot be decoded. */
+    public static final Map<String, Object> ANONYMOUS = Map.of("logged_in", false);
+
+    private final Supplier<Map<String, String>> claimMapping;
 
     public JwtDecodeService(Map<String, String> claimMapping) {
+        this(() -> claimMapping);
+    }
+
+    /** Reads the mapping once per token, so a reloaded mapping applies from the next event on. */
+    public JwtDecodeService(Supplier<Map<String, String>> claimMapping) {
         this.claimMapping = claimMapping;
     }
 
     public Map<String, Object> extractClaims(String authorizationHeader) {
         if (authorizationHeader == null || authorizationHeader.isBlank()) {
-            return Map.of("logged_in", false);
+            return ANONYMOUS;
         }
 
         String token = authorizationHeader.strip();
@@ -30,14 +39,15 @@ public class JwtDecodeService {
         }
 
         if (token.isBlank()) {
-            return Map.of("logged_in", false);
+            return ANONYMOUS;
         }
 
         if (token.length() > MAX_TOKEN_BYTES) {
             log.warn("JWT token exceeds maximum size of {} bytes (got {})", MAX_TOKEN_BYTES, token.length());
-            return Map.of("logged_in", false);
+            return ANONYMOUS;
         }
 
+        Map<String, String> claimMapping = this.claimMapping.get();
         try {
             DecodedJWT jwt = JWT.decode(token);
             Map<String, Object> result = new LinkedHashMap<>();
@@ -68,7 +78,7 @@ public class JwtDecodeService {
             return result;
         } catch (Exception e) {
             log.warn("Failed to decode JWT: {}", e.getMessage());
-            return Map.of("logged_in", false);
+            return ANONYMOUS;
         }
     }
 
@@ -0,0 +1,152 @@
+package edu.harvard.dbmi.avillach.logging.service;
+
+import edu.harvard.dbmi.avillach.logging.config.ReadinessConfig;
+import edu.harvard.dbmi.avillach.logging.metrics.AsyncQueueProbe;
+import edu.harvard.dbmi.avillach.logging.metrics.RollingHistogram;
+import edu.harvard.dbmi.avillach.logging.model.ReadinessStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Evaluates queue saturation, disk headroom and audit write latency on a background thread and
+ * caches the result, so {@code /ready} probes never do I/O.
+ */
+public class ReadinessService {
+
+    private static final Logger log = LoggerFactory.getLogger(ReadinessService.class);
+    private static final long LATENCY_SLOT_MILLIS = 10_000;
+    private static final ReadinessStatus STARTING = new ReadinessStatus(
+        ReadinessStatus.STARTING, List.of("startup in progress"), Map.of());
+
+    private final ReadinessConfig config;
+    private final AtomicBoolean started;
+    private final AsyncQueueProbe queueProbe;
+    private final Map<String, AsyncQueueProbe> fileSetQueues;
+    private final Path logDir;
+    private final RollingHistogram writeLatencyMicros;
+
+    private volatile ReadinessStatus status;
+    private ScheduledExecutorService scheduler;
+
+    public ReadinessService(ReadinessConfig config, AtomicBoolean started, AsyncQueueProbe queueProbe,
+                            Path logDir, RollingHistogram writeLatencyMicros) {
+        this(config, started, queueProbe, Map.of(), logDir, writeLatencyMicros);
+    }
+
+    /** {@code fileSetQueues} are the async queues of routed file sets, held to the same fill threshold. */
+    public ReadinessService(ReadinessConfig config, AtomicBoolean started, AsyncQueueProbe queueProbe,
+                            Map<String, AsyncQueueProbe> fileSetQueues, Path logDir,
+                            RollingHistogram writeLatencyMicros) {
+        this.config = config;
+        this.started = started;
+        this.queueProbe = queueProbe;
+        this.fileSetQueues = fileSetQueues;
+        this.logDir = logDir;
+        this.writeLatencyMicros = writeLatencyMicros;
+        this.status = evaluate();
+    }
+
+    public synchronized void start() {
+        if (scheduler != null) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "readiness-check");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleAtFixedRate(this::refresh, 0, config.checkIntervalMillis(), TimeUnit.MILLISECONDS);
+        scheduler.scheduleAtFixedRate(writeLatencyMicros::rotate,
+            LATENCY_SLOT_MILLIS, LATENCY_SLOT_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    public ReadinessStatus current() {
+        return started.get() ? status : STARTING;
+    }
+
+    void refresh() {
+        try {
+            status = evaluate();
+        } catch (Exception e) {
+            log.error("Readiness check failed", e);
+        }
+    }
+
+    ReadinessStatus evaluate() {
+        List<String> reasons = new ArrayList<>();
+        Map<String, Object> checks = new LinkedHashMap<>();
+
+        double fill = queueProbe.fillRatio();
+        checks.put("audit_queue_fill_ratio", fill);
+        if (fill >= config.maxQueueFillRatio()) {
+            reasons.add(String.format("audit queue %.0f%% full (threshold %.0f%%)",
+                fill * 100, config.maxQueueFillRatio() * 100));
+        }
+
+        if (!fileSetQueues.isEmpty()) {
+            double maxFill = 0.0;
+            for (Map.Entry<String, AsyncQueueProbe> queue : fileSetQueues.entrySet()) {
+                double fileSetFill = queue.getValue().fillRatio();
+                maxFill = Math.max(maxFill, fileSetFill);
+                if (fileSetFill >= config.maxQueueFillRatio()) {
+                    reasons.add(String.format("file set %s queue %.0f%% full (threshold %.0f%%)",
+                        queue.getKey(), fileSetFill * 100, config.maxQueueFillRatio() * 100));
+                }
+            }
+            checks.put("file_set_queue_fill_ratio", maxFill);
+        }
+
+        long freeMb = usableSpaceBytes() / (1024 * 1024);
+        checks.put("log_dir_free_mb", freeMb);
+        if (freeMb < config.minFreeDiskMb()) {
+            reasons.add("log dir free space " + freeMb + "MB below " + config.minFreeDiskMb() + "MB");
+        }
+
+        long p99Micros = writeLatencyMicros.valueAtPercentile(99.0);
+        checks.put("audit_write_p99_ms", p99Micros / 1000.0);
+        if (config.maxWriteP99Millis() > 0 && p99Micros > config.maxWriteP99Millis() * 1000L) {
+            reasons.add("audit write p99 " + (p99Micros / 1000) + "ms above " + config.maxWriteP99Millis() + "ms");
+        }
+
+        return new ReadinessStatus(
+            reasons.isEmpty() ? ReadinessStatus.READY : ReadinessStatus.NOT_READY,
+            List.copyOf(reasons),
+            checks
+        );
+    }
+
+    private long usableSpaceBytes() {
+        Path dir = logDir.toAbsolutePath();
+        while (dir != null && !Files.exists(dir)) {
+            dir = dir.getParent();
+        }
+        if (dir == null) {
+            return 0;
+        }
+        try {
+            return Files.getFileStore(dir).getUsableSpace();
+        } catch (IOException e) {
+            log.warn("Unable to read free space for {}: {}", dir, e.getMessage());
+            return 0;
+        }
+    }
+}
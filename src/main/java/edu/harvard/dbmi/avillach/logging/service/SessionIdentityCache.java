@@ -0,0 +1,45 @@
+package edu.harvard.dbmi.avillach.logging.service;
+
+import edu.harvard.dbmi.avillach.logging.cache.BoundedLruCache;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Remembers the decoded JWT claims last seen for each session, so later token-less events from the
+ * same session keep their user attribution. Entries expire a fixed time after the last event that
+ * carried a valid token; token-less events never extend them.
+ */
+public class SessionIdentityCache {
+
+    public static final String IDENTITY_SOURCE_FIELD = "identity_source";
+    public static final String SESSION_CACHE_SOURCE = "session_cache";
+
+    private final BoundedLruCache<String, Map<String, Object>> cache;
+
+    public SessionIdentityCache(int maxSessions, Duration ttl) {
+        this.cache = new BoundedLruCache<>(maxSessions, ttl);
+    }
+
+    public void remember(String sessionId, Map<String, Object> claims) {
+        // Insertion-ordered, so recalled claims come out in the order they were decoded
+        cache.put(sessionId, Collections.unmodifiableMap(new LinkedHashMap<>(claims)));
+    }
+
+    /** Cached claims tagged with {@code identity_source=session_cache}, or null if the session is unknown. */
+    public Map<String, Object> recall(String sessionId) {
+        Map<String, Object> claims = cache.get(sessionId);
+        if (claims == null) {
+            return null;
+        }
+        Map<String, Object> tagged = new LinkedHashMap<>(claims);
+        tagged.put(IDENTITY_SOURCE_FIELD, SESSION_CACHE_SOURCE);
+        return tagged;
+    }
+
+    public Map<String, Object> metrics() {
+        return cache.metrics();
+    }
+}
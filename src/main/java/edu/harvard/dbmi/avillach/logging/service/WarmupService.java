@@ -0,0 +1,87 @@
+package edu.harvard.dbmi.avillach.logging.service;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.algorithms.Algorithm;
+import edu.harvard.dbmi.avillach.logging.handler.AuditHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Drives synthetic events through an {@link AuditHandler} assembled like the live one but ending at
+ * the {@code AUDIT_WARMUP} logger, so JSON binding, schemas, JWT decoding, enrichment, redaction,
+ * routing and the audit encoder are loaded and compiled before the service reports ready.
+ */
+public class WarmupService {
+
+    public static final String WARMUP_LOGGER = "AUDIT_WARMUP";
+
+    private static final Logger log = LoggerFactory.getLogger(WarmupService.class);
+
+    private static final List<String> EVENT_TYPES = List.of("QUERY", "LOGIN", "LOGOUT", "DATA_ACCESS", "ERROR");
+    private static final List<String> METHODS = List.of("GET", "POST", "PUT", "DELETE");
+
+    private final AuditHandler auditHandler;
+    private final int events;
+    private final List<String> tokens;
+
+    public WarmupService(AuditHandler auditHandler, int events) {
+        this.auditHandler = auditHandler;
+        this.events = events;
+        this.tokens = List.of(
+            buildToken("warmup-user-1", List.of("ADMIN", "USER"), true),
+            buildToken("warmup-user-2", List.of("USER"), false),
+            buildToken("warmup-user-3", List.of(), true)
+        );
+    }
+
+    public Duration run() {
+        long start = System.nanoTime();
+        int failures = 0;
+        for (int i = 0; i < events; i++) {
+            String authHeader = (i % 4 == 3) ? null : "Bearer " + tokens.get(i % tokens.size());
+            try {
+                auditHandler.process(syntheticBody(i), authHeader, "warmup-" + i);
+            } catch (Exception e) {
+                failures++;
+            }
+        }
+        Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+        log.info("Warm-up completed: {} synthetic events in {} ms ({} rejected)", events, elapsed.toMillis(), failures);
+        return elapsed;
+    }
+
+    private static String syntheticBody(int i) {
+        String eventType = EVENT_TYPES.get(i % EVENT_TYPES.size());
+        StringBuilder metadata = new StringBuilder();
+        int metadataKeys = 1 + (i % 12);
+        for (int k = 0; k < metadataKeys; k++) {
+            if (k > 0) {
+                metadata.append(',');
+            }
+            metadata.append("\"key").append(k).append("\":\"value-").append(i).append('-').append(k).append('"');
+        }
+        return "{\"event_type\":\"" + eventType + "\",\"action\":\"warmup\",\"client_type\":\"web\","
+            + "\"session_id\":\"warmup-session-" + (i % 32) + "\","
+            + "\"request\":{\"request_id\":\"warmup-" + i + "\",\"method\":\"" + METHODS.get(i % METHODS.size()) + "\","
+            + "\"url\":\"/picsure/query/" + i + "/result\",\"query_string\":\"limit=" + i + "\","
+            + "\"src_ip\":\"10.0." + (i % 256) + ".1\",\"dest_ip\":\"10.0.0.5\",\"dest_port\":8443,"
+            + "\"http_user_agent\":\"Mozilla/5.0\",\"http_content_type\":\"application/json\","
+            + "\"status\":" + (i % 10 == 0 ? 500 : 200) + ",\"bytes\":" + (i * 16) + ",\"duration\":" + (i % 500) + "},"
+            + "\"metadata\":{" + metadata + "}"
+            + (i % 10 == 0 ? ",\"error\":{\"origin\":\"warmup\",\"message\":\"synthetic error\"}" : "")
+            + "}";
+    }
+
+    private static String buildToken(String subject, List<String> roles, boolean loggedIn) {
+        return JWT.create()
+            .withClaim("sub", subject)
+            .withClaim("email", subject + "@example.com")
+            .withClaim("name", "Warmup User")
+            .withClaim("roles", roles)
+            .withClaim("logged_in", loggedIn)
+            .sign(Algorithm.none());
+    }
+}
@@ -3,18 +3,34 @@ package edu.harvard.dbmi.avillach.logging;
 import ch.qos.logback.classic.Logger;
 import ch.qos.logback.classic.spi.ILoggingEvent;
 import ch.qos.logback.core.read.ListAppender;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
 import edu.harvard.dbmi.avillach.logging.config.AppConfig;
+import edu.harvard.dbmi.avillach.logging.handler.AuditHandler;
 import io.javalin.Javalin;
 import io.javalin.testtools.JavalinTest;
 import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
 import okhttp3.RequestBody;
 import okhttp3.Response;
+import okhttp3.WebSocket;
+import okhttp3.WebSocketListener;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -221,4 +237,198 @@ class AppIntegrationTest {
             assertTrue(response.body().string().contains("healthy"));
         });
     }
+
+    @Test
+    void readyReturns200WhenChecksPass() {
+        Javalin app = App.createApp(createTestConfig(), new AtomicBoolean(true));
+        JavalinTest.test(app, (server, client) -> {
+            Response response = client.get("/ready");
+
+            assertEquals(200, response.code());
+            String responseBody = response.body().string();
+            assertTrue(responseBody.contains("\"status\":\"ready\""));
+            assertTrue(responseBody.contains("audit_queue_fill_ratio"));
+        });
+    }
+
+    @Test
+    void readyReturns503WhileStarting() {
+        Javalin app = App.createApp(createTestConfig(), new AtomicBoolean(false));
+        JavalinTest.test(app, (server, client) -> {
+            Response response = client.get("/ready");
+
+            assertEquals(503, response.code());
+            assertTrue(response.body().string().contains("starting"));
+        });
+    }
+
+    @Test
+    void metricsRequiresApiKey() {
+        Javalin app = App.createApp(createTestConfig(), new AtomicBoolean(true));
+        JavalinTest.test(app, (server, client) -> {
+            assertEquals(401, client.get("/metrics").code());
+
+            Response response = client.get("/metrics", builder -> builder.header("X-API-Key", API_KEY));
+            assertEquals(200, response.code());
+            assertTrue(response.body().string().contains("audit_file_queue"));
+        });
+    }
+
+    @Test
+    void cborRequestLoggedAsJson() throws IOException {
+        byte[] cbor = new CBORMapper().writeValueAsBytes(Map.of("event_type", "QUERY", "action", "cbor"));
+        Javalin app = App.createApp(createTestConfig(), new AtomicBoolean(true));
+        JavalinTest.test(app, (server, client) -> {
+            RequestBody body = RequestBody.create(cbor, MediaType.get(AuditHandler.CBOR_CONTENT_TYPE));
+            Response response = client.request("/audit", builder ->
+                builder.post(body).header("X-API-Key", API_KEY));
+
+            assertEquals(202, response.code());
+            assertEquals(1, listAppender.list.size());
+            assertTrue(listAppender.list.get(0).getFormattedMessage().contains("action=cbor"));
+        });
+    }
+
+    @Test
+    void latencyEndpointAggregatesRequestDurations() {
+        AppConfig config = AppConfig.fromEnvironment(Map.of(
+            "LOGGING_API_KEY", API_KEY, "APP", "picsure", "ROUTE_LATENCY_SERIES", "10",
+            "URL_TEMPLATES", "/picsure/query/{queryId}/result")::get);
+        Javalin app = App.createApp(config, new AtomicBoolean(true));
+        JavalinTest.test(app, (server, client) -> {
+            String event = "{\"event_type\":\"QUERY\",\"request\":{\"method\":\"GET\","
+                + "\"url\":\"/picsure/query/q-1/result\",\"status\":200,\"duration\":42}}";
+            client.request("/audit", builder -> builder.post(RequestBody.create(event, JSON)).header("X-API-Key", API_KEY));
+
+            assertEquals(401, client.get("/latency").code());
+            Response response = client.get("/latency", builder -> builder.header("X-API-Key", API_KEY));
+            assertEquals(200, response.code());
+            String body = response.body().string();
+            assertTrue(body.contains("\"route\":\"/picsure/query/{queryId}/result\",\"status_class\":\"2xx\",\"count\":1"));
+        });
+    }
+
+    @Test
+    void sketchEndpointReportsHeavyHitters() {
+        AppConfig config = AppConfig.fromEnvironment(Map.of(
+            "LOGGING_API_KEY", API_KEY, "SKETCH_FIELDS", "action")::get);
+        Javalin app = App.createApp(config, new AtomicBoolean(true));
+        JavalinTest.test(app, (server, client) -> {
+            RequestBody body = RequestBody.create("{\"event_type\":\"QUERY\",\"action\":\"execute\"}", JSON);
+            client.request("/audit", builder -> builder.post(body).header("X-API-Key", API_KEY));
+
+            assertEquals(401, client.get("/sketches").code());
+            assertEquals(400, client.get("/sketches?window=1y", builder -> builder.header("X-API-Key", API_KEY)).code());
+            Response response = client.get("/sketches?window=24h&top=5", builder -> builder.header("X-API-Key", API_KEY));
+            assertEquals(200, response.code());
+            assertTrue(response.body().string().contains("\"action\":{\"distinct\":1,\"top\":[{\"key\":\"execute\",\"count\":1"));
+        });
+    }
+
+    @Test
+    void acceptModeReturns202ForInvalidEventsAndStillChecksAuth() {
+        AppConfig config = AppConfig.fromEnvironment(Map.of("LOGGING_API_KEY", API_KEY, "ACCEPT_QUEUE", "16")::get);
+        Javalin app = App.createApp(config, new AtomicBoolean(true));
+        JavalinTest.test(app, (server, client) -> {
+            Response unauthorized = client.request("/audit", builder ->
+                builder.post(RequestBody.create("{\"event_type\":\"QUERY\"}", JSON)));
+            assertEquals(401, unauthorized.code());
+
+            Response invalid = client.request("/audit", builder ->
+                builder.post(RequestBody.create("not-json", JSON)).header("X-API-Key", API_KEY));
+            assertEquals(202, invalid.code());
+
+            Response metrics = client.get("/metrics", builder -> builder.header("X-API-Key", API_KEY));
+            assertTrue(metrics.body().string().contains("accept_queue"));
+        });
+    }
+
+    @Test
+    void auditStreamIsNotServedUnlessEnabled() {
+        Javalin app = App.createApp(createTestConfig(), new AtomicBoolean(true));
+        JavalinTest.test(app, (server, client) -> {
+            CompletableFuture<Integer> upgrade = new CompletableFuture<>();
+            new OkHttpClient().newWebSocket(
+                new Request.Builder().url("ws://localhost:" + server.port() + "/audit/stream")
+                    .header("X-API-Key", API_KEY).build(),
+                new WebSocketListener() {
+                    @Override
+                    public void onFailure(WebSocket webSocket, Throwable t, Response response) {
+                        upgrade.complete(response != null ? response.code() : -1);
+                    }
+                });
+            assertEquals(404, upgrade.get(2, TimeUnit.SECONDS));
+            Response metrics = client.get("/metrics", builder -> builder.header("X-API-Key", API_KEY));
+            assertFalse(metrics.body().string().contains("audit_stream"));
+        });
+    }
+
+    @Test
+    void auditStreamRequiresApiKeyOnUpgrade() {
+        AppConfig config = AppConfig.fromEnvironment(Map.of("LOGGING_API_KEY", API_KEY, "STREAM_ENABLED", "true")::get);
+        Javalin app = App.createApp(config, new AtomicBoolean(true));
+        JavalinTest.test(app, (server, client) -> {
+            CompletableFuture<Integer> rejected = new CompletableFuture<>();
+            new OkHttpClient().newWebSocket(
+                new Request.Builder().url("ws://localhost:" + server.port() + "/audit/stream").build(),
+                new WebSocketListener() {
+                    @Override
+                    public void onFailure(WebSocket webSocket, Throwable t, Response response) {
+                        rejected.complete(response != null ? response.code() : -1);
+                    }
+                });
+            assertEquals(401, rejected.get(2, TimeUnit.SECONDS));
+
+            CompletableFuture<String> ack = new CompletableFuture<>();
+            WebSocket socket = new OkHttpClient().newWebSocket(
+                new Request.Builder().url("ws://localhost:" + server.port() + "/audit/stream")
+                    .header("X-API-Key", API_KEY).build(),
+                new WebSocketListener() {
+                    @Override
+                    public void onMessage(WebSocket webSocket, String text) {
+                        ack.complete(text);
+                    }
+                });
+            socket.send("{\"event_type\":\"ETL\",\"action\":\"stream\"}");
+            assertEquals("{\"ack\":1}", ack.get(2, TimeUnit.SECONDS));
+            assertEquals(1, listAppender.list.size());
+            socket.close(1000, null);
+        });
+    }
+
+    @Test
+    void unixSocketServesAuditRouteWithSameAuth(@TempDir Path tempDir) throws IOException {
+        Path socket = tempDir.resolve("audit.sock");
+        AppConfig config = AppConfig.fromEnvironment(Map.of(
+            "LOGGING_API_KEY", API_KEY, "UNIX_SOCKET_PATH", socket.toString())::get);
+        Javalin app = App.createApp(config, new AtomicBoolean(true));
+        JavalinTest.test(app, (server, client) -> {
+            String event = "{\"event_type\":\"QUERY\",\"action\":\"uds\"}";
+            assertTrue(unixSocketPost(socket, event, API_KEY).startsWith("HTTP/1.1 202"));
+            assertTrue(unixSocketPost(socket, event, null).startsWith("HTTP/1.1 401"));
+            assertEquals(1, listAppender.list.size());
+
+            // TCP keeps working alongside the socket
+            assertEquals(200, client.get("/health").code());
+        });
+        assertFalse(Files.exists(socket));
+    }
+
+    private static String unixSocketPost(Path socket, String body, String apiKey) throws IOException {
+        byte[] payload = body.getBytes(StandardCharsets.UTF_8);
+        String request = "POST /audit HTTP/1.1\r\nHost: localhost\r\nContent-Type: application/json\r\n"
+            + (apiKey != null ? "X-API-Key: " + apiKey + "\r\n" : "")
+            + "Content-Length: " + payload.length + "\r\nConnection: close\r\n\r\n" + body;
+        try (SocketChannel channel = SocketChannel.open(UnixDomainSocketAddress.of(socket))) {
+            channel.write(ByteBuffer.wrap(request.getBytes(StandardCharsets.UTF_8)));
+            ByteBuffer buffer = ByteBuffer.allocate(4096);
+            StringBuilder response = new StringBuilder();
+            while (channel.read(buffer) > 0) {
+                buffer.flip();
+                response.append(StandardCharsets.UTF_8.decode(buffer));
+                buffer.clear();
+            }
+            return response.toString();
+        }
+    }
 }
@@ -9,6 +9,8 @@ import ch.qos.logback.core.Appender;
 import ch.qos.logback.core.rolling.RollingFileAppender;
 import ch.qos.logback.core.rolling.SizeAndTimeBasedRollingPolicy;
 import ch.qos.logback.core.status.Status;
+import edu.harvard.dbmi.avillach.logging.appender.NullOutputAppender;
+import edu.harvard.dbmi.avillach.logging.chain.HashChainEncoder;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
@@ -122,6 +124,15 @@ class LogbackConfigTest {
             "Rolling pattern should include date and index for size+time rotation");
     }
 
+    @Test
+    void auditFileAppenderUsesHashChainEncoder() {
+        Logger auditLogger = context.getLogger("AUDIT");
+        AsyncAppender asyncAppender = findAppender(auditLogger, "ASYNC_AUDIT_FILE");
+        RollingFileAppender<ILoggingEvent> fileAppender =
+            (RollingFileAppender<ILoggingEvent>) asyncAppender.getAppender("AUDIT_FILE");
+        assertInstanceOf(HashChainEncoder.class, fileAppender.getEncoder());
+    }
+
     // --- APP (root) logger appender tests ---
 
     @Test
@@ -242,6 +253,29 @@ class LogbackConfigTest {
         }
     }
 
+    // --- Warm-up logger tests ---
+
+    @Test
+    void warmupLoggerDiscardsOutput() {
+        Logger warmupLogger = context.getLogger("AUDIT_WARMUP");
+        Appender<ILoggingEvent> appender = findAppender(warmupLogger, "WARMUP_NULL");
+        assertInstanceOf(NullOutputAppender.class, appender);
+        assertFalse(warmupLogger.isAdditive(), "AUDIT_WARMUP logger should have additivity=false");
+    }
+
+    @Test
+    void warmupEventsDoNotAppearInAuditLog() throws Exception {
+        Logger warmupLogger = context.getLogger("AUDIT_WARMUP");
+        warmupLogger.info("synthetic warm-up event");
+
+        Path auditLog = tempDir.resolve("audit.log");
+        if (Files.exists(auditLog)) {
+            String content = Files.readString(auditLog);
+            assertFalse(content.contains("synthetic warm-up event"),
+                "Warm-up events should not leak into audit.log");
+        }
+    }
+
     // --- Async appender configuration tests ---
 
     @Test
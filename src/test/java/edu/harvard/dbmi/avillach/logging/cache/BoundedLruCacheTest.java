@@ -0,0 +1,61 @@
+package edu.harvard.dbmi.avillach.logging.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BoundedLruCacheTest {
+
+    @Test
+    void evictsLeastRecentlyUsed() {
+        BoundedLruCache<String, Integer> cache = new BoundedLruCache<>(2);
+        cache.put("a", 1);
+        cache.put("b", 2);
+        cache.get("a");
+        cache.put("c", 3);
+
+        assertEquals(1, cache.get("a"));
+        assertNull(cache.get("b"));
+        assertEquals(3, cache.get("c"));
+        assertEquals(1L, cache.metrics().get("evictions"));
+    }
+
+    @Test
+    void neverExceedsMaxEntries() {
+        BoundedLruCache<Integer, Integer> cache = new BoundedLruCache<>(1000);
+        for (int i = 0; i < 10_000; i++) {
+            cache.put(i, i);
+        }
+
+        assertTrue(cache.size() <= 1000);
+        assertEquals(9999, cache.get(9999));
+    }
+
+    @Test
+    void entriesExpireAfterWrite() {
+        AtomicLong now = new AtomicLong();
+        BoundedLruCache<String, String> cache = new BoundedLruCache<>(10, Duration.ofSeconds(30), now::get);
+        cache.put("sess", "claims");
+
+        now.set(Duration.ofSeconds(29).toNanos());
+        assertEquals("claims", cache.get("sess"));
+
+        now.set(Duration.ofSeconds(30).toNanos());
+        assertNull(cache.get("sess"));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void countsHitsAndMisses() {
+        BoundedLruCache<String, String> cache = new BoundedLruCache<>(10);
+        cache.put("k", "v");
+        cache.get("k");
+        cache.get("missing");
+
+        assertEquals(1L, cache.metrics().get("hits"));
+        assertEquals(1L, cache.metrics().get("misses"));
+    }
+}
@@ -0,0 +1,121 @@
+package edu.harvard.dbmi.avillach.logging.chain;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static edu.harvard.dbmi.avillach.logging.chain.HashChainEncoderTest.encoder;
+import static edu.harvard.dbmi.avillach.logging.chain.HashChainEncoderTest.segment;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChainVerifierTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void intactSegmentsVerify() throws Exception {
+        List<Path> files = writeSegments(3, 25);
+
+        ChainVerifier.Result result = verifier("secret", false).verify(files);
+
+        assertTrue(result.ok(), result.errors().toString());
+        assertEquals(3, result.chains());
+        assertEquals(75, result.lines());
+    }
+
+    @Test
+    void editedLineFails() throws Exception {
+        List<Path> files = writeSegments(1, 25);
+        Files.writeString(files.get(0), Files.readString(files.get(0)).replace("event 7", "event 8"));
+
+        ChainVerifier.Result result = verifier("secret", false).verify(files);
+
+        assertFalse(result.ok());
+        assertTrue(result.errors().get(0).endsWith(":9: hash mismatch"), result.errors().toString());
+    }
+
+    @Test
+    void deletedLineFails() throws Exception {
+        List<Path> files = writeSegments(1, 25);
+        List<String> lines = new ArrayList<>(Files.readAllLines(files.get(0)));
+        lines.remove(12);
+        Files.write(files.get(0), lines);
+
+        assertFalse(verifier("secret", false).verify(files).ok());
+    }
+
+    @Test
+    void missingSegmentFails() throws Exception {
+        List<Path> files = writeSegments(3, 5);
+
+        ChainVerifier.Result result = verifier("secret", false).verify(List.of(files.get(0), files.get(2)));
+
+        assertEquals(1, result.errors().size());
+        assertTrue(result.errors().get(0).contains("does not continue from the previous trailer"));
+    }
+
+    @Test
+    void truncatedChainFailsUnlessOpenFileAllowed() throws Exception {
+        List<Path> files = writeSegments(1, 25);
+        List<String> lines = Files.readAllLines(files.get(0));
+        Files.write(files.get(0), lines.subList(0, lines.size() - 1));
+
+        assertTrue(verifier("secret", false).verify(files).errors().get(0).contains("no trailer"));
+        assertTrue(verifier("secret", true).verify(files).ok());
+    }
+
+    @Test
+    void restartFromGenesisFails() throws Exception {
+        Path first = tempDir.resolve("audit.0.log");
+        Files.writeString(first, segment(encoder("secret", 10), 5));
+        Path second = tempDir.resolve("audit.1.log");
+        Files.writeString(second, segment(encoder("secret", 10), 5));
+
+        ChainVerifier.Result result = verifier("secret", false).verify(List.of(first, second));
+
+        assertEquals(1, result.errors().size());
+        assertTrue(result.errors().get(0).contains("restarts from genesis"), result.errors().toString());
+    }
+
+    @Test
+    void chainResumedAfterCrashOnlyReportsTheMissingTrailer() throws Exception {
+        Path file = tempDir.resolve("audit.log");
+        List<String> crashed = segment(encoder("secret", 10), 5).lines().toList();
+        Files.write(file, crashed.subList(0, crashed.size() - 1));
+        HashChainEncoder restarted = encoder("secret", 10, file);
+        Files.writeString(file, segment(restarted, 5), StandardOpenOption.APPEND);
+
+        ChainVerifier.Result result = verifier("secret", false).verify(List.of(file));
+
+        assertEquals(1, result.errors().size());
+        assertTrue(result.errors().get(0).contains("no trailer"), result.errors().toString());
+    }
+
+    @Test
+    void wrongKeyFails() throws Exception {
+        List<Path> files = writeSegments(1, 5);
+
+        assertFalse(verifier("other", false).verify(files).ok());
+    }
+
+    private List<Path> writeSegments(int segments, int events) throws Exception {
+        HashChainEncoder encoder = encoder("secret", 10);
+        List<Path> files = new ArrayList<>();
+        for (int i = 0; i < segments; i++) {
+            Path file = tempDir.resolve("audit." + i + ".log");
+            Files.writeString(file, segment(encoder, events));
+            files.add(file);
+        }
+        return files;
+    }
+
+    private static ChainVerifier verifier(String key, boolean allowOpen) {
+        return new ChainVerifier(key, allowOpen, 4);
+    }
+}
@@ -0,0 +1,113 @@
+package edu.harvard.dbmi.avillach.logging.chain;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.slf4j.LoggerFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HashChainEncoderTest {
+
+    private static final LoggerContext CONTEXT = (LoggerContext) LoggerFactory.getILoggerFactory();
+
+    @Test
+    void withoutKeyEncodesPlainJson() {
+        HashChainEncoder encoder = encoder(null, 2);
+
+        assertEquals(0, encoder.headerBytes().length);
+        String line = new String(encoder.encode(event("hello")), StandardCharsets.UTF_8);
+        assertFalse(line.contains("_chain"));
+        assertTrue(line.strip().endsWith("}"));
+    }
+
+    @Test
+    void chainsEveryLineBetweenStartAndTrailer() {
+        HashChainEncoder encoder = encoder("secret", 2);
+
+        String output = segment(encoder, 3);
+        List<String> lines = output.lines().toList();
+
+        assertEquals(6, lines.size());
+        assertTrue(lines.get(0).startsWith("{\"_chain_event\":\"start\",\"prev\":\"" + "0".repeat(64)));
+        assertTrue(lines.get(3).startsWith("{\"_chain_event\":\"checkpoint\",\"lines\":2,"));
+        assertTrue(lines.get(5).startsWith("{\"_chain_event\":\"trailer\",\"lines\":3,"));
+        for (String line : lines) {
+            assertTrue(line.matches(".*,\"_chain\":\"[0-9a-f]{64}\"}"), line);
+        }
+    }
+
+    @Test
+    void nextSegmentContinuesFromTrailer() {
+        HashChainEncoder encoder = encoder("secret", 100);
+
+        List<String> first = segment(encoder, 1).lines().toList();
+        String trailerHash = first.get(first.size() - 1).replaceAll(".*\"_chain\":\"([0-9a-f]{64})\"}", "$1");
+        String secondStart = segment(encoder, 1).lines().findFirst().orElseThrow();
+
+        assertTrue(secondStart.contains("\"prev\":\"" + trailerHash + "\""));
+    }
+
+    @Test
+    void restartContinuesFromActiveFile(@TempDir Path dir) throws Exception {
+        Path active = dir.resolve("audit.log");
+        List<String> previous = segment(encoder("secret", 100), 2).lines().toList();
+        Files.write(active, previous);
+
+        String start = segment(encoder("secret", 100, active), 1).lines().findFirst().orElseThrow();
+
+        assertTrue(start.contains("\"prev\":\"" + hash(previous.get(previous.size() - 1)) + "\""), start);
+    }
+
+    @Test
+    void restartSkipsPartialLineAndFallsBackToRolledFile(@TempDir Path dir) throws Exception {
+        Path active = dir.resolve("audit.log");
+        List<String> rolled = segment(encoder("secret", 100), 2).lines().toList();
+        Files.write(dir.resolve("audit.2026-01-01.0.log"), rolled);
+        Files.writeString(active, "{\"_time\":\"2026-01-02T00:00:00Z\",\"event_t");
+
+        String start = segment(encoder("secret", 100, active), 1).lines().findFirst().orElseThrow();
+
+        assertTrue(start.contains("\"prev\":\"" + hash(rolled.get(rolled.size() - 1)) + "\""), start);
+    }
+
+    static HashChainEncoder encoder(String key, int checkpointEvery) {
+        return encoder(key, checkpointEvery, null);
+    }
+
+    static HashChainEncoder encoder(String key, int checkpointEvery, Path file) {
+        HashChainEncoder encoder = new HashChainEncoder();
+        encoder.setContext(CONTEXT);
+        encoder.setKey(key);
+        encoder.setCheckpointEvery(checkpointEvery);
+        if (file != null) {
+            encoder.setFile(file.toString());
+        }
+        encoder.start();
+        return encoder;
+    }
+
+    private static String hash(String line) {
+        return line.replaceAll(".*\"_chain\":\"([0-9a-f]{64})\"}", "$1");
+    }
+
+    /** Header, {@code events} audit lines and footer, as one rolled file would contain them. */
+    static String segment(HashChainEncoder encoder, int events) {
+        StringBuilder out = new StringBuilder(new String(encoder.headerBytes(), StandardCharsets.UTF_8));
+        for (int i = 0; i < events; i++) {
+            out.append(new String(encoder.encode(event("event " + i)), StandardCharsets.UTF_8));
+        }
+        return out.append(new String(encoder.footerBytes(), StandardCharsets.UTF_8)).toString();
+    }
+
+    static LoggingEvent event(String message) {
+        return new LoggingEvent("test", CONTEXT.getLogger("AUDIT"), Level.INFO, message, null, null);
+    }
+}
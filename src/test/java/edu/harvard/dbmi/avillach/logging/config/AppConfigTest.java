@@ -3,6 +3,7 @@ package edu.harvard.dbmi.avillach.logging.config;
 import org.junit.jupiter.api.Test;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.function.Function;
 
@@ -127,4 +128,234 @@ class AppConfigTest {
             () -> AppConfig.fromEnvironment(envWith(env)));
         assertTrue(ex.getMessage().contains("JWT_CLAIM_MAPPING"));
     }
+
+    @Test
+    void warmupEventsDefaultsWhenNotSet() {
+        Map<String, String> env = new HashMap<>();
+        env.put("LOGGING_API_KEY", "test-key");
+
+        AppConfig config = AppConfig.fromEnvironment(envWith(env));
+
+        assertEquals(AppConfig.DEFAULT_WARMUP_EVENTS, config.warmupEvents());
+    }
+
+    @Test
+    void warmupEventsParsed() {
+        Map<String, String> env = new HashMap<>();
+        env.put("LOGGING_API_KEY", "test-key");
+        env.put("WARMUP_EVENTS", "0");
+
+        AppConfig config = AppConfig.fromEnvironment(envWith(env));
+
+        assertEquals(0, config.warmupEvents());
+    }
+
+    @Test
+    void negativeWarmupEventsFails() {
+        Map<String, String> env = new HashMap<>();
+        env.put("LOGGING_API_KEY", "test-key");
+        env.put("WARMUP_EVENTS", "-1");
+
+        IllegalStateException ex = assertThrows(IllegalStateException.class,
+            () -> AppConfig.fromEnvironment(envWith(env)));
+        assertTrue(ex.getMessage().contains("WARMUP_EVENTS"));
+    }
+
+    @Test
+    void priorityLanesDisabledByDefault() {
+        Map<String, String> env = new HashMap<>();
+        env.put("LOGGING_API_KEY", "test-key");
+
+        assertTrue(AppConfig.fromEnvironment(envWith(env)).priorityLanes().isEmpty());
+    }
+
+    @Test
+    void priorityLanesParsed() {
+        Map<String, String> env = new HashMap<>();
+        env.put("LOGGING_API_KEY", "test-key");
+        env.put("PRIORITY_LANES", "[{\"name\":\"critical\",\"event_types\":[\"ACCESS_DENIED\"],\"capacity\":10,\"weight\":4,\"overflow\":\"block\"},"
+            + "{\"name\":\"default\",\"capacity\":100,\"weight\":1,\"overflow\":\"shed\"}]");
+
+        List<LaneConfig> lanes = AppConfig.fromEnvironment(envWith(env)).priorityLanes();
+
+        assertEquals(2, lanes.size());
+        assertEquals(LaneConfig.Overflow.BLOCK, lanes.get(0).overflow());
+        assertEquals(List.of("ACCESS_DENIED"), lanes.get(0).eventTypes());
+        assertTrue(lanes.get(1).isDefault());
+    }
+
+    @Test
+    void priorityLanesWithoutDefaultLaneFail() {
+        Map<String, String> env = new HashMap<>();
+        env.put("LOGGING_API_KEY", "test-key");
+        env.put("PRIORITY_LANES", "[{\"name\":\"critical\",\"event_types\":[\"ACCESS_DENIED\"],\"capacity\":10,\"weight\":4,\"overflow\":\"block\"}]");
+
+        IllegalStateException ex = assertThrows(IllegalStateException.class,
+            () -> AppConfig.fromEnvironment(envWith(env)));
+        assertTrue(ex.getMessage().contains("PRIORITY_LANES"));
+    }
+
+    @Test
+    void invalidPriorityLanesFail() {
+        Map<String, String> env = new HashMap<>();
+        env.put("LOGGING_API_KEY", "test-key");
+        env.put("PRIORITY_LANES", "not-json");
+
+        IllegalStateException ex = assertThrows(IllegalStateException.class,
+            () -> AppConfig.fromEnvironment(envWith(env)));
+        assertTrue(ex.getMessage().contains("PRIORITY_LANES"));
+    }
+
+    @Test
+    void udpListenerDisabledByDefault() {
+        Map<String, String> env = new HashMap<>();
+        env.put("LOGGING_API_KEY", "test-key");
+
+        AppConfig config = AppConfig.fromEnvironment(envWith(env));
+
+        assertEquals(0, config.udp().port());
+        assertEquals(AppConfig.UdpConfig.defaults().workers(), config.udp().workers());
+    }
+
+    @Test
+    void udpPortOutOfRangeFails() {
+        Map<String, String> env = new HashMap<>();
+        env.put("LOGGING_API_KEY", "test-key");
+        env.put("UDP_PORT", "70000");
+
+        IllegalStateException ex = assertThrows(IllegalStateException.class,
+            () -> AppConfig.fromEnvironment(envWith(env)));
+        assertTrue(ex.getMessage().contains("UDP_PORT"));
+    }
+
+    @Test
+    void geoIpDatabasesParsedAsCommaSeparatedList() {
+        Map<String, String> env = new HashMap<>();
+        env.put("LOGGING_API_KEY", "test-key");
+        env.put("GEOIP_DATABASES", "/data/GeoLite2-Country.mmdb, /data/asn.csv,");
+
+        AppConfig config = AppConfig.fromEnvironment(envWith(env));
+
+        assertEquals(List.of("/data/GeoLite2-Country.mmdb", "/data/asn.csv"), config.geoIp().databases());
+        assertEquals(AppConfig.GeoIpConfig.defaults().cacheSize(), config.geoIp().cacheSize());
+    }
+
+    @Test
+    void urlTemplatesEnableTemplating() {
+        Map<String, String> env = new HashMap<>();
+        env.put("LOGGING_API_KEY", "test-key");
+        assertFalse(AppConfig.fromEnvironment(envWith(env)).urlTemplates().enabled());
+
+        env.put("URL_TEMPLATES", "/picsure/query/{queryId}/result");
+        AppConfig config = AppConfig.fromEnvironment(envWith(env));
+        assertTrue(config.urlTemplates().enabled());
+        assertEquals(List.of("/picsure/query/{queryId}/result"), config.urlTemplates().templates());
+
+        env.put("URL_TEMPLATING", "maybe");
+        IllegalStateException ex = assertThrows(IllegalStateException.class,
+            () -> AppConfig.fromEnvironment(envWith(env)));
+        assertTrue(ex.getMessage().contains("URL_TEMPLATING"));
+    }
+
+    @Test
+    void anomalyThresholdsParsedAsJsonObject() {
+        Map<String, String> env = new HashMap<>();
+        env.put("LOGGING_API_KEY", "test-key");
+        assertTrue(AppConfig.fromEnvironment(envWith(env)).anomalies().thresholds().isEmpty());
+
+        env.put("ANOMALY_THRESHOLDS", "{\"DATA_EXPORT\": 100, \"LOGIN\": 20}");
+        env.put("ANOMALY_KEYS", "subject,src_ip");
+        AppConfig config = AppConfig.fromEnvironment(envWith(env));
+        assertEquals(Map.of("DATA_EXPORT", 100, "LOGIN", 20), config.anomalies().thresholds());
+        assertEquals(List.of("subject", "src_ip"), config.anomalies().keyFields());
+        assertEquals(AppConfig.AnomalyConfig.defaults().windowSeconds(), config.anomalies().windowSeconds());
+
+        env.put("ANOMALY_THRESHOLDS", "{\"DATA_EXPORT\": 0}");
+        IllegalStateException ex = assertThrows(IllegalStateException.class,
+            () -> AppConfig.fromEnvironment(envWith(env)));
+        assertTrue(ex.getMessage().contains("DATA_EXPORT"));
+    }
+
+    @Test
+    void redactionRulesNeedExactlyOneMatcher() {
+        Map<String, String> env = new HashMap<>();
+        env.put("LOGGING_API_KEY", "test-key");
+        env.put("REDACTION_RULES", "[{\"name\":\"secrets\",\"keys\":[\"password\"]},"
+            + "{\"name\":\"email\",\"pattern\":\"[a-z]+@[a-z.]+\"}]");
+        assertEquals(2, AppConfig.fromEnvironment(envWith(env)).redactionRules().size());
+
+        env.put("REDACTION_RULES", "[{\"name\":\"both\",\"keys\":[\"a\"],\"literals\":[\"b\"]}]");
+        assertThrows(IllegalStateException.class, () -> AppConfig.fromEnvironment(envWith(env)));
+
+        env.put("REDACTION_RULES", "[{\"name\":\"bad\",\"pattern\":\"([a-z\"}]");
+        IllegalStateException ex = assertThrows(IllegalStateException.class,
+            () -> AppConfig.fromEnvironment(envWith(env)));
+        assertTrue(ex.getMessage().contains("bad"));
+
+        env.put("REDACTION_RULES", "[{\"name\":\"repeat\",\"pattern\":\"(\\\\w)\\\\1\"}]");
+        ex = assertThrows(IllegalStateException.class, () -> AppConfig.fromEnvironment(envWith(env)));
+        assertTrue(ex.getMessage().contains("backreference"));
+
+        env.put("REDACTION_RULES", "[{\"name\":\"quoted\",\"pattern\":\"\\\\Q\\\\1\\\\E\"}]");
+        assertEquals(1, AppConfig.fromEnvironment(envWith(env)).redactionRules().size());
+    }
+
+    @Test
+    void schemaModeMustBeRejectOrReport() {
+        Map<String, String> env = new HashMap<>();
+        env.put("LOGGING_API_KEY", "test-key");
+        AppConfig config = AppConfig.fromEnvironment(envWith(env));
+        assertNull(config.schemas().dir());
+        assertTrue(config.schemas().reject());
+
+        env.put("SCHEMA_DIR", "/etc/audit-schemas");
+        env.put("SCHEMA_MODE", "report");
+        config = AppConfig.fromEnvironment(envWith(env));
+        assertEquals("/etc/audit-schemas", config.schemas().dir());
+        assertFalse(config.schemas().reject());
+
+        env.put("SCHEMA_MODE", "warn");
+        assertThrows(IllegalStateException.class, () -> AppConfig.fromEnvironment(envWith(env)));
+    }
+
+    @Test
+    void policyFileIsOptional() {
+        Map<String, String> env = new HashMap<>();
+        env.put("LOGGING_API_KEY", "test-key");
+        AppConfig config = AppConfig.fromEnvironment(envWith(env));
+        assertNull(config.policyFile().path());
+        assertEquals(AppConfig.PolicyFileConfig.defaults().reloadSeconds(), config.policyFile().reloadSeconds());
+
+        env.put("POLICY_FILE", "/etc/pic-sure-logging/policy.json");
+        env.put("POLICY_RELOAD_SECONDS", "2");
+        config = AppConfig.fromEnvironment(envWith(env));
+        assertEquals("/etc/pic-sure-logging/policy.json", config.policyFile().path());
+        assertEquals(2, config.policyFile().reloadSeconds());
+
+        env.put("POLICY_RELOAD_SECONDS", "0");
+        assertThrows(IllegalStateException.class, () -> AppConfig.fromEnvironment(envWith(env)));
+    }
+
+    @Test
+    void routingFileIsOptional() {
+        Map<String, String> env = new HashMap<>();
+        env.put("LOGGING_API_KEY", "test-key");
+        assertNull(AppConfig.fromEnvironment(envWith(env)).routingFile());
+
+        env.put("ROUTING_FILE", "/etc/pic-sure-logging/routing.json");
+        assertEquals("/etc/pic-sure-logging/routing.json", AppConfig.fromEnvironment(envWith(env)).routingFile());
+    }
+
+    @Test
+    void memoryBudgetMustBeZeroOrAtLeastMinimum() {
+        Map<String, String> env = new HashMap<>();
+        env.put("LOGGING_API_KEY", "test-key");
+        assertEquals(0, AppConfig.fromEnvironment(envWith(env)).memoryBudgetMb());
+
+        env.put("MEMORY_BUDGET_MB", "256");
+        assertEquals(256, AppConfig.fromEnvironment(envWith(env)).memoryBudgetMb());
+
+        env.put("MEMORY_BUDGET_MB", "4");
+        assertThrows(IllegalStateException.class, () -> AppConfig.fromEnvironment(envWith(env)));
+    }
 }
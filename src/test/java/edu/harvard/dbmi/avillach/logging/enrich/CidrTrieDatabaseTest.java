@@ -0,0 +1,68 @@
+package edu.harvard.dbmi.avillach.logging.enrich;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CidrTrieDatabaseTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void longestPrefixWins() throws Exception {
+        CidrTrieDatabase db = load("""
+            network,country,asn,as_org
+            10.0.0.0/8,US,64512,Wide Net
+            10.1.0.0/16,CA,AS64513,"Narrow, Inc."
+            2001:db8::/32,DE,64514,V6 Net
+            """);
+
+        assertEquals(new GeoIpRecord("US", null, 64512L, "Wide Net"), db.lookup("10.2.3.4"));
+        assertEquals(new GeoIpRecord("CA", null, 64513L, "Narrow, Inc."), db.lookup("10.1.200.9"));
+        assertEquals("DE", db.lookup("2001:db8:ffff::42").country());
+        assertNull(db.lookup("11.0.0.1"));
+        assertNull(db.lookup("2001:db9::1"));
+        assertNull(db.lookup("not-an-ip"));
+    }
+
+    @Test
+    void ipv4MappedAddressesUseIpv4Ranges() throws Exception {
+        CidrTrieDatabase db = load("192.0.2.0/24,FR,,\n");
+
+        assertEquals("FR", db.lookup("::ffff:192.0.2.10").country());
+        assertNull(db.lookup("::ffff:192.0.3.10"));
+    }
+
+    @Test
+    void identicalRowsShareRecords() throws Exception {
+        CidrTrieDatabase db = load("10.0.0.0/24,US,1,A\n10.0.2.0/24,US,1,A\n");
+
+        assertSame(db.lookup("10.0.0.1"), db.lookup("10.0.2.1"));
+    }
+
+    @Test
+    void rejectsInvalidRows() throws Exception {
+        Path file = dir.resolve("bad.csv");
+        Files.writeString(file, "10.0.0.0/8,US,1,A\n10.0.0.0,US,1,A\n");
+
+        IllegalStateException e = assertThrows(IllegalStateException.class, () -> CidrTrieDatabase.load(file));
+        assertTrue(e.getMessage().contains("line 2"));
+    }
+
+    @Test
+    void splitsQuotedColumns() {
+        assertEquals(List.of("a", "b, c", "d \"e\"", ""), CidrTrieDatabase.splitCsv("a,\"b, c\",\"d \"\"e\"\"\","));
+    }
+
+    private CidrTrieDatabase load(String csv) throws Exception {
+        Path file = dir.resolve("ranges.csv");
+        Files.writeString(file, csv);
+        return CidrTrieDatabase.load(file);
+    }
+}
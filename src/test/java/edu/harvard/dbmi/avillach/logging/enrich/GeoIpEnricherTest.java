@@ -0,0 +1,120 @@
+package edu.harvard.dbmi.avillach.logging.enrich;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GeoIpEnricherTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void earlierDatabasesWinAndLaterOnesFillGaps() throws Exception {
+        Path countries = write("countries.csv", "10.0.0.0/8,US,,\n");
+        Path asns = write("asns.csv", "10.0.0.0/8,CA,64512,Example Net\n");
+        GeoIpEnricher enricher = new GeoIpEnricher(List.of(countries, asns), 16, 60);
+
+        Map<String, Object> fields = enrich(enricher, "10.1.2.3");
+
+        assertEquals("US", fields.get("src_country"));
+        assertEquals(64512L, fields.get("src_asn"));
+        assertEquals("Example Net", fields.get("src_as_org"));
+        assertFalse(fields.containsKey("src_city"));
+    }
+
+    @Test
+    void unknownOrMissingAddressAddsNothing() throws Exception {
+        GeoIpEnricher enricher = new GeoIpEnricher(List.of(write("ranges.csv", "10.0.0.0/8,US,,\n")), 16, 60);
+
+        assertEquals(Map.of("src_ip", "8.8.8.8"), enrich(enricher, "8.8.8.8"));
+        Map<String, Object> noIp = new LinkedHashMap<>();
+        enricher.enrich(noIp);
+        assertTrue(noIp.isEmpty());
+
+        assertEquals(1L, enricher.metrics().get("lookups"));
+        assertEquals(0L, enricher.metrics().get("matched"));
+    }
+
+    @Test
+    void reloadsChangedFileAndKeepsPreviousOnFailure() throws Exception {
+        Path ranges = write("ranges.csv", "10.0.0.0/8,US,,\n");
+        GeoIpEnricher enricher = new GeoIpEnricher(List.of(ranges), 16, 60);
+
+        enricher.reloadChanged();
+        assertEquals(0L, enricher.metrics().get("reloads"));
+
+        write("ranges.csv", "10.0.0.0/8,DE,,\n");
+        Files.setLastModifiedTime(ranges, FileTime.from(Instant.now().plusSeconds(5)));
+        enricher.reloadChanged();
+        assertEquals("DE", enrich(enricher, "10.0.0.1").get("src_country"));
+        assertEquals(1L, enricher.metrics().get("reloads"));
+
+        write("ranges.csv", "garbage\n");
+        Files.setLastModifiedTime(ranges, FileTime.from(Instant.now().plusSeconds(10)));
+        enricher.reloadChanged();
+        assertEquals("DE", enrich(enricher, "10.0.0.1").get("src_country"));
+        assertEquals(1L, enricher.metrics().get("reload_failures"));
+    }
+
+    @Test
+    void replacedMmdbIsClosedAfterGracePeriod() throws Exception {
+        Path file = dir.resolve("geo.mmdb");
+        MmdbTestFiles.write(file, Map.of("10.0.0.0/8", Map.of("country", Map.of("iso_code", "US"))));
+        GeoIpEnricher enricher = new GeoIpEnricher(List.of(file), 16, 60, 200);
+        enricher.start();
+        try {
+            MmdbTestFiles.write(file, Map.of("10.0.0.0/8", Map.of("country", Map.of("iso_code", "FR"))));
+            Files.setLastModifiedTime(file, FileTime.from(Instant.now().plusSeconds(5)));
+            enricher.reloadChanged();
+
+            assertEquals(1, enricher.metrics().get("pending_close"));
+            assertEquals("FR", enrich(enricher, "10.0.0.1").get("src_country"));
+            for (int i = 0; i < 50 && (int) enricher.metrics().get("pending_close") > 0; i++) {
+                Thread.sleep(20);
+            }
+            assertEquals(0, enricher.metrics().get("pending_close"));
+        } finally {
+            enricher.stop();
+        }
+    }
+
+    @Test
+    void detachedEnricherReadsTheSameDataWithItsOwnCounters() throws Exception {
+        Path file = dir.resolve("geo.mmdb");
+        MmdbTestFiles.write(file, Map.of("10.0.0.0/8", Map.of("country", Map.of("iso_code", "US"))));
+        GeoIpEnricher enricher = new GeoIpEnricher(List.of(file), 16, 60);
+        GeoIpEnricher detached = enricher.detached();
+
+        assertEquals("US", enrich(detached, "10.0.0.1").get("src_country"));
+        assertEquals(1L, detached.metrics().get("matched"));
+        assertEquals(0L, enricher.metrics().get("lookups"));
+        assertEquals("US", enrich(enricher, "10.0.0.1").get("src_country"));
+    }
+
+    @Test
+    void unreadableDatabaseFailsStartup() {
+        assertThrows(IllegalStateException.class,
+            () -> new GeoIpEnricher(List.of(dir.resolve("missing.mmdb")), 16, 60));
+    }
+
+    private Path write(String name, String content) throws Exception {
+        return Files.writeString(dir.resolve(name), content);
+    }
+
+    private static Map<String, Object> enrich(GeoIpEnricher enricher, String ip) {
+        Map<String, Object> fields = new LinkedHashMap<>();
+        fields.put("src_ip", ip);
+        enricher.enrich(fields);
+        return fields;
+    }
+}
@@ -0,0 +1,46 @@
+package edu.harvard.dbmi.avillach.logging.enrich;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IpLiteralsTest {
+
+    @Test
+    void parsesIpv4() {
+        assertEquals(0x0A000001L, IpLiterals.parseIpv4("10.0.0.1", 0, 8));
+        assertEquals(0xFFFFFFFFL, IpLiterals.parseIpv4("255.255.255.255", 0, 15));
+        assertEquals(-1, IpLiterals.parseIpv4("256.0.0.1", 0, 9));
+        assertEquals(-1, IpLiterals.parseIpv4("10.0.1", 0, 6));
+        assertEquals(-1, IpLiterals.parseIpv4("10..0.1", 0, 7));
+        assertEquals(-1, IpLiterals.parseIpv4("example.org", 0, 11));
+    }
+
+    @Test
+    void parsesIpv6WithCompressionAndEmbeddedIpv4() {
+        int[] groups = new int[8];
+        assertTrue(IpLiterals.parseIpv6("2001:db8::1", groups));
+        assertArrayEquals(new int[] {0x2001, 0xdb8, 0, 0, 0, 0, 0, 1}, groups);
+
+        assertTrue(IpLiterals.parseIpv6("::", groups));
+        assertArrayEquals(new int[8], groups);
+
+        assertTrue(IpLiterals.parseIpv6("fe80::1%eth0", groups));
+        assertArrayEquals(new int[] {0xfe80, 0, 0, 0, 0, 0, 0, 1}, groups);
+
+        assertTrue(IpLiterals.parseIpv6("::ffff:192.0.2.7", groups));
+        assertEquals(0xC0000207L, IpLiterals.mappedIpv4(groups));
+    }
+
+    @Test
+    void rejectsMalformedIpv6() {
+        int[] groups = new int[8];
+        assertFalse(IpLiterals.parseIpv6("1::2::3", groups));
+        assertFalse(IpLiterals.parseIpv6("1:2:3:4:5:6:7", groups));
+        assertFalse(IpLiterals.parseIpv6("1:2:3:4:5:6:7:8:9", groups));
+        assertFalse(IpLiterals.parseIpv6("12345::", groups));
+        assertFalse(IpLiterals.parseIpv6(":1::", groups));
+        assertFalse(IpLiterals.parseIpv6("1:", groups));
+        assertFalse(IpLiterals.parseIpv6("not-an-ip", groups));
+    }
+}
@@ -0,0 +1,54 @@
+package edu.harvard.dbmi.avillach.logging.enrich;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MmdbDatabaseTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void decodesCountryCityAndAsn() throws Exception {
+        Map<String, Map<String, Object>> networks = new LinkedHashMap<>();
+        networks.put("10.0.0.0/8", Map.of(
+            "country", Map.of("iso_code", "US"),
+            "city", Map.of("names", Map.of("en", "Boston"))));
+        networks.put("192.0.2.0/24", Map.of(
+            "registered_country", Map.of("iso_code", "NL"),
+            "autonomous_system_number", 64500L,
+            "autonomous_system_organization", "Example Transit"));
+        Path file = dir.resolve("test.mmdb");
+        MmdbTestFiles.write(file, networks);
+
+        MmdbDatabase db = MmdbDatabase.load(file, 16);
+
+        assertEquals(new GeoIpRecord("US", "Boston", null, null), db.lookup("10.20.30.40"));
+        assertEquals(new GeoIpRecord("NL", null, 64500L, "Example Transit"), db.lookup("192.0.2.99"));
+        assertEquals("NL", db.lookup("::ffff:192.0.2.1").country());
+        assertNull(db.lookup("11.0.0.1"));
+        assertNull(db.lookup("2001:db8::1"));
+        assertNull(db.lookup("localhost"));
+    }
+
+    @Test
+    void repeatLookupsAreServedFromCache() throws Exception {
+        Path file = dir.resolve("test.mmdb");
+        MmdbTestFiles.write(file, Map.of("10.0.0.0/8", Map.of("country", Map.of("iso_code", "US"))));
+        MmdbDatabase db = MmdbDatabase.load(file, 16);
+
+        GeoIpRecord first = db.lookup("10.0.0.1");
+        assertSame(first, db.lookup("10.0.0.1"));
+        assertNull(db.lookup("11.0.0.1"));
+        assertNull(db.lookup("11.0.0.1"));
+
+        assertEquals(2L, db.cacheMetrics().get("hits"));
+        assertEquals(2L, db.cacheMetrics().get("misses"));
+    }
+}
@@ -0,0 +1,142 @@
+package edu.harvard.dbmi.avillach.logging.enrich;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes minimal IPv4 MaxMind DB files (24-bit records) for tests. Networks must not overlap.
+ * Values are encoded by Java type: String, Integer as uint16, Long as uint32, BigInteger as uint64,
+ * Map and List.
+ */
+final class MmdbTestFiles {
+
+    private static final byte[] METADATA_MARKER = {(byte) 0xAB, (byte) 0xCD, (byte) 0xEF,
+        'M', 'a', 'x', 'M', 'i', 'n', 'd', '.', 'c', 'o', 'm'};
+    private static final int EMPTY = -1;
+
+    private MmdbTestFiles() {
+    }
+
+    /** Writes {@code networks} (CIDR string to record map) to {@code file}. */
+    static void write(Path file, Map<String, Map<String, Object>> networks) throws IOException {
+        List<int[]> nodes = new ArrayList<>();
+        nodes.add(new int[] {EMPTY, EMPTY});
+        List<long[]> dataPointers = new ArrayList<>(); // node, side, data offset
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+
+        for (Map.Entry<String, Map<String, Object>> network : networks.entrySet()) {
+            String[] parts = network.getKey().split("/");
+            long address = IpLiterals.parseIpv4(parts[0], 0, parts[0].length());
+            int prefixLength = Integer.parseInt(parts[1]);
+            int node = 0;
+            for (int depth = 0; depth < prefixLength - 1; depth++) {
+                int bit = (int) (address >>> (31 - depth)) & 1;
+                if (nodes.get(node)[bit] == EMPTY) {
+                    nodes.add(new int[] {EMPTY, EMPTY});
+                    nodes.get(node)[bit] = nodes.size() - 1;
+                }
+                node = nodes.get(node)[bit];
+            }
+            int bit = (int) (address >>> (32 - prefixLength)) & 1;
+            nodes.get(node)[bit] = Integer.MIN_VALUE;
+            dataPointers.add(new long[] {node, bit, data.size()});
+            encode(data, network.getValue());
+        }
+
+        int nodeCount = nodes.size();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int n = 0; n < nodeCount; n++) {
+            for (int side = 0; side < 2; side++) {
+                int value = nodes.get(n)[side];
+                if (value == Integer.MIN_VALUE) {
+                    value = (int) dataOffset(dataPointers, n, side) + nodeCount + 16;
+                } else if (value == EMPTY) {
+                    value = nodeCount;
+                }
+                out.write(value >>> 16);
+                out.write(value >>> 8);
+                out.write(value);
+            }
+        }
+        out.write(new byte[16]);
+        data.writeTo(out);
+        out.write(METADATA_MARKER);
+
+        Map<String, Object> metadata = new LinkedHashMap<>();
+        metadata.put("node_count", (long) nodeCount);
+        metadata.put("record_size", 24);
+        metadata.put("ip_version", 4);
+        metadata.put("database_type", "Test-DB");
+        metadata.put("languages", List.of("en"));
+        metadata.put("binary_format_major_version", 2);
+        metadata.put("binary_format_minor_version", 0);
+        metadata.put("build_epoch", BigInteger.valueOf(1_700_000_000L));
+        metadata.put("description", Map.of("en", "test database"));
+        encode(out, metadata);
+
+        Files.write(file, out.toByteArray());
+    }
+
+    private static long dataOffset(List<long[]> dataPointers, int node, int side) {
+        for (long[] pointer : dataPointers) {
+            if (pointer[0] == node && pointer[1] == side) {
+                return pointer[2];
+            }
+        }
+        throw new IllegalStateException("no data for node " + node);
+    }
+
+    private static void encode(ByteArrayOutputStream out, Object value) {
+        if (value instanceof String s) {
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            writeControl(out, 2, bytes.length);
+            out.writeBytes(bytes);
+        } else if (value instanceof Integer i) {
+            writeUnsigned(out, 5, BigInteger.valueOf(i));
+        } else if (value instanceof Long l) {
+            writeUnsigned(out, 6, BigInteger.valueOf(l));
+        } else if (value instanceof BigInteger b) {
+            writeUnsigned(out, 9, b);
+        } else if (value instanceof Map<?, ?> map) {
+            writeControl(out, 7, map.size());
+            map.forEach((k, v) -> {
+                encode(out, k);
+                encode(out, v);
+            });
+        } else if (value instanceof List<?> list) {
+            writeControl(out, 11, list.size());
+            list.forEach(item -> encode(out, item));
+        } else {
+            throw new IllegalArgumentException("unsupported type " + value);
+        }
+    }
+
+    private static void writeUnsigned(ByteArrayOutputStream out, int type, BigInteger value) {
+        byte[] bytes = value.signum() == 0 ? new byte[0] : value.toByteArray();
+        int start = bytes.length > 0 && bytes[0] == 0 ? 1 : 0;
+        writeControl(out, type, bytes.length - start);
+        out.write(bytes, start, bytes.length - start);
+    }
+
+    /** Control byte, then the extended type byte for types above 7, then one size byte for sizes 29-284. */
+    private static void writeControl(ByteArrayOutputStream out, int type, int size) {
+        if (size > 284) {
+            throw new IllegalArgumentException("size too large for test writer: " + size);
+        }
+        out.write((type > 7 ? 0 : type << 5) | Math.min(size, 29));
+        if (type > 7) {
+            out.write(type - 7);
+        }
+        if (size >= 29) {
+            out.write(size - 29);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package edu.harvard.dbmi.avillach.logging.enrich;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UrlTemplaterTest {
+
+    private static final String UUID = "b93bbc83-19f6-478b-9e97-1b6dbe165a00";
+
+    @Test
+    void configuredTemplatesMatchWithoutQueryString() {
+        UrlTemplater templater = new UrlTemplater(
+            List.of("/picsure/query/{queryId}/result", "/picsure/query/{queryId}/status"), 100);
+
+        assertEquals("/picsure/query/{queryId}/result", templater.template("/picsure/query/" + UUID + "/result"));
+        assertEquals("/picsure/query/{queryId}/status", templater.template("/picsure/query/abc/status?x=1"));
+        assertEquals("/picsure/query/{queryId}/result",
+            templater.template("https://example.org/picsure/query/q-1/result/"));
+    }
+
+    @Test
+    void literalSegmentsWinButParameterBranchesStillApplyBelowThem() {
+        UrlTemplater templater = new UrlTemplater(
+            List.of("/psama/user/{userId}/roles", "/psama/user/me/profile", "/psama/user/me"), 100);
+
+        assertEquals("/psama/user/me", templater.template("/psama/user/me"));
+        assertEquals("/psama/user/me/profile", templater.template("/psama/user/me/profile"));
+        // "me" is a literal branch, but only the parameter branch has /roles
+        assertEquals("/psama/user/{userId}/roles", templater.template("/psama/user/me/roles"));
+        assertEquals("/psama/user/{userId}/roles", templater.template("/psama/user/42/roles"));
+    }
+
+    @Test
+    void unmatchedPathsFallBackToUuidAndNumberPlaceholders() {
+        UrlTemplater templater = new UrlTemplater(List.of("/picsure/info/resources"), 100);
+
+        assertEquals("/picsure/query/{uuid}/result", templater.template("/picsure/query/" + UUID + "/result"));
+        assertEquals("/psama/user/{id}", templater.template("/psama/user/12345"));
+        assertEquals("/picsure/info/{uuid}", templater.template("/picsure/info/" + UUID.toUpperCase()));
+        assertEquals("/", templater.template("/?a=b"));
+        assertEquals("/psama/v2", templater.template("/psama/v2"));
+    }
+
+    @Test
+    void resultsAreCachedPerPathAndCountedPerCall() {
+        UrlTemplater templater = new UrlTemplater(List.of("/a/{b}"), 100);
+        templater.template("/a/1");
+        templater.template("https://host/a/1?page=2");
+        templater.template("/c/2");
+
+        assertEquals(1L, templater.metrics().get("hits"));
+        assertEquals(2, templater.metrics().get("size"));
+        assertEquals(2L, templater.metrics().get("matched"));
+        assertEquals(1L, templater.metrics().get("fallback"));
+    }
+
+    @Test
+    void invalidTemplatesFailStartup() {
+        assertThrows(IllegalStateException.class, () -> new UrlTemplater(List.of("picsure/query"), 10));
+        assertThrows(IllegalStateException.class, () -> new UrlTemplater(List.of("/picsure/{}"), 10));
+    }
+}
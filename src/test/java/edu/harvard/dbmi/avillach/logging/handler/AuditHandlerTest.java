@@ -1,14 +1,24 @@
 package edu.harvard.dbmi.avillach.logging.handler;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
 import edu.harvard.dbmi.avillach.logging.model.AuditEvent;
+import edu.harvard.dbmi.avillach.logging.pipeline.MemoryBudget;
+import edu.harvard.dbmi.avillach.logging.schema.FieldSpec;
+import edu.harvard.dbmi.avillach.logging.schema.SchemaDefinition;
+import edu.harvard.dbmi.avillach.logging.schema.SchemaRegistry;
 import edu.harvard.dbmi.avillach.logging.service.AuditLogService;
 import io.javalin.http.BadRequestResponse;
 import io.javalin.http.Context;
+import io.javalin.http.ServiceUnavailableResponse;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
 
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
@@ -198,6 +208,129 @@ class AuditHandlerTest {
         assertDoesNotThrow(() -> handler.handle(ctx));
     }
 
+    // --- Binary content types ---
+
+    @Test
+    void cborBodyDecoded() throws Exception {
+        Context ctx = binaryContext(new CBORMapper(), AuditHandler.CBOR_CONTENT_TYPE,
+            "{\"event_type\":\"QUERY\",\"request\":{\"status\":200},\"metadata\":{\"dataset\":\"phs000001\"}}");
+        when(ctx.status(202)).thenReturn(ctx);
+
+        handler.handle(ctx);
+
+        ArgumentCaptor<AuditEvent> captor = ArgumentCaptor.forClass(AuditEvent.class);
+        verify(auditLogService).logEvent(captor.capture(), any(), any());
+        assertEquals("QUERY", captor.getValue().eventType());
+        assertEquals(200, captor.getValue().request().status());
+        assertEquals("phs000001", captor.getValue().metadata().get("dataset"));
+    }
+
+    @Test
+    void smileBodyDecodedWithContentTypeParameters() throws Exception {
+        Context ctx = binaryContext(new SmileMapper(), AuditHandler.SMILE_CONTENT_TYPE + "; charset=binary",
+            "{\"event_type\":\"LOGIN\"}");
+        when(ctx.status(202)).thenReturn(ctx);
+
+        handler.handle(ctx);
+
+        verify(auditLogService).logEvent(any(), any(), any());
+    }
+
+    @Test
+    void binaryBodiesUseSameLimits() throws Exception {
+        StringBuilder nested = new StringBuilder("{\"event_type\":\"TEST\",\"metadata\":");
+        nested.append("{\"k\":".repeat(15)).append("\"v\"").append("}".repeat(15)).append("}");
+        String oversized = "{\"event_type\":\"TEST\",\"action\":\"" + "x".repeat(11_000) + "\"}";
+        Map<String, String> metadata = IntStream.rangeClosed(1, 51)
+            .boxed()
+            .collect(Collectors.toMap(i -> "key" + i, i -> "val" + i));
+        String tooManyKeys = "{\"event_type\":\"TEST\",\"metadata\":" + mapToJson(metadata) + "}";
+
+        for (String json : new String[]{nested.toString(), oversized, tooManyKeys}) {
+            Context cbor = binaryContext(new CBORMapper(), AuditHandler.CBOR_CONTENT_TYPE, json);
+            assertThrows(BadRequestResponse.class, () -> handler.handle(cbor));
+            Context smile = binaryContext(new SmileMapper(), AuditHandler.SMILE_CONTENT_TYPE, json);
+            assertThrows(BadRequestResponse.class, () -> handler.handle(smile));
+        }
+        verify(auditLogService, never()).logEvent(any(), any(), any());
+    }
+
+    @Test
+    void invalidCborThrows400() {
+        Context ctx = mock(Context.class);
+        when(ctx.contentType()).thenReturn(AuditHandler.CBOR_CONTENT_TYPE);
+        when(ctx.bodyAsBytes()).thenReturn(new byte[]{(byte) 0xff, 0x01, 0x02});
+
+        assertThrows(BadRequestResponse.class, () -> handler.handle(ctx));
+    }
+
+    @Test
+    void schemaViolationThrows400WithReason() throws Exception {
+        SchemaDefinition query = new SchemaDefinition("QUERY",
+            Map.of("query_id", new FieldSpec(FieldSpec.Type.STRING, true, null, null, null)), null);
+        AuditHandler schemaHandler = new AuditHandler(auditLogService, new SchemaRegistry(List.of(query), true));
+
+        Context ctx = mock(Context.class);
+        when(ctx.body()).thenReturn("{\"event_type\":\"QUERY\",\"metadata\":{\"query_id\":7}}");
+        BadRequestResponse ex = assertThrows(BadRequestResponse.class, () -> schemaHandler.handle(ctx));
+        assertEquals("QUERY metadata.query_id must be a string", ex.getMessage());
+
+        Context cbor = binaryContext(new CBORMapper(), AuditHandler.CBOR_CONTENT_TYPE, "{\"event_type\":\"QUERY\"}");
+        assertThrows(BadRequestResponse.class, () -> schemaHandler.handle(cbor));
+        verifyNoInteractions(auditLogService);
+    }
+
+    @Test
+    void exhaustedMemoryBudgetReturns503BeforeReadingBody() {
+        MemoryBudget budget = new MemoryBudget(MemoryBudget.cost(100));
+        AuditHandler budgeted = new AuditHandler(auditLogService, null, budget);
+        MemoryBudget.Charge held = budget.tryAcquire(MemoryBudget.cost(100));
+
+        Context ctx = mock(Context.class);
+        when(ctx.contentLength()).thenReturn(50);
+        assertThrows(ServiceUnavailableResponse.class, () -> budgeted.handle(ctx));
+        verify(ctx).header("Retry-After", "1");
+        verify(ctx, never()).body();
+
+        held.release();
+        when(ctx.body()).thenReturn("{\"event_type\":\"QUERY\"}");
+        budgeted.handle(ctx);
+        verify(auditLogService).logEvent(any(), isNull(), isNull(), any(MemoryBudget.Charge.class));
+    }
+
+    @Test
+    void rejectedEventReleasesItsCharge() {
+        MemoryBudget budget = new MemoryBudget(1 << 20);
+        AuditHandler budgeted = new AuditHandler(auditLogService, null, budget);
+
+        Context ctx = mock(Context.class);
+        when(ctx.contentLength()).thenReturn(8);
+        when(ctx.body()).thenReturn("not-json");
+        assertThrows(BadRequestResponse.class, () -> budgeted.handle(ctx));
+
+        assertEquals(0L, budget.metrics().get("used_bytes"));
+        assertEquals(1L, budget.metrics().get("admitted"));
+    }
+
+    @Test
+    void stringBodiesAreChargedTheirUtf8Size() {
+        String body = "{\"event_type\":\"QUERY\",\"metadata\":{\"note\":\"\u00e9\u20ac\ud83d\ude00\"}}";
+        assertEquals(body.getBytes(StandardCharsets.UTF_8).length, AuditHandler.utf8Length(body));
+
+        MemoryBudget budget = new MemoryBudget(1 << 20);
+        new AuditHandler(auditLogService, null, budget).process(body, null, null);
+
+        assertEquals(MemoryBudget.cost(body.getBytes(StandardCharsets.UTF_8).length),
+            budget.metrics().get("largest_charge_bytes"));
+    }
+
+    private Context binaryContext(ObjectMapper binaryMapper, String contentType, String json) throws Exception {
+        Context ctx = mock(Context.class);
+        when(ctx.contentType()).thenReturn(contentType);
+        when(ctx.bodyAsBytes()).thenReturn(binaryMapper.writeValueAsBytes(new ObjectMapper().readTree(json)));
+        return ctx;
+    }
+
     private String mapToJson(Map<String, String> map) {
         StringBuilder sb = new StringBuilder("{");
         boolean first = true;
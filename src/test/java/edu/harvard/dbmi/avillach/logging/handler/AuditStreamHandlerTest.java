@@ -0,0 +1,134 @@
+package edu.harvard.dbmi.avillach.logging.handler;
+
+import edu.harvard.dbmi.avillach.logging.model.AuditEvent;
+import edu.harvard.dbmi.avillach.logging.service.AuditLogService;
+import io.javalin.Javalin;
+import io.javalin.testtools.JavalinTest;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.WebSocket;
+import okhttp3.WebSocketListener;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class AuditStreamHandlerTest {
+
+    private static final String EVENT = "{\"event_type\":\"ETL\",\"action\":\"load\"}";
+
+    private AuditLogService auditLogService;
+    private AtomicBoolean backpressured;
+    private AuditStreamHandler streamHandler;
+
+    @BeforeEach
+    void setUp() {
+        auditLogService = mock(AuditLogService.class);
+        backpressured = new AtomicBoolean(false);
+        streamHandler = new AuditStreamHandler(new AuditHandler(auditLogService), 3, backpressured::get);
+    }
+
+    @Test
+    void acksEveryNFramesAndFlushesTail() {
+        JavalinTest.test(createApp(), (server, client) -> {
+            BlockingQueue<String> replies = new LinkedBlockingQueue<>();
+            WebSocket socket = connect(server.port(), replies);
+            for (int i = 0; i < 7; i++) {
+                socket.send(EVENT);
+            }
+
+            assertEquals("{\"ack\":3}", replies.poll(2, TimeUnit.SECONDS));
+            assertEquals("{\"ack\":6}", replies.poll(2, TimeUnit.SECONDS));
+            assertEquals("{\"ack\":7}", replies.poll(2, TimeUnit.SECONDS));
+            verify(auditLogService, times(7)).logEvent(any(AuditEvent.class), eq("Bearer stream-token"), isNull());
+            socket.close(1000, null);
+        });
+    }
+
+    @Test
+    void invalidFrameIsRejectedAndListedInNextAck() {
+        JavalinTest.test(createApp(), (server, client) -> {
+            BlockingQueue<String> replies = new LinkedBlockingQueue<>();
+            WebSocket socket = connect(server.port(), replies);
+            socket.send(EVENT);
+            socket.send("{\"action\":\"no-event-type\"}");
+            socket.send(EVENT);
+
+            String rejection = replies.poll(2, TimeUnit.SECONDS);
+            assertTrue(rejection.contains("\"rejected\":2"));
+            assertTrue(rejection.contains("event_type"));
+            assertEquals("{\"ack\":3,\"rejected\":[2]}", replies.poll(2, TimeUnit.SECONDS));
+            assertEquals(1L, streamHandler.metrics().get("rejected"));
+            socket.close(1000, null);
+        });
+    }
+
+    @Test
+    void acksWithheldWhileBackpressured() {
+        JavalinTest.test(createApp(), (server, client) -> {
+            BlockingQueue<String> replies = new LinkedBlockingQueue<>();
+            backpressured.set(true);
+            WebSocket socket = connect(server.port(), replies);
+            for (int i = 0; i < 3; i++) {
+                socket.send(EVENT);
+            }
+
+            assertNull(replies.poll(TimeUnit.NANOSECONDS.toMillis(AuditStreamHandler.IDLE_ACK_NANOS) * 2, TimeUnit.MILLISECONDS));
+            assertTrue((Long) streamHandler.metrics().get("acks_withheld") > 0);
+
+            backpressured.set(false);
+            assertEquals("{\"ack\":3}", replies.poll(2, TimeUnit.SECONDS));
+            socket.close(1000, null);
+        });
+    }
+
+    @Test
+    void rejectionsBeyondListCapAreCountedInAck() {
+        JavalinTest.test(createApp(), (server, client) -> {
+            BlockingQueue<String> replies = new LinkedBlockingQueue<>();
+            backpressured.set(true);
+            WebSocket socket = connect(server.port(), replies);
+            int frames = AuditStreamHandler.MAX_LISTED_REJECTIONS + 5;
+            for (int i = 0; i < frames; i++) {
+                socket.send("{\"action\":\"no-event-type\"}");
+            }
+            for (int i = 0; i < frames; i++) {
+                assertTrue(replies.poll(2, TimeUnit.SECONDS).startsWith("{\"rejected\":"));
+            }
+
+            backpressured.set(false);
+            String ack = replies.poll(2, TimeUnit.SECONDS);
+            assertTrue(ack.startsWith("{\"ack\":" + frames + ",\"rejected\":[1,2,"), ack);
+            assertTrue(ack.endsWith(",\"rejected_unlisted\":5}"), ack);
+            socket.close(1000, null);
+        });
+    }
+
+    private Javalin createApp() {
+        Javalin app = Javalin.create(config -> config.events(events -> {
+            events.serverStarting(streamHandler::start);
+            events.serverStopped(streamHandler::stop);
+        }));
+        app.ws("/audit/stream", streamHandler::configure);
+        return app;
+    }
+
+    private static WebSocket connect(int port, BlockingQueue<String> replies) {
+        Request request = new Request.Builder()
+            .url("ws://localhost:" + port + "/audit/stream")
+            .header("Authorization", "Bearer stream-token")
+            .build();
+        return new OkHttpClient().newWebSocket(request, new WebSocketListener() {
+            @Override
+            public void onMessage(WebSocket webSocket, String text) {
+                replies.add(text);
+            }
+        });
+    }
+}
@@ -0,0 +1,87 @@
+package edu.harvard.dbmi.avillach.logging.handler;
+
+import edu.harvard.dbmi.avillach.logging.model.AuditEvent;
+import edu.harvard.dbmi.avillach.logging.service.AuditLogService;
+import io.javalin.http.Context;
+import io.javalin.http.ServiceUnavailableResponse;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class DeferredAuditHandlerTest {
+
+    private final AuditLogService auditLogService = mock(AuditLogService.class);
+    private DeferredAuditHandler handler;
+
+    @AfterEach
+    void tearDown() {
+        handler.stop();
+    }
+
+    @Test
+    void returns202BeforeProcessing() {
+        handler = new DeferredAuditHandler(new AuditHandler(auditLogService), 16, 2);
+        Context ctx = context("{\"event_type\":\"QUERY\",\"action\":\"execute\"}");
+
+        handler.handle(ctx);
+
+        verify(ctx).status(202);
+        verify(ctx).result("{\"status\":\"accepted\"}");
+        ArgumentCaptor<AuditEvent> captor = ArgumentCaptor.forClass(AuditEvent.class);
+        verify(auditLogService, timeout(2000)).logEvent(captor.capture(), eq("Bearer token"), eq("req-1"));
+        assertEquals("QUERY", captor.getValue().eventType());
+    }
+
+    @Test
+    void invalidEventCountedInsteadOf400() {
+        handler = new DeferredAuditHandler(new AuditHandler(auditLogService), 16, 1);
+
+        assertDoesNotThrow(() -> handler.handle(context("not-json")));
+        assertDoesNotThrow(() -> handler.handle(context("{\"action\":\"missing-event-type\"}")));
+        handler.stop();
+
+        assertEquals(2L, handler.metrics().get("accepted"));
+        assertEquals(2L, handler.metrics().get("rejected"));
+        verify(auditLogService, never()).logEvent(any(), any(), any());
+    }
+
+    @Test
+    void fullQueueReturns503() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch busy = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            busy.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return null;
+        }).when(auditLogService).logEvent(any(), any(), any());
+        handler = new DeferredAuditHandler(new AuditHandler(auditLogService), 1, 1);
+
+        handler.handle(context("{\"event_type\":\"A\"}"));
+        assertTrue(busy.await(2, TimeUnit.SECONDS));
+        handler.handle(context("{\"event_type\":\"B\"}"));
+        Context overflow = context("{\"event_type\":\"C\"}");
+
+        assertThrows(ServiceUnavailableResponse.class, () -> handler.handle(overflow));
+        verify(overflow).header("Retry-After", "1");
+        assertEquals(1L, handler.metrics().get("queue_full"));
+
+        release.countDown();
+        handler.stop();
+        verify(auditLogService, times(2)).logEvent(any(), any(), any());
+    }
+
+    private static Context context(String body) {
+        Context ctx = mock(Context.class);
+        when(ctx.bodyAsBytes()).thenReturn(body.getBytes(StandardCharsets.UTF_8));
+        when(ctx.header("Authorization")).thenReturn("Bearer token");
+        when(ctx.header("X-Request-Id")).thenReturn("req-1");
+        return ctx;
+    }
+}
@@ -0,0 +1,104 @@
+package edu.harvard.dbmi.avillach.logging.listener;
+
+import edu.harvard.dbmi.avillach.logging.handler.AuditHandler;
+import edu.harvard.dbmi.avillach.logging.model.AuditEvent;
+import edu.harvard.dbmi.avillach.logging.service.AuditLogService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class UdpListenerTest {
+
+    private static final String API_KEY = "udp-test-key";
+
+    private AuditLogService auditLogService;
+    private UdpListener listener;
+
+    @BeforeEach
+    void setUp() {
+        auditLogService = mock(AuditLogService.class);
+        listener = new UdpListener(0, 2, API_KEY, new AuditHandler(auditLogService));
+    }
+
+    @AfterEach
+    void tearDown() {
+        listener.stop();
+    }
+
+    @Test
+    void signedDatagramIsLogged() throws Exception {
+        listener.start();
+        send(UdpListener.sign(API_KEY, "{\"event_type\":\"UI_TELEMETRY\",\"action\":\"click\"}"));
+
+        ArgumentCaptor<AuditEvent> captor = ArgumentCaptor.forClass(AuditEvent.class);
+        verify(auditLogService, timeout(2000)).logEvent(captor.capture(), isNull(), isNull());
+        assertEquals("UI_TELEMETRY", captor.getValue().eventType());
+        assertEquals(1L, listener.metrics().get("received"));
+        assertEquals(1L, listener.metrics().get("accepted"));
+    }
+
+    @Test
+    void wrongKeyAndMissingTagCountAsAuthFailures() throws Exception {
+        listener.start();
+        send(UdpListener.sign("other-key", "{\"event_type\":\"UI_TELEMETRY\"}"));
+        send("{\"event_type\":\"UI_TELEMETRY\"}".getBytes(StandardCharsets.UTF_8));
+
+        awaitMetric("auth_failures", 2L);
+        verify(auditLogService, never()).logEvent(any(), any(), any());
+    }
+
+    @Test
+    void tamperedPayloadFailsAuth() {
+        byte[] datagram = UdpListener.sign(API_KEY, "{\"event_type\":\"LOGIN\"}");
+        datagram[datagram.length - 3] = 'X';
+
+        listener.handle(datagram);
+
+        assertEquals(1L, listener.metrics().get("auth_failures"));
+    }
+
+    @Test
+    void invalidEventCountsAsParseFailure() {
+        listener.handle(UdpListener.sign(API_KEY, "not-json"));
+        listener.handle(UdpListener.sign(API_KEY, "{\"action\":\"missing-event-type\"}"));
+
+        assertEquals(2L, listener.metrics().get("parse_failures"));
+        verify(auditLogService, never()).logEvent(any(), any(), any());
+    }
+
+    @Test
+    void kernelDropsSummedForMatchingPort() {
+        List<String> procNetUdp = List.of(
+            "   sl  local_address rem_address   st tx_queue rx_queue tr tm->when retrnsmt   uid  timeout inode ref pointer drops",
+            "  100: 00000000:1F90 00000000:0000 07 00000000:00000000 00:00000000 00000000  1000        0 4242 2 0000000000000000 17",
+            "  101: 0100007F:0035 00000000:0000 07 00000000:00000000 00:00000000 00000000     0        0 4243 2 0000000000000000 99"
+        );
+
+        assertEquals(17L, UdpListener.kernelDrops(procNetUdp, 8080));
+        assertEquals(0L, UdpListener.kernelDrops(procNetUdp, 9000));
+    }
+
+    private void send(byte[] datagram) throws Exception {
+        try (DatagramSocket socket = new DatagramSocket()) {
+            socket.send(new DatagramPacket(datagram, datagram.length, InetAddress.getLoopbackAddress(), listener.localPort()));
+        }
+    }
+
+    private void awaitMetric(String name, long expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 2000;
+        while (!Long.valueOf(expected).equals(listener.metrics().get(name)) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(expected, listener.metrics().get(name));
+    }
+}
@@ -0,0 +1,57 @@
+package edu.harvard.dbmi.avillach.logging.listener;
+
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.unixdomain.server.UnixDomainServerConnector;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UnixSocketListenerTest {
+
+    @Test
+    void attachAddsConnectorAndCreatesParentDirectory(@TempDir Path tempDir) {
+        Path socket = tempDir.resolve("run/audit.sock");
+        Server server = new Server();
+
+        new UnixSocketListener(socket).attach(server);
+
+        assertEquals(1, server.getConnectors().length);
+        UnixDomainServerConnector connector = (UnixDomainServerConnector) server.getConnectors()[0];
+        assertEquals(socket, connector.getUnixDomainPath());
+        assertTrue(Files.isDirectory(socket.getParent()));
+    }
+
+    @Test
+    void refusesToReplaceRegularFile(@TempDir Path tempDir) throws IOException {
+        Path notASocket = Files.writeString(tempDir.resolve("audit.log"), "keep me");
+
+        assertThrows(IllegalStateException.class, () -> new UnixSocketListener(notASocket).attach(new Server()));
+        assertEquals("keep me", Files.readString(notASocket));
+    }
+
+    @Test
+    void refusesSocketOfLiveInstanceButReplacesStaleOne(@TempDir Path tempDir) throws IOException {
+        Path socket = tempDir.resolve("audit.sock");
+        try (ServerSocketChannel live = ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+            live.bind(UnixDomainSocketAddress.of(socket));
+
+            assertThrows(IllegalStateException.class, () -> new UnixSocketListener(socket).attach(new Server()));
+            assertTrue(Files.exists(socket));
+        }
+
+        // Closing the channel leaves the socket file behind, as an unclean shutdown would
+        assertTrue(Files.exists(socket));
+        Server server = new Server();
+        new UnixSocketListener(socket).attach(server);
+        assertFalse(Files.exists(socket));
+        assertEquals(1, server.getConnectors().length);
+    }
+}
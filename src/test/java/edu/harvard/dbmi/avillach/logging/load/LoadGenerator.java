@@ -0,0 +1,332 @@
+package edu.harvard.dbmi.avillach.logging.load;
+
+import ch.qos.logback.classic.LoggerContext;
+import com.sun.management.GarbageCollectionNotificationInfo;
+import edu.harvard.dbmi.avillach.logging.App;
+import edu.harvard.dbmi.avillach.logging.config.AppConfig;
+import edu.harvard.dbmi.avillach.logging.metrics.LatencyHistogram;
+import io.javalin.Javalin;
+import org.slf4j.LoggerFactory;
+
+import javax.management.NotificationEmitter;
+import javax.management.openmbean.CompositeData;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+
+/**
+ * Drives {@code POST /audit} from virtual-thread clients with a {@link SyntheticCorpus} and reports
+ * throughput, latency percentiles, GC pauses and events missing from the audit file.
+ *
+ * <p>Open loop ({@code --mode=open}) starts requests at a constant {@code --rate} regardless of how
+ * fast earlier ones complete, and measures each from its scheduled start, so a stalled server shows
+ * up as latency instead of as fewer requests (coordinated omission). Closed loop ({@code --mode=closed})
+ * runs {@code --clients} clients that each send their next request when the previous one returns.
+ *
+ * <p>Without {@code --url} the service is started in-process with {@link App#createApp}, configured
+ * from the environment like {@code App.main}. Run with {@code mvn -Pload-test verify}; see the README.
+ */
+public class LoadGenerator {
+
+    private static final String DEFAULT_API_KEY = "load-test-key";
+    private static final int MAX_IN_FLIGHT = 10_000;
+
+    record Options(String url, String mode, int rate, int clients, int warmupSeconds, int durationSeconds,
+                   double jwtShare, int corpusSize, long seed, Path auditFile) {
+
+        static Options parse(String[] args) {
+            Map<String, String> values = new HashMap<>();
+            for (String arg : args) {
+                if (!arg.startsWith("--") || !arg.contains("=")) {
+                    throw new IllegalArgumentException("Expected --name=value, got: " + arg);
+                }
+                values.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+            }
+            String mode = values.getOrDefault("mode", "open");
+            if (!mode.equals("open") && !mode.equals("closed")) {
+                throw new IllegalArgumentException("--mode must be open or closed, got: " + mode);
+            }
+            String url = values.get("url");
+            String auditFile = values.get("audit-file");
+            return new Options(url == null || url.isBlank() ? null : url, mode,
+                positive(values, "rate", 1000),
+                positive(values, "clients", 64),
+                Integer.parseInt(values.getOrDefault("warmup", "5")),
+                positive(values, "duration", 30),
+                Double.parseDouble(values.getOrDefault("jwt-share", "0.5")),
+                positive(values, "corpus", 2000),
+                Long.parseLong(values.getOrDefault("seed", "42")),
+                auditFile == null || auditFile.isBlank() ? null : Path.of(auditFile));
+        }
+
+        private static int positive(Map<String, String> values, String name, int defaultValue) {
+            int value = Integer.parseInt(values.getOrDefault(name, String.valueOf(defaultValue)));
+            if (value < 1) {
+                throw new IllegalArgumentException("--" + name + " must be positive, got: " + value);
+            }
+            return value;
+        }
+    }
+
+    record Result(long sent, long accepted, Map<Integer, Long> rejected, long failed, long notSent,
+                  long measured, double seconds, LatencyHistogram latency) {}
+
+    private final Options options;
+    private final URI target;
+    private final String apiKey;
+    private final SyntheticCorpus corpus;
+    private final HttpClient client;
+
+    private final AtomicLong sequence = new AtomicLong();
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder accepted = new LongAdder();
+    private final Map<Integer, LongAdder> rejected = new ConcurrentHashMap<>();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder notSent = new LongAdder();
+    private final LongAdder measured = new LongAdder();
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    LoadGenerator(Options options, String baseUrl, String apiKey, SyntheticCorpus corpus) {
+        this.options = options;
+        this.target = URI.create(baseUrl.replaceAll("/+$", "") + "/audit");
+        this.apiKey = apiKey;
+        this.corpus = corpus;
+        this.client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(5))
+            .executor(Executors.newVirtualThreadPerTaskExecutor())
+            .build();
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = Options.parse(args);
+        String runId = "load-" + UUID.randomUUID();
+        SyntheticCorpus corpus = new SyntheticCorpus(runId, options.corpusSize(), options.jwtShare(), options.seed());
+
+        Javalin app = null;
+        String baseUrl = options.url();
+        String apiKey = System.getenv().getOrDefault("LOGGING_API_KEY", DEFAULT_API_KEY);
+        Path auditFile = options.auditFile();
+        if (baseUrl == null) {
+            Map<String, String> env = new HashMap<>(System.getenv());
+            env.putIfAbsent("LOGGING_API_KEY", DEFAULT_API_KEY);
+            AppConfig config = AppConfig.fromEnvironment(env::get);
+            app = App.createApp(config, new AtomicBoolean(true)).start(0);
+            baseUrl = "http://localhost:" + app.port();
+            if (auditFile == null) {
+                auditFile = Path.of(env.getOrDefault("LOG_DIR", "logs"), "audit.log");
+            }
+        }
+
+        GcPauses gcPauses = new GcPauses();
+        Result result = new LoadGenerator(options, baseUrl, apiKey, corpus).run();
+        GcPauses.Summary gc = gcPauses.summary();
+
+        if (app != null) {
+            app.stop();
+            // Stopping logback drains the async audit appender, so every accepted event is on disk
+            ((LoggerContext) LoggerFactory.getILoggerFactory()).stop();
+        } else if (auditFile != null) {
+            Thread.sleep(2_000);
+        }
+        long written = auditFile == null ? -1 : countRunLines(auditFile, runId);
+
+        System.out.println(report(options, result, gc, written));
+        if (written >= 0 && written < result.accepted()) {
+            System.exit(1);
+        }
+    }
+
+    Result run() {
+        long start = System.nanoTime();
+        long measureFrom = start + Duration.ofSeconds(options.warmupSeconds()).toNanos();
+        long end = measureFrom + Duration.ofSeconds(options.durationSeconds()).toNanos();
+        if (options.mode().equals("open")) {
+            runOpenLoop(start, measureFrom, end);
+        } else {
+            runClosedLoop(measureFrom, end);
+        }
+        Map<Integer, Long> rejectedByStatus = new HashMap<>();
+        rejected.forEach((status, count) -> rejectedByStatus.put(status, count.sum()));
+        return new Result(sent.sum(), accepted.sum(), rejectedByStatus, failed.sum(), notSent.sum(),
+            measured.sum(), options.durationSeconds(), latency);
+    }
+
+    private void runOpenLoop(long start, long measureFrom, long end) {
+        long interval = 1_000_000_000L / Math.max(1, options.rate());
+        Semaphore inFlight = new Semaphore(MAX_IN_FLIGHT);
+        try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (long scheduled = start; scheduled < end; scheduled += interval) {
+                long wait = scheduled - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+                // Past the cap the generator, not the server, would become the bottleneck
+                if (!inFlight.tryAcquire()) {
+                    notSent.increment();
+                    continue;
+                }
+                long intended = scheduled;
+                clients.submit(() -> {
+                    try {
+                        send(intended, intended >= measureFrom);
+                    } finally {
+                        inFlight.release();
+                    }
+                });
+            }
+        }
+    }
+
+    private void runClosedLoop(long measureFrom, long end) {
+        try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int c = 0; c < options.clients(); c++) {
+                clients.submit(() -> {
+                    for (long now = System.nanoTime(); now < end; now = System.nanoTime()) {
+                        send(now, now >= measureFrom);
+                    }
+                });
+            }
+        }
+    }
+
+    /** Sends one event; latency runs from {@code startedAt}, the scheduled time in open-loop mode. */
+    private void send(long startedAt, boolean measure) {
+        SyntheticCorpus.Entry entry = corpus.get(sequence.getAndIncrement());
+        HttpRequest.Builder request = HttpRequest.newBuilder(target)
+            .timeout(Duration.ofSeconds(30))
+            .header("Content-Type", "application/json")
+            .header("X-API-Key", apiKey)
+            .POST(HttpRequest.BodyPublishers.ofByteArray(entry.body()));
+        if (entry.authHeader() != null) {
+            request.header("Authorization", entry.authHeader());
+        }
+        sent.increment();
+        try {
+            int status = client.send(request.build(), HttpResponse.BodyHandlers.discarding()).statusCode();
+            if (status == 202) {
+                accepted.increment();
+            } else {
+                rejected.computeIfAbsent(status, s -> new LongAdder()).increment();
+            }
+        } catch (IOException e) {
+            failed.increment();
+            return;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failed.increment();
+            return;
+        }
+        if (measure) {
+            latency.record(System.nanoTime() - startedAt);
+            measured.increment();
+        }
+    }
+
+    /** Audit lines of this run in {@code auditFile} and the files it rolled over to. */
+    static long countRunLines(Path auditFile, String runId) throws IOException {
+        String marker = "\"load_run\":\"" + runId + "\"";
+        Path directory = auditFile.toAbsolutePath().getParent();
+        String name = auditFile.getFileName().toString();
+        String prefix = name.endsWith(".log") ? name.substring(0, name.length() - 4) : name;
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(directory)) {
+            files = listing.filter(f -> f.getFileName().toString().startsWith(prefix)).toList();
+        }
+        long count = 0;
+        for (Path file : files) {
+            try (Stream<String> lines = Files.lines(file, StandardCharsets.UTF_8)) {
+                count += lines.filter(line -> line.contains(marker)).count();
+            }
+        }
+        return count;
+    }
+
+    static String report(Options options, Result result, GcPauses.Summary gc, long written) {
+        StringBuilder out = new StringBuilder();
+        out.append(String.format("mode               %s (%s)%n", options.mode(), options.mode().equals("open")
+            ? options.rate() + " req/s scheduled" : options.clients() + " clients"));
+        out.append(String.format("measured           %d requests over %.0f s after %d s warm-up%n",
+            result.measured(), result.seconds(), options.warmupSeconds()));
+        out.append(String.format("throughput         %.1f req/s%n", result.measured() / result.seconds()));
+        for (double percentile : new double[] {50.0, 99.0, 99.9}) {
+            out.append(String.format("p%-17s %.3f ms%n", format(percentile),
+                result.latency().valueAtPercentile(percentile) / 1e6));
+        }
+        out.append(String.format("max                %.3f ms%n", result.latency().valueAtPercentile(100.0) / 1e6));
+        out.append(String.format("sent               %d (%d accepted, %d failed, rejected %s, %d not sent)%n",
+            result.sent(), result.accepted(), result.failed(), result.rejected(), result.notSent()));
+        out.append(String.format("gc pauses          %d, %d ms total, %d ms max%n",
+            gc.count(), gc.totalMillis(), gc.maxMillis()));
+        if (written < 0) {
+            out.append("audit lines        not checked (pass --audit-file)");
+        } else {
+            out.append(String.format("audit lines        %d written, %d lost", written,
+                Math.max(0, result.accepted() - written)));
+        }
+        return out.toString();
+    }
+
+    private static String format(double percentile) {
+        return percentile == Math.rint(percentile) ? String.valueOf((int) percentile) : String.valueOf(percentile);
+    }
+
+    /** Stop-the-world pauses reported by this JVM's collectors while the generator runs. */
+    static final class GcPauses {
+
+        record Summary(long count, long totalMillis, long maxMillis) {}
+
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalMillis = new LongAdder();
+        private final AtomicLong maxMillis = new AtomicLong();
+
+        GcPauses() {
+            for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+                if (collector instanceof NotificationEmitter emitter) {
+                    emitter.addNotificationListener((notification, handback) -> {
+                        String type = notification.getType();
+                        if (type.equals(GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION)) {
+                            record(GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData()));
+                        }
+                    }, null, null);
+                }
+            }
+        }
+
+        private void record(GarbageCollectionNotificationInfo info) {
+            String action = info.getGcAction();
+            // Concurrent cycles (G1 Concurrent GC, ZGC Cycles) run alongside the application
+            if (action.contains("minor") || action.contains("major") || action.contains("pause")) {
+                long millis = info.getGcInfo().getDuration();
+                count.increment();
+                totalMillis.add(millis);
+                maxMillis.accumulateAndGet(millis, Math::max);
+            }
+        }
+
+        Summary summary() {
+            return new Summary(count.sum(), totalMillis.sum(), maxMillis.get());
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package edu.harvard.dbmi.avillach.logging.load;
+
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+import edu.harvard.dbmi.avillach.logging.App;
+import edu.harvard.dbmi.avillach.logging.config.AppConfig;
+import io.javalin.Javalin;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.slf4j.LoggerFactory;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LoadGeneratorTest {
+
+    private static final String API_KEY = "load-test-key";
+
+    private ListAppender<ILoggingEvent> listAppender;
+    private Logger auditLogger;
+    private Javalin app;
+
+    @BeforeEach
+    void setUp() {
+        auditLogger = (Logger) LoggerFactory.getLogger("AUDIT");
+        listAppender = new ListAppender<>();
+        listAppender.start();
+        auditLogger.addAppender(listAppender);
+        AppConfig config = AppConfig.fromEnvironment(Map.of("LOGGING_API_KEY", API_KEY)::get);
+        app = App.createApp(config, new AtomicBoolean(true)).start(0);
+    }
+
+    @AfterEach
+    void tearDown() {
+        app.stop();
+        auditLogger.detachAppender(listAppender);
+    }
+
+    @Test
+    void closedLoopAcceptsEveryEvent() {
+        LoadGenerator.Result result = generate("--mode=closed", "--clients=4", "--warmup=0", "--duration=1");
+
+        assertTrue(result.accepted() > 0);
+        assertEquals(result.sent(), result.accepted());
+        assertEquals(0, result.failed());
+        assertTrue(result.rejected().isEmpty());
+        assertEquals(result.measured(), result.latency().count());
+        assertEquals(result.accepted(), listAppender.list.size());
+    }
+
+    @Test
+    void openLoopSendsAtScheduledRate() {
+        LoadGenerator.Result result = generate("--mode=open", "--rate=200", "--warmup=0", "--duration=1");
+
+        assertEquals(200, result.sent() + result.notSent());
+        assertEquals(result.sent(), result.accepted());
+        assertTrue(result.latency().valueAtPercentile(50.0) > 0);
+    }
+
+    @Test
+    void countsOnlyThisRunAcrossRolledFiles(@TempDir Path dir) throws Exception {
+        Files.writeString(dir.resolve("audit.log"),
+            "{\"metadata\":{\"load_run\":\"run-a\"}}\n{\"metadata\":{\"load_run\":\"run-b\"}}\n");
+        Files.writeString(dir.resolve("audit.2026-10-18.0.log"), "{\"metadata\":{\"load_run\":\"run-a\"}}\n");
+        Files.writeString(dir.resolve("app.log"), "{\"metadata\":{\"load_run\":\"run-a\"}}\n");
+
+        assertEquals(2, LoadGenerator.countRunLines(dir.resolve("audit.log"), "run-a"));
+    }
+
+    @Test
+    void invalidOptionsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> LoadGenerator.Options.parse(new String[] {"--mode=burst"}));
+        assertThrows(IllegalArgumentException.class, () -> LoadGenerator.Options.parse(new String[] {"--rate=0"}));
+        assertThrows(IllegalArgumentException.class, () -> LoadGenerator.Options.parse(new String[] {"rate"}));
+    }
+
+    private LoadGenerator.Result generate(String... args) {
+        LoadGenerator.Options options = LoadGenerator.Options.parse(args);
+        SyntheticCorpus corpus = new SyntheticCorpus("run-test", 100, 0.5, 1);
+        return new LoadGenerator(options, "http://localhost:" + app.port(), API_KEY, corpus).run();
+    }
+}
@@ -0,0 +1,155 @@
+package edu.harvard.dbmi.avillach.logging.load;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import edu.harvard.dbmi.avillach.logging.TestJwtBuilder;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Pre-rendered PIC-SURE-shaped {@code /audit} bodies for {@link LoadGenerator}: a weighted mix of
+ * query, data access, search, login and export events whose metadata ranges from a couple of keys to
+ * dozens of keys and multi-kilobyte values, about half of them sent with a JWT. Every body carries
+ * {@code metadata.load_run} so the audit file lines of one run can be counted afterwards.
+ */
+public class SyntheticCorpus {
+
+    public record Entry(String eventType, byte[] body, String authHeader) {}
+
+    private static final String[] EVENT_TYPES =
+        {"QUERY", "DATA_ACCESS", "SEARCH", "LOGIN", "LOGOUT", "DATA_EXPORT", "ERROR"};
+    private static final int[] WEIGHTS = {40, 20, 15, 10, 5, 5, 5};
+    private static final String[] CONCEPTS = {
+        "\\phs000007\\pht000009\\phv00001234\\AGE\\", "\\phs000280\\pht004063\\phv00204711\\BMI\\",
+        "\\phs000200\\pht001019\\phv00078436\\SMOKING_STATUS\\", "\\Demographics\\SEX\\Female\\",
+        "\\phs001194\\pht007305\\phv00350961\\DIABETES\\", "\\_studies_consents\\phs000007\\HMB-IRB-MDS\\"
+    };
+    private static final int USERS = 50;
+
+    private final List<Entry> entries;
+
+    public SyntheticCorpus(String runId, int size, double jwtShare, long seed) {
+        Random random = new Random(seed);
+        ObjectMapper mapper = new ObjectMapper();
+        List<String> tokens = new ArrayList<>();
+        for (int u = 0; u < USERS; u++) {
+            tokens.add("Bearer " + TestJwtBuilder.buildToken(Map.of(
+                "sub", "load-user-" + u, "email", "load-user-" + u + "@example.org",
+                "roles", u % 10 == 0 ? List.of("ADMIN", "USER") : List.of("USER"), "logged_in", true)));
+        }
+        List<Entry> built = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            String eventType = pick(random);
+            Map<String, Object> event = new LinkedHashMap<>();
+            event.put("event_type", eventType);
+            event.put("action", action(eventType));
+            event.put("client_type", random.nextInt(4) == 0 ? "api" : "ui");
+            event.put("session_id", "load-session-" + random.nextInt(500));
+            event.put("request", request(random, i, eventType));
+            event.put("metadata", metadata(random, runId, eventType));
+            if (eventType.equals("ERROR")) {
+                event.put("error", Map.of("origin", "hpds", "message", "Query timed out after 300s",
+                    "stack", text(random, 200 + random.nextInt(2000))));
+            }
+            String authHeader = random.nextDouble() < jwtShare ? tokens.get(random.nextInt(USERS)) : null;
+            try {
+                built.add(new Entry(eventType, mapper.writeValueAsBytes(event), authHeader));
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        this.entries = List.copyOf(built);
+    }
+
+    public Entry get(long sequence) {
+        return entries.get((int) (sequence % entries.size()));
+    }
+
+    public List<Entry> entries() {
+        return entries;
+    }
+
+    private static String pick(Random random) {
+        int roll = random.nextInt(100);
+        for (int i = 0; i < WEIGHTS.length; i++) {
+            roll -= WEIGHTS[i];
+            if (roll < 0) {
+                return EVENT_TYPES[i];
+            }
+        }
+        return EVENT_TYPES[0];
+    }
+
+    private static String action(String eventType) {
+        return switch (eventType) {
+            case "QUERY" -> "sync";
+            case "DATA_ACCESS" -> "query_result";
+            case "SEARCH" -> "search_concepts";
+            case "LOGIN", "LOGOUT" -> eventType.toLowerCase();
+            case "DATA_EXPORT" -> "export_csv";
+            default -> "query";
+        };
+    }
+
+    private static Map<String, Object> request(Random random, int i, String eventType) {
+        Map<String, Object> request = new LinkedHashMap<>();
+        request.put("request_id", "load-" + i);
+        request.put("method", eventType.equals("SEARCH") ? "GET" : "POST");
+        request.put("url", "/picsure/" + switch (eventType) {
+            case "QUERY", "DATA_ACCESS", "ERROR" ->
+                "query/" + new UUID(random.nextLong(), random.nextLong()) + "/result";
+            case "SEARCH" -> "search/" + random.nextInt(20);
+            case "DATA_EXPORT" -> "query/sync";
+            default -> "psama/authentication";
+        });
+        request.put("src_ip", "10." + random.nextInt(4) + "." + random.nextInt(256) + "." + (1 + random.nextInt(254)));
+        request.put("dest_ip", "10.0.0.5");
+        request.put("dest_port", 8443);
+        request.put("http_user_agent", "Mozilla/5.0 (X11; Linux x86_64) Chrome/126.0");
+        request.put("http_content_type", "application/json");
+        request.put("status", eventType.equals("ERROR") ? 500 : 200);
+        request.put("bytes", (long) random.nextInt(200_000));
+        request.put("duration", (long) random.nextInt(3_000));
+        return request;
+    }
+
+    /** Mostly small metadata, with a long tail of many keys and large values. */
+    private static Map<String, Object> metadata(Random random, String runId, String eventType) {
+        Map<String, Object> metadata = new LinkedHashMap<>();
+        metadata.put("load_run", runId);
+        if (eventType.equals("QUERY") || eventType.equals("DATA_EXPORT")) {
+            List<String> fields = new ArrayList<>();
+            for (int f = 1 + random.nextInt(8); f > 0; f--) {
+                fields.add(CONCEPTS[random.nextInt(CONCEPTS.length)]);
+            }
+            metadata.put("query", Map.of(
+                "expectedResultType", eventType.equals("QUERY") ? "COUNT" : "DATAFRAME",
+                "fields", fields,
+                "categoryFilters", Map.of(CONCEPTS[3], List.of("Female")),
+                "numericFilters", Map.of(CONCEPTS[0], Map.of("min", 18, "max", 65))));
+            metadata.put("result_count", random.nextInt(50_000));
+        }
+        // 80% small, 15% medium, 5% large: {min keys, max keys, min length, max length}
+        int roll = random.nextInt(100);
+        int[] shape = roll < 80 ? new int[] {0, 4, 8, 64}
+            : roll < 95 ? new int[] {5, 15, 32, 512}
+            : new int[] {15, 45, 256, 2_048};
+        int extraKeys = shape[0] + random.nextInt(shape[1] - shape[0] + 1);
+        for (int k = 0; k < extraKeys; k++) {
+            metadata.put("attr_" + k, text(random, shape[2] + random.nextInt(shape[3] - shape[2] + 1)));
+        }
+        return metadata;
+    }
+
+    private static String text(Random random, int length) {
+        StringBuilder text = new StringBuilder(length);
+        for (int c = 0; c < length; c++) {
+            text.append((char) ('a' + random.nextInt(26)));
+        }
+        return text.toString();
+    }
+}
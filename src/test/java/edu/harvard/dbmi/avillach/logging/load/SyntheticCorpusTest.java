@@ -0,0 +1,54 @@
+package edu.harvard.dbmi.avillach.logging.load;
+
+import edu.harvard.dbmi.avillach.logging.handler.AuditHandler;
+import edu.harvard.dbmi.avillach.logging.service.AuditLogService;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+class SyntheticCorpusTest {
+
+    @Test
+    void sameSeedRendersSameCorpus() {
+        SyntheticCorpus first = new SyntheticCorpus("run-1", 50, 0.5, 7);
+        SyntheticCorpus second = new SyntheticCorpus("run-1", 50, 0.5, 7);
+        for (int i = 0; i < 50; i++) {
+            assertArrayEquals(first.get(i).body(), second.get(i).body());
+            assertEquals(first.get(i).authHeader() == null, second.get(i).authHeader() == null);
+        }
+        assertSame(first.get(3), first.get(53));
+    }
+
+    @Test
+    void everyBodyIsAcceptedAndTaggedWithRun() {
+        SyntheticCorpus corpus = new SyntheticCorpus("run-2", 1000, 0.5, 42);
+        AuditHandler handler = new AuditHandler(mock(AuditLogService.class));
+
+        for (SyntheticCorpus.Entry entry : corpus.entries()) {
+            String body = new String(entry.body(), StandardCharsets.UTF_8);
+            assertTrue(body.contains("\"load_run\":\"run-2\""));
+            assertDoesNotThrow(() -> handler.process(body, entry.authHeader(), null));
+        }
+    }
+
+    @Test
+    void mixesEventTypesJwtsAndMetadataSizes() {
+        SyntheticCorpus corpus = new SyntheticCorpus("run-3", 1000, 0.5, 42);
+
+        Set<String> eventTypes = corpus.entries().stream().map(SyntheticCorpus.Entry::eventType)
+            .collect(Collectors.toSet());
+        assertTrue(eventTypes.containsAll(Set.of("QUERY", "DATA_ACCESS", "SEARCH", "LOGIN", "ERROR")));
+
+        long withJwt = corpus.entries().stream().filter(e -> e.authHeader() != null).count();
+        assertTrue(withJwt > 400 && withJwt < 600, "JWT share was " + withJwt);
+
+        int[] sizes = corpus.entries().stream().mapToInt(e -> e.body().length).sorted().toArray();
+        assertTrue(sizes[sizes.length - 1] > 10 * sizes[sizes.length / 2], Arrays.toString(sizes));
+    }
+}
@@ -0,0 +1,31 @@
+package edu.harvard.dbmi.avillach.logging.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CountMinSketchTest {
+
+    @Test
+    void addReturnsRunningEstimateThatNeverUndercounts() {
+        CountMinSketch sketch = new CountMinSketch(4, 256);
+        for (int i = 1; i <= 50; i++) {
+            assertTrue(sketch.add("alice") >= i);
+        }
+        for (int i = 0; i < 1000; i++) {
+            sketch.add("user-" + i);
+        }
+
+        assertTrue(sketch.estimate("alice") >= 50);
+        assertTrue(sketch.estimate("alice") < 100);
+    }
+
+    @Test
+    void resetClearsAllCounters() {
+        CountMinSketch sketch = new CountMinSketch(2, 64);
+        sketch.add("alice");
+        sketch.reset();
+
+        assertEquals(0, sketch.estimate("alice"));
+    }
+}
@@ -0,0 +1,47 @@
+package edu.harvard.dbmi.avillach.logging.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HyperLogLogTest {
+
+    @Test
+    void estimatesWithinFewPercent() {
+        HyperLogLog hll = new HyperLogLog(10);
+        for (int i = 0; i < 100_000; i++) {
+            hll.add("10.0." + (i / 256) + "." + (i % 256));
+            hll.add("10.0." + (i / 256) + "." + (i % 256));
+        }
+
+        assertEquals(100_000, hll.estimate(), 100_000 * 0.1);
+    }
+
+    @Test
+    void smallCardinalitiesAreNearExact() {
+        HyperLogLog hll = new HyperLogLog(10);
+        for (int i = 0; i < 50; i++) {
+            hll.add("user-" + i);
+        }
+
+        assertEquals(50, hll.estimate(), 2);
+    }
+
+    @Test
+    void mergeTakesUnion() {
+        HyperLogLog a = new HyperLogLog(10);
+        HyperLogLog b = new HyperLogLog(10);
+        for (int i = 0; i < 300; i++) {
+            a.add("k" + i);
+            b.add("k" + (i + 200));
+        }
+        int[] merged = a.newRegisters();
+        a.mergeInto(merged);
+        b.mergeInto(merged);
+
+        assertEquals(500, HyperLogLog.estimate(merged), 25);
+
+        a.reset();
+        assertEquals(0, a.estimate());
+    }
+}
@@ -0,0 +1,60 @@
+package edu.harvard.dbmi.avillach.logging.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LatencyHistogramTest {
+
+    @Test
+    void emptyHistogramReportsZero() {
+        assertEquals(0, new LatencyHistogram().valueAtPercentile(99.0));
+    }
+
+    @Test
+    void smallValuesAreExact() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 10; i++) {
+            histogram.record(i);
+        }
+        assertEquals(5, histogram.valueAtPercentile(50.0));
+        assertEquals(10, histogram.valueAtPercentile(100.0));
+        assertEquals(10, histogram.count());
+    }
+
+    @Test
+    void largeValuesWithinRelativeError() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 100_000; i++) {
+            histogram.record(i);
+        }
+        long p99 = histogram.valueAtPercentile(99.0);
+        assertTrue(Math.abs(p99 - 99_000) <= 99_000 * 0.07, "p99 should be within bucket error, got " + p99);
+    }
+
+    @Test
+    void bucketBoundsAreContiguous() {
+        for (long value : new long[]{0, 15, 16, 17, 31, 32, 1000, 123_456_789L, Long.MAX_VALUE / 2}) {
+            int index = LatencyHistogram.bucketIndex(value);
+            assertTrue(LatencyHistogram.bucketUpperBound(index) >= value);
+            if (index > 0) {
+                assertTrue(LatencyHistogram.bucketUpperBound(index - 1) < value);
+            }
+        }
+    }
+
+    @Test
+    void rollingHistogramForgetsRotatedSlots() {
+        RollingHistogram rolling = new RollingHistogram(2);
+        rolling.record(1_000);
+        rolling.rotate();
+        rolling.record(10);
+        assertTrue(rolling.valueAtPercentile(100.0) >= 1_000);
+
+        rolling.rotate();
+        assertEquals(10, rolling.valueAtPercentile(100.0));
+
+        rolling.rotate();
+        assertEquals(0, rolling.valueAtPercentile(100.0));
+    }
+}
@@ -0,0 +1,81 @@
+package edu.harvard.dbmi.avillach.logging.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RouteLatencyAggregatorTest {
+
+    @Test
+    void groupsByRouteAndStatusClass() {
+        RouteLatencyAggregator aggregator = new RouteLatencyAggregator(10, 300);
+        for (int i = 1; i <= 100; i++) {
+            aggregator.observe(event("/picsure/query/{queryId}/result", 200, i));
+        }
+        aggregator.observe(event("/picsure/query/{queryId}/result", 503, 5000));
+
+        List<Map<String, Object>> series = series(aggregator);
+        assertEquals(2, series.size());
+        Map<String, Object> ok = series.get(0);
+        assertEquals("/picsure/query/{queryId}/result", ok.get("route"));
+        assertEquals("2xx", ok.get("status_class"));
+        assertEquals(100L, ok.get("count"));
+        assertTrue((long) ok.get("p50") >= 50 && (long) ok.get("p50") <= 53);
+        assertTrue((long) ok.get("p99") >= 99 && (long) ok.get("p99") <= 104);
+        assertEquals("5xx", series.get(1).get("status_class"));
+    }
+
+    @Test
+    void fallsBackToUrlAndIgnoresEventsWithoutDuration() {
+        RouteLatencyAggregator aggregator = new RouteLatencyAggregator(10, 300);
+        Map<String, Object> noTemplate = new HashMap<>(Map.of("url", "/psama/user/me", "duration", 7L));
+        aggregator.observe(noTemplate);
+        aggregator.observe(Map.of("url", "/psama/user/me"));
+
+        List<Map<String, Object>> series = series(aggregator);
+        assertEquals(1, series.size());
+        assertEquals("/psama/user/me", series.get(0).get("route"));
+        assertNull(series.get(0).get("status_class"));
+    }
+
+    @Test
+    void seriesBeyondCapGoToOverflow() {
+        RouteLatencyAggregator aggregator = new RouteLatencyAggregator(2, 300);
+        for (int i = 0; i < 5; i++) {
+            aggregator.observe(event("/route/" + i, 200, 10));
+        }
+
+        List<Map<String, Object>> series = series(aggregator);
+        assertEquals(3, series.size());
+        assertEquals(RouteLatencyAggregator.OVERFLOW_ROUTE, series.get(0).get("route"));
+        assertEquals(3L, series.get(0).get("count"));
+        assertEquals(3L, aggregator.snapshot().get("overflowed_events"));
+    }
+
+    @Test
+    void idleSeriesExpireAfterWindowAndFreeTheirSlot() {
+        RouteLatencyAggregator aggregator = new RouteLatencyAggregator(1, 300);
+        aggregator.observe(event("/old", 200, 10));
+        for (int i = 0; i < RouteLatencyAggregator.SLOTS; i++) {
+            aggregator.rotate();
+        }
+        assertTrue(series(aggregator).isEmpty());
+
+        aggregator.observe(event("/new", 200, 10));
+        assertEquals("/new", series(aggregator).get(0).get("route"));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Map<String, Object>> series(RouteLatencyAggregator aggregator) {
+        return (List<Map<String, Object>>) aggregator.snapshot().get("series");
+    }
+
+    private static Map<String, Object> event(String template, int status, long duration) {
+        return Map.of("app", "picsure", "method", "GET", "url_template", template, "status", status,
+            "duration", duration);
+    }
+}
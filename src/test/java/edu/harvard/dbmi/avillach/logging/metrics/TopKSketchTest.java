@@ -0,0 +1,51 @@
+package edu.harvard.dbmi.avillach.logging.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TopKSketchTest {
+
+    @Test
+    void heavyHittersSurviveALongTail() {
+        TopKSketch sketch = new TopKSketch(32, 4);
+        for (int i = 0; i < 10_000; i++) {
+            sketch.add("tail-" + i);
+            if (i % 10 == 0) {
+                sketch.add("heavy");
+            }
+        }
+
+        Map<String, long[]> totals = new HashMap<>();
+        sketch.addTo(totals);
+
+        assertTrue(totals.size() <= 32);
+        long[] heavy = totals.get("heavy");
+        assertNotNull(heavy);
+        // Space-saving never underestimates, and count - error is a lower bound
+        assertTrue(heavy[0] >= 1000);
+        assertTrue(heavy[0] - heavy[1] <= 1000);
+    }
+
+    @Test
+    void exactWhileUnderCapacity() {
+        TopKSketch sketch = new TopKSketch(16, 2);
+        sketch.add("a");
+        sketch.add("a");
+        sketch.add("b");
+
+        Map<String, long[]> totals = new HashMap<>();
+        sketch.addTo(totals);
+
+        assertArrayEquals(new long[] {2, 0}, totals.get("a"));
+        assertArrayEquals(new long[] {1, 0}, totals.get("b"));
+
+        sketch.reset();
+        totals.clear();
+        sketch.addTo(totals);
+        assertTrue(totals.isEmpty());
+    }
+}
@@ -0,0 +1,53 @@
+package edu.harvard.dbmi.avillach.logging.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TrafficSketchesTest {
+
+    @Test
+    void reportsTopKeysAndDistinctCountsPerField() {
+        TrafficSketches sketches = new TrafficSketches(List.of("subject", "src_ip"));
+        for (int i = 0; i < 30; i++) {
+            sketches.observe(Map.of("subject", "alice", "src_ip", "10.0.0." + i));
+        }
+        sketches.observe(Map.of("subject", "bob"));
+
+        Map<String, Object> subject = field(sketches.snapshot("5m", 1), "subject");
+        assertEquals(2L, subject.get("distinct"));
+        assertEquals(List.of(Map.of("key", "alice", "count", 30L, "error", 0L)), subject.get("top"));
+        assertEquals(30L, field(sketches.snapshot("24h", 5), "src_ip").get("distinct"));
+    }
+
+    @Test
+    void eventsAgeOutOfTheirWindowOnly() {
+        TrafficSketches sketches = new TrafficSketches(List.of("subject"));
+        sketches.observe(Map.of("subject", "alice"));
+        for (int i = 0; i < 5; i++) {
+            sketches.rotate("5m");
+        }
+
+        assertEquals(0L, field(sketches.snapshot("5m", 10), "subject").get("distinct"));
+        assertEquals(1L, field(sketches.snapshot("24h", 10), "subject").get("distinct"));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> field(Map<String, Object> snapshot, String name) {
+        return ((Map<String, Map<String, Object>>) snapshot.get("fields")).get(name);
+    }
+
+    @Test
+    void longKeysAreShortenedButStayDistinct() {
+        String prefix = "x".repeat(TrafficSketches.MAX_KEY_LENGTH);
+        String first = TrafficSketches.label(prefix + "-first");
+        String second = TrafficSketches.label(prefix + "-second");
+
+        assertEquals(TrafficSketches.MAX_KEY_LENGTH, first.length());
+        assertTrue(first.startsWith("x".repeat(TrafficSketches.MAX_KEY_LENGTH - 8) + "~"));
+        assertNotEquals(first, second);
+    }
+}
@@ -0,0 +1,70 @@
+package edu.harvard.dbmi.avillach.logging.pipeline;
+
+import edu.harvard.dbmi.avillach.logging.config.AppConfig;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AnomalyDetectorTest {
+
+    private final List<Map<String, Object>> written = new ArrayList<>();
+
+    @Test
+    void emitsOneAnomalyPerKeyPerWindow() {
+        AnomalyDetector detector = detector("{\"DATA_EXPORT\": 3}");
+        for (int i = 0; i < 10; i++) {
+            detector.observe(Map.of("event_type", "DATA_EXPORT", "subject", "alice"));
+        }
+        detector.observe(Map.of("event_type", "QUERY", "subject", "alice"));
+
+        assertEquals(1, written.size());
+        Map<String, Object> anomaly = written.get(0);
+        assertEquals("ANOMALY", anomaly.get("event_type"));
+        assertEquals("test-app", anomaly.get("app"));
+        @SuppressWarnings("unchecked")
+        Map<String, Object> metadata = (Map<String, Object>) anomaly.get("metadata");
+        assertEquals("subject", metadata.get("key_field"));
+        assertEquals("alice", metadata.get("key"));
+        assertEquals("DATA_EXPORT", metadata.get("observed_event_type"));
+        assertEquals(3, metadata.get("estimated_count"));
+        assertEquals(Map.of("counted", 10L, "alerts", 1L, "suppressed", 7L), detector.metrics());
+    }
+
+    @Test
+    void countsAgeOutAfterFullWindowOfRotations() {
+        AnomalyDetector detector = detector("{\"DATA_EXPORT\": 3}");
+        detector.observe(Map.of("event_type", "DATA_EXPORT", "subject", "alice"));
+        detector.observe(Map.of("event_type", "DATA_EXPORT", "subject", "alice"));
+        for (int i = 0; i < AnomalyDetector.SLOTS; i++) {
+            detector.rotate();
+        }
+        detector.observe(Map.of("event_type", "DATA_EXPORT", "subject", "alice"));
+
+        assertTrue(written.isEmpty());
+    }
+
+    @Test
+    void countsWithinWindowSpanSlots() {
+        AnomalyDetector detector = detector("{\"DATA_EXPORT\": 3}");
+        detector.observe(Map.of("event_type", "DATA_EXPORT", "subject", "alice"));
+        detector.rotate();
+        detector.observe(Map.of("event_type", "DATA_EXPORT", "subject", "alice"));
+        detector.rotate();
+        detector.observe(Map.of("event_type", "DATA_EXPORT", "subject", "alice"));
+
+        assertEquals(1, written.size());
+    }
+
+    private AnomalyDetector detector(String thresholds) {
+        Map<String, String> env = new HashMap<>();
+        env.put("LOGGING_API_KEY", "test-key");
+        env.put("APP", "test-app");
+        env.put("ANOMALY_THRESHOLDS", thresholds);
+        return new AnomalyDetector(AppConfig.fromEnvironment(env::get), written::add);
+    }
+}
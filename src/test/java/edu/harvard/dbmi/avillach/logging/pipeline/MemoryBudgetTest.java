@@ -0,0 +1,72 @@
+package edu.harvard.dbmi.avillach.logging.pipeline;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MemoryBudgetTest {
+
+    @Test
+    void rejectsChargesBeyondCapacity() {
+        MemoryBudget budget = new MemoryBudget(1000);
+
+        MemoryBudget.Charge first = budget.tryAcquire(600);
+        assertNotNull(first);
+        assertNull(budget.tryAcquire(500));
+        assertNotNull(budget.tryAcquire(400));
+
+        assertEquals(1000L, budget.metrics().get("used_bytes"));
+        assertEquals(2L, budget.metrics().get("admitted"));
+        assertEquals(1L, budget.metrics().get("rejected"));
+        assertEquals(500L, budget.metrics().get("rejected_bytes"));
+        assertEquals(1.0, budget.fillRatio());
+    }
+
+    @Test
+    void releaseIsIdempotentAndKeepsHighWater() {
+        MemoryBudget budget = new MemoryBudget(1000);
+        MemoryBudget.Charge first = budget.tryAcquire(700);
+        MemoryBudget.Charge second = budget.tryAcquire(200);
+
+        first.release();
+        first.release();
+        second.release();
+
+        assertEquals(0L, budget.metrics().get("used_bytes"));
+        assertEquals(900L, budget.metrics().get("high_water_bytes"));
+        assertEquals(700L, budget.metrics().get("largest_charge_bytes"));
+        assertEquals(0L, budget.metrics().get("reclaimed"));
+    }
+
+    @Test
+    void releasesChargeCarriedByLoggingEvent() {
+        MemoryBudget budget = new MemoryBudget(MemoryBudget.cost(100));
+        MemoryBudget.Charge charge = budget.tryAcquire(MemoryBudget.cost(100));
+        LoggerContext context = (LoggerContext) LoggerFactory.getILoggerFactory();
+        LoggingEvent event = new LoggingEvent("test", context.getLogger("AUDIT"), Level.INFO, "{}", null,
+            new Object[] {"fields", charge});
+
+        MemoryBudget.release(event);
+
+        assertEquals(0L, budget.metrics().get("used_bytes"));
+        assertNotNull(budget.tryAcquire(MemoryBudget.cost(100)));
+    }
+
+    @Test
+    void droppedChargeIsReclaimedWhenCollected() throws InterruptedException {
+        MemoryBudget budget = new MemoryBudget(1000);
+        budget.tryAcquire(1000);
+
+        for (int i = 0; i < 50 && (long) budget.metrics().get("used_bytes") > 0; i++) {
+            System.gc();
+            Thread.sleep(20);
+        }
+
+        assertEquals(0L, budget.metrics().get("used_bytes"));
+        assertEquals(1L, budget.metrics().get("reclaimed"));
+    }
+}
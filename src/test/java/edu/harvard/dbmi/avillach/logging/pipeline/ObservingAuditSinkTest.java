@@ -0,0 +1,27 @@
+package edu.harvard.dbmi.avillach.logging.pipeline;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ObservingAuditSinkTest {
+
+    @Test
+    void failingObserverDoesNotStopWriteOrOtherObservers() {
+        List<Map<String, Object>> written = new ArrayList<>();
+        List<Map<String, Object>> observed = new ArrayList<>();
+        AuditObserver failing = fields -> {
+            throw new IllegalStateException("boom");
+        };
+        ObservingAuditSink sink = new ObservingAuditSink(written::add, List.of(failing, observed::add));
+
+        sink.write(Map.of("event_type", "QUERY"));
+
+        assertEquals(1, written.size());
+        assertEquals(1, observed.size());
+    }
+}
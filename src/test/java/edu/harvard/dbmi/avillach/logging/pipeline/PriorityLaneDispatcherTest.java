@@ -0,0 +1,177 @@
+package edu.harvard.dbmi.avillach.logging.pipeline;
+
+import edu.harvard.dbmi.avillach.logging.config.LaneConfig;
+import edu.harvard.dbmi.avillach.logging.metrics.AsyncQueueProbe;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class PriorityLaneDispatcherTest {
+
+    private final List<Map<String, Object>> written = Collections.synchronizedList(new ArrayList<>());
+    private final AuditSink collectingSink = written::add;
+    private PriorityLaneDispatcher dispatcher;
+
+    private static final List<LaneConfig> LANES = List.of(
+        new LaneConfig("critical", List.of("ACCESS_DENIED"), List.of("login_failure"), 4, 4, LaneConfig.Overflow.BLOCK),
+        new LaneConfig("default", null, null, 4, 2, LaneConfig.Overflow.BLOCK),
+        new LaneConfig("telemetry", List.of("UI_TELEMETRY"), null, 2, 1, LaneConfig.Overflow.SHED)
+    );
+
+    @AfterEach
+    void tearDown() {
+        if (dispatcher != null) {
+            dispatcher.stop();
+        }
+    }
+
+    private AsyncQueueProbe probeWithRoom(AtomicInteger remaining) {
+        AsyncQueueProbe probe = mock(AsyncQueueProbe.class);
+        when(probe.remainingCapacity()).thenAnswer(invocation -> remaining.get());
+        return probe;
+    }
+
+    @Test
+    void classifiesByEventTypeThenAction() {
+        dispatcher = new PriorityLaneDispatcher(LANES, collectingSink, probeWithRoom(new AtomicInteger(100)));
+
+        assertEquals("critical", dispatcher.classify(Map.of("event_type", "ACCESS_DENIED")).name());
+        assertEquals("critical", dispatcher.classify(Map.of("event_type", "LOGIN", "action", "login_failure")).name());
+        assertEquals("telemetry", dispatcher.classify(Map.of("event_type", "UI_TELEMETRY")).name());
+        assertEquals("default", dispatcher.classify(Map.of("event_type", "QUERY")).name());
+    }
+
+    @Test
+    void writesThroughWhenNotStarted() {
+        dispatcher = new PriorityLaneDispatcher(LANES, collectingSink, probeWithRoom(new AtomicInteger(100)));
+
+        dispatcher.write(Map.of("event_type", "QUERY"));
+
+        assertEquals(1, written.size());
+    }
+
+    @Test
+    void drainsAllLanes() throws Exception {
+        dispatcher = new PriorityLaneDispatcher(LANES, collectingSink, probeWithRoom(new AtomicInteger(100)));
+        dispatcher.start();
+
+        dispatcher.write(Map.of("event_type", "ACCESS_DENIED"));
+        dispatcher.write(Map.of("event_type", "QUERY"));
+        dispatcher.write(Map.of("event_type", "UI_TELEMETRY"));
+        dispatcher.stop();
+
+        assertEquals(3, written.size());
+    }
+
+    @Test
+    void shedLaneDropsWhenFullAndCountsDrops() {
+        AtomicInteger remaining = new AtomicInteger(0); // downstream saturated: drain thread holds
+        dispatcher = new PriorityLaneDispatcher(LANES, collectingSink, probeWithRoom(remaining));
+        dispatcher.start();
+
+        for (int i = 0; i < 10; i++) {
+            dispatcher.write(Map.of("event_type", "UI_TELEMETRY"));
+        }
+
+        @SuppressWarnings("unchecked")
+        Map<String, Object> telemetry = (Map<String, Object>) dispatcher.metrics().get("telemetry");
+        long dropped = (long) telemetry.get("dropped");
+        assertTrue(dropped >= 7, "At most capacity + one in-flight event should survive, dropped " + dropped);
+
+        remaining.set(100);
+        dispatcher.stop();
+        assertEquals(10 - dropped, written.size());
+    }
+
+    @Test
+    void blockLaneNeverDrops() throws Exception {
+        AtomicInteger remaining = new AtomicInteger(0);
+        dispatcher = new PriorityLaneDispatcher(LANES, collectingSink, probeWithRoom(remaining));
+        dispatcher.start();
+
+        CountDownLatch done = new CountDownLatch(1);
+        Thread producer = new Thread(() -> {
+            for (int i = 0; i < 20; i++) {
+                dispatcher.write(Map.of("event_type", "ACCESS_DENIED", "seq", i));
+            }
+            done.countDown();
+        });
+        producer.start();
+
+        assertFalse(done.await(300, TimeUnit.MILLISECONDS), "Producer should block while the lane is full");
+        remaining.set(100);
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        dispatcher.stop();
+
+        assertEquals(20, written.size());
+        @SuppressWarnings("unchecked")
+        Map<String, Object> critical = (Map<String, Object>) dispatcher.metrics().get("critical");
+        assertEquals(0L, critical.get("dropped"));
+        assertTrue((long) critical.get("blocked") > 0);
+    }
+
+    @Test
+    void blockLaneWaitsForTheFileSetQueueItIsRoutedTo() throws Exception {
+        AtomicInteger mainRoom = new AtomicInteger(100);
+        AtomicInteger fileSetRoom = new AtomicInteger(0);
+        AsyncQueueProbe mainQueue = probeWithRoom(mainRoom);
+        AsyncQueueProbe fileSetQueue = probeWithRoom(fileSetRoom);
+        List<Map<String, Object>> lost = Collections.synchronizedList(new ArrayList<>());
+        // Like a never-blocking async appender: a write into a full file set queue is dropped
+        AuditSink routingSink = fields -> {
+            if ("ACCESS_DENIED".equals(fields.get("event_type")) && fileSetRoom.get() == 0) {
+                lost.add(fields);
+            } else {
+                written.add(fields);
+            }
+        };
+        dispatcher = new PriorityLaneDispatcher(LANES, routingSink,
+            fields -> "ACCESS_DENIED".equals(fields.get("event_type")) ? fileSetQueue : mainQueue);
+        dispatcher.start();
+
+        CountDownLatch done = new CountDownLatch(1);
+        Thread producer = new Thread(() -> {
+            for (int i = 0; i < 20; i++) {
+                dispatcher.write(Map.of("event_type", "ACCESS_DENIED", "seq", i));
+            }
+            done.countDown();
+        });
+        producer.start();
+
+        assertFalse(done.await(300, TimeUnit.MILLISECONDS), "Producer should block while the file set queue is full");
+        fileSetRoom.set(100);
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        dispatcher.stop();
+
+        assertTrue(lost.isEmpty(), "Lost " + lost.size() + " events to the full file set queue");
+        assertEquals(20, written.size());
+    }
+
+    @Test
+    void stopGivesUpOnAStalledDownstreamAndCountsWhatIsLeft() {
+        dispatcher = new PriorityLaneDispatcher(LANES, collectingSink, probeWithRoom(new AtomicInteger(0)));
+        dispatcher.start();
+        for (int i = 0; i < 3; i++) {
+            dispatcher.write(Map.of("event_type", "ACCESS_DENIED", "seq", i));
+        }
+
+        long started = System.nanoTime();
+        dispatcher.stop();
+
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started) < PriorityLaneDispatcher.STOP_WAIT_MILLIS + 1_000);
+        assertTrue(written.isEmpty());
+        @SuppressWarnings("unchecked")
+        Map<String, Object> critical = (Map<String, Object>) dispatcher.metrics().get("critical");
+        assertEquals(3L, critical.get("dropped"));
+    }
+}
@@ -0,0 +1,99 @@
+package edu.harvard.dbmi.avillach.logging.pipeline;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SessionStripesTest {
+
+    private SessionStripes stripes;
+
+    @AfterEach
+    void tearDown() {
+        if (stripes != null) {
+            stripes.stop();
+        }
+    }
+
+    @Test
+    void sameSessionAlwaysSameStripe() {
+        stripes = new SessionStripes(8, 16);
+
+        int first = stripes.stripeIndex("session-abc");
+        for (int i = 0; i < 10; i++) {
+            assertEquals(first, stripes.stripeIndex("session-abc"));
+        }
+    }
+
+    @Test
+    void eventsWithoutSessionAreSpread() {
+        stripes = new SessionStripes(4, 16);
+
+        assertNotEquals(stripes.stripeIndex(null), stripes.stripeIndex(null));
+    }
+
+    @Test
+    void perSessionOrderPreservedAcrossSubmitterThreads() throws Exception {
+        stripes = new SessionStripes(4, 64);
+        stripes.start();
+        Map<String, List<Integer>> seen = new ConcurrentHashMap<>();
+
+        // One submitter thread per session, all sessions submitted concurrently
+        List<Thread> submitters = new ArrayList<>();
+        for (int s = 0; s < 16; s++) {
+            String session = "session-" + s;
+            seen.put(session, new ArrayList<>());
+            Thread t = new Thread(() -> {
+                for (int i = 0; i < 500; i++) {
+                    int seq = i;
+                    stripes.execute(session, () -> seen.get(session).add(seq));
+                }
+            });
+            submitters.add(t);
+            t.start();
+        }
+        for (Thread t : submitters) {
+            t.join();
+        }
+        stripes.stop();
+
+        for (List<Integer> sequence : seen.values()) {
+            assertEquals(500, sequence.size());
+            for (int i = 0; i < sequence.size(); i++) {
+                assertEquals(i, sequence.get(i));
+            }
+        }
+    }
+
+    @Test
+    void runsInlineWhenNotStarted() {
+        stripes = new SessionStripes(2, 4);
+        AtomicInteger ran = new AtomicInteger();
+
+        stripes.execute("s", ran::incrementAndGet);
+
+        assertEquals(1, ran.get());
+    }
+
+    @Test
+    void metricsReportDepthAndImbalance() {
+        stripes = new SessionStripes(2, 4);
+        stripes.start();
+        for (int i = 0; i < 10; i++) {
+            stripes.execute("only-session", () -> { });
+        }
+        stripes.stop();
+
+        Map<String, Object> metrics = stripes.metrics();
+        assertEquals(2, metrics.get("stripes"));
+        assertEquals(0, metrics.get("max_depth"));
+        assertEquals(2.0, (double) metrics.get("imbalance"), 0.0001);
+    }
+}
@@ -0,0 +1,105 @@
+package edu.harvard.dbmi.avillach.logging.policy;
+
+import edu.harvard.dbmi.avillach.logging.config.RedactionRule;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PolicyStoreTest {
+
+    private static final Map<String, String> ENV_MAPPING = Map.of("sub", "subject");
+    private static final List<RedactionRule> ENV_RULES =
+        List.of(new RedactionRule("secrets", List.of("password"), null, null));
+
+    @Test
+    void withoutFileUsesEnvironment() {
+        PolicyStore store = new PolicyStore(ENV_MAPPING, ENV_RULES);
+
+        Policy policy = store.current();
+        assertEquals(1, policy.version());
+        assertEquals(ENV_MAPPING, policy.claimMapping());
+        assertNotNull(policy.redactor());
+        assertNull(new PolicyStore(ENV_MAPPING, List.of()).current().redactor());
+    }
+
+    @Test
+    void fileSectionsOverrideEnvironment(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("policy.json");
+        Files.writeString(file, "{\"jwt_claim_mapping\": {\"sub\": \"user_id\", \"email\": \"user_email\"}}");
+
+        Policy policy = new PolicyStore(ENV_MAPPING, ENV_RULES, file, 10).current();
+
+        assertEquals(Map.of("sub", "user_id", "email", "user_email"), policy.claimMapping());
+        assertEquals(List.of("sub", "email"), List.copyOf(policy.claimMapping().keySet()));
+        assertEquals(ENV_RULES, policy.redactionRules());
+    }
+
+    @Test
+    void invalidFileFailsStartup(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("policy.json");
+        Files.writeString(file, "{\"jwt_claim_mappings\": {}}");
+
+        IllegalStateException ex = assertThrows(IllegalStateException.class,
+            () -> new PolicyStore(ENV_MAPPING, ENV_RULES, file, 10));
+        assertTrue(ex.getMessage().contains("policy.json"));
+    }
+
+    @Test
+    void changedFileSwapsSnapshot(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("policy.json");
+        Files.writeString(file, "{}");
+        PolicyStore store = new PolicyStore(ENV_MAPPING, ENV_RULES, file, 10);
+        Policy first = store.current();
+
+        store.reloadChanged();
+        assertSame(first, store.current());
+
+        write(file, "{\"redaction_rules\": [{\"name\": \"email\", \"pattern\": \"[a-z]+@example\\\\.org\"}]}", 1);
+        store.reloadChanged();
+
+        Policy second = store.current();
+        assertEquals(2, second.version());
+        assertEquals("email", second.redactionRules().get(0).name());
+        assertEquals(ENV_MAPPING, second.claimMapping());
+        assertEquals(1L, store.metrics().get("reloads"));
+    }
+
+    @Test
+    void invalidReloadKeepsPreviousSnapshot(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("policy.json");
+        Files.writeString(file, "{}");
+        PolicyStore store = new PolicyStore(ENV_MAPPING, ENV_RULES, file, 10);
+        Policy first = store.current();
+
+        write(file, "{\"redaction_rules\": [{\"name\": \"bad\", \"pattern\": \"([a-z\"}]}", 1);
+        store.reloadChanged();
+        write(file, "{\"jwt_claim_mapping\": {\"sub\": \"\"}}", 2);
+        store.reloadChanged();
+        write(file, "{\"jwt_claim_mapping\": ", 3);
+        store.reloadChanged();
+        // Unchanged since the failed attempt: not retried
+        store.reloadChanged();
+
+        assertSame(first, store.current());
+        assertEquals(0L, store.metrics().get("reloads"));
+        assertEquals(3L, store.metrics().get("reload_failures"));
+
+        write(file, "{\"jwt_claim_mapping\": {\"sub\": \"user_id\"}}", 4);
+        store.reloadChanged();
+        assertEquals(Map.of("sub", "user_id"), store.current().claimMapping());
+    }
+
+    /** Writes {@code content} with a distinct modification time, as coarse file clocks may not advance. */
+    private static void write(Path file, String content, int step) throws Exception {
+        Files.writeString(file, content);
+        Files.setLastModifiedTime(file, FileTime.from(Instant.now().plusSeconds(step)));
+    }
+}
@@ -0,0 +1,38 @@
+package edu.harvard.dbmi.avillach.logging.redact;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AhoCorasickTest {
+
+    @Test
+    void findsOverlappingLiteralsInOnePass() {
+        AhoCorasick matcher = new AhoCorasick(List.of("he", "she", "his", "hers"), List.of(0, 1, 2, 3), false);
+        List<String> found = new ArrayList<>();
+
+        matcher.forEachMatch("ushers", (start, end, rule) -> found.add(start + "-" + end + ":" + rule));
+
+        // "she" ends at 4 and is longer than "he"; "hers" ends at 6
+        assertEquals(List.of("1-4:1", "2-6:3"), found);
+    }
+
+    @Test
+    void ignoreCaseFoldsInputAndLiterals() {
+        AhoCorasick matcher = new AhoCorasick(List.of("Token", "password"), List.of(0, 1), true);
+
+        assertEquals(0, matcher.firstMatch("X-Access-TOKEN"));
+        assertEquals(1, matcher.firstMatch("db_password_hint"));
+        assertEquals(-1, matcher.firstMatch("tok"));
+    }
+
+    @Test
+    void failureLinksRecoverAfterPartialMatch() {
+        AhoCorasick matcher = new AhoCorasick(List.of("abcd", "bce"), List.of(0, 1), false);
+
+        assertEquals(1, matcher.firstMatch("abce"));
+    }
+}
@@ -0,0 +1,116 @@
+package edu.harvard.dbmi.avillach.logging.redact;
+
+import edu.harvard.dbmi.avillach.logging.config.RedactionRule;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RedactorTest {
+
+    private final Redactor redactor = new Redactor(List.of(
+        new RedactionRule("secret_keys", List.of("password", "token"), null, null),
+        new RedactionRule("email", null, null, "[A-Za-z0-9._%+-]+@[A-Za-z0-9.-]+\\.[A-Za-z]{2,}"),
+        new RedactionRule("mrn", null, null, "\\bMRN-\\d{6}\\b"),
+        new RedactionRule("test_patient", null, List.of("Jane Roe"), null)
+    ));
+
+    @Test
+    void redactsKeysAndValuesInNestedMetadataAndError() {
+        Map<String, Object> fields = new LinkedHashMap<>();
+        fields.put("event_type", "QUERY");
+        fields.put("metadata", Map.of(
+            "note", "sent to jane@example.com about MRN-123456",
+            "nested", Map.of("Access_Token", "abc", "list", List.of("Jane Roe", 42))));
+        fields.put("error", Map.of("message", "lookup failed for bob@example.org"));
+
+        redactor.redact(fields);
+
+        Map<?, ?> metadata = (Map<?, ?>) fields.get("metadata");
+        assertEquals("sent to [REDACTED:email] about [REDACTED:mrn]", metadata.get("note"));
+        Map<?, ?> nested = (Map<?, ?>) metadata.get("nested");
+        assertEquals("[REDACTED:secret_keys]", nested.get("Access_Token"));
+        assertEquals(List.of("[REDACTED:test_patient]", 42), nested.get("list"));
+        assertEquals(Map.of("message", "lookup failed for [REDACTED:email]"), fields.get("error"));
+
+        Map<String, Object> metrics = redactor.metrics();
+        assertEquals(Map.of("secret_keys", 1L, "email", 2L, "mrn", 1L, "test_patient", 1L), metrics.get("rules"));
+        assertEquals(1L, metrics.get("redacted_events"));
+    }
+
+    @Test
+    void overlappingMatchesAreMergedIntoOneReplacement() {
+        Redactor overlapping = new Redactor(List.of(
+            new RedactionRule("name", null, List.of("jane"), null),
+            new RedactionRule("email", null, null, "[a-z]+@[a-z]+\\.com")));
+        Map<String, Object> fields = new HashMap<>(Map.of("metadata", Map.of("to", "jane@example.com!")));
+
+        overlapping.redact(fields);
+
+        assertEquals("[REDACTED:name]!", ((Map<?, ?>) fields.get("metadata")).get("to"));
+    }
+
+    @Test
+    void valuesBeyondScanBudgetAreReplacedUnscanned() {
+        // Short words keep the email pattern's backtracking linear
+        String large = "x ".repeat((Redactor.MAX_SCANNED_CHARS - 10) / 2);
+        Map<String, Object> metadata = new LinkedHashMap<>();
+        metadata.put("a", large);
+        metadata.put("b", "more than ten characters");
+        Map<String, Object> fields = new HashMap<>(Map.of("metadata", metadata));
+
+        redactor.redact(fields);
+
+        Map<?, ?> redacted = (Map<?, ?>) fields.get("metadata");
+        assertEquals(large, redacted.get("a"));
+        assertEquals(Redactor.OVER_BUDGET, redacted.get("b"));
+        assertEquals(1L, redactor.metrics().get("over_budget"));
+    }
+
+    @Test
+    void backtrackingBeyondStepBudgetIsReplacedUnscanned() {
+        Map<String, Object> metadata = new LinkedHashMap<>();
+        metadata.put("pathological", "x".repeat(5000));
+        metadata.put("note", "mail jane@example.com");
+        Map<String, Object> fields = new HashMap<>(Map.of("metadata", metadata));
+
+        redactor.redact(fields);
+
+        Map<?, ?> redacted = (Map<?, ?>) fields.get("metadata");
+        assertEquals(Redactor.OVER_BUDGET, redacted.get("pathological"));
+        assertEquals("mail [REDACTED:email]", redacted.get("note"));
+        assertEquals(1L, redactor.metrics().get("over_budget"));
+    }
+
+    @Test
+    void patternsKeepTheirOwnGroups() {
+        Redactor grouped = new Redactor(List.of(
+            new RedactionRule("ssn", null, null, "(?<area>\\d{3})-(\\d{2})-\\d{4}"),
+            new RedactionRule("mrn", null, null, "(?<area>MRN)-\\d{6}")));
+        Map<String, Object> fields = new HashMap<>(Map.of("metadata", Map.of("note", "123-45-6789 MRN-123456")));
+
+        grouped.redact(fields);
+
+        assertEquals("[REDACTED:ssn] [REDACTED:mrn]", ((Map<?, ?>) fields.get("metadata")).get("note"));
+    }
+
+    @Test
+    void namedGroupsAreUnnamedOutsideQuotesAndClasses() {
+        assertEquals("(\\d{3})-(?<=x)(?<!y)", Redactor.unnamed("(?<area>\\d{3})-(?<=x)(?<!y)"));
+        assertEquals("\\Q(?<a>\\E[(?<b>]\\(?<c>", Redactor.unnamed("\\Q(?<a>\\E[(?<b>]\\(?<c>"));
+    }
+
+    @Test
+    void cleanEventsAreUnchanged() {
+        Map<String, Object> fields = new HashMap<>(Map.of("metadata", Map.of("count", 3, "dataset", "phs000001")));
+
+        redactor.redact(fields);
+
+        assertEquals(Map.of("count", 3, "dataset", "phs000001"), fields.get("metadata"));
+        assertEquals(0L, redactor.metrics().get("redacted_events"));
+    }
+}
@@ -0,0 +1,143 @@
+package edu.harvard.dbmi.avillach.logging.replay;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AuditMergeTest {
+
+    private static final Instant START = Instant.parse("2026-03-01T00:00:00Z");
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void mergesReplicasInTimeOrder() throws Exception {
+        Path a = replica("a", List.of(line(0, "r1"), line(3000, "r4")), List.of(line(6000, "r7")));
+        Path b = replica("b", List.of(line(1000, "r2"), line(1500, "r3")), List.of(line(5000, "r6")));
+        Path c = replica("c", List.of(), List.of(line(4000, "r5"), "not json", line(7000, "r8")));
+
+        AuditMerge.Result result = merge(Duration.ZERO, false, AuditMerge.DEFAULT_SEGMENT_BYTES, a, b, c);
+
+        assertEquals(List.of(line(0, "r1"), line(1000, "r2"), line(1500, "r3"), line(3000, "r4"),
+            line(4000, "r5"), "not json", line(5000, "r6"), line(6000, "r7"), line(7000, "r8")), output(false));
+        assertEquals(9, result.lines());
+        assertEquals(1, result.untimed());
+        assertEquals(0, result.outOfOrder());
+    }
+
+    @Test
+    void fractionalSecondsOrderByInstant() throws Exception {
+        String whole = "{\"_time\":\"2026-03-01T00:00:01Z\",\"event_type\":\"QUERY\"}";
+        String half = "{\"_time\":\"2026-03-01T00:00:00.5Z\",\"event_type\":\"QUERY\"}";
+        String micros = "{\"_time\":\"2026-03-01T00:00:00.500001Z\",\"event_type\":\"QUERY\"}";
+
+        merge(Duration.ZERO, false, AuditMerge.DEFAULT_SEGMENT_BYTES,
+            replica("a", List.of(), List.of(whole)), replica("b", List.of(), List.of(half, micros)));
+
+        assertEquals(List.of(half, micros, whole), output(false));
+    }
+
+    @Test
+    void duplicateRequestsWithinWindowAreDropped() throws Exception {
+        Path a = replica("a", List.of(), List.of(line(0, "r1"), line(1000, "r2"), line(9000, "r3")));
+        Path b = replica("b", List.of(), List.of(line(200, "r1"), line(1100, "r2"), line(12000, "r1")));
+
+        AuditMerge.Result result = merge(Duration.ofSeconds(2), false, AuditMerge.DEFAULT_SEGMENT_BYTES, a, b);
+
+        assertEquals(List.of(line(0, "r1"), line(1000, "r2"), line(9000, "r3"), line(12000, "r1")), output(false));
+        assertEquals(2, result.duplicates());
+    }
+
+    @Test
+    void compressedSegmentsRollAndRoundTrip() throws Exception {
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            lines.add(line(i * 10, "r" + i));
+        }
+
+        AuditMerge.Result result = merge(Duration.ZERO, true, 1024, replica("a", List.of(), lines));
+
+        assertTrue(result.segments() > 1);
+        assertEquals(lines, output(true));
+    }
+
+    @Test
+    void chainLinesAreDroppedAndExistingOutputIsRefused() throws Exception {
+        Path a = replica("a", List.of(),
+            List.of("{\"_chain_event\":\"start\",\"prev\":\"00\",\"_chain\":\"ab\"}", line(0, "r1")));
+
+        merge(Duration.ZERO, false, AuditMerge.DEFAULT_SEGMENT_BYTES, a);
+
+        assertEquals(List.of(line(0, "r1")), output(false));
+        assertThrows(IllegalStateException.class, () -> merge(Duration.ZERO, false, 1024, a));
+    }
+
+    @Test
+    void epochNanosReadsInstantText() {
+        for (String text : List.of("2026-03-01T12:34:56Z", "2026-03-01T12:34:56.1Z", "1999-12-31T23:59:59.123456789Z",
+            "2026-03-01T12:34:56+00:00")) {
+            Instant instant = Instant.parse(text);
+            assertEquals(instant.getEpochSecond() * 1_000_000_000L + instant.getNano(), nanos(text), text);
+        }
+        assertEquals(Long.MIN_VALUE, nanos("2026-02-30T00:00:00Z"));
+        assertEquals(Long.MIN_VALUE, nanos("yesterday"));
+    }
+
+    private AuditMerge.Result merge(Duration window, boolean gzip, long segmentBytes, Path... replicas)
+        throws IOException {
+        List<List<Path>> inputs = new ArrayList<>();
+        for (Path replica : replicas) {
+            inputs.add(AuditMerge.segments(replica));
+        }
+        return new AuditMerge(tempDir.resolve("out"), segmentBytes, gzip, window).merge(inputs);
+    }
+
+    /** A replica log directory with one rolled file and the current {@code audit.log}. */
+    private Path replica(String name, List<String> rolled, List<String> current) throws IOException {
+        Path dir = Files.createDirectories(tempDir.resolve(name));
+        if (!rolled.isEmpty()) {
+            Files.write(dir.resolve("audit.2026-03-01.0.log"), rolled);
+        }
+        Files.write(dir.resolve("audit.log"), current);
+        Files.writeString(dir.resolve("app.log"), "not an audit file\n");
+        return dir;
+    }
+
+    private List<String> output(boolean gzip) throws IOException {
+        List<String> lines = new ArrayList<>();
+        try (Stream<Path> files = Files.list(tempDir.resolve("out"))) {
+            for (Path file : files.sorted().toList()) {
+                try (InputStream in = gzip ? new GZIPInputStream(Files.newInputStream(file)) : Files.newInputStream(file)) {
+                    String text = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+                    lines.addAll(text.lines().toList());
+                }
+            }
+        }
+        return lines;
+    }
+
+    private static String line(long millis, String requestId) {
+        return "{\"_time\":\"" + START.plusMillis(millis) + "\",\"event_type\":\"QUERY\",\"request_id\":\""
+            + requestId + "\",\"metadata\":{\"request_id\":\"nested\"}}";
+    }
+
+    private static long nanos(String text) {
+        ByteBuffer buffer = ByteBuffer.wrap(text.getBytes(StandardCharsets.US_ASCII));
+        return AuditMerge.epochNanos(buffer, 0, buffer.limit());
+    }
+}
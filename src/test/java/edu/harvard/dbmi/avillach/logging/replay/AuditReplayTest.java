@@ -0,0 +1,146 @@
+package edu.harvard.dbmi.avillach.logging.replay;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static edu.harvard.dbmi.avillach.logging.replay.LineFilterTest.line;
+import static org.junit.jupiter.api.Assertions.*;
+
+class AuditReplayTest {
+
+    private static final Instant START = Instant.parse("2026-03-01T00:00:00Z");
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void replaysMatchingLinesAcrossRangesAndFiles() throws Exception {
+        Path first = write("audit.2026-03-01.0.log", 0, 100);
+        Path second = write("audit.2026-03-01.1.log", 100, 100);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        AuditReplay.Result result = replay(START.plusSeconds(50), START.plusSeconds(150), List.of("QUERY"),
+            output, 0, null).replay(List.of(first, second));
+
+        List<String> expected = new ArrayList<>();
+        for (int i = 50; i < 150; i += 2) {
+            expected.add(event(i));
+        }
+        assertEquals(Set.copyOf(expected), Set.copyOf(lines(output)));
+        assertEquals(expected.size(), lines(output).size());
+        assertEquals(expected.size(), result.sent());
+        assertEquals(202, result.scanned());
+    }
+
+    @Test
+    void resumesFromSavedOffsets() throws Exception {
+        Path file = write("audit.log", 0, 100);
+        List<String> all = Files.readAllLines(file);
+        long resumeAt = String.join("\n", all.subList(0, 61)).length() + 1;
+        Path checkpoint = tempDir.resolve("replay.json");
+        new ReplayCheckpoint(new LineFilter(null, null, List.of()).description(), Map.of(
+            file.toAbsolutePath().normalize().toString(),
+            new ReplayCheckpoint.FileProgress(Files.size(file), Files.getLastModifiedTime(file).toMillis(),
+                List.of(new ReplayCheckpoint.RangeProgress(0, Files.size(file), resumeAt))))).write(checkpoint);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        replay(null, null, List.of(), output, 0, checkpoint).replay(List.of(file));
+
+        assertEquals(all.subList(61, all.size()), lines(output));
+    }
+
+    @Test
+    void interruptedReplayResumesWithoutLosingLines() throws Exception {
+        Path file = write("audit.log", 0, 500);
+        Path checkpoint = tempDir.resolve("replay.json");
+        ByteArrayOutputStream delivered = new ByteArrayOutputStream();
+        OutputStream failing = new OutputStream() {
+            private int writes;
+
+            @Override
+            public void write(int b) {
+                delivered.write(b);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                if (++writes > 3) {
+                    throw new IOException("connection reset");
+                }
+                delivered.write(b, off, len);
+            }
+        };
+
+        assertThrows(IOException.class,
+            () -> replay(null, null, List.of(), failing, 0, checkpoint).replay(List.of(file)));
+        int firstRun = lines(delivered).size();
+        AuditReplay.Result resumed = replay(null, null, List.of(), delivered, 0, checkpoint).replay(List.of(file));
+
+        assertTrue(firstRun > 0 && firstRun < 500);
+        assertTrue(resumed.sent() < 500);
+        Set<String> unique = new HashSet<>(lines(delivered));
+        assertEquals(new HashSet<>(Files.readAllLines(file)).size() - 1, unique.size());
+        assertEquals(0, replay(null, null, List.of(), delivered, 0, checkpoint).replay(List.of(file)).sent());
+    }
+
+    @Test
+    void checkpointFromAnotherFilterIsRefused() throws Exception {
+        Path file = write("audit.log", 0, 10);
+        Path checkpoint = tempDir.resolve("replay.json");
+        replay(null, null, List.of(), new ByteArrayOutputStream(), 0, checkpoint).replay(List.of(file));
+
+        assertThrows(IllegalStateException.class, () -> replay(null, null, List.of("LOGIN"),
+            new ByteArrayOutputStream(), 0, checkpoint).replay(List.of(file)));
+    }
+
+    @Test
+    void rateLimitPacesOutput() throws Exception {
+        Path file = write("audit.log", 0, 200);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        long started = System.nanoTime();
+        replay(null, null, List.of(), output, 400, null).replay(List.of(file));
+        long elapsedMillis = (System.nanoTime() - started) / 1_000_000;
+
+        assertEquals(200, lines(output).size());
+        assertTrue(elapsedMillis >= 350, "took " + elapsedMillis + " ms");
+    }
+
+    private AuditReplay replay(Instant from, Instant to, List<String> eventTypes, OutputStream output, long rate,
+                               Path checkpoint) {
+        return new AuditReplay(from, to, eventTypes, output, rate, 4, checkpoint, 512);
+    }
+
+    /** Events {@code first..first+count-1}, one second apart, with a chain start line first. */
+    private Path write(String name, int first, int count) throws IOException {
+        StringBuilder text = new StringBuilder("{\"_chain_event\":\"start\",\"prev\":\"00\",\"_chain\":\"ab\"}\n");
+        for (int i = first; i < first + count; i++) {
+            text.append(event(i)).append('\n');
+        }
+        Path file = tempDir.resolve(name);
+        Files.writeString(file, text);
+        return file;
+    }
+
+    private static String event(int i) {
+        return line(START.plusSeconds(i).plusMillis(i % 3 == 0 ? 0 : 250).toString(), i % 2 == 0 ? "QUERY" : "LOGIN");
+    }
+
+    private static List<String> lines(ByteArrayOutputStream output) {
+        String text = output.toString(StandardCharsets.UTF_8);
+        return text.isEmpty() ? List.of() : List.of(text.split("\n"));
+    }
+}
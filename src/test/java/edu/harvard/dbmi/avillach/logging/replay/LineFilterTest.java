@@ -0,0 +1,65 @@
+package edu.harvard.dbmi.avillach.logging.replay;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LineFilterTest {
+
+    private static final Instant NOON = Instant.parse("2026-03-01T12:00:00Z");
+
+    @Test
+    void fractionalSecondsCompareByInstantNotText() {
+        LineFilter filter = new LineFilter(NOON, Instant.parse("2026-03-01T12:00:01Z"), List.of());
+
+        // Lexicographically "12:00:00.5Z" < "12:00:00Z", but it is later
+        assertTrue(accepts(filter, line("2026-03-01T12:00:00.500Z", "QUERY")));
+        assertTrue(accepts(filter, line("2026-03-01T12:00:00Z", "QUERY")));
+        assertFalse(accepts(filter, line("2026-03-01T11:59:59.999Z", "QUERY")));
+        assertFalse(accepts(filter, line("2026-03-01T12:00:01Z", "QUERY")));
+        assertFalse(accepts(filter, line("2026-03-01T12:00:01.001Z", "QUERY")));
+    }
+
+    @Test
+    void eventTypesMatchWholeValues() {
+        LineFilter filter = new LineFilter(null, null, Set.of("QUERY", "LOGIN"));
+
+        assertTrue(accepts(filter, line("2026-03-01T12:00:00Z", "QUERY")));
+        assertTrue(accepts(filter, line("2026-03-01T12:00:00Z", "LOGIN")));
+        assertFalse(accepts(filter, line("2026-03-01T12:00:00Z", "QUERY_RESULT")));
+        assertFalse(accepts(filter, line("2026-03-01T12:00:00Z", "LOGOUT")));
+    }
+
+    @Test
+    void chainLinesAndLinesWithoutTimeAreSkipped() {
+        LineFilter all = new LineFilter(null, null, List.of());
+        LineFilter timed = new LineFilter(NOON, null, List.of());
+
+        assertFalse(accepts(all, "{\"_chain_event\":\"start\",\"prev\":\"00\",\"_chain\":\"ab\"}"));
+        assertTrue(accepts(all, "{\"event_type\":\"QUERY\"}"));
+        assertFalse(accepts(timed, "{\"event_type\":\"QUERY\"}"));
+    }
+
+    @Test
+    void descriptionIdentifiesTheSelection() {
+        assertEquals(new LineFilter(NOON, null, List.of("B", "A")).description(),
+            new LineFilter(NOON, null, List.of("A", "B")).description());
+        assertNotEquals(new LineFilter(NOON, null, List.of()).description(),
+            new LineFilter(null, null, List.of()).description());
+    }
+
+    static String line(String time, String eventType) {
+        return "{\"_time\":\"" + time + "\",\"event_type\":\"" + eventType + "\",\"action\":\"sync\"}";
+    }
+
+    private static boolean accepts(LineFilter filter, String line) {
+        ByteBuffer buffer = ByteBuffer.wrap(("xx" + line).getBytes(StandardCharsets.UTF_8));
+        return filter.accepts(buffer, 2, buffer.limit());
+    }
+}
@@ -0,0 +1,62 @@
+package edu.harvard.dbmi.avillach.logging.routing;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RouteTableTest {
+
+    @Test
+    void firstMatchingRuleWins() {
+        RouteTable table = new RouteTable(List.of(
+            new RouteRule("api-exports", null, List.of("api"), List.of("DATA_EXPORT"), null, "exports"),
+            new RouteRule("exports", null, null, List.of("DATA_EXPORT"), null, "exports"),
+            new RouteRule("logins", null, null, List.of("LOGIN", "LOGOUT"), List.of("login"), "auth")
+        ), "pic-sure");
+
+        assertEquals(0, table.route("api", "DATA_EXPORT", "export_csv"));
+        assertEquals(1, table.route("ui", "DATA_EXPORT", "export_csv"));
+        assertEquals(1, table.route(null, "DATA_EXPORT", null));
+        assertEquals(2, table.route("ui", "LOGIN", "login"));
+        assertEquals(-1, table.route("ui", "LOGOUT", "logout"));
+        assertEquals(-1, table.route("ui", "QUERY", "sync"));
+        assertEquals(-1, table.route("ui", null, null));
+    }
+
+    @Test
+    void catchAllRuleMatchesEverything() {
+        RouteTable table = new RouteTable(List.of(
+            new RouteRule("queries", null, null, List.of("QUERY"), null, "queries"),
+            new RouteRule("rest", null, null, null, null, "other")
+        ), "pic-sure");
+
+        assertEquals(0, table.route("ui", "QUERY", "sync"));
+        assertEquals(1, table.route("ui", "SEARCH", "search"));
+        assertEquals(1, table.route(null, null, null));
+    }
+
+    @Test
+    void appPredicateIsResolvedForThisLogger() {
+        List<RouteRule> rules = List.of(
+            new RouteRule("bdc", List.of("bdc"), null, List.of("QUERY"), null, "bdc"),
+            new RouteRule("nhanes", List.of("nhanes", "demo"), null, List.of("QUERY"), null, "nhanes"));
+
+        assertEquals(0, new RouteTable(rules, "bdc").route("ui", "QUERY", "sync"));
+        assertEquals(1, new RouteTable(rules, "demo").route("ui", "QUERY", "sync"));
+        assertEquals(-1, new RouteTable(rules, "other").route("ui", "QUERY", "sync"));
+    }
+
+    @Test
+    void moreThanSixtyFourRulesAreRejected() {
+        List<RouteRule> rules = new ArrayList<>();
+        for (int i = 0; i <= RouteTable.MAX_ROUTES; i++) {
+            rules.add(new RouteRule("r" + i, null, null, List.of("E" + i), null, "set"));
+        }
+
+        assertEquals(63, new RouteTable(rules.subList(0, 64), "app").route(null, "E63", null));
+        assertThrows(IllegalStateException.class, () -> new RouteTable(rules, "app"));
+    }
+}
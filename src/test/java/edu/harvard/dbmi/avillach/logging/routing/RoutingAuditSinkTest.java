@@ -0,0 +1,98 @@
+package edu.harvard.dbmi.avillach.logging.routing;
+
+import edu.harvard.dbmi.avillach.logging.metrics.AsyncQueueProbe;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RoutingAuditSinkTest {
+
+    private static final FileSetSpec DEFAULTS = new FileSetSpec(null, null, null);
+
+    @Test
+    void eventsGoToTheirRouteOrMainAndAreCounted() {
+        List<Map<String, Object>> main = new ArrayList<>();
+        Map<String, List<Map<String, Object>>> written = new HashMap<>();
+        RoutingDocument document = new RoutingDocument(Map.of("exports", DEFAULTS, "auth", DEFAULTS), List.of(
+            new RouteRule("exports", null, null, List.of("DATA_EXPORT"), null, "exports"),
+            new RouteRule("logins", null, null, List.of("LOGIN"), null, "auth"),
+            new RouteRule("logouts", null, null, List.of("LOGOUT"), null, "auth")));
+        RoutingAuditSink sink = new RoutingAuditSink(document, "pic-sure", main::add,
+            name -> fields -> written.computeIfAbsent(name, n -> new ArrayList<>()).add(fields));
+
+        sink.write(Map.of("event_type", "DATA_EXPORT"));
+        sink.write(Map.of("event_type", "LOGIN"));
+        sink.write(Map.of("event_type", "LOGOUT"));
+        sink.write(Map.of("event_type", "QUERY"));
+
+        assertEquals(1, written.get("exports").size());
+        assertEquals(2, written.get("auth").size());
+        assertEquals(List.of(Map.of("event_type", "QUERY")), main);
+        Map<String, Object> metrics = sink.metrics();
+        assertEquals(Map.of("exports", 1L, "logins", 1L, "logouts", 1L), metrics.get("routes"));
+        assertEquals(Map.of("exports", 1L, "auth", 2L), metrics.get("file_sets"));
+        assertEquals(1L, metrics.get("unrouted"));
+    }
+
+    @Test
+    void invalidDocumentsAreRejected() {
+        Map<String, FileSetSpec> sets = Map.of("exports", DEFAULTS);
+
+        assertThrows(IllegalStateException.class, () -> create(new RoutingDocument(sets,
+            List.of(new RouteRule("r", null, null, null, null, "missing")))));
+        assertThrows(IllegalStateException.class, () -> create(new RoutingDocument(sets, List.of(
+            new RouteRule("r", null, null, null, null, "exports"),
+            new RouteRule("r", null, null, null, null, "exports")))));
+        assertThrows(IllegalStateException.class, () -> create(new RoutingDocument(
+            Map.of("audit", DEFAULTS), List.of())));
+        assertThrows(IllegalStateException.class, () -> create(new RoutingDocument(
+            Map.of("../x", DEFAULTS), List.of())));
+        assertThrows(IllegalStateException.class, () -> create(new RoutingDocument(
+            Map.of("exports", new FileSetSpec("lots", null, null)), List.of())));
+    }
+
+    @Test
+    void loadWritesRoutedEventsToTheirOwnFiles(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("routing.json");
+        Files.writeString(file, """
+            {"file_sets": {"exports": {"max_file_size": "10MB", "max_history": 90}},
+             "routes": [{"name": "exports", "event_type": ["DATA_EXPORT"], "file_set": "exports"}]}
+            """);
+        List<Map<String, Object>> main = new ArrayList<>();
+
+        RoutingAuditSink sink = RoutingAuditSink.load(file, "pic-sure", dir, main::add);
+        AsyncQueueProbe unrouted = new AsyncQueueProbe("AUDIT", "ASYNC_AUDIT_FILE");
+        AsyncQueueProbe exportsQueue = sink.fileSetQueues().get("exports");
+        assertEquals(1024, exportsQueue.capacity());
+        assertSame(exportsQueue, sink.queueFor(Map.of("event_type", "DATA_EXPORT"), unrouted));
+        assertSame(unrouted, sink.queueFor(Map.of("event_type", "QUERY"), unrouted));
+        sink.write(Map.of("_time", "2026-03-01T00:00:00Z", "event_type", "DATA_EXPORT", "action", "export_csv"));
+        sink.write(Map.of("_time", "2026-03-01T00:00:01Z", "event_type", "QUERY"));
+        sink.stop();
+
+        String exports = Files.readString(dir.resolve("exports.log"));
+        assertTrue(exports.contains("\"event_type\":\"DATA_EXPORT\""), exports);
+        assertFalse(exports.contains("QUERY"));
+        assertEquals(1, main.size());
+    }
+
+    @Test
+    void unknownKeysInRoutingFileFailLoad(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("routing.json");
+        Files.writeString(file, "{\"file_sets\": {}, \"routes\": [], \"fallback\": \"x\"}");
+
+        assertThrows(IllegalStateException.class, () -> RoutingAuditSink.load(file, "app", dir, fields -> { }));
+    }
+
+    private static RoutingAuditSink create(RoutingDocument document) {
+        return new RoutingAuditSink(document, "app", fields -> { }, name -> fields -> { });
+    }
+}
@@ -0,0 +1,104 @@
+package edu.harvard.dbmi.avillach.logging.schema;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import edu.harvard.dbmi.avillach.logging.model.AuditEvent;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AuditEventDeserializerTest {
+
+    private static final SchemaDefinition QUERY = new SchemaDefinition("QUERY", Map.of(
+        "query_id", new FieldSpec(FieldSpec.Type.STRING, true, 8, null, null),
+        "result_count", new FieldSpec(FieldSpec.Type.INTEGER, false, null, 0.0, null),
+        "filters", new FieldSpec(FieldSpec.Type.ARRAY, false, 2, null, null)
+    ), false);
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private ObjectReader reader(boolean reject) {
+        return objectMapper.readerFor(AuditEvent.class)
+            .withAttribute(SchemaRegistry.class, new SchemaRegistry(List.of(QUERY), reject));
+    }
+
+    @Test
+    void bindsAllFieldsWithoutRegistry() throws Exception {
+        AuditEvent event = objectMapper.readValue("""
+            {"event_type": "QUERY", "action": "run", "client_type": "ui", "session_id": "s1",
+             "request": {"method": "POST", "url": "/query"}, "metadata": {"n": 1},
+             "error": {"code": 500}, "unknown": [1, {"a": 2}]}
+            """, AuditEvent.class);
+
+        assertEquals("QUERY", event.eventType());
+        assertEquals("run", event.action());
+        assertEquals("ui", event.clientType());
+        assertEquals("s1", event.sessionId());
+        assertEquals("POST", event.request().method());
+        assertEquals(Map.of("n", 1), event.metadata());
+        assertEquals(Map.of("code", 500), event.error());
+    }
+
+    @Test
+    void conformingMetadataAccepted() throws Exception {
+        AuditEvent event = reader(true).readValue("""
+            {"event_type": "QUERY", "metadata": {"query_id": "q1", "result_count": 3, "session_id": "s1"}}
+            """);
+        assertEquals("q1", event.metadata().get("query_id"));
+        assertEquals("s1", event.metadata().get("session_id"));
+    }
+
+    @Test
+    void rejectModeFailsOnFirstViolation() {
+        ObjectReader reader = reader(true);
+        SchemaViolationException ex = assertThrows(SchemaViolationException.class,
+            () -> reader.readValue("{\"event_type\": \"QUERY\", \"metadata\": {\"query_id\": \"much-too-long\"}}"));
+        assertEquals("QUERY metadata.query_id exceeds 8 characters", ex.getMessage());
+
+        ex = assertThrows(SchemaViolationException.class,
+            () -> reader.readValue("{\"event_type\": \"QUERY\", \"metadata\": {\"query_id\": \"q\", \"result_count\": -1}}"));
+        assertEquals("QUERY metadata.result_count is below 0", ex.getMessage());
+
+        ex = assertThrows(SchemaViolationException.class,
+            () -> reader.readValue("{\"event_type\": \"QUERY\", \"metadata\": {\"query_id\": \"q\", \"extra\": 1}}"));
+        assertEquals("QUERY metadata.extra is not allowed", ex.getMessage());
+
+        ex = assertThrows(SchemaViolationException.class,
+            () -> reader.readValue("{\"event_type\": \"QUERY\"}"));
+        assertEquals("QUERY metadata.query_id is required", ex.getMessage());
+    }
+
+    @Test
+    void metadataBeforeEventTypeValidatedAfterParsing() {
+        ObjectReader reader = reader(true);
+        SchemaViolationException ex = assertThrows(SchemaViolationException.class,
+            () -> reader.readValue("{\"metadata\": {\"query_id\": \"q\", \"filters\": [1, 2, 3]}, \"event_type\": \"QUERY\"}"));
+        assertEquals("QUERY metadata.filters exceeds 2 entries", ex.getMessage());
+    }
+
+    @Test
+    void reportModeCountsViolationsAndKeepsEvent() throws Exception {
+        SchemaRegistry registry = new SchemaRegistry(List.of(QUERY), false);
+        ObjectReader reader = objectMapper.readerFor(AuditEvent.class).withAttribute(SchemaRegistry.class, registry);
+
+        AuditEvent event = reader.readValue(
+            "{\"event_type\": \"QUERY\", \"metadata\": {\"result_count\": \"many\", \"extra\": true}}");
+        reader.readValue("{\"event_type\": \"QUERY\", \"metadata\": {\"query_id\": \"q\"}}");
+        reader.readValue("{\"event_type\": \"LOGIN\", \"metadata\": {\"anything\": 1}}");
+
+        assertEquals("many", event.metadata().get("result_count"));
+        @SuppressWarnings("unchecked")
+        Map<String, Object> query = (Map<String, Object>) ((Map<String, Object>) registry.metrics().get("schemas")).get("QUERY");
+        assertEquals(2L, query.get("validated"));
+        assertEquals(1L, query.get("violating_events"));
+        @SuppressWarnings("unchecked")
+        Map<String, Object> fields = (Map<String, Object>) query.get("field_violations");
+        assertEquals(1L, fields.get("query_id"));
+        assertEquals(1L, fields.get("result_count"));
+        assertEquals(1L, fields.get(EventSchema.ADDITIONAL));
+        assertEquals(0L, fields.get("filters"));
+    }
+}
@@ -0,0 +1,52 @@
+package edu.harvard.dbmi.avillach.logging.schema;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SchemaRegistryTest {
+
+    @Test
+    void loadsJsonFilesFromDirectory(@TempDir Path dir) throws Exception {
+        Files.writeString(dir.resolve("query.json"), """
+            {"event_type": "QUERY", "additional_fields": false,
+             "fields": {"query_id": {"type": "string", "required": true, "max_length": 64}}}
+            """);
+        Files.writeString(dir.resolve("README.md"), "not a schema");
+
+        SchemaRegistry registry = SchemaRegistry.load(dir, true);
+
+        assertEquals("QUERY", registry.schemaFor("QUERY").eventType());
+        assertNull(registry.schemaFor("LOGIN"));
+        assertNull(registry.schemaFor(null));
+        assertEquals("reject", registry.metrics().get("mode"));
+    }
+
+    @Test
+    void invalidSchemaFilesFail(@TempDir Path dir) throws Exception {
+        Files.writeString(dir.resolve("bad.json"), "{\"event_type\": \"QUERY\", \"feilds\": {}}");
+        IllegalStateException ex = assertThrows(IllegalStateException.class, () -> SchemaRegistry.load(dir, true));
+        assertTrue(ex.getMessage().contains("bad.json"));
+
+        Files.writeString(dir.resolve("bad.json"), "{\"event_type\": \"QUERY\", \"fields\": {\"n\": {\"type\": \"float\"}}}");
+        assertThrows(IllegalStateException.class, () -> SchemaRegistry.load(dir, true));
+    }
+
+    @Test
+    void rejectsInconsistentDefinitions() {
+        FieldSpec inverted = new FieldSpec(FieldSpec.Type.NUMBER, false, null, 10.0, 1.0);
+        assertThrows(IllegalStateException.class,
+            () -> new SchemaRegistry(List.of(new SchemaDefinition("QUERY", Map.of("n", inverted), null)), true));
+
+        SchemaDefinition query = new SchemaDefinition("QUERY", Map.of(), null);
+        assertThrows(IllegalStateException.class, () -> new SchemaRegistry(List.of(query, query), true));
+        assertThrows(IllegalStateException.class,
+            () -> new SchemaRegistry(List.of(new SchemaDefinition(" ", Map.of(), null)), true));
+    }
+}
@@ -5,13 +5,24 @@ import ch.qos.logback.classic.spi.ILoggingEvent;
 import ch.qos.logback.core.read.ListAppender;
 import edu.harvard.dbmi.avillach.logging.TestJwtBuilder;
 import edu.harvard.dbmi.avillach.logging.config.AppConfig;
+import edu.harvard.dbmi.avillach.logging.config.RedactionRule;
+import edu.harvard.dbmi.avillach.logging.enrich.GeoIpEnricher;
+import edu.harvard.dbmi.avillach.logging.enrich.UrlTemplater;
 import edu.harvard.dbmi.avillach.logging.model.AuditEvent;
 import edu.harvard.dbmi.avillach.logging.model.RequestInfo;
+import edu.harvard.dbmi.avillach.logging.pipeline.LoggerAuditSink;
+import edu.harvard.dbmi.avillach.logging.pipeline.SessionStripes;
+import edu.harvard.dbmi.avillach.logging.redact.Redactor;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.slf4j.LoggerFactory;
 
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
 import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -280,4 +291,131 @@ class AuditLogServiceTest {
         // metadata map should be omitted since it's empty after removing session_id
         assertFalse(message.contains("metadata="));
     }
+
+    @Test
+    void stripedServicePreservesPerSessionOrder() {
+        AppConfig config = new AppConfig(
+            "test-key", "myapp", "myplatform", "staging", "myhost",
+            8080, "*", Map.of()
+        );
+        SessionStripes stripes = new SessionStripes(4, 8);
+        AuditLogService striped = new AuditLogService(config, new JwtDecodeService(config.jwtClaimMapping()),
+            new LoggerAuditSink(LoggerFactory.getLogger("AUDIT")), AuditLogService.Stages.NONE.withSessionStripes(stripes));
+        stripes.start();
+
+        for (int i = 0; i < 50; i++) {
+            striped.logEvent(new AuditEvent("TEST", "step-" + i, null, "sid-1", null, null, null), null, null);
+        }
+        stripes.stop();
+
+        assertEquals(50, listAppender.list.size());
+        for (int i = 0; i < 50; i++) {
+            assertTrue(listAppender.list.get(i).getFormattedMessage().contains("action=step-" + i + ","));
+        }
+    }
+
+    @Test
+    void tokenlessEventInheritsCachedSessionIdentity() {
+        AuditLogService cached = sessionCachingService();
+        String token = TestJwtBuilder.buildToken(Map.of("sub", "user123", "email", "user@example.com"));
+
+        cached.logEvent(new AuditEvent("LOGIN", null, null, "sess-1", null, null, null), "Bearer " + token, null);
+        cached.logEvent(new AuditEvent("QUERY", null, null, "sess-1", null, null, null), null, null);
+        cached.logEvent(new AuditEvent("QUERY", null, null, "sess-2", null, null, null), null, null);
+
+        String withToken = listAppender.list.get(0).getFormattedMessage();
+        assertTrue(withToken.contains("subject=user123"));
+        assertFalse(withToken.contains("identity_source"));
+
+        String inherited = listAppender.list.get(1).getFormattedMessage();
+        assertTrue(inherited.contains("subject=user123"));
+        assertTrue(inherited.contains("logged_in=true"));
+        assertTrue(inherited.contains("identity_source=session_cache"));
+
+        String otherSession = listAppender.list.get(2).getFormattedMessage();
+        assertTrue(otherSession.contains("logged_in=false"));
+        assertFalse(otherSession.contains("subject="));
+    }
+
+    @Test
+    void invalidTokenDoesNotInheritSessionIdentity() {
+        AuditLogService cached = sessionCachingService();
+        String token = TestJwtBuilder.buildToken(Map.of("sub", "user123"));
+
+        cached.logEvent(new AuditEvent("LOGIN", null, null, "sess-1", null, null, null), "Bearer " + token, null);
+        cached.logEvent(new AuditEvent("QUERY", null, null, "sess-1", null, null, null), "Bearer not-a-jwt", null);
+
+        String message = listAppender.list.get(1).getFormattedMessage();
+        assertTrue(message.contains("logged_in=false"));
+        assertFalse(message.contains("identity_source"));
+    }
+
+    @Test
+    void geoIpFieldsFollowRequestFields(@TempDir Path dir) throws Exception {
+        Path ranges = Files.writeString(dir.resolve("ranges.csv"), "192.168.0.0/16,US,64512,Example Net\n");
+        AppConfig config = new AppConfig(
+            "test-key", "myapp", "myplatform", "staging", "myhost",
+            8080, "*", Map.of()
+        );
+        AuditLogService enriching = new AuditLogService(config, new JwtDecodeService(config.jwtClaimMapping()),
+            new LoggerAuditSink(LoggerFactory.getLogger("AUDIT")),
+            AuditLogService.Stages.NONE.withGeoIpEnricher(new GeoIpEnricher(List.of(ranges), 16, 60)));
+        RequestInfo request = new RequestInfo(null, "GET", "/picsure/info", null,
+            "192.168.1.1", null, null, null, null, 200, null, null, null);
+
+        enriching.logEvent(new AuditEvent("OTHER", "info", null, null, request, Map.of("k", "v"), null), null, null);
+
+        String message = listAppender.list.get(0).getFormattedMessage();
+        assertTrue(message.contains("src_country=US, src_asn=64512, src_as_org=Example Net"));
+        assertTrue(message.indexOf("status=200") < message.indexOf("src_country"));
+        assertTrue(message.indexOf("src_as_org") < message.indexOf("metadata="));
+    }
+
+    @Test
+    void urlTemplateFollowsUrl() {
+        AppConfig config = new AppConfig(
+            "test-key", "myapp", "myplatform", "staging", "myhost",
+            8080, "*", Map.of()
+        );
+        AuditLogService templating = new AuditLogService(config, new JwtDecodeService(config.jwtClaimMapping()),
+            new LoggerAuditSink(LoggerFactory.getLogger("AUDIT")), AuditLogService.Stages.NONE.withUrlTemplater(
+                new UrlTemplater(List.of("/picsure/query/{queryId}/result"), 100)));
+        RequestInfo request = new RequestInfo(null, "GET", "/picsure/query/1234/result", "format=csv",
+            null, null, null, null, null, 200, null, null, null);
+
+        templating.logEvent(new AuditEvent("QUERY", "result", null, null, request, null, null), null, null);
+
+        String message = listAppender.list.get(0).getFormattedMessage();
+        assertTrue(message.contains(
+            "url=/picsure/query/1234/result, url_template=/picsure/query/{queryId}/result, query_string=format=csv"));
+    }
+
+    @Test
+    void redactorAppliesToMetadataAndError() {
+        AppConfig config = new AppConfig(
+            "test-key", "myapp", "myplatform", "staging", "myhost",
+            8080, "*", Map.of()
+        );
+        AuditLogService redacting = new AuditLogService(config, new JwtDecodeService(config.jwtClaimMapping()),
+            new LoggerAuditSink(LoggerFactory.getLogger("AUDIT")), AuditLogService.Stages.NONE.withRedactor(
+                () -> new Redactor(List.of(new RedactionRule("email", null, null, "[a-z]+@example\\.com")))));
+
+        redacting.logEvent(new AuditEvent("QUERY", "execute", null, null, null,
+            Map.of("shared_with", "jane@example.com"), Map.of("message", "no access for bob@example.com")), null, null);
+
+        String message = listAppender.list.get(0).getFormattedMessage();
+        assertTrue(message.contains("metadata={shared_with=[REDACTED:email]}"));
+        assertTrue(message.contains("error={message=no access for [REDACTED:email]}"));
+    }
+
+    private AuditLogService sessionCachingService() {
+        AppConfig config = new AppConfig(
+            "test-key", "myapp", "myplatform", "staging", "myhost",
+            8080, "*",
+            Map.of("sub", "subject", "email", "user_email", "logged_in", "logged_in")
+        );
+        return new AuditLogService(config, new JwtDecodeService(config.jwtClaimMapping()),
+            new LoggerAuditSink(LoggerFactory.getLogger("AUDIT")),
+            AuditLogService.Stages.NONE.withSessionIdentityCache(new SessionIdentityCache(100, Duration.ofMinutes(30))));
+    }
 }
@@ -6,6 +6,7 @@ import org.junit.jupiter.api.Test;
 
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -156,4 +157,17 @@ class JwtDecodeServiceTest {
         assertEquals("user123", result.get("subject"));
         assertEquals(true, result.get("logged_in"));
     }
+
+    @Test
+    void suppliedMappingIsReadPerToken() {
+        AtomicReference<Map<String, String>> mapping = new AtomicReference<>(Map.of("sub", "subject"));
+        JwtDecodeService reloading = new JwtDecodeService(mapping::get);
+        String header = "Bearer " + TestJwtBuilder.buildToken(Map.of("sub", "user123"));
+
+        assertEquals("user123", reloading.extractClaims(header).get("subject"));
+        mapping.set(Map.of("sub", "user_id"));
+        Map<String, Object> result = reloading.extractClaims(header);
+        assertEquals("user123", result.get("user_id"));
+        assertFalse(result.containsKey("subject"));
+    }
 }
@@ -0,0 +1,114 @@
+package edu.harvard.dbmi.avillach.logging.service;
+
+import edu.harvard.dbmi.avillach.logging.config.ReadinessConfig;
+import edu.harvard.dbmi.avillach.logging.metrics.AsyncQueueProbe;
+import edu.harvard.dbmi.avillach.logging.metrics.RollingHistogram;
+import edu.harvard.dbmi.avillach.logging.model.ReadinessStatus;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class ReadinessServiceTest {
+
+    @TempDir
+    Path tempDir;
+
+    private AsyncQueueProbe probeWithFill(double fill) {
+        AsyncQueueProbe probe = mock(AsyncQueueProbe.class);
+        when(probe.fillRatio()).thenReturn(fill);
+        return probe;
+    }
+
+    private ReadinessService service(ReadinessConfig config, AsyncQueueProbe probe, RollingHistogram latency) {
+        return new ReadinessService(config, new AtomicBoolean(true), probe, tempDir, latency);
+    }
+
+    @Test
+    void healthyWhenAllChecksPass() {
+        ReadinessService service = service(new ReadinessConfig(0.9, 0, 250, 1000), probeWithFill(0.1),
+            new RollingHistogram(1));
+
+        ReadinessStatus status = service.current();
+
+        assertTrue(status.isReady());
+        assertTrue(status.reasons().isEmpty());
+        assertEquals(0.1, status.checks().get("audit_queue_fill_ratio"));
+    }
+
+    @Test
+    void notReadyWhenQueueSaturated() {
+        ReadinessService service = service(new ReadinessConfig(0.9, 0, 250, 1000), probeWithFill(0.95),
+            new RollingHistogram(1));
+
+        ReadinessStatus status = service.current();
+
+        assertFalse(status.isReady());
+        assertTrue(status.reasons().get(0).contains("audit queue"));
+    }
+
+    @Test
+    void notReadyWhenFileSetQueueSaturated() {
+        ReadinessService service = new ReadinessService(new ReadinessConfig(0.9, 0, 250, 1000), new AtomicBoolean(true),
+            probeWithFill(0.1), Map.of("exports", probeWithFill(0.95)), tempDir, new RollingHistogram(1));
+
+        ReadinessStatus status = service.current();
+
+        assertFalse(status.isReady());
+        assertEquals(List.of("file set exports queue 95% full (threshold 90%)"), status.reasons());
+        assertEquals(0.95, status.checks().get("file_set_queue_fill_ratio"));
+    }
+
+    @Test
+    void notReadyWhenDiskBelowThreshold() {
+        ReadinessService service = service(new ReadinessConfig(1.0, Integer.MAX_VALUE, 250, 1000), probeWithFill(0.0),
+            new RollingHistogram(1));
+
+        ReadinessStatus status = service.current();
+
+        assertFalse(status.isReady());
+        assertTrue(status.reasons().get(0).contains("free space"));
+    }
+
+    @Test
+    void notReadyWhenWriteLatencyAboveThreshold() {
+        RollingHistogram latency = new RollingHistogram(1);
+        for (int i = 0; i < 100; i++) {
+            latency.record(500_000); // 500ms in micros
+        }
+        ReadinessService service = service(new ReadinessConfig(1.0, 0, 250, 1000), probeWithFill(0.0), latency);
+
+        ReadinessStatus status = service.current();
+
+        assertFalse(status.isReady());
+        assertTrue(status.reasons().get(0).contains("p99"));
+    }
+
+    @Test
+    void cachedStatusOnlyChangesOnRefresh() {
+        AsyncQueueProbe probe = probeWithFill(0.1);
+        ReadinessService service = service(new ReadinessConfig(0.9, 0, 250, 1000), probe, new RollingHistogram(1));
+        when(probe.fillRatio()).thenReturn(0.99);
+
+        assertTrue(service.current().isReady());
+        service.refresh();
+        assertFalse(service.current().isReady());
+    }
+
+    @Test
+    void startingUntilStartupFlagSet() {
+        AtomicBoolean started = new AtomicBoolean(false);
+        ReadinessService service = new ReadinessService(ReadinessConfig.defaults(), started, probeWithFill(0.0),
+            tempDir, new RollingHistogram(1));
+
+        assertEquals(ReadinessStatus.STARTING, service.current().status());
+        started.set(true);
+        assertNotEquals(ReadinessStatus.STARTING, service.current().status());
+    }
+}
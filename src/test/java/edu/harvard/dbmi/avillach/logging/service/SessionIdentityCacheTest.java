@@ -0,0 +1,30 @@
+package edu.harvard.dbmi.avillach.logging.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SessionIdentityCacheTest {
+
+    @Test
+    void recalledClaimsKeepTheirOrderAndAreTaggedLast() {
+        SessionIdentityCache cache = new SessionIdentityCache(10, Duration.ofMinutes(5));
+        Map<String, Object> claims = new LinkedHashMap<>();
+        for (String field : List.of("subject", "user_email", "roles", "department", "logged_in")) {
+            claims.put(field, field + "-value");
+        }
+
+        cache.remember("sess-1", claims);
+        claims.clear();
+
+        assertEquals(List.of("subject", "user_email", "roles", "department", "logged_in",
+                SessionIdentityCache.IDENTITY_SOURCE_FIELD),
+            List.copyOf(cache.recall("sess-1").keySet()));
+        assertNull(cache.recall("sess-2"));
+    }
+}
@@ -0,0 +1,128 @@
+package edu.harvard.dbmi.avillach.logging.service;
+
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import edu.harvard.dbmi.avillach.logging.App;
+import edu.harvard.dbmi.avillach.logging.config.AppConfig;
+import edu.harvard.dbmi.avillach.logging.handler.AuditHandler;
+import edu.harvard.dbmi.avillach.logging.pipeline.LoggerAuditSink;
+import io.javalin.testtools.JavalinTest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.slf4j.LoggerFactory;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WarmupServiceTest {
+
+    private ListAppender<ILoggingEvent> auditAppender;
+    private ListAppender<ILoggingEvent> warmupAppender;
+    private Logger auditLogger;
+    private Logger warmupLogger;
+
+    @BeforeEach
+    void setUp() {
+        auditLogger = (Logger) LoggerFactory.getLogger("AUDIT");
+        auditAppender = new ListAppender<>();
+        auditAppender.start();
+        auditLogger.addAppender(auditAppender);
+
+        warmupLogger = (Logger) LoggerFactory.getLogger(WarmupService.WARMUP_LOGGER);
+        warmupAppender = new ListAppender<>();
+        warmupAppender.start();
+        warmupLogger.addAppender(warmupAppender);
+    }
+
+    @AfterEach
+    void tearDown() {
+        auditLogger.detachAppender(auditAppender);
+        warmupLogger.detachAppender(warmupAppender);
+    }
+
+    private WarmupService warmupService(int events) {
+        AppConfig config = AppConfig.fromEnvironment(Map.of(
+            "LOGGING_API_KEY", "test-key",
+            "HOSTNAME", "myhost",
+            "JWT_CLAIM_MAPPING", "{\"sub\":\"subject\",\"email\":\"user_email\",\"roles\":\"roles\",\"logged_in\":\"logged_in\"}"
+        )::get);
+        AuditLogService auditLogService = new AuditLogService(config,
+            new JwtDecodeService(config.jwtClaimMapping()), new LoggerAuditSink(warmupLogger));
+        return new WarmupService(new AuditHandler(auditLogService), events);
+    }
+
+    @Test
+    void syntheticEventsNeverReachAuditLogger() {
+        warmupService(200).run();
+
+        assertTrue(auditAppender.list.isEmpty(), "Warm-up events must not reach the AUDIT logger");
+        assertEquals(200, warmupAppender.list.size());
+    }
+
+    @Test
+    void syntheticEventsCarryJwtClaims() {
+        warmupService(4).run();
+
+        String message = warmupAppender.list.get(0).getFormattedMessage();
+        assertTrue(message.contains("subject=warmup-user-1"));
+        assertTrue(message.contains("logged_in=true"));
+    }
+
+    @Test
+    void zeroEventsCompletesImmediately() {
+        Duration elapsed = warmupService(0).run();
+
+        assertNotNull(elapsed);
+        assertTrue(warmupAppender.list.isEmpty());
+    }
+
+    @Test
+    void appWarmsUpThroughItsConfiguredStagesBeforeReturningFromStart(@TempDir Path dir) throws Exception {
+        Path routing = dir.resolve("routing.json");
+        Files.writeString(routing, """
+            {"file_sets": {"auth": {}},
+             "routes": [{"name": "logins", "event_type": ["LOGIN"], "file_set": "auth"}]}
+            """);
+        AppConfig config = AppConfig.fromEnvironment(Map.of(
+            "LOGGING_API_KEY", "test-key",
+            "LOG_DIR", dir.toString(),
+            "WARMUP_EVENTS", "50",
+            "ROUTING_FILE", routing.toString(),
+            "PRIORITY_LANES", "[{\"name\":\"auth\",\"event_types\":[\"LOGIN\"],\"capacity\":4,\"weight\":2,\"overflow\":\"block\"},"
+                + "{\"name\":\"default\",\"capacity\":4,\"weight\":1,\"overflow\":\"block\"}]",
+            "REDACTION_RULES", "[{\"name\":\"probe\",\"literals\":[\"value-0-0\"]}]",
+            "URL_TEMPLATING", "true",
+            "MEMORY_BUDGET_MB", "16"
+        )::get);
+
+        JavalinTest.test(App.createApp(config, new AtomicBoolean(false)), (server, client) -> {
+            // The warm-up lanes are drained before start returns, so every synthetic event has been written
+            assertEquals(50, warmupAppender.list.size());
+            // Lanes may reorder events, so look for the redacted one anywhere
+            assertTrue(warmupAppender.list.stream()
+                .anyMatch(event -> event.getFormattedMessage().contains("key0=[REDACTED:probe]")));
+            assertTrue(auditAppender.list.isEmpty());
+
+            // Warm-up has caches and counters of its own, so the live ones have seen no traffic yet
+            JsonNode metrics = new ObjectMapper().readTree(
+                client.get("/metrics", builder -> builder.header("X-API-Key", "test-key")).body().string());
+            assertTrue(metrics.has("url_templates") && metrics.has("redaction") && metrics.has("memory_budget"));
+            assertEquals(0, metrics.at("/url_templates/matched").asLong() + metrics.at("/url_templates/fallback").asLong());
+            assertEquals(0, metrics.at("/redaction/events").asLong());
+            assertEquals(0, metrics.at("/memory_budget/admitted").asLong());
+        });
+
+        assertFalse(Files.readString(dir.resolve("auth.log")).contains("warmup"),
+            "Warm-up events routed to a file set must not reach its file");
+    }
+}